@@ -0,0 +1,89 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Allocation;
+import com.example.demo.model.Order;
+import com.example.demo.model.Picker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enqueue and allocation through {@code QueueService} and {@code AllocationService}, against queues
+ * pre-filled to {@code queueDepth} in each of {@code storeCount} stores. Each invocation leaves the
+ * queue depth unchanged, so results do not drift over an iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AllocationPathBenchmark {
+
+    @Param({"1", "64"})
+    private int storeCount;
+
+    @Param({"100", "10000"})
+    private int queueDepth;
+
+    private BenchmarkFixtures fixtures;
+    private Order[] seededOrders;
+    private Order[] newOrders;
+    private Picker[] newPickers;
+    private int next;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixtures = new BenchmarkFixtures();
+        fixtures.fill(storeCount, queueDepth);
+        // Same ids as the seeded members, so re-enqueueing them is a score update at constant depth
+        seededOrders = BenchmarkFixtures.orders(storeCount, queueDepth, "seed-order-");
+        newOrders = BenchmarkFixtures.orders(storeCount, queueDepth, "order-");
+        newPickers = BenchmarkFixtures.pickers(storeCount, queueDepth, "picker-");
+    }
+
+    /**
+     * Score an order and write it with its metadata.
+     */
+    @Benchmark
+    public Order enqueueOrder() {
+        Order order = seededOrders[advance(seededOrders.length)];
+        fixtures.queueService.enqueueOrder(order);
+        return order;
+    }
+
+    /**
+     * Add one new order and one new picker, then allocate the top pair of that store.
+     */
+    @Benchmark
+    public Optional<Allocation> enqueuePairAndTryAllocate() {
+        int index = advance(newOrders.length);
+        Order order = BenchmarkFixtures.withId(newOrders[index], sequence);
+        fixtures.queueService.enqueueOrder(order);
+        fixtures.queueService.enqueuePicker(BenchmarkFixtures.withId(newPickers[index], sequence++));
+        return fixtures.allocationService.tryAllocate(order.storeId());
+    }
+
+    /**
+     * The fused single-call path used by {@code POST /orders} and {@code POST /pickers}.
+     */
+    @Benchmark
+    public Optional<Allocation> enqueueAndAllocateFused() {
+        int index = advance(newOrders.length);
+        fixtures.allocationService.enqueueOrderAndAllocate(BenchmarkFixtures.withId(newOrders[index], sequence));
+        return fixtures.allocationService.enqueuePickerAndAllocate(BenchmarkFixtures.withId(newPickers[index], sequence++));
+    }
+
+    private int advance(int length) {
+        int index = next;
+        next = index + 1 == length ? 0 : index + 1;
+        return index;
+    }
+}
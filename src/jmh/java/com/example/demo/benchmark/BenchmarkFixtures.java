@@ -0,0 +1,107 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.audit.AllocationAuditLog;
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.LocalAllocationEngine;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Order;
+import com.example.demo.model.Picker;
+import com.example.demo.service.AllocationPushService;
+import com.example.demo.service.AllocationService;
+import com.example.demo.service.MatchingService;
+import com.example.demo.service.QueueService;
+import com.example.demo.service.ScoreCalculationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+/**
+ * Wires the services by hand against the in-process engine, which stands in for Redis so the
+ * benchmarks measure the Java allocation path without a network hop, and builds seeded inputs.
+ */
+final class BenchmarkFixtures {
+
+    private static final long SEED = 42;
+
+    final AllocationProperties properties = new AllocationProperties();
+    final ScoreCalculationService scoreCalculationService = new ScoreCalculationService(properties);
+    final LocalAllocationEngine engine = new LocalAllocationEngine(properties);
+    // Instrumentation stays on, so its cost is part of every measured path
+    final AllocationMetrics metrics = new AllocationMetrics(new SimpleMeterRegistry());
+    // allocation.audit is off by default, so auditing costs one branch per event here
+    final AllocationAuditLog auditLog = new AllocationAuditLog(properties, metrics);
+    final QueueService queueService = new QueueService(engine, scoreCalculationService, metrics, auditLog);
+    final MatchingService matchingService = new MatchingService(engine, scoreCalculationService, properties, metrics);
+    // allocation.push is off by default too
+    final AllocationPushService pushService = new AllocationPushService(properties, metrics, Optional.empty());
+    final AllocationService allocationService = new AllocationService(
+        engine, queueService, scoreCalculationService, properties, metrics, matchingService, auditLog, pushService);
+
+    static String storeId(int store) {
+        return "store-" + store;
+    }
+
+    static List<String> storeIds(int storeCount) {
+        List<String> storeIds = new ArrayList<>(storeCount);
+        for (int store = 0; store < storeCount; store++) {
+            storeIds.add(storeId(store));
+        }
+        return storeIds;
+    }
+
+    /**
+     * {@code perStore} orders for each store, interleaved by store, with OATs spread over the last hour.
+     */
+    static Order[] orders(int storeCount, int perStore, String idPrefix) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        Instant now = Instant.now();
+        Order[] orders = new Order[storeCount * perStore];
+        for (int i = 0; i < orders.length; i++) {
+            orders[i] = new Order(
+                idPrefix + i,
+                storeId(i % storeCount),
+                now.minusSeconds(random.nextInt(3600)),
+                random.nextInt(1, 6),
+                random.nextInt(1, 50));
+        }
+        return orders;
+    }
+
+    static Picker[] pickers(int storeCount, int perStore, String idPrefix) {
+        SplittableRandom random = new SplittableRandom(SEED + 1);
+        Picker[] pickers = new Picker[storeCount * perStore];
+        for (int i = 0; i < pickers.length; i++) {
+            pickers[i] = new Picker(
+                idPrefix + i,
+                storeId(i % storeCount),
+                random.nextInt(0, 5000),
+                random.nextInt(0, 500));
+        }
+        return pickers;
+    }
+
+    /**
+     * Copy of a template order under a fresh id, so every enqueue adds a new member.
+     */
+    static Order withId(Order template, long sequence) {
+        return new Order(template.orderId() + "-" + sequence, template.storeId(),
+            template.oat(), template.priorityOrder(), template.skuCount(), template.requiredCapabilities());
+    }
+
+    static Picker withId(Picker template, long sequence) {
+        return new Picker(template.pickerId() + "-" + sequence, template.storeId(),
+            template.skuCompleted(), template.orderCompleted(), template.capabilities());
+    }
+
+    /**
+     * Fill every store's order and picker queues to {@code queueDepth}.
+     */
+    void fill(int storeCount, int queueDepth) {
+        queueService.enqueueOrders(List.of(orders(storeCount, queueDepth, "seed-order-")));
+        queueService.enqueuePickers(List.of(pickers(storeCount, queueDepth, "seed-picker-")));
+    }
+}
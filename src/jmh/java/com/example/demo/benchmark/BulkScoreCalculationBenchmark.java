@@ -0,0 +1,76 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.model.Order;
+import com.example.demo.service.ScoreCalculationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-order cost of scoring 64K orders: one calculateOrderScore call per record against
+ * bulk calculateOrderScores over the same orders as primitive columns. The bulk path is measured in a
+ * fork without the Vector API module (scalar loop) and in one with it, so both run exactly as deployed.
+ * Not parameterized by store: scoring does not depend on it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(BulkScoreCalculationBenchmark.BATCH_SIZE)
+public class BulkScoreCalculationBenchmark {
+
+    static final int BATCH_SIZE = 65_536;
+
+    @Param({"RELATIVE", "ABSOLUTE_OAT"})
+    private AllocationProperties.ScoreEncoding scoreEncoding;
+
+    private ScoreCalculationService scoreCalculationService;
+    private Order[] orders;
+    private long[] oatEpochMillis;
+    private int[] priorityOrders;
+    private int[] skuCounts;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures fixtures = new BenchmarkFixtures();
+        fixtures.properties.setScoreEncoding(scoreEncoding);
+        scoreCalculationService = fixtures.scoreCalculationService;
+        orders = BenchmarkFixtures.orders(1, BATCH_SIZE, "order-");
+        oatEpochMillis = new long[BATCH_SIZE];
+        priorityOrders = new int[BATCH_SIZE];
+        skuCounts = new int[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            oatEpochMillis[i] = orders[i].oat().toEpochMilli();
+            priorityOrders[i] = orders[i].priorityOrder();
+            skuCounts[i] = orders[i].skuCount();
+        }
+    }
+
+    @Benchmark
+    public void perRecord(Blackhole blackhole) {
+        for (Order order : orders) {
+            blackhole.consume(scoreCalculationService.calculateOrderScore(order));
+        }
+    }
+
+    @Benchmark
+    public double[] bulkScalar() {
+        return scoreCalculationService.calculateOrderScores(oatEpochMillis, priorityOrders, skuCounts);
+    }
+
+    @Benchmark
+    @Fork(jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+    public double[] bulkVector() {
+        return scoreCalculationService.calculateOrderScores(oatEpochMillis, priorityOrders, skuCounts);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.LocalAllocationEngine;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Local engine durability: enqueue throughput from 16 callers with the journal off, flushed in the background,
+ * and with group commit; and the time to recover {@code events} journaled enqueues on startup with no snapshot.
+ * The journal is written to a temporary directory, so the numbers depend on the disk behind java.io.tmpdir.
+ */
+public class JournalBenchmark {
+
+    // Members are reused, so the queues stay bounded while every enqueue is still journaled
+    private static final int MEMBERS_PER_STORE = 4096;
+    private static final Map<String, String> META = Map.of("finalScore", "0.5");
+
+    @State(Scope.Benchmark)
+    public static class Appending {
+
+        @Param({"off", "background", "group-commit"})
+        private String journal;
+
+        private final AtomicInteger callers = new AtomicInteger();
+        private Path directory;
+        private LocalAllocationEngine engine;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("journal-benchmark");
+            engine = start(directory, !journal.equals("off"), journal.equals("group-commit"));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            engine.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+
+        private String storeId;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Appending appending) {
+            storeId = BenchmarkFixtures.storeId(appending.callers.getAndIncrement());
+        }
+
+        QueueEntry nextEntry() {
+            String orderId = "order-" + (next++ % MEMBERS_PER_STORE);
+            return new QueueEntry(QueueType.ORDER, storeId, orderId, 0.5, META);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovering {
+
+        @Param({"1000000"})
+        private int events;
+
+        private Path journaled;
+        private Path directory;
+        private LocalAllocationEngine engine;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            journaled = Files.createTempDirectory("journal-benchmark");
+            Path writing = Files.createTempDirectory("journal-benchmark");
+            LocalAllocationEngine writer = start(writing, true, false);
+            for (int i = 0; i < events; i++) {
+                writer.enqueue(List.of(new QueueEntry(QueueType.ORDER, BenchmarkFixtures.storeId(i % 64),
+                    "order-" + (i % (64 * MEMBERS_PER_STORE)), 0.5, META)));
+            }
+            // Copied before close, which would snapshot and leave nothing to replay
+            copy(writing, journaled);
+            writer.close();
+            delete(writing);
+        }
+
+        @Setup(Level.Invocation)
+        public void copyJournal() throws IOException {
+            directory = Files.createTempDirectory("journal-benchmark");
+            copy(journaled, directory);
+        }
+
+        @TearDown(Level.Invocation)
+        public void closeEngine() throws IOException {
+            engine.close();
+            delete(directory);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(journaled);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(16)
+    public void enqueue(Appending appending, Caller caller) {
+        appending.engine.enqueue(List.of(caller.nextEntry()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LocalAllocationEngine recover(Recovering recovering) {
+        recovering.engine = start(recovering.directory, true, false);
+        return recovering.engine;
+    }
+
+    private static LocalAllocationEngine start(Path directory, boolean journaled, boolean groupCommit) {
+        AllocationProperties properties = new AllocationProperties();
+        AllocationProperties.Journal journal = properties.getJournal();
+        journal.setEnabled(journaled);
+        journal.setDirectory(directory.toString());
+        journal.setGroupCommit(groupCommit);
+        journal.setSnapshotIntervalSeconds(0);
+        LocalAllocationEngine engine = new LocalAllocationEngine(properties);
+        engine.start();
+        return engine;
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Order;
+import com.example.demo.model.Picker;
+import com.example.demo.service.AssignmentSolver;
+import com.example.demo.service.ScoreCalculationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solve time of one optimal matching pass over the top {@code window} orders and pickers of a store,
+ * with costs from ScoreCalculationService#matchCost. Excludes the candidate read and the commit, which
+ * are one script call each; see the allocation.matching.solve timer for the same figure in production.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MatchingSolverBenchmark {
+
+    @Param({"50", "200"})
+    private int window;
+
+    private double[][] cost;
+
+    @Setup
+    public void setUp() {
+        ScoreCalculationService scoreCalculationService = new BenchmarkFixtures().scoreCalculationService;
+        Order[] orders = BenchmarkFixtures.orders(1, window, "order-");
+        Picker[] pickers = BenchmarkFixtures.pickers(1, window, "picker-");
+        cost = new double[window][window];
+        for (int i = 0; i < window; i++) {
+            for (int j = 0; j < window; j++) {
+                cost[i][j] = scoreCalculationService.matchCost(
+                    orders[i].skuCount(), scoreCalculationService.calculatePickerScore(pickers[j]));
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] solve() {
+        return AssignmentSolver.solve(cost);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.dto.QueueStatusResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service side of {@code GET /status/{storeId}} and {@code GET /status?storeIds=}: sizes, top members
+ * and their score metadata.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueueStatusBenchmark {
+
+    @Param({"1", "64"})
+    private int storeCount;
+
+    @Param({"100", "10000"})
+    private int queueDepth;
+
+    private BenchmarkFixtures fixtures;
+    private List<String> storeIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        fixtures = new BenchmarkFixtures();
+        fixtures.fill(storeCount, queueDepth);
+        storeIds = BenchmarkFixtures.storeIds(storeCount);
+    }
+
+    @Benchmark
+    public QueueStatusResponse status() {
+        String storeId = storeIds.get(next);
+        next = next + 1 == storeIds.size() ? 0 : next + 1;
+        return fixtures.queueService.getQueueStatus(storeId);
+    }
+
+    @Benchmark
+    public List<QueueStatusResponse> statusAllStores() {
+        return fixtures.queueService.getQueueStatuses(storeIds);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Order;
+import com.example.demo.model.Picker;
+import com.example.demo.service.ScoreCalculationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of order and picker scoring. Inputs cycle through {@code storeCount * queueDepth}
+ * distinct entities so branch and cache behaviour reflect a realistic mix. Allocation rate comes
+ * from the gc profiler configured in build.gradle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScoreCalculationBenchmark {
+
+    @Param({"1", "64"})
+    private int storeCount;
+
+    @Param({"100", "10000"})
+    private int queueDepth;
+
+    private ScoreCalculationService scoreCalculationService;
+    private Order[] orders;
+    private Picker[] pickers;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        scoreCalculationService = new BenchmarkFixtures().scoreCalculationService;
+        orders = BenchmarkFixtures.orders(storeCount, queueDepth, "order-");
+        pickers = BenchmarkFixtures.pickers(storeCount, queueDepth, "picker-");
+    }
+
+    @Benchmark
+    public double calculateOrderScore() {
+        return scoreCalculationService.calculateOrderScore(orders[advance(orders.length)]);
+    }
+
+    @Benchmark
+    public double calculatePickerScore() {
+        return scoreCalculationService.calculatePickerScore(pickers[advance(pickers.length)]);
+    }
+
+    private int advance(int length) {
+        int index = next;
+        next = index + 1 == length ? 0 : index + 1;
+        return index;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.demo.audit;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audit trail of enqueues, dequeues and allocations, kept off the request path. A request thread copies
+ * each sampled event into a preallocated slot of an {@link AuditRingBuffer} and returns; a single writer
+ * thread drains the ring every allocation.audit.flush-interval-ms into rolling NDJSON files (see
+ * {@link AuditFileWriter}). When the ring is full the event is dropped and counted, never waited for.
+ *
+ * <p>Sampling is per store: allocation.audit.sample-rate, overridden by allocation.audit.store-sample-rates.
+ * The decision hashes the order or picker id, so an order's enqueue, dequeue and allocation are kept or
+ * skipped together. Enabled with allocation.audit.enabled=true; otherwise every call returns at once.
+ */
+@Component
+public class AllocationAuditLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationAuditLog.class);
+
+    // A rate of 1.0 maps to 2^32, above every 32-bit hash
+    private static final double HASH_RANGE = 0x1_0000_0000L;
+
+    private final boolean enabled;
+    private final AllocationMetrics allocationMetrics;
+    private final AuditRingBuffer ring;
+    private final long defaultThreshold;
+    private final Map<String, Long> storeThresholds;
+    private final long flushIntervalNanos;
+    private final AuditFileWriter writer;
+    private final Thread writerThread;
+    private volatile boolean running;
+
+    public AllocationAuditLog(AllocationProperties properties, AllocationMetrics allocationMetrics) {
+        AllocationProperties.Audit audit = properties.getAudit();
+        this.enabled = audit.isEnabled();
+        this.allocationMetrics = allocationMetrics;
+        this.ring = enabled ? new AuditRingBuffer(audit.getBufferSize()) : null;
+        this.defaultThreshold = threshold(audit.getSampleRate());
+        Map<String, Long> thresholds = new HashMap<>();
+        audit.getStoreSampleRates().forEach((storeId, rate) -> thresholds.put(storeId, threshold(rate)));
+        this.storeThresholds = Map.copyOf(thresholds);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, audit.getFlushIntervalMs()));
+
+        if (!enabled) {
+            this.writer = null;
+            this.writerThread = null;
+            return;
+        }
+        Path directory = Path.of(audit.getDirectory());
+        try {
+            this.writer = new AuditFileWriter(directory, audit.getMaxFileSizeMb() * 1024L * 1024L, audit.getMaxFiles());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open allocation audit log in " + directory, e);
+        }
+        this.running = true;
+        this.writerThread = Thread.ofPlatform().name("allocation-audit-writer").daemon().start(this::writeLoop);
+    }
+
+    /**
+     * Record an order or picker added to its queue, with its score.
+     */
+    public void enqueued(QueueEntry entry) {
+        if (!enabled) {
+            return;
+        }
+        if (entry.type() == QueueType.ORDER) {
+            record(AuditRingBuffer.EventType.ORDER_ENQUEUED, entry.storeId(), entry.memberId(), null, entry.score());
+        } else {
+            record(AuditRingBuffer.EventType.PICKER_ENQUEUED, entry.storeId(), null, entry.memberId(), entry.score());
+        }
+    }
+
+    /**
+     * Record many queue additions, e.g. one bulk ingest.
+     */
+    public void enqueued(List<QueueEntry> entries) {
+        if (!enabled) {
+            return;
+        }
+        for (QueueEntry entry : entries) {
+            enqueued(entry);
+        }
+    }
+
+    /**
+     * Record an order or picker removed from its queue.
+     */
+    public void dequeued(QueueType type, String storeId, String memberId) {
+        if (!enabled) {
+            return;
+        }
+        if (type == QueueType.ORDER) {
+            record(AuditRingBuffer.EventType.ORDER_DEQUEUED, storeId, memberId, null, Double.NaN);
+        } else {
+            record(AuditRingBuffer.EventType.PICKER_DEQUEUED, storeId, null, memberId, Double.NaN);
+        }
+    }
+
+    /**
+     * Record allocations, timestamped with the time each was made. Sampled on the order id.
+     */
+    public void allocated(List<Allocation> allocations) {
+        if (!enabled) {
+            return;
+        }
+        for (Allocation allocation : allocations) {
+            if (sampled(allocation.storeId(), allocation.orderId())) {
+                offer(AuditRingBuffer.EventType.ALLOCATED, allocation.timestamp(), allocation.storeId(),
+                    allocation.orderId(), allocation.pickerId(), Double.NaN);
+            }
+        }
+    }
+
+    /**
+     * Stop the writer after it has written everything already in the ring.
+     */
+    @PreDestroy
+    public void close() {
+        if (!enabled || !running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(AuditRingBuffer.EventType type, String storeId, String orderId, String pickerId, double score) {
+        if (sampled(storeId, orderId != null ? orderId : pickerId)) {
+            offer(type, System.currentTimeMillis(), storeId, orderId, pickerId, score);
+        }
+    }
+
+    private void offer(AuditRingBuffer.EventType type, long timestamp, String storeId, String orderId,
+            String pickerId, double score) {
+        allocationMetrics.recordAuditEvent(ring.offer(type, timestamp, storeId, orderId, pickerId, score));
+    }
+
+    private boolean sampled(String storeId, String memberId) {
+        long threshold = storeThresholds.isEmpty()
+            ? defaultThreshold
+            : storeThresholds.getOrDefault(storeId, defaultThreshold);
+        if (threshold >= (long) HASH_RANGE) {
+            return true;
+        }
+        // Spread the id hash so similar ids do not sample together
+        int hash = memberId.hashCode() * 0x9E3779B9;
+        return Integer.toUnsignedLong(hash ^ (hash >>> 16)) < threshold;
+    }
+
+    private static long threshold(double rate) {
+        return (long) (Math.clamp(rate, 0.0, 1.0) * HASH_RANGE);
+    }
+
+    private void writeLoop() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+        }
+        drain();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Failed to close allocation audit file", e);
+        }
+    }
+
+    /**
+     * Write everything published so far and flush it to the file.
+     */
+    private int drain() {
+        int[] failed = new int[1];
+        int drained = ring.drain(record -> {
+            try {
+                writer.write(record);
+            } catch (IOException e) {
+                if (failed[0]++ == 0) {
+                    log.warn("Failed to write allocation audit record", e);
+                }
+            }
+        });
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Failed to flush allocation audit file", e);
+        }
+        if (failed[0] > 0) {
+            allocationMetrics.recordAuditWriteFailures(failed[0]);
+        }
+        return drained;
+    }
+}
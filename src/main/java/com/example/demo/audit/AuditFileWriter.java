@@ -0,0 +1,140 @@
+package com.example.demo.audit;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Rolling NDJSON audit files: one JSON object per line, in audit-NNNNNNNNNNNN.ndjson. A file is rolled once
+ * it reaches the size limit, and only the newest maxFiles files are kept. Written by the audit writer thread only.
+ *
+ * <p>Line layout: {@code {"timestamp":<epoch millis>,"event":"<name>","storeId":"..."}} plus
+ * {@code orderId}, {@code pickerId} and {@code score} when the event has them.
+ */
+final class AuditFileWriter implements Closeable {
+
+    private static final Pattern FILE_NAME = Pattern.compile("audit-(\\d{12})\\.ndjson");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final StringBuilder line = new StringBuilder(256);
+
+    private long fileSeq;
+    private OutputStream out;
+    private long fileBytes;
+
+    AuditFileWriter(Path directory, long maxFileBytes, int maxFiles) throws IOException {
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        Files.createDirectories(directory);
+        List<Long> existing = fileSeqs();
+        // Never append to a file a previous run may have left with a partial last line
+        this.fileSeq = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+    }
+
+    void write(AuditRingBuffer.Record record) throws IOException {
+        line.setLength(0);
+        line.append("{\"timestamp\":").append(record.timestamp)
+            .append(",\"event\":\"").append(record.type.jsonName).append('"');
+        appendField("storeId", record.storeId);
+        appendField("orderId", record.orderId);
+        appendField("pickerId", record.pickerId);
+        if (Double.isFinite(record.score)) {
+            line.append(",\"score\":").append(record.score);
+        }
+        line.append("}\n");
+
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (out == null) {
+            open();
+        }
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            // Start a fresh file on the next write rather than appending after a partial line
+            closeFile();
+            throw e;
+        }
+        fileBytes += bytes.length;
+        if (fileBytes >= maxFileBytes) {
+            closeFile();
+        }
+    }
+
+    void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeFile();
+    }
+
+    private void appendField(String name, String value) {
+        if (value == null) {
+            return;
+        }
+        line.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private void open() throws IOException {
+        fileSeq++;
+        out = new BufferedOutputStream(Files.newOutputStream(filePath(fileSeq),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 64 * 1024);
+        fileBytes = 0;
+        for (long seq : fileSeqs()) {
+            if (seq <= fileSeq - maxFiles) {
+                Files.deleteIfExists(filePath(seq));
+            }
+        }
+    }
+
+    private void closeFile() throws IOException {
+        if (out == null) {
+            return;
+        }
+        OutputStream closing = out;
+        out = null;
+        closing.close();
+    }
+
+    private List<Long> fileSeqs() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .map(path -> FILE_NAME.matcher(path.getFileName().toString()))
+                .filter(Matcher::matches)
+                .map(matcher -> Long.parseLong(matcher.group(1)))
+                .sorted()
+                .toList();
+        }
+    }
+
+    private Path filePath(long seq) {
+        return directory.resolve(String.format("audit-%012d.ndjson", seq));
+    }
+}
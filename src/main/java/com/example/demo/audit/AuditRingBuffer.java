@@ -0,0 +1,126 @@
+package com.example.demo.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free ring of preallocated audit records: many producers, one consumer.
+ * A producer claims a sequence with a CAS, fills the record in place and publishes the sequence;
+ * nothing is allocated per event and no producer ever waits. When every slot is claimed and not yet
+ * drained, {@link #offer} fails instead.
+ * The consumer visits records in sequence order and stops at the first claimed but unpublished one.
+ */
+final class AuditRingBuffer {
+
+    /**
+     * Audit event kinds, with their NDJSON names.
+     */
+    enum EventType {
+        ORDER_ENQUEUED("order_enqueued"),
+        ORDER_DEQUEUED("order_dequeued"),
+        PICKER_ENQUEUED("picker_enqueued"),
+        PICKER_DEQUEUED("picker_dequeued"),
+        ALLOCATED("allocated");
+
+        final String jsonName;
+
+        EventType(String jsonName) {
+            this.jsonName = jsonName;
+        }
+    }
+
+    /**
+     * One slot. Owned by its producer between claim and publish, by the consumer between publish and drain.
+     */
+    static final class Record {
+        EventType type;
+        long timestamp;
+        String storeId;
+        // Null when the event has no order or picker
+        String orderId;
+        String pickerId;
+        // NaN when the event carries no score
+        double score;
+    }
+
+    // Consumer releases claimed slots in steps of this many records during a long drain
+    private static final int RELEASE_STEP = 256;
+
+    private final Record[] records;
+    private final int mask;
+    // Sequence last published in each slot, -1 before first use
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    // Written by the consumer only
+    private final AtomicLong consumed = new AtomicLong();
+
+    /**
+     * @param capacity Minimum number of slots; rounded up to a power of two
+     */
+    AuditRingBuffer(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.records = new Record[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            records[i] = new Record();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Copy one event into the ring.
+     *
+     * @return false if the ring is full; the event is not recorded
+     */
+    boolean offer(EventType type, long timestamp, String storeId, String orderId, String pickerId, double score) {
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed.get() >= records.length) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+
+        int index = (int) seq & mask;
+        Record record = records[index];
+        record.type = type;
+        record.timestamp = timestamp;
+        record.storeId = storeId;
+        record.orderId = orderId;
+        record.pickerId = pickerId;
+        record.score = score;
+        published.setRelease(index, seq);
+        return true;
+    }
+
+    /**
+     * Hand every published record, in sequence order, to {@code consumer}. Consumer thread only.
+     * A record is only valid during the call; its slot is reused once drain moves past it.
+     *
+     * @return number of records drained
+     */
+    int drain(Consumer<Record> consumer) {
+        long next = consumed.get();
+        int drained = 0;
+        int index;
+        while (published.getAcquire(index = (int) next & mask) == next) {
+            Record record = records[index];
+            consumer.accept(record);
+            record.storeId = null;
+            record.orderId = null;
+            record.pickerId = null;
+            next++;
+            if (++drained % RELEASE_STEP == 0) {
+                consumed.set(next);
+            }
+        }
+        consumed.set(next);
+        return drained;
+    }
+
+    int capacity() {
+        return records.length;
+    }
+}
@@ -1,14 +1,43 @@
 package com.example.demo.config;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties(prefix = "allocation")
+@Validated
 public class AllocationProperties {
 
     private Weights weights = new Weights();
     private int scoreMetaTtlHours = 24;
+    private int maxBatchSize = 500;
+    // The scripts size ZRANGE reads from the windows; 0 would read the whole queue
+    @Min(1)
+    private int eligibilityWindow = 16;
+    private int maxIngestBatchSize = 50000;
+    private int maxTriggerStores = 1000;
+    private int maxStatusStores = 1000;
+    private ScoreEncoding scoreEncoding = ScoreEncoding.RELATIVE;
+    private Dispatcher dispatcher = new Dispatcher();
+    private boolean migrateLegacyKeys = false;
+    private Engine engine = Engine.REDIS;
+    private Journal journal = new Journal();
+    private History history = new History();
+    private Batching batching = new Batching();
+    @Valid
+    private Matching matching = new Matching();
+    private NearCache nearCache = new NearCache();
+    private Lease lease = new Lease();
+    private Sweeper sweeper = new Sweeper();
+    private Audit audit = new Audit();
+    @Valid
+    private Push push = new Push();
 
     public Weights getWeights() {
         return weights;
@@ -26,6 +55,180 @@ public class AllocationProperties {
         this.scoreMetaTtlHours = scoreMetaTtlHours;
     }
 
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getEligibilityWindow() {
+        return eligibilityWindow;
+    }
+
+    public void setEligibilityWindow(int eligibilityWindow) {
+        this.eligibilityWindow = eligibilityWindow;
+    }
+
+    public int getMaxIngestBatchSize() {
+        return maxIngestBatchSize;
+    }
+
+    public void setMaxIngestBatchSize(int maxIngestBatchSize) {
+        this.maxIngestBatchSize = maxIngestBatchSize;
+    }
+
+    public int getMaxTriggerStores() {
+        return maxTriggerStores;
+    }
+
+    public void setMaxTriggerStores(int maxTriggerStores) {
+        this.maxTriggerStores = maxTriggerStores;
+    }
+
+    public int getMaxStatusStores() {
+        return maxStatusStores;
+    }
+
+    public void setMaxStatusStores(int maxStatusStores) {
+        this.maxStatusStores = maxStatusStores;
+    }
+
+    public ScoreEncoding getScoreEncoding() {
+        return scoreEncoding;
+    }
+
+    public void setScoreEncoding(ScoreEncoding scoreEncoding) {
+        this.scoreEncoding = scoreEncoding;
+    }
+
+    public Dispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public void setDispatcher(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public boolean isMigrateLegacyKeys() {
+        return migrateLegacyKeys;
+    }
+
+    public void setMigrateLegacyKeys(boolean migrateLegacyKeys) {
+        this.migrateLegacyKeys = migrateLegacyKeys;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    public History getHistory() {
+        return history;
+    }
+
+    public void setHistory(History history) {
+        this.history = history;
+    }
+
+    public Batching getBatching() {
+        return batching;
+    }
+
+    public void setBatching(Batching batching) {
+        this.batching = batching;
+    }
+
+    public Matching getMatching() {
+        return matching;
+    }
+
+    public void setMatching(Matching matching) {
+        this.matching = matching;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public void setNearCache(NearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    public Lease getLease() {
+        return lease;
+    }
+
+    public void setLease(Lease lease) {
+        this.lease = lease;
+    }
+
+    public Sweeper getSweeper() {
+        return sweeper;
+    }
+
+    public void setSweeper(Sweeper sweeper) {
+        this.sweeper = sweeper;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public void setAudit(Audit audit) {
+        this.audit = audit;
+    }
+
+    public Push getPush() {
+        return push;
+    }
+
+    public void setPush(Push push) {
+        this.push = push;
+    }
+
+    /**
+     * Storage backend for queues and allocation.
+     */
+    public enum Engine {
+        /** Per-store ZSETs in Redis with atomic Lua scripts. */
+        REDIS,
+        /** In-process indexed heaps; single node, no network hop. */
+        LOCAL
+    }
+
+    /**
+     * How the OAT component is encoded into the order ZSET score.
+     */
+    public enum ScoreEncoding {
+        /** now - OAT measured at enqueue time; the score is frozen once queued. */
+        RELATIVE,
+        /** Absolute OAT with static components as offsets; queue order ages without rescoring. */
+        ABSOLUTE_OAT
+    }
+
+    /**
+     * How batch allocation pairs the orders and pickers it takes.
+     */
+    public enum MatchingMode {
+        /** Best order to best picker, in priority order, inside the allocation script. */
+        GREEDY,
+        /** Min-cost assignment over the top of both queues, solved in the JVM and committed atomically. */
+        OPTIMAL
+    }
+
     public static class Weights {
         private OrderWeights order = new OrderWeights();
         private PickerWeights picker = new PickerWeights();
@@ -97,5 +300,364 @@ public class AllocationProperties {
             this.orderCompleted = orderCompleted;
         }
     }
-}
 
+    public static class Dispatcher {
+        private boolean enabled = false;
+        private long retryInitialBackoffMs = 100;
+        private long retryMaxBackoffMs = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getRetryInitialBackoffMs() {
+            return retryInitialBackoffMs;
+        }
+
+        public void setRetryInitialBackoffMs(long retryInitialBackoffMs) {
+            this.retryInitialBackoffMs = retryInitialBackoffMs;
+        }
+
+        public long getRetryMaxBackoffMs() {
+            return retryMaxBackoffMs;
+        }
+
+        public void setRetryMaxBackoffMs(long retryMaxBackoffMs) {
+            this.retryMaxBackoffMs = retryMaxBackoffMs;
+        }
+    }
+
+    public static class Journal {
+        private boolean enabled = false;
+        private String directory = "data/journal";
+        private int segmentSizeMb = 64;
+        private long flushIntervalMs = 10;
+        private boolean groupCommit = true;
+        private long snapshotIntervalSeconds = 300;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getSegmentSizeMb() {
+            return segmentSizeMb;
+        }
+
+        public void setSegmentSizeMb(int segmentSizeMb) {
+            this.segmentSizeMb = segmentSizeMb;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public boolean isGroupCommit() {
+            return groupCommit;
+        }
+
+        public void setGroupCommit(boolean groupCommit) {
+            this.groupCommit = groupCommit;
+        }
+
+        public long getSnapshotIntervalSeconds() {
+            return snapshotIntervalSeconds;
+        }
+
+        public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+            this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        }
+    }
+
+    public static class History {
+        private long maxLen = 10000;
+        private int maxPageSize = 1000;
+
+        public long getMaxLen() {
+            return maxLen;
+        }
+
+        public void setMaxLen(long maxLen) {
+            this.maxLen = maxLen;
+        }
+
+        public int getMaxPageSize() {
+            return maxPageSize;
+        }
+
+        public void setMaxPageSize(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+        }
+    }
+
+    public static class Batching {
+        private boolean enabled = false;
+        private long windowMicros = 200;
+        private int maxCommands = 64;
+        private int maxInFlight = 8;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getWindowMicros() {
+            return windowMicros;
+        }
+
+        public void setWindowMicros(long windowMicros) {
+            this.windowMicros = windowMicros;
+        }
+
+        public int getMaxCommands() {
+            return maxCommands;
+        }
+
+        public void setMaxCommands(int maxCommands) {
+            this.maxCommands = maxCommands;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+    }
+
+    public static class Matching {
+        private MatchingMode mode = MatchingMode.GREEDY;
+        @Min(1)
+        private int window = 50;
+        private double fitWeight = 1.0;
+
+        public MatchingMode getMode() {
+            return mode;
+        }
+
+        public void setMode(MatchingMode mode) {
+            this.mode = mode;
+        }
+
+        public int getWindow() {
+            return window;
+        }
+
+        public void setWindow(int window) {
+            this.window = window;
+        }
+
+        public double getFitWeight() {
+            return fitWeight;
+        }
+
+        public void setFitWeight(double fitWeight) {
+            this.fitWeight = fitWeight;
+        }
+    }
+
+    public static class NearCache {
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Lease {
+        private long ttlMs = 0;
+        private int reapBatchSize = 500;
+
+        public long getTtlMs() {
+            return ttlMs;
+        }
+
+        public void setTtlMs(long ttlMs) {
+            this.ttlMs = ttlMs;
+        }
+
+        public boolean isEnabled() {
+            return ttlMs > 0;
+        }
+
+        public int getReapBatchSize() {
+            return reapBatchSize;
+        }
+
+        public void setReapBatchSize(int reapBatchSize) {
+            this.reapBatchSize = reapBatchSize;
+        }
+    }
+
+    public static class Sweeper {
+        private boolean enabled = false;
+        private int batchSize = 100;
+        private int workers = 8;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+    }
+
+    public static class Audit {
+        private boolean enabled = false;
+        private String directory = "data/audit";
+        private int bufferSize = 65536;
+        private long flushIntervalMs = 200;
+        private int maxFileSizeMb = 64;
+        private int maxFiles = 10;
+        private double sampleRate = 1.0;
+        private Map<String, Double> storeSampleRates = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getMaxFileSizeMb() {
+            return maxFileSizeMb;
+        }
+
+        public void setMaxFileSizeMb(int maxFileSizeMb) {
+            this.maxFileSizeMb = maxFileSizeMb;
+        }
+
+        public int getMaxFiles() {
+            return maxFiles;
+        }
+
+        public void setMaxFiles(int maxFiles) {
+            this.maxFiles = maxFiles;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public Map<String, Double> getStoreSampleRates() {
+            return storeSampleRates;
+        }
+
+        public void setStoreSampleRates(Map<String, Double> storeSampleRates) {
+            this.storeSampleRates = storeSampleRates;
+        }
+    }
+
+    public static class Push {
+        private boolean enabled = false;
+        private int maxSubscribers = 5000;
+        private long timeoutMs = 1_800_000;
+        @Min(1)
+        private long heartbeatIntervalMs = 15000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxSubscribers() {
+            return maxSubscribers;
+        }
+
+        public void setMaxSubscribers(int maxSubscribers) {
+            this.maxSubscribers = maxSubscribers;
+        }
+
+        public long getTimeoutMs() {
+            return timeoutMs;
+        }
+
+        public void setTimeoutMs(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+        public long getHeartbeatIntervalMs() {
+            return heartbeatIntervalMs;
+        }
+
+        public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+            this.heartbeatIntervalMs = heartbeatIntervalMs;
+        }
+    }
+}
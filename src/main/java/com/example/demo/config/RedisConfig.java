@@ -3,9 +3,12 @@ package com.example.demo.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.util.List;
@@ -25,9 +28,61 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * Non-blocking template for the reactive API; shares the Lettuce connection factory and string encoding.
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, String> reactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory) {
+        return new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext.string());
+    }
+
     @Bean
     public RedisScript<List> allocationScript() {
         return RedisScript.of(new ClassPathResource("scripts/allocate.lua"), List.class);
     }
-}
 
+    @Bean
+    public RedisScript<List> batchAllocationScript() {
+        return RedisScript.of(new ClassPathResource("scripts/batch_allocate.lua"), List.class);
+    }
+
+    @Bean
+    public RedisScript<List> enqueueAllocationScript() {
+        return RedisScript.of(new ClassPathResource("scripts/enqueue_allocate.lua"), List.class);
+    }
+
+    @Bean
+    public RedisScript<List> queueStatusScript() {
+        return RedisScript.of(new ClassPathResource("scripts/status.lua"), List.class);
+    }
+
+    @Bean
+    public RedisScript<List> matchCandidatesScript() {
+        return RedisScript.of(new ClassPathResource("scripts/match_candidates.lua"), List.class);
+    }
+
+    @Bean
+    public RedisScript<List> allocatePairsScript() {
+        return RedisScript.of(new ClassPathResource("scripts/allocate_pairs.lua"), List.class);
+    }
+
+    @Bean
+    public RedisScript<List> reapLeasesScript() {
+        return RedisScript.of(new ClassPathResource("scripts/reap_leases.lua"), List.class);
+    }
+
+    @Bean
+    public RedisScript<Long> ackLeaseScript() {
+        return RedisScript.of(new ClassPathResource("scripts/ack_lease.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> registerLeasesScript() {
+        return RedisScript.of(new ClassPathResource("scripts/register_leases.lua"), Long.class);
+    }
+
+    @Bean
+    public RedisScript<Long> indexLeasesScript() {
+        return RedisScript.of(new ClassPathResource("scripts/index_leases.lua"), Long.class);
+    }
+}
@@ -1,21 +1,41 @@
 package com.example.demo.controller;
 
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.dto.AllocationHistoryEntry;
+import com.example.demo.dto.AllocationHistoryPage;
 import com.example.demo.dto.AllocationResponse;
+import com.example.demo.dto.BatchIngestResponse;
+import com.example.demo.dto.BatchItemResult;
+import com.example.demo.dto.BatchTriggerResponse;
 import com.example.demo.dto.OrderRequest;
 import com.example.demo.dto.PickerRequest;
 import com.example.demo.dto.QueueStatusResponse;
 import com.example.demo.model.Allocation;
 import com.example.demo.model.Order;
 import com.example.demo.model.Picker;
+import com.example.demo.service.AllocationDispatcher;
+import com.example.demo.service.AllocationPushService;
 import com.example.demo.service.AllocationService;
 import com.example.demo.service.QueueService;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * REST controller for allocation operations.
@@ -26,10 +46,24 @@ public class AllocationController {
 
     private final QueueService queueService;
     private final AllocationService allocationService;
+    private final AllocationDispatcher allocationDispatcher;
+    private final AllocationPushService allocationPushService;
+    private final AllocationProperties properties;
+    private final Validator validator;
 
-    public AllocationController(QueueService queueService, AllocationService allocationService) {
+    public AllocationController(
+            QueueService queueService,
+            AllocationService allocationService,
+            AllocationDispatcher allocationDispatcher,
+            AllocationPushService allocationPushService,
+            AllocationProperties properties,
+            Validator validator) {
         this.queueService = queueService;
         this.allocationService = allocationService;
+        this.allocationDispatcher = allocationDispatcher;
+        this.allocationPushService = allocationPushService;
+        this.properties = properties;
+        this.validator = validator;
     }
 
     /**
@@ -38,22 +72,16 @@ public class AllocationController {
      */
     @PostMapping("/orders")
     public ResponseEntity<AllocationResponse> enqueueOrder(@Valid @RequestBody OrderRequest request) {
-        Instant oat = request.oatTimestamp() != null
-            ? Instant.ofEpochMilli(request.oatTimestamp())
-            : Instant.now();
-
-        Order order = new Order(
-            request.orderId(),
-            request.storeId(),
-            oat,
-            request.priorityOrder(),
-            request.skuCount()
-        );
+        Order order = toOrder(request, Instant.now());
 
-        queueService.enqueueOrder(order);
+        if (allocationDispatcher.isEnabled()) {
+            queueService.enqueueOrder(order);
+            allocationDispatcher.markDirty(order.storeId());
+            return ResponseEntity.accepted().body(AllocationResponse.dispatched(order.storeId()));
+        }
 
-        // Trigger allocation attempt
-        Optional<Allocation> allocation = allocationService.triggerAllocation(request.storeId());
+        // Enqueue and attempt allocation in one atomic script call
+        Optional<Allocation> allocation = allocationService.enqueueOrderAndAllocate(order);
 
         return allocation
             .map(a -> ResponseEntity.ok(AllocationResponse.success(a.orderId(), a.pickerId(), a.storeId(), a.timestamp())))
@@ -66,23 +94,99 @@ public class AllocationController {
      */
     @PostMapping("/pickers")
     public ResponseEntity<AllocationResponse> enqueuePicker(@Valid @RequestBody PickerRequest request) {
-        Picker picker = new Picker(
-            request.pickerId(),
-            request.storeId(),
-            request.skuCompleted(),
-            request.orderCompleted()
-        );
+        Picker picker = toPicker(request);
 
-        queueService.enqueuePicker(picker);
+        if (allocationDispatcher.isEnabled()) {
+            queueService.enqueuePicker(picker);
+            allocationDispatcher.markDirty(picker.storeId());
+            return ResponseEntity.accepted().body(AllocationResponse.dispatched(picker.storeId()));
+        }
 
-        // Trigger allocation attempt
-        Optional<Allocation> allocation = allocationService.triggerAllocation(request.storeId());
+        // Enqueue and attempt allocation in one atomic script call
+        Optional<Allocation> allocation = allocationService.enqueuePickerAndAllocate(picker);
 
         return allocation
             .map(a -> ResponseEntity.ok(AllocationResponse.success(a.orderId(), a.pickerId(), a.storeId(), a.timestamp())))
             .orElse(ResponseEntity.ok(AllocationResponse.noAllocation(request.storeId())));
     }
 
+    /**
+     * Add many orders in one request, then run one batched allocation pass per affected store.
+     * Invalid items are rejected individually; the rest are still enqueued.
+     */
+    @PostMapping("/orders/batch")
+    public ResponseEntity<BatchIngestResponse> enqueueOrders(@RequestBody List<OrderRequest> requests) {
+        checkBatchSize(requests.size(), properties.getMaxIngestBatchSize());
+        Instant now = Instant.now();
+
+        List<Order> orders = new ArrayList<>(requests.size());
+        Map<Integer, String> rejections = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            String violations = violations(requests.get(i));
+            if (violations != null) {
+                rejections.put(i, violations);
+            } else {
+                orders.add(toOrder(requests.get(i), now));
+            }
+        }
+
+        List<Allocation> allocations = orders.isEmpty()
+            ? List.of()
+            : allocationService.enqueueOrdersAndAllocate(orders);
+        Map<MemberKey, String> pickerByOrder = allocations.stream()
+            .collect(Collectors.toMap(a -> new MemberKey(a.storeId(), a.orderId()), Allocation::pickerId, (a, b) -> b));
+
+        List<BatchItemResult> items = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            OrderRequest request = requests.get(i);
+            String orderId = request != null ? request.orderId() : null;
+            String storeId = request != null ? request.storeId() : null;
+            items.add(rejections.containsKey(i)
+                ? BatchItemResult.rejected(i, orderId, storeId, rejections.get(i))
+                : BatchItemResult.accepted(i, orderId, storeId, pickerByOrder.get(new MemberKey(storeId, orderId))));
+        }
+
+        return ResponseEntity.ok(BatchIngestResponse.of(items, toResponses(allocations)));
+    }
+
+    /**
+     * Add many pickers in one request, then run one batched allocation pass per affected store.
+     * Invalid items are rejected individually; the rest are still enqueued.
+     */
+    @PostMapping("/pickers/batch")
+    public ResponseEntity<BatchIngestResponse> enqueuePickers(@RequestBody List<PickerRequest> requests) {
+        checkBatchSize(requests.size(), properties.getMaxIngestBatchSize());
+
+        List<Picker> pickers = new ArrayList<>(requests.size());
+        Map<Integer, String> rejections = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            String violations = violations(requests.get(i));
+            if (violations != null) {
+                rejections.put(i, violations);
+            } else {
+                pickers.add(toPicker(requests.get(i)));
+            }
+        }
+
+        List<Allocation> allocations = pickers.isEmpty()
+            ? List.of()
+            : allocationService.enqueuePickersAndAllocate(pickers);
+        Map<MemberKey, String> orderByPicker = allocations.stream()
+            .collect(Collectors.toMap(a -> new MemberKey(a.storeId(), a.pickerId()), Allocation::orderId, (a, b) -> b));
+
+        List<BatchItemResult> items = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            PickerRequest request = requests.get(i);
+            String pickerId = request != null ? request.pickerId() : null;
+            String storeId = request != null ? request.storeId() : null;
+            items.add(rejections.containsKey(i)
+                ? BatchItemResult.rejected(i, pickerId, storeId, rejections.get(i))
+                : BatchItemResult.accepted(i, pickerId, storeId, orderByPicker.get(new MemberKey(storeId, pickerId))));
+        }
+
+        return ResponseEntity.ok(BatchIngestResponse.of(items, toResponses(allocations)));
+    }
+
     /**
      * Manually trigger allocation for a store.
      */
@@ -95,37 +199,62 @@ public class AllocationController {
             .orElse(ResponseEntity.ok(AllocationResponse.noAllocation(storeId)));
     }
 
+    /**
+     * Manually trigger batch allocation for a store, allocating up to {@code max} pairs atomically.
+     */
+    @PostMapping(value = "/trigger/{storeId}", params = "max")
+    public ResponseEntity<List<AllocationResponse>> triggerBatchAllocation(
+            @PathVariable String storeId,
+            @RequestParam int max) {
+        return ResponseEntity.ok(toResponses(allocationService.tryAllocateBatch(storeId, max)));
+    }
+
+    /**
+     * Trigger batch allocation in many stores at once, allocating up to {@code max} pairs in each.
+     * With the Redis engine every store's allocation script runs in one pipelined batch.
+     * Lists longer than allocation.max-trigger-stores are rejected.
+     */
+    @PostMapping("/trigger")
+    public ResponseEntity<BatchTriggerResponse> triggerAllocations(
+            @RequestBody List<String> storeIds,
+            @RequestParam(defaultValue = "1") int max) {
+        checkBatchSize(storeIds.size(), properties.getMaxTriggerStores());
+        Map<String, List<AllocationResponse>> responses = new LinkedHashMap<>();
+        allocationService.tryAllocateStores(storeIds, max)
+            .forEach((storeId, allocations) -> responses.put(storeId, toResponses(allocations)));
+        return ResponseEntity.ok(BatchTriggerResponse.of(responses));
+    }
+
+    /**
+     * Confirm that an allocated order was delivered to its picker, ending its lease.
+     * Returns 204, or 404 if the order holds no lease for that picker (already acknowledged, or
+     * expired and returned to the queue).
+     */
+    @PostMapping("/leases/{storeId}/{orderId}/ack")
+    public ResponseEntity<Void> acknowledgeLease(
+            @PathVariable String storeId,
+            @PathVariable String orderId,
+            @RequestParam String pickerId) {
+        boolean acknowledged = allocationService.acknowledgeLease(storeId, orderId, pickerId);
+        return acknowledged ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
     /**
      * Get queue status for a store.
      */
     @GetMapping("/status/{storeId}")
     public ResponseEntity<QueueStatusResponse> getQueueStatus(@PathVariable String storeId) {
-        long orderQueueSize = queueService.getOrderQueueSize(storeId);
-        long pickerQueueSize = queueService.getPickerQueueSize(storeId);
-        boolean canAllocate = queueService.canAllocate(storeId);
-
-        String topOrderId = queueService.peekTopOrder(storeId).orElse(null);
-        String topPickerId = queueService.peekTopPicker(storeId).orElse(null);
-
-        Map<Object, Object> topOrderScoreMeta = topOrderId != null
-            ? queueService.getOrderScoreMeta(topOrderId)
-            : Map.of();
-        Map<Object, Object> topPickerScoreMeta = topPickerId != null
-            ? queueService.getPickerScoreMeta(topPickerId)
-            : Map.of();
-
-        QueueStatusResponse response = new QueueStatusResponse(
-            storeId,
-            orderQueueSize,
-            pickerQueueSize,
-            canAllocate,
-            topOrderId,
-            topPickerId,
-            topOrderScoreMeta,
-            topPickerScoreMeta
-        );
+        return ResponseEntity.ok(queueService.getQueueStatus(storeId));
+    }
 
-        return ResponseEntity.ok(response);
+    /**
+     * Get queue status for many stores in one pipelined batch.
+     * Lists longer than allocation.max-status-stores are rejected.
+     */
+    @GetMapping("/status")
+    public ResponseEntity<List<QueueStatusResponse>> getQueueStatuses(@RequestParam List<String> storeIds) {
+        checkBatchSize(storeIds.size(), properties.getMaxStatusStores());
+        return ResponseEntity.ok(queueService.getQueueStatuses(storeIds));
     }
 
     /**
@@ -146,12 +275,40 @@ public class AllocationController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Subscribe a picker device to its allocations as Server-Sent Events: one {@code allocation} event
+     * per allocation, with the order id as event id, and a comment every allocation.push.heartbeat-interval-ms.
+     * The stream ends after allocation.push.timeout-ms; the device reconnects.
+     * Returns 404 when push is disabled, and 503 once allocation.push.max-subscribers streams are open on
+     * this instance.
+     */
+    @GetMapping(value = "/pickers/{storeId}/{pickerId}/allocations", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeAllocations(
+            @PathVariable String storeId,
+            @PathVariable String pickerId) {
+        if (!properties.getPush().isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = new SseEmitter(properties.getPush().getTimeoutMs());
+        SseSubscriber subscriber = new SseSubscriber(emitter);
+        if (!allocationPushService.subscribe(storeId, pickerId, subscriber)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        Runnable unsubscribe = () -> allocationPushService.unsubscribe(storeId, pickerId, subscriber);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return ResponseEntity.ok(emitter);
+    }
+
     /**
      * Get score metadata for an order.
      */
-    @GetMapping("/orders/{orderId}/score")
-    public ResponseEntity<Map<Object, Object>> getOrderScoreMeta(@PathVariable String orderId) {
-        Map<Object, Object> meta = queueService.getOrderScoreMeta(orderId);
+    @GetMapping("/orders/{storeId}/{orderId}/score")
+    public ResponseEntity<Map<Object, Object>> getOrderScoreMeta(
+            @PathVariable String storeId,
+            @PathVariable String orderId) {
+        Map<Object, Object> meta = queueService.getOrderScoreMeta(storeId, orderId);
         if (meta.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -161,13 +318,142 @@ public class AllocationController {
     /**
      * Get score metadata for a picker.
      */
-    @GetMapping("/pickers/{pickerId}/score")
-    public ResponseEntity<Map<Object, Object>> getPickerScoreMeta(@PathVariable String pickerId) {
-        Map<Object, Object> meta = queueService.getPickerScoreMeta(pickerId);
+    @GetMapping("/pickers/{storeId}/{pickerId}/score")
+    public ResponseEntity<Map<Object, Object>> getPickerScoreMeta(
+            @PathVariable String storeId,
+            @PathVariable String pickerId) {
+        Map<Object, Object> meta = queueService.getPickerScoreMeta(storeId, pickerId);
         if (meta.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         return ResponseEntity.ok(meta);
     }
-}
 
+    /**
+     * Get a store's allocation history, newest first. Pass the returned nextCursor to get older entries.
+     */
+    @GetMapping("/history/{storeId}")
+    public ResponseEntity<AllocationHistoryPage> getHistory(
+            @PathVariable String storeId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(allocationService.getHistory(storeId, cursor, limit));
+    }
+
+    /**
+     * Create a consumer group on a store's allocation history.
+     * Returns 201 if created, 200 if the group already existed.
+     */
+    @PutMapping("/history/{storeId}/groups/{group}")
+    public ResponseEntity<Void> createHistoryGroup(
+            @PathVariable String storeId,
+            @PathVariable String group,
+            @RequestParam(defaultValue = "false") boolean fromStart) {
+        boolean created = allocationService.createHistoryGroup(storeId, group, fromStart);
+        return created ? ResponseEntity.status(HttpStatus.CREATED).build() : ResponseEntity.ok().build();
+    }
+
+    /**
+     * Read allocations not yet delivered to the group, on behalf of one of its consumers.
+     */
+    @GetMapping("/history/{storeId}/groups/{group}/consumers/{consumer}")
+    public ResponseEntity<List<AllocationHistoryEntry>> readHistory(
+            @PathVariable String storeId,
+            @PathVariable String group,
+            @PathVariable String consumer,
+            @RequestParam(defaultValue = "100") int count) {
+        return ResponseEntity.ok(allocationService.readHistory(storeId, group, consumer, count));
+    }
+
+    /**
+     * Acknowledge processed history entries for a group.
+     */
+    @PostMapping("/history/{storeId}/groups/{group}/ack")
+    public ResponseEntity<Map<String, Long>> acknowledgeHistory(
+            @PathVariable String storeId,
+            @PathVariable String group,
+            @RequestBody List<String> entryIds) {
+        return ResponseEntity.ok(Map.of("acknowledged", allocationService.acknowledgeHistory(storeId, group, entryIds)));
+    }
+
+    private Order toOrder(OrderRequest request, Instant now) {
+        Instant oat = request.oatTimestamp() != null
+            ? Instant.ofEpochMilli(request.oatTimestamp())
+            : now;
+
+        return new Order(
+            request.orderId(),
+            request.storeId(),
+            oat,
+            request.priorityOrder(),
+            request.skuCount(),
+            request.requiredCapabilities() != null ? request.requiredCapabilities() : 0
+        );
+    }
+
+    private Picker toPicker(PickerRequest request) {
+        return new Picker(
+            request.pickerId(),
+            request.storeId(),
+            request.skuCompleted(),
+            request.orderCompleted(),
+            request.capabilities() != null ? request.capabilities() : 0
+        );
+    }
+
+    private List<AllocationResponse> toResponses(List<Allocation> allocations) {
+        return allocations.stream()
+            .map(a -> AllocationResponse.success(a.orderId(), a.pickerId(), a.storeId(), a.timestamp()))
+            .toList();
+    }
+
+    /**
+     * Ids are only unique within a store, so batch results are matched to allocations by both.
+     */
+    private record MemberKey(String storeId, String memberId) {
+    }
+
+    /**
+     * Writes pushed allocations to an SSE stream. A failed send ends the stream through the emitter's error callback.
+     */
+    private record SseSubscriber(SseEmitter emitter) implements AllocationPushService.Subscriber {
+        @Override
+        public void send(List<Allocation> allocations) throws IOException {
+            for (Allocation a : allocations) {
+                emitter.send(SseEmitter.event()
+                    .name("allocation")
+                    .id(a.orderId())
+                    .data(AllocationResponse.success(a.orderId(), a.pickerId(), a.storeId(), a.timestamp()),
+                        MediaType.APPLICATION_JSON));
+            }
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    private static void checkBatchSize(int size, int limit) {
+        if (size > limit) {
+            throw new IllegalArgumentException("Batch of " + size + " items exceeds the limit of " + limit);
+        }
+    }
+
+    /**
+     * Validate a single batch item, returning the joined violation messages or null if valid.
+     */
+    private String violations(Object item) {
+        if (item == null) {
+            return "Item is required";
+        }
+        Set<ConstraintViolation<Object>> violations = validator.validate(item);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+            .map(ConstraintViolation::getMessage)
+            .sorted()
+            .collect(Collectors.joining("; "));
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.dto.AllocationResponse;
+import com.example.demo.dto.OrderRequest;
+import com.example.demo.dto.PickerRequest;
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.model.Allocation;
+import com.example.demo.model.Order;
+import com.example.demo.model.Picker;
+import com.example.demo.service.AllocationDispatcher;
+import com.example.demo.service.ReactiveAllocationService;
+import com.example.demo.service.ReactiveQueueService;
+import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking variant of {@link AllocationController}, served next to it under /reactive.
+ * Handlers return without holding a request thread while Redis replies are pending.
+ */
+@RestController
+@RequestMapping("/api/v1/allocation/reactive")
+@ConditionalOnProperty(name = "allocation.engine", havingValue = "redis", matchIfMissing = true)
+public class ReactiveAllocationController {
+
+    private final ReactiveQueueService queueService;
+    private final ReactiveAllocationService allocationService;
+    private final AllocationDispatcher allocationDispatcher;
+    private final AllocationProperties properties;
+
+    public ReactiveAllocationController(
+            ReactiveQueueService queueService,
+            ReactiveAllocationService allocationService,
+            AllocationDispatcher allocationDispatcher,
+            AllocationProperties properties) {
+        this.queueService = queueService;
+        this.allocationService = allocationService;
+        this.allocationDispatcher = allocationDispatcher;
+        this.properties = properties;
+    }
+
+    /**
+     * Add an order to the queue and trigger allocation.
+     */
+    @PostMapping("/orders")
+    public Mono<ResponseEntity<AllocationResponse>> enqueueOrder(@Valid @RequestBody OrderRequest request) {
+        Order order = toOrder(request, Instant.now());
+
+        if (allocationDispatcher.isEnabled()) {
+            return queueService.enqueueOrder(order)
+                .then(Mono.fromCallable(() -> dispatched(order.storeId())));
+        }
+
+        return toResponse(allocationService.enqueueOrderAndAllocate(order), request.storeId());
+    }
+
+    /**
+     * Add a picker to the queue and trigger allocation.
+     */
+    @PostMapping("/pickers")
+    public Mono<ResponseEntity<AllocationResponse>> enqueuePicker(@Valid @RequestBody PickerRequest request) {
+        Picker picker = toPicker(request);
+
+        if (allocationDispatcher.isEnabled()) {
+            return queueService.enqueuePicker(picker)
+                .then(Mono.fromCallable(() -> dispatched(picker.storeId())));
+        }
+
+        return toResponse(allocationService.enqueuePickerAndAllocate(picker), request.storeId());
+    }
+
+    /**
+     * Manually trigger allocation for a store.
+     */
+    @PostMapping("/trigger/{storeId}")
+    public Mono<ResponseEntity<AllocationResponse>> triggerAllocation(@PathVariable String storeId) {
+        return toResponse(allocationService.triggerAllocation(storeId), storeId);
+    }
+
+    /**
+     * Manually trigger batch allocation for a store, allocating up to {@code max} pairs atomically.
+     */
+    @PostMapping(value = "/trigger/{storeId}", params = "max")
+    public Mono<ResponseEntity<List<AllocationResponse>>> triggerBatchAllocation(
+            @PathVariable String storeId,
+            @RequestParam int max) {
+        return allocationService.tryAllocateBatch(storeId, max)
+            .map(ReactiveAllocationController::success)
+            .collectList()
+            .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Get queue status for a store.
+     */
+    @GetMapping("/status/{storeId}")
+    public Mono<ResponseEntity<QueueStatusResponse>> getQueueStatus(@PathVariable String storeId) {
+        return queueService.getQueueStatus(storeId).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Get queue status for many stores, fetched concurrently.
+     */
+    @GetMapping("/status")
+    public Mono<ResponseEntity<List<QueueStatusResponse>>> getQueueStatuses(@RequestParam List<String> storeIds) {
+        if (storeIds.size() > properties.getMaxStatusStores()) {
+            return Mono.error(new IllegalArgumentException(
+                "Batch of " + storeIds.size() + " items exceeds the limit of " + properties.getMaxStatusStores()));
+        }
+        return queueService.getQueueStatuses(storeIds).collectList().map(ResponseEntity::ok);
+    }
+
+    /**
+     * Remove an order from the queue.
+     */
+    @DeleteMapping("/orders/{storeId}/{orderId}")
+    public Mono<ResponseEntity<Void>> dequeueOrder(@PathVariable String storeId, @PathVariable String orderId) {
+        return queueService.dequeueOrder(storeId, orderId)
+            .then(Mono.fromCallable(() -> ResponseEntity.noContent().<Void>build()));
+    }
+
+    /**
+     * Remove a picker from the queue.
+     */
+    @DeleteMapping("/pickers/{storeId}/{pickerId}")
+    public Mono<ResponseEntity<Void>> dequeuePicker(@PathVariable String storeId, @PathVariable String pickerId) {
+        return queueService.dequeuePicker(storeId, pickerId)
+            .then(Mono.fromCallable(() -> ResponseEntity.noContent().<Void>build()));
+    }
+
+    /**
+     * Get score metadata for an order.
+     */
+    @GetMapping("/orders/{storeId}/{orderId}/score")
+    public Mono<ResponseEntity<Map<Object, Object>>> getOrderScoreMeta(
+            @PathVariable String storeId,
+            @PathVariable String orderId) {
+        return queueService.getOrderScoreMeta(storeId, orderId).map(ReactiveAllocationController::scoreMetaResponse);
+    }
+
+    /**
+     * Get score metadata for a picker.
+     */
+    @GetMapping("/pickers/{storeId}/{pickerId}/score")
+    public Mono<ResponseEntity<Map<Object, Object>>> getPickerScoreMeta(
+            @PathVariable String storeId,
+            @PathVariable String pickerId) {
+        return queueService.getPickerScoreMeta(storeId, pickerId).map(ReactiveAllocationController::scoreMetaResponse);
+    }
+
+    private ResponseEntity<AllocationResponse> dispatched(String storeId) {
+        allocationDispatcher.markDirty(storeId);
+        return ResponseEntity.accepted().body(AllocationResponse.dispatched(storeId));
+    }
+
+    private static Mono<ResponseEntity<AllocationResponse>> toResponse(Mono<Allocation> allocation, String storeId) {
+        return allocation
+            .map(a -> ResponseEntity.ok(success(a)))
+            .defaultIfEmpty(ResponseEntity.ok(AllocationResponse.noAllocation(storeId)));
+    }
+
+    private static AllocationResponse success(Allocation a) {
+        return AllocationResponse.success(a.orderId(), a.pickerId(), a.storeId(), a.timestamp());
+    }
+
+    private static ResponseEntity<Map<Object, Object>> scoreMetaResponse(Map<Object, Object> meta) {
+        return meta.isEmpty() ? ResponseEntity.notFound().build() : ResponseEntity.ok(meta);
+    }
+
+    private static Order toOrder(OrderRequest request, Instant now) {
+        Instant oat = request.oatTimestamp() != null
+            ? Instant.ofEpochMilli(request.oatTimestamp())
+            : now;
+
+        return new Order(request.orderId(), request.storeId(), oat, request.priorityOrder(), request.skuCount(),
+            request.requiredCapabilities() != null ? request.requiredCapabilities() : 0);
+    }
+
+    private static Picker toPicker(PickerRequest request) {
+        return new Picker(request.pickerId(), request.storeId(), request.skuCompleted(), request.orderCompleted(),
+            request.capabilities() != null ? request.capabilities() : 0);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+/**
+ * One allocation recorded in a store's history stream.
+ * The id is the stream entry ID and doubles as the pagination cursor.
+ */
+public record AllocationHistoryEntry(
+    String id,
+    String orderId,
+    String pickerId,
+    double orderScore,
+    double pickerScore,
+    long timestamp
+) {}
@@ -0,0 +1,13 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * Response DTO for a page of allocation history, newest first.
+ * Pass nextCursor as the cursor of the next request; null when there are no older entries.
+ */
+public record AllocationHistoryPage(
+    String storeId,
+    List<AllocationHistoryEntry> entries,
+    String nextCursor
+) {}
@@ -18,5 +18,9 @@ public record AllocationResponse(
     public static AllocationResponse noAllocation(String storeId) {
         return new AllocationResponse(null, null, storeId, 0, false, "No allocation possible - queues may be empty");
     }
+
+    public static AllocationResponse dispatched(String storeId) {
+        return new AllocationResponse(null, null, storeId, 0, false, "Enqueued - allocation dispatched asynchronously");
+    }
 }
 
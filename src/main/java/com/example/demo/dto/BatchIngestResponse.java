@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * Response DTO for bulk order or picker ingest.
+ */
+public record BatchIngestResponse(
+    int received,
+    int accepted,
+    int rejected,
+    List<BatchItemResult> items,
+    List<AllocationResponse> allocations
+) {
+    public static BatchIngestResponse of(List<BatchItemResult> items, List<AllocationResponse> allocations) {
+        int accepted = (int) items.stream().filter(BatchItemResult::accepted).count();
+        return new BatchIngestResponse(items.size(), accepted, items.size() - accepted, items, allocations);
+    }
+}
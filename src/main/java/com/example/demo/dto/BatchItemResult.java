@@ -0,0 +1,22 @@
+package com.example.demo.dto;
+
+/**
+ * Per-item result of a bulk ingest request.
+ */
+public record BatchItemResult(
+    int index,
+    String id,
+    String storeId,
+    boolean accepted,
+    String allocatedTo,  // Counterpart allocated in the same request (pickerId for orders, orderId for pickers)
+    String message
+) {
+    public static BatchItemResult accepted(int index, String id, String storeId, String allocatedTo) {
+        return new BatchItemResult(index, id, storeId, true, allocatedTo,
+            allocatedTo != null ? "Enqueued and allocated" : "Enqueued");
+    }
+
+    public static BatchItemResult rejected(int index, String id, String storeId, String message) {
+        return new BatchItemResult(index, id, storeId, false, null, message);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response DTO for allocation triggered across many stores: the allocations of each store, in request order.
+ */
+public record BatchTriggerResponse(
+    int stores,
+    int allocated,
+    Map<String, List<AllocationResponse>> allocations
+) {
+    public static BatchTriggerResponse of(Map<String, List<AllocationResponse>> allocations) {
+        int allocated = allocations.values().stream().mapToInt(List::size).sum();
+        return new BatchTriggerResponse(allocations.size(), allocated, allocations);
+    }
+}
@@ -2,15 +2,18 @@ package com.example.demo.dto;
 
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 
 /**
  * Request DTO for adding an order to the queue.
  */
 public record OrderRequest(
     @NotBlank(message = "Order ID is required")
+    @Size(max = 256, message = "Order ID must be at most 256 characters")
     String orderId,
 
     @NotBlank(message = "Store ID is required")
+    @Size(max = 256, message = "Store ID must be at most 256 characters")
     String storeId,
 
     Long oatTimestamp,  // Optimal Allocation Time as epoch millis (null = now)
@@ -19,6 +22,9 @@ public record OrderRequest(
     int priorityOrder,
 
     @Min(value = 1, message = "SKU count must be at least 1")
-    int skuCount
+    int skuCount,
+
+    @Min(value = 0, message = "Required capabilities must be a non-negative bitmask")
+    Integer requiredCapabilities  // Bitmask (null = 0, any picker)
 ) {}
 
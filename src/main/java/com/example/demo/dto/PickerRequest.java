@@ -2,21 +2,27 @@ package com.example.demo.dto;
 
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 
 /**
  * Request DTO for adding a picker to the queue.
  */
 public record PickerRequest(
     @NotBlank(message = "Picker ID is required")
+    @Size(max = 256, message = "Picker ID must be at most 256 characters")
     String pickerId,
 
     @NotBlank(message = "Store ID is required")
+    @Size(max = 256, message = "Store ID must be at most 256 characters")
     String storeId,
 
     @Min(value = 0, message = "SKU completed cannot be negative")
     int skuCompleted,
 
     @Min(value = 0, message = "Order completed cannot be negative")
-    int orderCompleted
+    int orderCompleted,
+
+    @Min(value = 0, message = "Capabilities must be a non-negative bitmask")
+    Integer capabilities  // Bitmask (null = 0, no certifications)
 ) {}
 
@@ -0,0 +1,152 @@
+package com.example.demo.engine;
+
+import com.example.demo.dto.AllocationHistoryEntry;
+import com.example.demo.dto.AllocationHistoryPage;
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.model.Allocation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Storage and atomic pop operations behind the queue and allocation services.
+ * Scoring stays in ScoreCalculationService; an engine only orders members by the scores it is given.
+ * Selected with allocation.engine: redis (default) or local.
+ */
+public interface AllocationEngine {
+
+    /**
+     * Add entries to their queues and store their score metadata.
+     * If a member appears more than once, the last entry wins.
+     * With allocation.sweeper.enabled, their stores are also marked dirty in the same write.
+     */
+    void enqueue(List<QueueEntry> entries);
+
+    /**
+     * Add one entry and attempt to allocate the top order to the top picker of its store, atomically.
+     */
+    Optional<Allocation> enqueueAndAllocate(QueueEntry entry);
+
+    /**
+     * Remove a member from a queue. No-op if it is not queued.
+     * Removing an order also ends its lease, so the reaper does not bring it back.
+     */
+    void remove(QueueType type, String storeId, String memberId);
+
+    /**
+     * Get the top member of a queue without removing it.
+     */
+    Optional<String> peek(QueueType type, String storeId);
+
+    /**
+     * Get the number of members in a queue.
+     */
+    long size(QueueType type, String storeId);
+
+    /**
+     * Get queue sizes, top members and their score metadata for a store.
+     */
+    QueueStatusResponse status(String storeId);
+
+    /**
+     * Get queue status for many stores, in request order.
+     */
+    List<QueueStatusResponse> statuses(List<String> storeIds);
+
+    /**
+     * Get queue sizes for many stores, in request order. Cheaper than {@link #statuses}: no top members or metadata.
+     */
+    List<QueueDepth> depths(List<String> storeIds);
+
+    /**
+     * Get the stored score metadata of a member, or an empty map if none.
+     */
+    Map<Object, Object> scoreMeta(QueueType type, String storeId, String memberId);
+
+    /**
+     * Atomically pop the top order and the top picker of a store.
+     */
+    Optional<Allocation> allocate(String storeId);
+
+    /**
+     * Atomically pop up to {@code max} orders and pickers of a store and pair them in priority order.
+     */
+    List<Allocation> allocateBatch(String storeId, int max);
+
+    /**
+     * {@link #allocateBatch} for many stores at once. The Redis engine sends every store's script call
+     * in one pipeline.
+     *
+     * @return the allocations by store, in request order; a store with none maps to an empty list
+     */
+    Map<String, List<Allocation>> allocateBatches(List<String> storeIds, int max);
+
+    /**
+     * Read up to {@code window} members from the head of each queue of a store, with their score
+     * metadata and capability masks, without removing them.
+     */
+    MatchCandidates matchCandidates(String storeId, int window);
+
+    /**
+     * Atomically pop the given pairs. A pair is skipped if either member has left its queue since it
+     * was read, or the picker no longer holds every capability the order requires.
+     */
+    List<Allocation> allocatePairs(String storeId, List<MatchPair> pairs);
+
+    /**
+     * End the lease of an allocated order once its assignment has been delivered (allocation.lease.ttl-ms).
+     *
+     * @return false if the order holds no lease for that picker: already acknowledged, or expired and requeued
+     */
+    boolean acknowledgeLease(String storeId, String orderId, String pickerId);
+
+    /**
+     * Return orders whose lease expired unacknowledged to their queue with their original score,
+     * metadata and capabilities, up to {@code maxPerStore} per store, for every store holding leases.
+     * Costs a lookup per store plus O(log n) per reaped order.
+     *
+     * @return the requeued orderIds by store; stores with none are left out
+     */
+    Map<String, List<String>> reapExpiredLeases(int maxPerStore);
+
+    /**
+     * Add stores to the dirty set, the sweeper's work list. A store already in it is listed once.
+     */
+    void markDirty(Collection<String> storeIds);
+
+    /**
+     * Remove and return up to {@code count} stores from the dirty set, in no particular order.
+     * Each store is returned to one caller only, so concurrent sweepers never allocate the same store
+     * for the same mark.
+     */
+    List<String> popDirtyStores(int count);
+
+    /**
+     * Get a page of a store's allocation history, newest first, starting after {@code cursor}
+     * (an entry id from a previous page), or at the newest entry if null.
+     */
+    AllocationHistoryPage history(String storeId, String cursor, int limit);
+
+    /**
+     * Create a consumer group on a store's allocation history, reading from the oldest retained
+     * entry or only new ones.
+     *
+     * @return false if the group already exists
+     */
+    boolean createHistoryGroup(String storeId, String group, boolean fromStart);
+
+    /**
+     * Read up to {@code count} history entries not yet delivered to the group, on behalf of one consumer.
+     * Entries stay pending for the group until acknowledged.
+     */
+    List<AllocationHistoryEntry> readHistoryGroup(String storeId, String group, String consumer, int count);
+
+    /**
+     * Acknowledge delivered history entries for a group.
+     *
+     * @return number of entries that were pending and are now acknowledged
+     */
+    long acknowledgeHistory(String storeId, String group, List<String> entryIds);
+}
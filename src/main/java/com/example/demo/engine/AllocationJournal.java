@@ -0,0 +1,450 @@
+package com.example.demo.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal of queue events, written into fixed-size memory-mapped segments.
+ * Appends are a copy into the mapping; a background flusher forces dirty pages to disk every
+ * flush interval, or as soon as a caller waits in {@link #awaitDurable}, so concurrent writers
+ * share one fsync (group commit).
+ *
+ * <p>Every event sets absolute state (member present with a score, member absent, order leased or
+ * not), so replaying an event that a snapshot already reflects is harmless. Record layout:
+ * {@code [int payloadLength][int crc32c][byte type][payload]}; a zero length or bad checksum ends a segment.
+ */
+final class AllocationJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationJournal.class);
+
+    static final byte ENQUEUE = 1;
+    static final byte REMOVE = 2;
+    static final byte ALLOCATE = 3;
+    static final byte RELEASE = 4;
+
+    /**
+     * Longest string, in UTF-8 bytes, and most metadata fields a record can hold; both are written as unsigned shorts.
+     */
+    static final int MAX_STRING_BYTES = 0xFFFF;
+    static final int MAX_META_FIELDS = 0xFFFF;
+
+    private static final int HEADER_BYTES = 8;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{12})\\.log");
+
+    /**
+     * Receives journal events during replay.
+     */
+    interface Visitor {
+        void enqueue(QueueEntry entry);
+
+        void remove(QueueType type, String storeId, String memberId);
+
+        /**
+         * @param leaseDeadline epoch ms the order is leased until, or 0 when it was not leased
+         */
+        void allocate(String storeId, String orderId, String pickerId, long leaseDeadline);
+
+        void release(String storeId, String orderId);
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long flushIntervalMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+    private final Thread flusher;
+
+    // Guarded by lock
+    private long segmentSeq;
+    private MappedByteBuffer segment;
+    private int writeOffset;
+    private long appendedPosition;
+    private long durablePosition;
+    private boolean closed;
+
+    AllocationJournal(Path directory, int segmentBytes, long flushIntervalMillis) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.flushIntervalMillis = flushIntervalMillis;
+        try {
+            Files.createDirectories(directory);
+            List<Long> existing = segmentSeqs();
+            // Never append into a segment that may end in a torn record; recovery reads it, writes start fresh
+            openSegment(existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open allocation journal in " + directory, e);
+        }
+        this.flusher = Thread.ofPlatform().name("allocation-journal-flusher").daemon().start(this::flushLoop);
+    }
+
+    /**
+     * Reject an entry whose ids or metadata do not fit the record layout. The engine calls this before
+     * applying the entry, so an oversized entry is refused outright rather than journaled truncated.
+     */
+    static void checkRecordable(QueueEntry entry) {
+        if (entry.metaFields().size() > MAX_META_FIELDS) {
+            throw new IllegalArgumentException(
+                "Score metadata has " + entry.metaFields().size() + " fields, at most " + MAX_META_FIELDS + " are allowed");
+        }
+        utf8(entry.storeId());
+        utf8(entry.memberId());
+        for (Map.Entry<String, String> field : entry.metaFields().entrySet()) {
+            utf8(field.getKey());
+            utf8(field.getValue());
+        }
+    }
+
+    long appendEnqueue(QueueEntry entry) {
+        checkRecordable(entry);
+        byte[] storeId = utf8(entry.storeId());
+        byte[] memberId = utf8(entry.memberId());
+        List<byte[]> meta = new ArrayList<>(entry.metaFields().size() * 2);
+        int size = 1 + 1 + sizeOf(storeId) + sizeOf(memberId) + Double.BYTES + Short.BYTES + Integer.BYTES;
+        for (Map.Entry<String, String> field : entry.metaFields().entrySet()) {
+            byte[] name = utf8(field.getKey());
+            byte[] value = utf8(field.getValue());
+            meta.add(name);
+            meta.add(value);
+            size += sizeOf(name) + sizeOf(value);
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.put(ENQUEUE).put((byte) entry.type().ordinal());
+        putString(payload, storeId);
+        putString(payload, memberId);
+        payload.putDouble(entry.score());
+        payload.putShort((short) (meta.size() / 2));
+        for (byte[] bytes : meta) {
+            putString(payload, bytes);
+        }
+        payload.putInt(entry.capabilities());
+        return append(payload.array());
+    }
+
+    long appendRemove(QueueType type, String storeId, String memberId) {
+        byte[] store = utf8(storeId);
+        byte[] member = utf8(memberId);
+        ByteBuffer payload = ByteBuffer.allocate(2 + sizeOf(store) + sizeOf(member));
+        payload.put(REMOVE).put((byte) type.ordinal());
+        putString(payload, store);
+        putString(payload, member);
+        return append(payload.array());
+    }
+
+    long appendAllocate(String storeId, String orderId, String pickerId, long leaseDeadline) {
+        byte[] store = utf8(storeId);
+        byte[] order = utf8(orderId);
+        byte[] picker = utf8(pickerId);
+        ByteBuffer payload = ByteBuffer.allocate(1 + sizeOf(store) + sizeOf(order) + sizeOf(picker) + Long.BYTES);
+        payload.put(ALLOCATE);
+        putString(payload, store);
+        putString(payload, order);
+        putString(payload, picker);
+        payload.putLong(leaseDeadline);
+        return append(payload.array());
+    }
+
+    /**
+     * An order's lease ended, by acknowledgement or expiry.
+     */
+    long appendRelease(String storeId, String orderId) {
+        byte[] store = utf8(storeId);
+        byte[] order = utf8(orderId);
+        ByteBuffer payload = ByteBuffer.allocate(1 + sizeOf(store) + sizeOf(order));
+        payload.put(RELEASE);
+        putString(payload, store);
+        putString(payload, order);
+        return append(payload.array());
+    }
+
+    /**
+     * Block until everything up to {@code position} has been forced to disk.
+     */
+    void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (durablePosition < position && !closed) {
+                flushRequested.signal();
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Force the current segment and start a new one. Events appended after this call land in
+     * segments at or after the returned sequence, which is what a snapshot taken now must replay from.
+     */
+    long roll() {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Allocation journal is closed");
+            }
+            rollLocked();
+            return segmentSeq;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll allocation journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete segments fully covered by a snapshot.
+     */
+    void deleteSegmentsBefore(long seq) throws IOException {
+        for (long existing : segmentSeqs()) {
+            if (existing < seq) {
+                Files.deleteIfExists(segmentPath(existing));
+            }
+        }
+    }
+
+    /**
+     * Replay every segment from {@code fromSeq} up to, but not including, the segment opened by this instance.
+     *
+     * @return number of events replayed
+     */
+    long replay(long fromSeq, Visitor visitor) throws IOException {
+        long events = 0;
+        for (long seq : segmentSeqs()) {
+            if (seq >= fromSeq && seq < segmentSeq) {
+                events += replaySegment(seq, visitor);
+            }
+        }
+        return events;
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            segment.force();
+            durablePosition = appendedPosition;
+            closed = true;
+            flushRequested.signal();
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long append(byte[] payload) {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("Journal record of " + recordBytes + " bytes exceeds segment size");
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Allocation journal is closed");
+            }
+            if (writeOffset + recordBytes > segmentBytes) {
+                rollLocked();
+            }
+            crc.reset();
+            crc.update(payload);
+            segment.put(writeOffset + HEADER_BYTES, payload);
+            segment.putInt(writeOffset + 4, (int) crc.getValue());
+            // Length last, so a record is only visible to replay once its body is in place
+            segment.putInt(writeOffset, payload.length);
+            writeOffset += recordBytes;
+            appendedPosition += recordBytes;
+            return appendedPosition;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to allocation journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rollLocked() throws IOException {
+        segment.force();
+        durablePosition = appendedPosition;
+        flushed.signalAll();
+        openSegment(segmentSeq + 1);
+    }
+
+    private void openSegment(long seq) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(seq),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        segmentSeq = seq;
+        writeOffset = 0;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            MappedByteBuffer target;
+            long position;
+            lock.lock();
+            try {
+                if (!closed && durablePosition == appendedPosition) {
+                    flushRequested.awaitNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis));
+                }
+                if (closed) {
+                    return;
+                }
+                if (durablePosition == appendedPosition) {
+                    continue;
+                }
+                target = segment;
+                position = appendedPosition;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            // Appends keep going while the pages are forced; they ride on the next flush
+            target.force();
+
+            lock.lock();
+            try {
+                durablePosition = Math.max(durablePosition, position);
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private long replaySegment(long seq, Visitor visitor) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segmentPath(seq), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        CRC32C check = new CRC32C();
+        long events = 0;
+        int offset = 0;
+        while (offset + HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > buffer.limit()) {
+                break;
+            }
+            int expectedCrc = buffer.getInt(offset + 4);
+            ByteBuffer payload = buffer.slice(offset + HEADER_BYTES, length);
+            check.reset();
+            check.update(payload.duplicate());
+            if ((int) check.getValue() != expectedCrc) {
+                log.warn("Journal segment {} has a torn record at offset {}, ignoring the rest", seq, offset);
+                break;
+            }
+            apply(payload, visitor);
+            events++;
+            offset += HEADER_BYTES + length;
+        }
+        return events;
+    }
+
+    private static void apply(ByteBuffer payload, Visitor visitor) {
+        byte type = payload.get();
+        switch (type) {
+            case ENQUEUE -> {
+                QueueType queueType = QueueType.values()[payload.get()];
+                String storeId = getString(payload);
+                String memberId = getString(payload);
+                double score = payload.getDouble();
+                int fieldCount = Short.toUnsignedInt(payload.getShort());
+                Map<String, String> metaFields = new LinkedHashMap<>();
+                for (int i = 0; i < fieldCount; i++) {
+                    metaFields.put(getString(payload), getString(payload));
+                }
+                visitor.enqueue(new QueueEntry(queueType, storeId, memberId, score, metaFields, payload.getInt()));
+            }
+            case REMOVE -> {
+                QueueType queueType = QueueType.values()[payload.get()];
+                visitor.remove(queueType, getString(payload), getString(payload));
+            }
+            case ALLOCATE ->
+                visitor.allocate(getString(payload), getString(payload), getString(payload), payload.getLong());
+            case RELEASE -> visitor.release(getString(payload), getString(payload));
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private List<Long> segmentSeqs() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .map(path -> SEGMENT_NAME.matcher(path.getFileName().toString()))
+                .filter(Matcher::matches)
+                .map(matcher -> Long.parseLong(matcher.group(1)))
+                .sorted()
+                .toList();
+        }
+    }
+
+    private Path segmentPath(long seq) {
+        return directory.resolve(String.format("journal-%012d.log", seq));
+    }
+
+    /**
+     * UTF-8 bytes of a string stored in a record or snapshot.
+     *
+     * @throws IllegalArgumentException if it is longer than {@link #MAX_STRING_BYTES}
+     */
+    static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException(
+                "Value of " + bytes.length + " UTF-8 bytes exceeds the journal limit of " + MAX_STRING_BYTES);
+        }
+        return bytes;
+    }
+
+    private static int sizeOf(byte[] bytes) {
+        return Short.BYTES + bytes.length;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.demo.engine;
+
+import com.example.demo.metrics.AllocationMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces enqueue writes from concurrent callers into shared pipelines.
+ * A single collector thread takes the first pending write, waits for one of {@code maxInFlight} flush slots,
+ * keeps collecting for up to {@code windowMicros} or until {@code maxCommands} commands (ZADD, HSET, EXPIRE
+ * and a capability write per entry) are gathered, then hands everything to {@code flush} as one batch on its
+ * own thread and completes each caller's future with its outcome. The collector goes straight back to
+ * gathering the next batch, so up to {@code maxInFlight} pipelines are on the wire at once and throughput is
+ * not capped at one batch per round trip. A lone write waits at most one window; under load, N callers share
+ * one round trip.
+ */
+public final class CommandBatcher implements Closeable {
+
+    // ZADD + HSET + EXPIRE + capability HSET or HDEL; an upper bound, since entries of one store share them
+    public static final int COMMANDS_PER_ENTRY = 4;
+
+    private static final Logger log = LoggerFactory.getLogger(CommandBatcher.class);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final Consumer<List<QueueEntry>> flush;
+    private final long windowNanos;
+    private final int maxCommands;
+    private final AllocationMetrics metrics;
+    private final LinkedBlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+    private final Semaphore flushSlots;
+    private final ExecutorService flushers =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("redis-command-flush-", 0).factory());
+    private final Thread collector;
+    private volatile boolean closed;
+
+    public CommandBatcher(Consumer<List<QueueEntry>> flush, long windowMicros, int maxCommands, int maxInFlight,
+                          AllocationMetrics metrics) {
+        if (maxCommands < COMMANDS_PER_ENTRY) {
+            throw new IllegalArgumentException("maxCommands must be at least " + COMMANDS_PER_ENTRY);
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.flush = flush;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxCommands = maxCommands;
+        this.flushSlots = new Semaphore(maxInFlight);
+        this.metrics = metrics;
+        this.collector = Thread.ofPlatform().name("redis-command-batcher").daemon().start(this::collectLoop);
+    }
+
+    /**
+     * Queue entries for the next pipeline. The future completes when the pipeline carrying them has
+     * been executed, exceptionally if it failed.
+     */
+    public CompletableFuture<Void> submit(List<QueueEntry> entries) {
+        if (closed) {
+            throw new IllegalStateException("Command batcher is closed");
+        }
+        Pending write = new Pending(entries, new CompletableFuture<>());
+        pending.add(write);
+        return write.done;
+    }
+
+    /**
+     * Stop accepting writes, flush what is queued and wait for flushes in flight.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            collector.join();
+            flushers.shutdown();
+            if (!flushers.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Batched enqueues still in flight after close");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Writes that raced with shutdown past the final drain
+        Pending write;
+        while ((write = pending.poll()) != null) {
+            write.done.completeExceptionally(new IllegalStateException("Command batcher is closed"));
+        }
+    }
+
+    private void collectLoop() {
+        List<Pending> batch = new ArrayList<>();
+        try {
+            while (!closed || !pending.isEmpty()) {
+                Pending first = pending.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Writes arriving while every slot is busy are collected into the next batch
+                flushSlots.acquire();
+                int commands = first.commands();
+
+                long deadline = System.nanoTime() + windowNanos;
+                while (commands < maxCommands) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    commands += next.commands();
+                }
+
+                List<Pending> collected = List.copyOf(batch);
+                int collectedCommands = commands;
+                batch.clear();
+                flushers.execute(() -> {
+                    try {
+                        flush(collected, collectedCommands);
+                    } finally {
+                        flushSlots.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.forEach(write -> write.done.completeExceptionally(e));
+        }
+    }
+
+    private void flush(List<Pending> batch, int commands) {
+        List<QueueEntry> entries = new ArrayList<>(commands / COMMANDS_PER_ENTRY);
+        for (Pending write : batch) {
+            entries.addAll(write.entries);
+        }
+
+        try {
+            flush.accept(entries);
+        } catch (RuntimeException e) {
+            log.warn("Batched enqueue of {} entries from {} callers failed", entries.size(), batch.size(), e);
+            batch.forEach(write -> write.done.completeExceptionally(e));
+            return;
+        }
+        metrics.recordCommandBatch(batch.size(), commands);
+        batch.forEach(write -> write.done.complete(null));
+    }
+
+    private record Pending(List<QueueEntry> entries, CompletableFuture<Void> done) {
+        int commands() {
+            return entries.size() * COMMANDS_PER_ENTRY;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.demo.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary min-heap of member ids over primitive double scores, indexed by id for O(log n)
+ * update and removal. Ties are broken by member id, matching Redis ZSET ordering.
+ * Not thread-safe; callers hold the store lock.
+ */
+final class IndexedMinHeap {
+
+    private String[] ids;
+    private double[] scores;
+    private final Map<String, Integer> positions;
+    private int size;
+
+    /**
+     * Receives members in heap (not score) order.
+     */
+    interface MemberConsumer {
+        void accept(String id, double score);
+    }
+
+    IndexedMinHeap() {
+        this(16);
+    }
+
+    IndexedMinHeap(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.ids = new String[capacity];
+        this.scores = new double[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Insert a member, or update its score if already present.
+     *
+     * @return true if the member was newly added
+     */
+    boolean add(String id, double score) {
+        Integer pos = positions.get(id);
+        if (pos != null) {
+            scores[pos] = score;
+            siftDown(siftUp(pos));
+            return false;
+        }
+
+        if (size == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+        ids[size] = id;
+        scores[size] = score;
+        positions.put(id, size);
+        siftUp(size++);
+        return true;
+    }
+
+    /**
+     * Top member (lowest score), or null if empty.
+     */
+    String peek() {
+        return size == 0 ? null : ids[0];
+    }
+
+    /**
+     * Remove and return the top member, or null if empty.
+     */
+    String poll() {
+        if (size == 0) {
+            return null;
+        }
+        String top = ids[0];
+        removeAt(0);
+        return top;
+    }
+
+    /**
+     * Remove a member by id.
+     *
+     * @return true if the member was present
+     */
+    boolean remove(String id) {
+        Integer pos = positions.get(id);
+        if (pos == null) {
+            return false;
+        }
+        removeAt(pos);
+        return true;
+    }
+
+    /**
+     * Score of a member, or NaN if absent.
+     */
+    double score(String id) {
+        Integer pos = positions.get(id);
+        return pos == null ? Double.NaN : scores[pos];
+    }
+
+    boolean contains(String id) {
+        return positions.containsKey(id);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void forEach(MemberConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(ids[i], scores[i]);
+        }
+    }
+
+    private void removeAt(int pos) {
+        positions.remove(ids[pos]);
+        int last = --size;
+        if (pos != last) {
+            move(last, pos);
+            siftDown(siftUp(pos));
+        }
+        ids[last] = null;
+    }
+
+    private int siftUp(int pos) {
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!less(pos, parent)) {
+                break;
+            }
+            swap(pos, parent);
+            pos = parent;
+        }
+        return pos;
+    }
+
+    private void siftDown(int pos) {
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                return;
+            }
+            int right = child + 1;
+            if (right < size && less(right, child)) {
+                child = right;
+            }
+            if (!less(child, pos)) {
+                return;
+            }
+            swap(pos, child);
+            pos = child;
+        }
+    }
+
+    private boolean less(int a, int b) {
+        int cmp = Double.compare(scores[a], scores[b]);
+        return cmp < 0 || (cmp == 0 && ids[a].compareTo(ids[b]) < 0);
+    }
+
+    private void swap(int a, int b) {
+        String id = ids[a];
+        double score = scores[a];
+        ids[a] = ids[b];
+        scores[a] = scores[b];
+        ids[b] = id;
+        scores[b] = score;
+        positions.put(ids[a], a);
+        positions.put(ids[b], b);
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        scores[to] = scores[from];
+        positions.put(ids[to], to);
+    }
+}
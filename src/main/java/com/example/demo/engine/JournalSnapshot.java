@@ -0,0 +1,216 @@
+package com.example.demo.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Compact point-in-time image of every store's queues and order leases, named after the first journal segment
+ * that must be replayed on top of it. Written to a temporary file, synced and renamed into place,
+ * so a crash mid-snapshot leaves the previous snapshot intact.
+ */
+final class JournalSnapshot {
+
+    private static final int MAGIC = 0x414c4c53;
+    private static final int VERSION = 2;
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d{12})\\.bin");
+
+    private JournalSnapshot() {
+    }
+
+    /**
+     * An order held in flight: what it held in its queue, its picker and its lease deadline (epoch ms).
+     */
+    record LeasedOrder(QueueEntry order, String pickerId, long deadline) {}
+
+    /**
+     * Most recent complete snapshot in the directory, if any.
+     */
+    static Optional<Path> latest(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> SNAPSHOT_NAME.matcher(path.getFileName().toString()).matches())
+                .max((a, b) -> Long.compare(seqOf(a), seqOf(b)));
+        }
+    }
+
+    /**
+     * First journal segment to replay after loading this snapshot.
+     */
+    static long seqOf(Path snapshot) {
+        Matcher matcher = SNAPSHOT_NAME.matcher(snapshot.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a snapshot file: " + snapshot);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * Feed every queued member in the snapshot to {@code sink} and every leased order to {@code leaseSink}.
+     *
+     * @return number of members loaded
+     */
+    static long load(Path snapshot, Consumer<QueueEntry> sink, Consumer<LeasedOrder> leaseSink) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unrecognised snapshot format: " + snapshot);
+            }
+            long members = 0;
+            int storeCount = in.readInt();
+            for (int s = 0; s < storeCount; s++) {
+                String storeId = readString(in);
+                int entryCount = in.readInt();
+                for (int e = 0; e < entryCount; e++) {
+                    sink.accept(readEntry(in, storeId));
+                    members++;
+                }
+                int leaseCount = in.readInt();
+                for (int l = 0; l < leaseCount; l++) {
+                    QueueEntry order = readEntry(in, storeId);
+                    leaseSink.accept(new LeasedOrder(order, readString(in), in.readLong()));
+                }
+            }
+            return members;
+        }
+    }
+
+    private static QueueEntry readEntry(DataInputStream in, String storeId) throws IOException {
+        QueueType type = QueueType.values()[in.readByte()];
+        String memberId = readString(in);
+        double score = in.readDouble();
+        int fieldCount = in.readUnsignedShort();
+        Map<String, String> metaFields = new LinkedHashMap<>();
+        for (int f = 0; f < fieldCount; f++) {
+            metaFields.put(readString(in), readString(in));
+        }
+        return new QueueEntry(type, storeId, memberId, score, metaFields, in.readInt());
+    }
+
+    /**
+     * Strings are written as in the journal: UTF-8 behind an unsigned short length.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static Writer begin(Path directory, long seq, int storeCount) throws IOException {
+        return new Writer(directory, seq, storeCount);
+    }
+
+    /**
+     * Remove snapshots older than {@code seq}.
+     */
+    static void deleteBefore(Path directory, long seq) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                if (SNAPSHOT_NAME.matcher(path.getFileName().toString()).matches() && seqOf(path) < seq) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private static Path path(Path directory, long seq) {
+        return directory.resolve(String.format("snapshot-%012d.bin", seq));
+    }
+
+    /**
+     * Streams stores one at a time so the engine only copies a single store under its lock.
+     * The store count is fixed up front; stores created after it was taken go to the journal instead.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path directory;
+        private final long seq;
+        private final Path tmp;
+        private final FileOutputStream file;
+        private final DataOutputStream out;
+        private int remainingStores;
+        private boolean committed;
+
+        private Writer(Path directory, long seq, int storeCount) throws IOException {
+            this.directory = directory;
+            this.seq = seq;
+            this.tmp = directory.resolve(path(directory, seq).getFileName() + ".tmp");
+            this.file = new FileOutputStream(tmp.toFile());
+            this.out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            this.remainingStores = storeCount;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(storeCount);
+        }
+
+        void writeStore(String storeId, List<QueueEntry> entries, List<LeasedOrder> leases) throws IOException {
+            if (remainingStores-- <= 0) {
+                throw new IllegalStateException("More stores written than declared");
+            }
+            writeString(storeId);
+            out.writeInt(entries.size());
+            for (QueueEntry entry : entries) {
+                writeEntry(entry);
+            }
+            out.writeInt(leases.size());
+            for (LeasedOrder lease : leases) {
+                writeEntry(lease.order());
+                writeString(lease.pickerId());
+                out.writeLong(lease.deadline());
+            }
+        }
+
+        private void writeEntry(QueueEntry entry) throws IOException {
+            out.writeByte(entry.type().ordinal());
+            writeString(entry.memberId());
+            out.writeDouble(entry.score());
+            out.writeShort(entry.metaFields().size());
+            for (Map.Entry<String, String> field : entry.metaFields().entrySet()) {
+                writeString(field.getKey());
+                writeString(field.getValue());
+            }
+            out.writeInt(entry.capabilities());
+        }
+
+        // Same bound as a journal record, which every queued member has already passed
+        private void writeString(String value) throws IOException {
+            byte[] bytes = AllocationJournal.utf8(value);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        void commit() throws IOException {
+            if (remainingStores != 0) {
+                throw new IllegalStateException(remainingStores + " declared stores were not written");
+            }
+            out.flush();
+            file.getFD().sync();
+            out.close();
+            Files.move(tmp, path(directory, seq), StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * When this instance last put each store on the lease reaper's index (register_leases.lua).
+ * A registration is reused for one lease duration and then renewed before the next leased allocation.
+ * The reaper drops a store without leases only once nobody has registered it for {@link #quietMs}, two
+ * lease durations, so a store never leaves the index while an instance still relies on a registration;
+ * the second lease duration is the margin for clock skew between instances and Redis.
+ */
+public final class LeaseRegistrations {
+
+    private final Map<String, Long> registeredAt = new ConcurrentHashMap<>();
+
+    /**
+     * How long after its last registration a store without leases stays on the index.
+     */
+    public static long quietMs(long leaseMs) {
+        return 2 * leaseMs;
+    }
+
+    /**
+     * The distinct stores among {@code storeIds} that need registering before a leased allocation at {@code now}.
+     */
+    public List<String> unregistered(Collection<String> storeIds, long now, long leaseMs) {
+        List<String> unregistered = new ArrayList<>();
+        for (String storeId : new LinkedHashSet<>(storeIds)) {
+            Long at = registeredAt.get(storeId);
+            if (at == null || now - at >= leaseMs) {
+                unregistered.add(storeId);
+            }
+        }
+        return unregistered;
+    }
+
+    /**
+     * Record a registration; {@code at} is taken before the registration was sent, so it never runs ahead of it.
+     */
+    public void registered(Collection<String> storeIds, long at) {
+        for (String storeId : storeIds) {
+            registeredAt.put(storeId, at);
+        }
+    }
+}
@@ -0,0 +1,898 @@
+package com.example.demo.engine;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.dto.AllocationHistoryEntry;
+import com.example.demo.dto.AllocationHistoryPage;
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.model.Allocation;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JVM-local allocation engine for single-store edge deployments and tests.
+ * Each store keeps two indexed binary heaps; operations on a store run under one of a fixed set of
+ * striped locks, so different stores allocate in parallel without a network hop.
+ * Score metadata is dropped when its member leaves the queue rather than expiring by TTL.
+ * Capability masks are matched like the Redis scripts: over a window of each queue's head, only
+ * once some queued order of the store requires a capability.
+ * Allocation history is a Redis stream and is not available on this engine.
+ * Leases ({@code allocation.lease.ttl-ms}) keep each allocated order in a per-store heap ordered by
+ * deadline until it is acknowledged or reaped back into its queue.
+ *
+ * <p>With {@code allocation.journal.enabled} every mutation is appended to an {@link AllocationJournal}
+ * while the store lock is held, so the journal order per store matches the order applied. Periodic
+ * snapshots bound replay time; on startup the latest snapshot is loaded and the journal tail replayed.
+ * Leases are journaled with their allocation and ended by a release, and snapshots keep the orders in
+ * flight, so an order unacknowledged at a restart is still reaped back into its queue afterwards.
+ * The dirty store set is not journaled; recovery marks every store that has both orders and pickers queued.
+ */
+@Component
+@ConditionalOnProperty(name = "allocation.engine", havingValue = "local")
+public class LocalAllocationEngine implements AllocationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalAllocationEngine.class);
+
+    private static final int LOCK_STRIPES = 64;
+    private static final String HISTORY_UNSUPPORTED =
+        "Allocation history is kept in Redis streams and requires allocation.engine=redis";
+
+    private final Map<String, StoreQueues> stores = new ConcurrentHashMap<>();
+    private final Set<String> dirtyStores = ConcurrentHashMap.newKeySet();
+    // Stores holding leases, scored by their earliest lease deadline, so the reaper only visits due stores.
+    // Guarded by itself; written under the owning store's lock
+    private final IndexedMinHeap leaseIndex = new IndexedMinHeap();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final AllocationProperties.Journal journalProperties;
+    private final AllocationProperties.Lease leaseProperties;
+    private final int eligibilityWindow;
+    private final boolean sweeperEnabled;
+    private AllocationJournal journal;
+    private ScheduledExecutorService snapshotScheduler;
+    private boolean closed;
+
+    public LocalAllocationEngine(AllocationProperties properties) {
+        this.journalProperties = properties.getJournal();
+        this.leaseProperties = properties.getLease();
+        this.eligibilityWindow = properties.getEligibilityWindow();
+        this.sweeperEnabled = properties.getSweeper().isEnabled();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Recover from the journal directory and start periodic snapshots. No-op unless journaling is enabled.
+     */
+    @PostConstruct
+    public void start() {
+        if (!journalProperties.isEnabled()) {
+            return;
+        }
+        Path directory = Path.of(journalProperties.getDirectory());
+        journal = new AllocationJournal(directory,
+            journalProperties.getSegmentSizeMb() * 1024 * 1024, journalProperties.getFlushIntervalMs());
+        try {
+            recover(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover local allocation engine from " + directory, e);
+        }
+
+        long interval = journalProperties.getSnapshotIntervalSeconds();
+        if (interval > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("allocation-snapshot").daemon().factory());
+            snapshotScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    snapshot();
+                } catch (RuntimeException e) {
+                    log.error("Allocation snapshot failed", e);
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Wait for any periodic snapshot in progress, take a final snapshot so the next start replays nothing,
+     * then close the journal.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (journal == null || closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (snapshotScheduler != null) {
+                // A periodic snapshot still running would roll the journal under the final one
+                snapshotScheduler.shutdown();
+                while (!snapshotScheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Waiting for a running allocation snapshot before taking the final one");
+                }
+            }
+            snapshot();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted waiting for the running allocation snapshot; the next start replays the journal");
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * Write a snapshot of every store and drop the journal segments and snapshots it supersedes.
+     * Stores are copied one at a time under their own lock; events that race with the copy are
+     * both in the snapshot and in the new segment, which replay tolerates because events are idempotent.
+     */
+    public void snapshot() {
+        if (journal == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        long seq = journal.roll();
+        List<String> storeIds = new ArrayList<>(stores.keySet());
+        long members = 0;
+        try (JournalSnapshot.Writer writer = JournalSnapshot.begin(journal.directory(), seq, storeIds.size())) {
+            for (String storeId : storeIds) {
+                List<QueueEntry> entries;
+                List<JournalSnapshot.LeasedOrder> leases;
+                ReentrantLock lock = lockFor(storeId);
+                lock.lock();
+                try {
+                    StoreQueues store = stores.get(storeId);
+                    entries = store.entries(storeId);
+                    leases = store.leasedOrders();
+                } finally {
+                    lock.unlock();
+                }
+                writer.writeStore(storeId, entries, leases);
+                members += entries.size();
+            }
+            writer.commit();
+            journal.deleteSegmentsBefore(seq);
+            JournalSnapshot.deleteBefore(journal.directory(), seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write allocation snapshot", e);
+        }
+        log.info("Snapshot {} of {} stores ({} queued members) written in {} ms",
+            seq, storeIds.size(), members, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void recover(Path directory) throws IOException {
+        long start = System.nanoTime();
+        Optional<Path> snapshot = JournalSnapshot.latest(directory);
+        long fromSeq = 0;
+        long members = 0;
+        if (snapshot.isPresent()) {
+            fromSeq = JournalSnapshot.seqOf(snapshot.get());
+            members = JournalSnapshot.load(snapshot.get(), entry -> store(entry.storeId()).add(entry),
+                lease -> store(lease.order().storeId()).restoreLease(lease));
+        }
+
+        // Single-threaded before the bean is published, so no store locks are needed
+        long events = journal.replay(fromSeq, new AllocationJournal.Visitor() {
+            @Override
+            public void enqueue(QueueEntry entry) {
+                store(entry.storeId()).add(entry);
+            }
+
+            @Override
+            public void remove(QueueType type, String storeId, String memberId) {
+                store(storeId).remove(type, memberId);
+            }
+
+            @Override
+            public void allocate(String storeId, String orderId, String pickerId, long leaseDeadline) {
+                store(storeId).allocated(storeId, orderId, pickerId, leaseDeadline);
+            }
+
+            @Override
+            public void release(String storeId, String orderId) {
+                store(storeId).release(orderId);
+            }
+        });
+        stores.forEach(this::indexLeases);
+        if (sweeperEnabled) {
+            stores.forEach((storeId, store) -> {
+                if (!store.orders.isEmpty() && !store.pickers.isEmpty()) {
+                    dirtyStores.add(storeId);
+                }
+            });
+        }
+
+        log.info("Recovered {} stores from {} ({} members) and {} journal events in {} ms",
+            stores.size(), snapshot.map(Path::getFileName).map(Path::toString).orElse("no snapshot"),
+            members, events, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public void enqueue(List<QueueEntry> entries) {
+        Map<String, List<QueueEntry>> entriesByStore = new LinkedHashMap<>();
+        for (QueueEntry entry : entries) {
+            checkRecordable(entry);
+            entriesByStore.computeIfAbsent(entry.storeId(), k -> new ArrayList<>()).add(entry);
+        }
+
+        long position = 0;
+        for (Map.Entry<String, List<QueueEntry>> storeEntries : entriesByStore.entrySet()) {
+            ReentrantLock lock = lockFor(storeEntries.getKey());
+            lock.lock();
+            try {
+                StoreQueues store = store(storeEntries.getKey());
+                for (QueueEntry entry : storeEntries.getValue()) {
+                    store.add(entry);
+                    if (journal != null) {
+                        position = journal.appendEnqueue(entry);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (sweeperEnabled) {
+            dirtyStores.addAll(entriesByStore.keySet());
+        }
+        awaitDurable(position);
+    }
+
+    @Override
+    public Optional<Allocation> enqueueAndAllocate(QueueEntry entry) {
+        checkRecordable(entry);
+        List<Allocation> allocations;
+        long position = 0;
+        ReentrantLock lock = lockFor(entry.storeId());
+        lock.lock();
+        try {
+            StoreQueues store = store(entry.storeId());
+            store.add(entry);
+            long leaseDeadline = leaseDeadline();
+            allocations = store.pop(entry.storeId(), 1, eligibilityWindow, leaseDeadline);
+            indexLeases(entry.storeId(), store);
+            if (journal != null) {
+                position = journal.appendEnqueue(entry);
+                position = journalAllocations(allocations, leaseDeadline, position);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (sweeperEnabled) {
+            dirtyStores.add(entry.storeId());
+        }
+        awaitDurable(position);
+        return allocations.isEmpty() ? Optional.empty() : Optional.of(allocations.get(0));
+    }
+
+    @Override
+    public void remove(QueueType type, String storeId, String memberId) {
+        long position = 0;
+        ReentrantLock lock = lockFor(storeId);
+        lock.lock();
+        try {
+            StoreQueues store = stores.get(storeId);
+            if (store != null && store.remove(type, memberId)) {
+                indexLeases(storeId, store);
+                if (journal != null) {
+                    position = journal.appendRemove(type, storeId, memberId);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
+    }
+
+    @Override
+    public Optional<String> peek(QueueType type, String storeId) {
+        ReentrantLock lock = lockFor(storeId);
+        lock.lock();
+        try {
+            StoreQueues store = stores.get(storeId);
+            return store == null ? Optional.empty() : Optional.ofNullable(store.queue(type).peek());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long size(QueueType type, String storeId) {
+        ReentrantLock lock = lockFor(storeId);
+        lock.lock();
+        try {
+            StoreQueues store = stores.get(storeId);
+            return store == null ? 0 : store.queue(type).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public QueueStatusResponse status(String storeId) {
+        ReentrantLock lock = lockFor(storeId);
+        lock.lock();
+        try {
+            StoreQueues store = stores.get(storeId);
+            if (store == null) {
+                return new QueueStatusResponse(storeId, 0, 0, false, null, null, Map.of(), Map.of());
+            }
+            String topOrderId = store.orders.peek();
+            String topPickerId = store.pickers.peek();
+            return new QueueStatusResponse(
+                storeId,
+                store.orders.size(),
+                store.pickers.size(),
+                !store.orders.isEmpty() && !store.pickers.isEmpty(),
+                topOrderId,
+                topPickerId,
+                topOrderId != null ? store.meta(QueueType.ORDER, topOrderId) : Map.of(),
+                topPickerId != null ? store.meta(QueueType.PICKER, topPickerId) : Map.of()
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<QueueStatusResponse> statuses(List<String> storeIds) {
+        return storeIds.stream().map(this::status).toList();
+    }
+
+    @Override
+    public List<QueueDepth> depths(List<String> storeIds) {
+        List<QueueDepth> depths = new ArrayList<>(storeIds.size());
+        for (String storeId : storeIds) {
+            ReentrantLock lock = lockFor(storeId);
+            lock.lock();
+            try {
+                StoreQueues store = stores.get(storeId);
+                depths.add(store == null
+                    ? new QueueDepth(storeId, 0, 0)
+                    : new QueueDepth(storeId, store.orders.size(), store.pickers.size()));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return depths;
+    }
+
+    @Override
+    public Map<Object, Object> scoreMeta(QueueType type, String storeId, String memberId) {
+        ReentrantLock lock = lockFor(storeId);
+        lock.lock();
+        try {
+            StoreQueues store = stores.get(storeId);
+            return store == null ? Map.of() : store.meta(type, memberId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Allocation> allocate(String storeId) {
+        List<Allocation> allocations = allocateBatch(storeId, 1);
+        return allocations.isEmpty() ? Optional.empty() : Optional.of(allocations.get(0));
+    }
+
+    @Override
+    public List<Allocation> allocateBatch(String storeId, int max) {
+        List<Allocation> allocations;
+        long position = 0;
+        ReentrantLock lock = lockFor(storeId);
+        lock.lock();
+        try {
+            StoreQueues store = stores.get(storeId);
+            long leaseDeadline = leaseDeadline();
+            if (store == null) {
+                allocations = List.of();
+            } else {
+                allocations = store.pop(storeId, max, eligibilityWindow, leaseDeadline);
+                indexLeases(storeId, store);
+            }
+            if (journal != null) {
+                position = journalAllocations(allocations, leaseDeadline, position);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
+        return allocations;
+    }
+
+    @Override
+    public Map<String, List<Allocation>> allocateBatches(List<String> storeIds, int max) {
+        Map<String, List<Allocation>> allocations = new LinkedHashMap<>();
+        for (String storeId : storeIds) {
+            allocations.put(storeId, allocateBatch(storeId, max));
+        }
+        return allocations;
+    }
+
+    @Override
+    public MatchCandidates matchCandidates(String storeId, int window) {
+        ReentrantLock lock = lockFor(storeId);
+        lock.lock();
+        try {
+            StoreQueues store = stores.get(storeId);
+            return store == null
+                ? new MatchCandidates(List.of(), List.of())
+                : new MatchCandidates(store.head(QueueType.ORDER, storeId, window),
+                    store.head(QueueType.PICKER, storeId, window));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Allocation> allocatePairs(String storeId, List<MatchPair> pairs) {
+        List<Allocation> allocations;
+        long position = 0;
+        ReentrantLock lock = lockFor(storeId);
+        lock.lock();
+        try {
+            StoreQueues store = stores.get(storeId);
+            long leaseDeadline = leaseDeadline();
+            if (store == null) {
+                allocations = List.of();
+            } else {
+                allocations = store.popPairs(storeId, pairs, leaseDeadline);
+                indexLeases(storeId, store);
+            }
+            if (journal != null) {
+                position = journalAllocations(allocations, leaseDeadline, position);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
+        return allocations;
+    }
+
+    @Override
+    public boolean acknowledgeLease(String storeId, String orderId, String pickerId) {
+        long position = 0;
+        ReentrantLock lock = lockFor(storeId);
+        lock.lock();
+        try {
+            StoreQueues store = stores.get(storeId);
+            if (store == null || !store.acknowledge(orderId, pickerId)) {
+                return false;
+            }
+            indexLeases(storeId, store);
+            if (journal != null) {
+                position = journal.appendRelease(storeId, orderId);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
+        return true;
+    }
+
+    /**
+     * Takes the stores due on the lease index off it, then reaps each under its own lock and indexes it
+     * again at its next deadline; O(log n) per due store and per expired lease, however many stores exist.
+     */
+    @Override
+    public Map<String, List<String>> reapExpiredLeases(int maxPerStore) {
+        long now = System.currentTimeMillis();
+        List<String> due = new ArrayList<>();
+        synchronized (leaseIndex) {
+            while (!leaseIndex.isEmpty() && leaseIndex.score(leaseIndex.peek()) <= now) {
+                due.add(leaseIndex.poll());
+            }
+        }
+        Map<String, List<String>> reaped = new LinkedHashMap<>();
+        long position = 0;
+        for (String storeId : due) {
+            ReentrantLock lock = lockFor(storeId);
+            lock.lock();
+            try {
+                StoreQueues store = stores.get(storeId);
+                // Taken off the index above; whatever it still leases goes back on below
+                store.indexedDeadline = Double.NaN;
+                List<String> released = new ArrayList<>();
+                List<QueueEntry> requeued = store.reap(now, maxPerStore, released);
+                indexLeases(storeId, store);
+                if (journal != null) {
+                    for (String orderId : released) {
+                        position = journal.appendRelease(storeId, orderId);
+                    }
+                    for (QueueEntry entry : requeued) {
+                        position = journal.appendEnqueue(entry);
+                    }
+                }
+                if (!requeued.isEmpty()) {
+                    reaped.put(storeId, requeued.stream().map(QueueEntry::memberId).toList());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        awaitDurable(position);
+        return reaped;
+    }
+
+    @Override
+    public void markDirty(Collection<String> storeIds) {
+        dirtyStores.addAll(storeIds);
+    }
+
+    /**
+     * A store is returned only by the caller whose remove takes it out of the set.
+     */
+    @Override
+    public List<String> popDirtyStores(int count) {
+        List<String> popped = new ArrayList<>(Math.min(count, dirtyStores.size()));
+        for (Iterator<String> it = dirtyStores.iterator(); it.hasNext() && popped.size() < count; ) {
+            String storeId = it.next();
+            if (dirtyStores.remove(storeId)) {
+                popped.add(storeId);
+            }
+        }
+        return popped;
+    }
+
+    @Override
+    public AllocationHistoryPage history(String storeId, String cursor, int limit) {
+        throw new UnsupportedOperationException(HISTORY_UNSUPPORTED);
+    }
+
+    @Override
+    public boolean createHistoryGroup(String storeId, String group, boolean fromStart) {
+        throw new UnsupportedOperationException(HISTORY_UNSUPPORTED);
+    }
+
+    @Override
+    public List<AllocationHistoryEntry> readHistoryGroup(String storeId, String group, String consumer, int count) {
+        throw new UnsupportedOperationException(HISTORY_UNSUPPORTED);
+    }
+
+    @Override
+    public long acknowledgeHistory(String storeId, String group, List<String> entryIds) {
+        throw new UnsupportedOperationException(HISTORY_UNSUPPORTED);
+    }
+
+    private long journalAllocations(List<Allocation> allocations, long leaseDeadline, long position) {
+        for (Allocation allocation : allocations) {
+            position = journal.appendAllocate(allocation.storeId(), allocation.orderId(), allocation.pickerId(),
+                leaseDeadline);
+        }
+        return position;
+    }
+
+    private long leaseDeadline() {
+        return leaseProperties.isEnabled() ? System.currentTimeMillis() + leaseProperties.getTtlMs() : 0;
+    }
+
+    /**
+     * Before anything is applied, so an entry the journal cannot hold is refused rather than lost on restart.
+     */
+    private void checkRecordable(QueueEntry entry) {
+        if (journal != null) {
+            AllocationJournal.checkRecordable(entry);
+        }
+    }
+
+    /**
+     * With group commit, wait outside the store lock until this call's events are on disk.
+     */
+    private void awaitDurable(long position) {
+        AllocationJournal current = journal;
+        if (position > 0 && current != null && journalProperties.isGroupCommit()) {
+            current.awaitDurable(position);
+        }
+    }
+
+    /**
+     * Keep a store on the lease index at its earliest lease deadline, or off it once it holds no leases.
+     * Call under the store lock after its in-flight heap changed; the index lock is only taken when that
+     * deadline moved, which a lease added behind existing ones never does.
+     */
+    private void indexLeases(String storeId, StoreQueues store) {
+        String head = store.inflight.peek();
+        double deadline = head == null ? Double.NaN : store.inflight.score(head);
+        if (Double.compare(deadline, store.indexedDeadline) == 0) {
+            return;
+        }
+        synchronized (leaseIndex) {
+            if (head == null) {
+                leaseIndex.remove(storeId);
+            } else {
+                leaseIndex.add(storeId, deadline);
+            }
+        }
+        store.indexedDeadline = deadline;
+    }
+
+    private StoreQueues store(String storeId) {
+        return stores.computeIfAbsent(storeId, id -> new StoreQueues());
+    }
+
+    private ReentrantLock lockFor(String storeId) {
+        int hash = storeId.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Queues, score metadata, non-zero capability masks and order leases of one store. Guarded by the
+     * store's stripe lock.
+     */
+    private static final class StoreQueues {
+        private final IndexedMinHeap orders = new IndexedMinHeap();
+        private final IndexedMinHeap pickers = new IndexedMinHeap();
+        private final Map<String, Map<String, String>> orderMeta = new HashMap<>();
+        private final Map<String, Map<String, String>> pickerMeta = new HashMap<>();
+        private final Map<String, Integer> orderCapabilities = new HashMap<>();
+        private final Map<String, Integer> pickerCapabilities = new HashMap<>();
+        // Leased orderIds scored by deadline (epoch ms), with what they held in the queue
+        private final IndexedMinHeap inflight = new IndexedMinHeap();
+        private final Map<String, Lease> leases = new HashMap<>();
+        // The inflight head's deadline as last written to the lease index; NaN while off it
+        private double indexedDeadline = Double.NaN;
+
+        IndexedMinHeap queue(QueueType type) {
+            return type == QueueType.ORDER ? orders : pickers;
+        }
+
+        Map<String, Map<String, String>> metaMap(QueueType type) {
+            return type == QueueType.ORDER ? orderMeta : pickerMeta;
+        }
+
+        Map<String, Integer> capabilitiesMap(QueueType type) {
+            return type == QueueType.ORDER ? orderCapabilities : pickerCapabilities;
+        }
+
+        void add(QueueEntry entry) {
+            queue(entry.type()).add(entry.memberId(), entry.score());
+            metaMap(entry.type()).put(entry.memberId(), entry.metaFields());
+            if (entry.capabilities() != 0) {
+                capabilitiesMap(entry.type()).put(entry.memberId(), entry.capabilities());
+            } else {
+                capabilitiesMap(entry.type()).remove(entry.memberId());
+            }
+        }
+
+        boolean remove(QueueType type, String memberId) {
+            metaMap(type).remove(memberId);
+            capabilitiesMap(type).remove(memberId);
+            if (type == QueueType.ORDER) {
+                inflight.remove(memberId);
+                leases.remove(memberId);
+            }
+            return queue(type).remove(memberId);
+        }
+
+        List<QueueEntry> entries(String storeId) {
+            List<QueueEntry> entries = new ArrayList<>(orders.size() + pickers.size());
+            orders.forEach((id, score) -> entries.add(new QueueEntry(QueueType.ORDER, storeId, id, score,
+                orderMeta.getOrDefault(id, Map.of()), orderCapabilities.getOrDefault(id, 0))));
+            pickers.forEach((id, score) -> entries.add(new QueueEntry(QueueType.PICKER, storeId, id, score,
+                pickerMeta.getOrDefault(id, Map.of()), pickerCapabilities.getOrDefault(id, 0))));
+            return entries;
+        }
+
+        Map<Object, Object> meta(QueueType type, String memberId) {
+            Map<String, String> fields = metaMap(type).get(memberId);
+            return fields == null ? Map.of() : new LinkedHashMap<>(fields);
+        }
+
+        /**
+         * Pair up to {@code max} orders with pickers. Heads are popped directly unless a queued order
+         * requires capabilities; then the top {@code max + window} of each queue are taken off the heaps,
+         * each order in priority order gets the best eligible picker still unpaired, and the rest go back.
+         * A {@code leaseDeadline} of 0 means no leases.
+         */
+        List<Allocation> pop(String storeId, int max, int window, long leaseDeadline) {
+            int count = Math.min(max, Math.min(orders.size(), pickers.size()));
+            if (count <= 0) {
+                return List.of();
+            }
+            long timestamp = System.currentTimeMillis();
+            List<Allocation> allocations = new ArrayList<>(count);
+            if (orderCapabilities.isEmpty()) {
+                for (int i = 0; i < count; i++) {
+                    String orderId = orders.peek();
+                    lease(storeId, orderId, orders.score(orderId), pickers.peek(), leaseDeadline);
+                    allocations.add(new Allocation(orders.poll(), pickers.poll(), storeId, timestamp));
+                }
+            } else {
+                Window orderWindow = Window.take(orders, max + window);
+                Window pickerWindow = Window.take(pickers, max + window);
+                for (int i = 0; i < orderWindow.size() && allocations.size() < max; i++) {
+                    int required = orderCapabilities.getOrDefault(orderWindow.ids[i], 0);
+                    for (int j = 0; j < pickerWindow.size(); j++) {
+                        if (!pickerWindow.taken[j]
+                                && QueueEntry.eligible(required, pickerCapabilities.getOrDefault(pickerWindow.ids[j], 0))) {
+                            orderWindow.taken[i] = true;
+                            pickerWindow.taken[j] = true;
+                            lease(storeId, orderWindow.ids[i], orderWindow.scores[i], pickerWindow.ids[j],
+                                leaseDeadline);
+                            allocations.add(new Allocation(orderWindow.ids[i], pickerWindow.ids[j], storeId, timestamp));
+                            break;
+                        }
+                    }
+                }
+                orderWindow.restoreUntaken(orders);
+                pickerWindow.restoreUntaken(pickers);
+            }
+            dropAllocated(allocations);
+            return allocations;
+        }
+
+        /**
+         * Pop each pair whose members are both still queued and still eligible; skip the rest.
+         */
+        List<Allocation> popPairs(String storeId, List<MatchPair> pairs, long leaseDeadline) {
+            long timestamp = System.currentTimeMillis();
+            List<Allocation> allocations = new ArrayList<>(pairs.size());
+            for (MatchPair pair : pairs) {
+                if (orders.contains(pair.orderId()) && pickers.contains(pair.pickerId())
+                        && QueueEntry.eligible(orderCapabilities.getOrDefault(pair.orderId(), 0),
+                            pickerCapabilities.getOrDefault(pair.pickerId(), 0))) {
+                    lease(storeId, pair.orderId(), orders.score(pair.orderId()), pair.pickerId(), leaseDeadline);
+                    orders.remove(pair.orderId());
+                    pickers.remove(pair.pickerId());
+                    allocations.add(new Allocation(pair.orderId(), pair.pickerId(), storeId, timestamp));
+                }
+            }
+            dropAllocated(allocations);
+            return allocations;
+        }
+
+        /**
+         * Up to {@code limit} members from the head of a queue in priority order, left in place.
+         */
+        List<QueueEntry> head(QueueType type, String storeId, int limit) {
+            IndexedMinHeap queue = queue(type);
+            Window window = Window.take(queue, limit);
+            window.restoreUntaken(queue);
+            List<QueueEntry> entries = new ArrayList<>(window.size());
+            for (int i = 0; i < window.size(); i++) {
+                String id = window.ids[i];
+                entries.add(new QueueEntry(type, storeId, id, window.scores[i],
+                    metaMap(type).getOrDefault(id, Map.of()), capabilitiesMap(type).getOrDefault(id, 0)));
+            }
+            return entries;
+        }
+
+        /**
+         * End a lease if it is held for this picker.
+         */
+        boolean acknowledge(String orderId, String pickerId) {
+            Lease lease = leases.get(orderId);
+            if (lease == null || !lease.pickerId().equals(pickerId)) {
+                return false;
+            }
+            release(orderId);
+            return true;
+        }
+
+        /**
+         * Requeue up to {@code max} orders whose lease deadline has passed, earliest first; O(log n) each.
+         * An order queued again since it was allocated keeps its newer entry.
+         *
+         * @param released receives the orderId of every lease ended, requeued or not
+         * @return the entries put back
+         */
+        List<QueueEntry> reap(long now, int max, List<String> released) {
+            List<QueueEntry> requeued = new ArrayList<>();
+            for (int i = 0; i < max && !inflight.isEmpty() && inflight.score(inflight.peek()) <= now; i++) {
+                String orderId = inflight.poll();
+                released.add(orderId);
+                Lease lease = leases.remove(orderId);
+                if (lease != null && !orders.contains(lease.order().memberId())) {
+                    add(lease.order());
+                    requeued.add(lease.order());
+                }
+            }
+            return requeued;
+        }
+
+        List<JournalSnapshot.LeasedOrder> leasedOrders() {
+            List<JournalSnapshot.LeasedOrder> leased = new ArrayList<>(inflight.size());
+            inflight.forEach((orderId, deadline) -> {
+                Lease lease = leases.get(orderId);
+                leased.add(new JournalSnapshot.LeasedOrder(lease.order(), lease.pickerId(), (long) deadline));
+            });
+            return leased;
+        }
+
+        void restoreLease(JournalSnapshot.LeasedOrder leased) {
+            inflight.add(leased.order().memberId(), leased.deadline());
+            leases.put(leased.order().memberId(), new Lease(leased.order(), leased.pickerId()));
+        }
+
+        /**
+         * Replay an allocation. An order still queued is leased from its queue entry; one already gone
+         * was allocated before the snapshot, whose leases already hold it.
+         */
+        void allocated(String storeId, String orderId, String pickerId, long leaseDeadline) {
+            if (orders.contains(orderId)) {
+                lease(storeId, orderId, orders.score(orderId), pickerId, leaseDeadline);
+                orders.remove(orderId);
+                orderMeta.remove(orderId);
+                orderCapabilities.remove(orderId);
+            }
+            remove(QueueType.PICKER, pickerId);
+        }
+
+        void release(String orderId) {
+            leases.remove(orderId);
+            inflight.remove(orderId);
+        }
+
+        /**
+         * Hold an order about to be popped in flight with its queue entry; call before its metadata is dropped.
+         */
+        private void lease(String storeId, String orderId, double score, String pickerId, long deadline) {
+            if (deadline == 0) {
+                return;
+            }
+            inflight.add(orderId, deadline);
+            leases.put(orderId, new Lease(new QueueEntry(QueueType.ORDER, storeId, orderId, score,
+                orderMeta.getOrDefault(orderId, Map.of()), orderCapabilities.getOrDefault(orderId, 0)), pickerId));
+        }
+
+        private void dropAllocated(List<Allocation> allocations) {
+            for (Allocation allocation : allocations) {
+                orderMeta.remove(allocation.orderId());
+                pickerMeta.remove(allocation.pickerId());
+                orderCapabilities.remove(allocation.orderId());
+                pickerCapabilities.remove(allocation.pickerId());
+            }
+        }
+    }
+
+    /**
+     * An allocated order's queue entry, kept until the lease is acknowledged or reaped.
+     */
+    private record Lease(QueueEntry order, String pickerId) {}
+
+    /**
+     * Members taken off the head of a heap in priority order, marked as they are paired.
+     */
+    private record Window(String[] ids, double[] scores, boolean[] taken) {
+
+        static Window take(IndexedMinHeap heap, int limit) {
+            int size = Math.min(limit, heap.size());
+            Window window = new Window(new String[size], new double[size], new boolean[size]);
+            for (int i = 0; i < size; i++) {
+                window.scores[i] = heap.score(heap.peek());
+                window.ids[i] = heap.poll();
+            }
+            return window;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        void restoreUntaken(IndexedMinHeap heap) {
+            for (int i = 0; i < ids.length; i++) {
+                if (!taken[i]) {
+                    heap.add(ids[i], scores[i]);
+                }
+            }
+        }
+    }
+}
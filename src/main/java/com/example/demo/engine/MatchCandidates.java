@@ -0,0 +1,12 @@
+package com.example.demo.engine;
+
+import java.util.List;
+
+/**
+ * The head of a store's order and picker queues, in priority order, with score metadata and
+ * capability masks. Read without removing anything; a matching pass commits its pairs separately.
+ */
+public record MatchCandidates(
+    List<QueueEntry> orders,
+    List<QueueEntry> pickers
+) {}
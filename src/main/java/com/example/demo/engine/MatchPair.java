@@ -0,0 +1,9 @@
+package com.example.demo.engine;
+
+/**
+ * An order and the picker a matching pass assigned to it, not yet allocated.
+ */
+public record MatchPair(
+    String orderId,
+    String pickerId
+) {}
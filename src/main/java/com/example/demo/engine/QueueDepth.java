@@ -0,0 +1,10 @@
+package com.example.demo.engine;
+
+/**
+ * Order and picker queue sizes of one store.
+ */
+public record QueueDepth(
+    String storeId,
+    long orderQueueSize,
+    long pickerQueueSize
+) {}
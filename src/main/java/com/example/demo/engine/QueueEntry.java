@@ -0,0 +1,30 @@
+package com.example.demo.engine;
+
+import java.util.Map;
+
+/**
+ * A scored queue member with its score metadata, ready to be written by an {@link AllocationEngine}.
+ */
+public record QueueEntry(
+    QueueType type,
+    String storeId,
+    String memberId,       // orderId or pickerId
+    double score,          // Lower score = higher priority
+    Map<String, String> metaFields,
+    int capabilities       // Orders: bits a picker must hold; pickers: bits held. 0 = none
+) {
+
+    /**
+     * An entry without capability requirements or certifications.
+     */
+    public QueueEntry(QueueType type, String storeId, String memberId, double score, Map<String, String> metaFields) {
+        this(type, storeId, memberId, score, metaFields, 0);
+    }
+
+    /**
+     * Whether a picker holding {@code pickerCapabilities} may take an order requiring {@code requiredCapabilities}.
+     */
+    public static boolean eligible(int requiredCapabilities, int pickerCapabilities) {
+        return (requiredCapabilities & ~pickerCapabilities) == 0;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.engine;
+
+import com.example.demo.metrics.AllocationMetrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Near-cache of queue sizes and head members for the Redis engine (allocation.near-cache.enabled).
+ * A miss reads ZCARD and the head member from a {@link Source} that has Redis track the key, so Redis
+ * pushes an invalidation as soon as the key changes, whichever instance or script changed it.
+ * Entries are dropped on invalidation, and all of them when the source loses its tracking session,
+ * since invalidations may have been missed while it was down.
+ *
+ * <p>A read that races with an invalidation of its key is not cached: the read first reserves the
+ * entry with its own token and later only replaces that token, so an invalidation or reset landing
+ * while the read is in flight wins. A cached value lags a write by at most the delivery time of the
+ * write's invalidation.
+ */
+final class QueueSizeCache implements AutoCloseable {
+
+    /**
+     * Size and top member (null if empty) of one queue.
+     */
+    record QueueSnapshot(long size, String head) {}
+
+    /**
+     * Reads queue snapshots with invalidation tracking in place and reports invalidated keys and
+     * lost tracking sessions.
+     */
+    interface Source extends AutoCloseable {
+
+        QueueSnapshot read(String queueKey);
+
+        void subscribe(Consumer<String> invalidated, Runnable reset);
+
+        @Override
+        void close();
+    }
+
+    // A QueueSnapshot, or the token of a read in flight
+    private final Map<String, Object> entries = new ConcurrentHashMap<>();
+    private final AtomicLong sessions = new AtomicLong();
+    private final Source source;
+    private final AllocationMetrics metrics;
+
+    QueueSizeCache(Source source, AllocationMetrics metrics) {
+        this.source = source;
+        this.metrics = metrics;
+        source.subscribe(this::invalidate, this::reset);
+    }
+
+    QueueSnapshot get(String queueKey) {
+        if (entries.get(queueKey) instanceof QueueSnapshot snapshot) {
+            metrics.recordNearCache(true);
+            return snapshot;
+        }
+        metrics.recordNearCache(false);
+
+        long session = sessions.get();
+        Object token = new Object();
+        entries.put(queueKey, token);
+        QueueSnapshot snapshot;
+        try {
+            snapshot = source.read(queueKey);
+        } catch (RuntimeException e) {
+            entries.remove(queueKey, token);
+            throw e;
+        }
+        // A reset after the read may mean it ran untracked on a new connection
+        if (sessions.get() == session) {
+            entries.replace(queueKey, token, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drop one key; also called for writes made through this instance, ahead of Redis' own push.
+     */
+    void invalidate(String queueKey) {
+        if (entries.remove(queueKey) != null) {
+            metrics.recordNearCacheInvalidation();
+        }
+    }
+
+    /**
+     * Drop every key, for a lost tracking session or a flushed database.
+     */
+    void reset() {
+        sessions.incrementAndGet();
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() {
+        source.close();
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.demo.engine;
+
+/**
+ * The two per-store priority queues.
+ */
+public enum QueueType {
+    ORDER,
+    PICKER
+}
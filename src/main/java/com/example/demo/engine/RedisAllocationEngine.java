@@ -0,0 +1,645 @@
+package com.example.demo.engine;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.dto.AllocationHistoryEntry;
+import com.example.demo.dto.AllocationHistoryPage;
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import com.example.demo.service.PipelinedScriptExecutor;
+import com.example.demo.service.RedisKeys;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Redis-backed allocation engine: per-store ZSETs with atomic Lua scripts.
+ */
+@Component
+@ConditionalOnProperty(name = "allocation.engine", havingValue = "redis", matchIfMissing = true)
+public class RedisAllocationEngine implements AllocationEngine {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisScript<List> allocationScript;
+    private final RedisScript<List> batchAllocationScript;
+    private final RedisScript<List> enqueueAllocationScript;
+    private final RedisScript<List> queueStatusScript;
+    private final RedisScript<List> matchCandidatesScript;
+    private final RedisScript<List> allocatePairsScript;
+    private final RedisScript<List> reapLeasesScript;
+    private final RedisScript<Long> ackLeaseScript;
+    private final RedisScript<Long> registerLeasesScript;
+    private final RedisScript<Long> indexLeasesScript;
+    private final PipelinedScriptExecutor pipelinedScriptExecutor;
+    private final AllocationProperties properties;
+    private final AllocationMetrics metrics;
+    private final CommandBatcher commandBatcher;
+    private final QueueSizeCache queueSizeCache;
+    private final int maxBatchedCommands;
+    private final LeaseRegistrations leaseRegistrations = new LeaseRegistrations();
+
+    public RedisAllocationEngine(
+            RedisTemplate<String, Object> redisTemplate,
+            RedisScript<List> allocationScript,
+            RedisScript<List> batchAllocationScript,
+            RedisScript<List> enqueueAllocationScript,
+            RedisScript<List> queueStatusScript,
+            RedisScript<List> matchCandidatesScript,
+            RedisScript<List> allocatePairsScript,
+            RedisScript<List> reapLeasesScript,
+            RedisScript<Long> ackLeaseScript,
+            RedisScript<Long> registerLeasesScript,
+            RedisScript<Long> indexLeasesScript,
+            PipelinedScriptExecutor pipelinedScriptExecutor,
+            AllocationProperties properties,
+            AllocationMetrics metrics) {
+        this.redisTemplate = redisTemplate;
+        this.allocationScript = allocationScript;
+        this.batchAllocationScript = batchAllocationScript;
+        this.enqueueAllocationScript = enqueueAllocationScript;
+        this.queueStatusScript = queueStatusScript;
+        this.matchCandidatesScript = matchCandidatesScript;
+        this.allocatePairsScript = allocatePairsScript;
+        this.reapLeasesScript = reapLeasesScript;
+        this.ackLeaseScript = ackLeaseScript;
+        this.registerLeasesScript = registerLeasesScript;
+        this.indexLeasesScript = indexLeasesScript;
+        this.pipelinedScriptExecutor = pipelinedScriptExecutor;
+        this.properties = properties;
+        this.metrics = metrics;
+
+        AllocationProperties.Batching batching = properties.getBatching();
+        this.maxBatchedCommands = batching.getMaxCommands();
+        this.commandBatcher = batching.isEnabled()
+            ? new CommandBatcher(this::writePipeline, batching.getWindowMicros(), batching.getMaxCommands(),
+                batching.getMaxInFlight(), metrics)
+            : null;
+        this.queueSizeCache = properties.getNearCache().isEnabled()
+            ? new QueueSizeCache(new TrackingConnection(redisTemplate.getConnectionFactory()), metrics)
+            : null;
+    }
+
+    /**
+     * Pipeline one multi-member ZADD per queue followed by one multi-field HSET and one EXPIRE per
+     * store metadata hash and the capability masks, so an enqueue of any size costs a single round trip.
+     * With allocation.batching.enabled, small enqueues from concurrent callers are coalesced into shared
+     * pipelines by the {@link CommandBatcher}.
+     * With allocation.sweeper.enabled, one SADD to the dirty stores set rides in the same pipeline.
+     */
+    @Override
+    public void enqueue(List<QueueEntry> entries) {
+        if (commandBatcher == null || entries.size() * CommandBatcher.COMMANDS_PER_ENTRY >= maxBatchedCommands) {
+            writePipeline(entries);
+            return;
+        }
+        try {
+            commandBatcher.submit(entries).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (commandBatcher != null) {
+            commandBatcher.close();
+        }
+        if (queueSizeCache != null) {
+            queueSizeCache.close();
+        }
+    }
+
+    private void writePipeline(List<QueueEntry> entries) {
+        Map<String, Map<String, Double>> scoresByQueue = new LinkedHashMap<>();
+        Map<String, Map<String, String>> metaByKey = new LinkedHashMap<>();
+        Map<String, Map<String, String>> capabilitiesByKey = new LinkedHashMap<>();
+        Map<String, Set<Object>> clearedCapabilitiesByKey = new LinkedHashMap<>();
+        Set<Object> storeIds = new LinkedHashSet<>();
+        for (QueueEntry entry : entries) {
+            storeIds.add(entry.storeId());
+            String queueKey = RedisScriptSupport.queueKey(entry.type(), entry.storeId());
+            scoresByQueue.computeIfAbsent(queueKey, k -> new LinkedHashMap<>())
+                .put(entry.memberId(), entry.score());
+            String metaKey = RedisScriptSupport.metaKey(entry.type(), entry.storeId());
+            metaByKey.computeIfAbsent(metaKey, k -> new LinkedHashMap<>())
+                .put(entry.memberId(), RedisScriptSupport.packMeta(entry.type(), entry.metaFields()));
+            // 0 is stored as absent, so re-enqueueing without capabilities clears an earlier mask
+            String capabilitiesKey = RedisScriptSupport.capabilitiesKey(entry.type(), entry.storeId());
+            Map<String, String> masks = capabilitiesByKey.computeIfAbsent(capabilitiesKey, k -> new LinkedHashMap<>());
+            Set<Object> cleared = clearedCapabilitiesByKey.computeIfAbsent(capabilitiesKey, k -> new LinkedHashSet<>());
+            if (entry.capabilities() != 0) {
+                masks.put(entry.memberId(), String.valueOf(entry.capabilities()));
+                cleared.remove(entry.memberId());
+            } else {
+                masks.remove(entry.memberId());
+                cleared.add(entry.memberId());
+            }
+        }
+        Duration ttl = scoreMetaTtl();
+        boolean markDirty = properties.getSweeper().isEnabled() && !storeIds.isEmpty();
+
+        metrics.timeRedis("enqueue_pipeline", () -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                // Marked first: a store left marked by a failed write costs the sweeper one empty pass,
+                // queued work left unmarked would wait for the next enqueue
+                if (markDirty) {
+                    ops.opsForSet().add(RedisKeys.dirtyStores(), storeIds.toArray());
+                }
+                scoresByQueue.forEach((queueKey, scores) -> {
+                    Set<ZSetOperations.TypedTuple<Object>> tuples = new LinkedHashSet<>();
+                    scores.forEach((memberId, score) -> tuples.add(ZSetOperations.TypedTuple.of(memberId, score)));
+                    ops.opsForZSet().add(queueKey, tuples);
+                });
+                metaByKey.forEach((metaKey, packed) -> {
+                    ops.opsForHash().putAll(metaKey, packed);
+                    ops.expire(metaKey, ttl);
+                });
+                capabilitiesByKey.forEach((capabilitiesKey, masks) -> {
+                    if (!masks.isEmpty()) {
+                        ops.opsForHash().putAll(capabilitiesKey, masks);
+                    }
+                });
+                clearedCapabilitiesByKey.forEach((capabilitiesKey, memberIds) -> {
+                    if (!memberIds.isEmpty()) {
+                        ops.opsForHash().delete(capabilitiesKey, memberIds.toArray());
+                    }
+                });
+                return null;
+            }
+        }));
+        scoresByQueue.keySet().forEach(this::forgetCached);
+    }
+
+    @Override
+    public Optional<Allocation> enqueueAndAllocate(QueueEntry entry) {
+        List<String> keys = RedisScriptSupport.enqueueAllocationKeys(entry);
+        List<Object> args = RedisScriptSupport.enqueueAllocationArgs(
+            entry, scoreMetaTtl(), properties.getHistory().getMaxLen(), properties.getEligibilityWindow(),
+            leaseMs());
+
+        registerLeases(entry.storeId());
+        // Ahead of the script, like the enqueue pipeline's SADD, so a failed call never leaves work unmarked
+        if (properties.getSweeper().isEnabled()) {
+            markDirty(List.of(entry.storeId()));
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object> result = metrics.timeRedis("enqueue_allocate_script",
+            () -> redisTemplate.execute(enqueueAllocationScript, keys, args.toArray()));
+        forgetCachedStore(entry.storeId());
+
+        return RedisScriptSupport.toAllocation(entry.storeId(), result);
+    }
+
+    /**
+     * ZREM and HDEL of the member's metadata and capability fields in one pipeline; for an order,
+     * also of its in-flight entry and lease.
+     */
+    @Override
+    public void remove(QueueType type, String storeId, String memberId) {
+        String queueKey = RedisScriptSupport.queueKey(type, storeId);
+        String metaKey = RedisScriptSupport.metaKey(type, storeId);
+        String capabilitiesKey = RedisScriptSupport.capabilitiesKey(type, storeId);
+        metrics.timeRedis("remove_pipeline", () -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.opsForZSet().remove(queueKey, memberId);
+                ops.opsForHash().delete(metaKey, memberId);
+                ops.opsForHash().delete(capabilitiesKey, memberId);
+                if (type == QueueType.ORDER) {
+                    ops.opsForZSet().remove(RedisKeys.orderInflight(storeId), memberId);
+                    ops.opsForHash().delete(RedisKeys.orderLeases(storeId), memberId);
+                }
+                return null;
+            }
+        }));
+        forgetCached(queueKey);
+    }
+
+    @Override
+    public Optional<String> peek(QueueType type, String storeId) {
+        String queueKey = RedisScriptSupport.queueKey(type, storeId);
+        if (queueSizeCache != null) {
+            return Optional.ofNullable(queueSizeCache.get(queueKey).head());
+        }
+        Set<Object> result = metrics.timeRedis("zrange", () -> redisTemplate.opsForZSet().range(queueKey, 0, 0));
+        if (result == null || result.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(result.iterator().next().toString());
+    }
+
+    @Override
+    public long size(QueueType type, String storeId) {
+        String queueKey = RedisScriptSupport.queueKey(type, storeId);
+        if (queueSizeCache != null) {
+            return queueSizeCache.get(queueKey).size();
+        }
+        Long size = metrics.timeRedis("zcard", () -> redisTemplate.opsForZSet().size(queueKey));
+        return size != null ? size : 0;
+    }
+
+    /**
+     * Queue sizes, top members and their score metadata in one script call.
+     */
+    @Override
+    public QueueStatusResponse status(String storeId) {
+        PipelinedScriptExecutor.ScriptCall call = statusCall(storeId);
+
+        @SuppressWarnings("unchecked")
+        List<Object> result = metrics.timeRedis("status_script",
+            () -> redisTemplate.execute(queueStatusScript, call.keys(), call.args().toArray()));
+
+        return RedisScriptSupport.toQueueStatus(storeId, result);
+    }
+
+    /**
+     * Runs the status script for all stores in one pipeline.
+     */
+    @Override
+    public List<QueueStatusResponse> statuses(List<String> storeIds) {
+        List<PipelinedScriptExecutor.ScriptCall> calls = storeIds.stream().map(this::statusCall).toList();
+        List<Object> results = metrics.timeRedis("status_pipeline",
+            () -> pipelinedScriptExecutor.executeAll(queueStatusScript, calls));
+
+        List<QueueStatusResponse> statuses = new ArrayList<>(storeIds.size());
+        for (int i = 0; i < storeIds.size(); i++) {
+            @SuppressWarnings("unchecked")
+            List<Object> result = (List<Object>) results.get(i);
+            statuses.add(RedisScriptSupport.toQueueStatus(storeIds.get(i), result));
+        }
+        return statuses;
+    }
+
+    /**
+     * ZCARD of both queues of every store in one pipeline.
+     */
+    @Override
+    public List<QueueDepth> depths(List<String> storeIds) {
+        SessionCallback<Object> zcards = new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String storeId : storeIds) {
+                    ops.opsForZSet().zCard(RedisKeys.orderQueue(storeId));
+                    ops.opsForZSet().zCard(RedisKeys.pickerQueue(storeId));
+                }
+                return null;
+            }
+        };
+        List<Object> sizes = metrics.timeRedis("depth_pipeline", () -> redisTemplate.executePipelined(zcards));
+
+        List<QueueDepth> depths = new ArrayList<>(storeIds.size());
+        for (int i = 0; i < storeIds.size(); i++) {
+            depths.add(new QueueDepth(storeIds.get(i), toLong(sizes.get(2 * i)), toLong(sizes.get(2 * i + 1))));
+        }
+        return depths;
+    }
+
+    @Override
+    public Map<Object, Object> scoreMeta(QueueType type, String storeId, String memberId) {
+        String metaKey = RedisScriptSupport.metaKey(type, storeId);
+        Object packed = metrics.timeRedis("hget", () -> redisTemplate.opsForHash().get(metaKey, memberId));
+        return RedisScriptSupport.unpackMeta(type, packed);
+    }
+
+    @Override
+    public Optional<Allocation> allocate(String storeId) {
+        List<String> keys = RedisScriptSupport.allocationKeys(storeId);
+        List<String> args = RedisScriptSupport.allocationArgs(
+            properties.getHistory().getMaxLen(), properties.getEligibilityWindow(), leaseMs());
+
+        registerLeases(storeId);
+
+        @SuppressWarnings("unchecked")
+        List<Object> result = metrics.timeRedis("allocate_script",
+            () -> redisTemplate.execute(allocationScript, keys, args.toArray()));
+        forgetCachedStore(storeId);
+
+        return RedisScriptSupport.toAllocation(storeId, result);
+    }
+
+    @Override
+    public List<Allocation> allocateBatch(String storeId, int max) {
+        List<String> keys = RedisScriptSupport.allocationKeys(storeId);
+        List<String> args = RedisScriptSupport.batchAllocationArgs(
+            max, properties.getHistory().getMaxLen(), properties.getEligibilityWindow(), leaseMs());
+
+        registerLeases(storeId);
+
+        @SuppressWarnings("unchecked")
+        List<Object> result = metrics.timeRedis("batch_allocate_script",
+            () -> redisTemplate.execute(batchAllocationScript, keys, args.toArray()));
+        forgetCachedStore(storeId);
+
+        return RedisScriptSupport.toAllocations(storeId, result);
+    }
+
+    /**
+     * One batch_allocate.lua call per store in a single EVALSHA pipeline.
+     */
+    @Override
+    public Map<String, List<Allocation>> allocateBatches(List<String> storeIds, int max) {
+        List<String> args = RedisScriptSupport.batchAllocationArgs(
+            max, properties.getHistory().getMaxLen(), properties.getEligibilityWindow(), leaseMs());
+        registerLeases(storeIds);
+        List<PipelinedScriptExecutor.ScriptCall> calls = new ArrayList<>(storeIds.size());
+        for (String storeId : storeIds) {
+            calls.add(new PipelinedScriptExecutor.ScriptCall(RedisScriptSupport.allocationKeys(storeId), args));
+        }
+
+        List<Object> results = metrics.timeRedis("batch_allocate_pipeline",
+            () -> pipelinedScriptExecutor.executeAll(batchAllocationScript, calls));
+
+        Map<String, List<Allocation>> allocations = new LinkedHashMap<>();
+        for (int i = 0; i < storeIds.size(); i++) {
+            String storeId = storeIds.get(i);
+            forgetCachedStore(storeId);
+            @SuppressWarnings("unchecked")
+            List<Object> result = (List<Object>) results.get(i);
+            allocations.put(storeId, RedisScriptSupport.toAllocations(storeId, result));
+        }
+        return allocations;
+    }
+
+    @Override
+    public MatchCandidates matchCandidates(String storeId, int window) {
+        List<String> keys = RedisScriptSupport.matchCandidateKeys(storeId);
+        List<String> args = RedisScriptSupport.matchCandidateArgs(window);
+
+        @SuppressWarnings("unchecked")
+        List<Object> result = metrics.timeRedis("match_candidates_script",
+            () -> redisTemplate.execute(matchCandidatesScript, keys, args.toArray()));
+
+        return RedisScriptSupport.toMatchCandidates(storeId, result);
+    }
+
+    @Override
+    public List<Allocation> allocatePairs(String storeId, List<MatchPair> pairs) {
+        if (pairs.isEmpty()) {
+            return List.of();
+        }
+        List<String> keys = RedisScriptSupport.allocationKeys(storeId);
+        List<String> args = RedisScriptSupport.allocatePairsArgs(
+            properties.getHistory().getMaxLen(), leaseMs(), pairs);
+
+        registerLeases(storeId);
+
+        @SuppressWarnings("unchecked")
+        List<Object> result = metrics.timeRedis("allocate_pairs_script",
+            () -> redisTemplate.execute(allocatePairsScript, keys, args.toArray()));
+        forgetCachedStore(storeId);
+
+        return RedisScriptSupport.toAllocations(storeId, result);
+    }
+
+    @Override
+    public boolean acknowledgeLease(String storeId, String orderId, String pickerId) {
+        Long acknowledged = metrics.timeRedis("ack_lease_script", () -> redisTemplate.execute(
+            ackLeaseScript, RedisScriptSupport.ackLeaseKeys(storeId), orderId, pickerId));
+        return acknowledged != null && acknowledged == 1;
+    }
+
+    /**
+     * Only stores due on the lease index are visited: one ZRANGEBYSCORE for them, the reap script for each
+     * in one pipeline, then one index_leases.lua call that sets when each is due next or drops it. A pass
+     * costs O(log n) per due store and per expired lease, however many stores have ever held a lease.
+     */
+    @Override
+    public Map<String, List<String>> reapExpiredLeases(int maxPerStore) {
+        long now = System.currentTimeMillis();
+        Set<Object> due = metrics.timeRedis("zrangebyscore",
+            () -> redisTemplate.opsForZSet().rangeByScore(RedisKeys.leaseDue(), Double.NEGATIVE_INFINITY, now));
+        if (due == null || due.isEmpty()) {
+            return Map.of();
+        }
+        List<String> storeIds = due.stream().map(Object::toString).toList();
+        List<String> args = RedisScriptSupport.reapLeaseArgs(maxPerStore, scoreMetaTtl());
+        List<PipelinedScriptExecutor.ScriptCall> calls = storeIds.stream()
+            .map(storeId -> new PipelinedScriptExecutor.ScriptCall(RedisScriptSupport.reapLeaseKeys(storeId), args))
+            .toList();
+        List<Object> results = metrics.timeRedis("reap_leases_pipeline",
+            () -> pipelinedScriptExecutor.executeAll(reapLeasesScript, calls));
+
+        Map<String, List<String>> reaped = new LinkedHashMap<>();
+        List<String> visits = new ArrayList<>(2 + 3 * storeIds.size());
+        visits.add(String.valueOf(leaseMs()));
+        visits.add(String.valueOf(LeaseRegistrations.quietMs(leaseMs())));
+        for (int i = 0; i < storeIds.size(); i++) {
+            // {now, next deadline or -1, {orderIds}}
+            List<?> result = (List<?>) results.get(i);
+            visits.add(storeIds.get(i));
+            visits.add(result.get(0).toString());
+            visits.add(result.get(1).toString());
+            if (result.get(2) instanceof List<?> orderIds && !orderIds.isEmpty()) {
+                reaped.put(storeIds.get(i), orderIds.stream().map(Object::toString).toList());
+                forgetCached(RedisKeys.orderQueue(storeIds.get(i)));
+            }
+        }
+        metrics.timeRedis("index_leases_script", () -> redisTemplate.execute(
+            indexLeasesScript, RedisScriptSupport.leaseIndexKeys(), visits.toArray()));
+        return reaped;
+    }
+
+    @Override
+    public void markDirty(Collection<String> storeIds) {
+        if (storeIds.isEmpty()) {
+            return;
+        }
+        metrics.timeRedis("sadd", () -> redisTemplate.opsForSet().add(RedisKeys.dirtyStores(), storeIds.toArray()));
+    }
+
+    /**
+     * SPOP with a count: one round trip however many stores are popped.
+     */
+    @Override
+    public List<String> popDirtyStores(int count) {
+        List<Object> popped = metrics.timeRedis("spop",
+            () -> redisTemplate.opsForSet().pop(RedisKeys.dirtyStores(), count));
+        if (popped == null) {
+            return List.of();
+        }
+        return popped.stream().map(Object::toString).toList();
+    }
+
+    /**
+     * One page of XREVRANGE. The cursor entry is fetched again as the inclusive upper bound and
+     * dropped, which works on servers without exclusive stream ranges.
+     */
+    @Override
+    public AllocationHistoryPage history(String storeId, String cursor, int limit) {
+        String key = RedisKeys.allocationHistory(storeId);
+        Range<String> range = cursor == null
+            ? Range.unbounded()
+            : Range.of(Range.Bound.unbounded(), Range.Bound.inclusive(cursor));
+        int fetch = cursor == null ? limit : limit + 1;
+
+        List<MapRecord<String, Object, Object>> records = metrics.timeRedis("xrevrange",
+            () -> redisTemplate.opsForStream().reverseRange(key, range, Limit.limit().count(fetch)));
+
+        List<AllocationHistoryEntry> entries = new ArrayList<>(limit);
+        if (records != null) {
+            for (MapRecord<String, Object, Object> record : records) {
+                if (entries.size() < limit && !record.getId().getValue().equals(cursor)) {
+                    entries.add(toHistoryEntry(record));
+                }
+            }
+        }
+        String nextCursor = entries.size() == limit ? entries.get(limit - 1).id() : null;
+        return new AllocationHistoryPage(storeId, entries, nextCursor);
+    }
+
+    @Override
+    public boolean createHistoryGroup(String storeId, String group, boolean fromStart) {
+        byte[] key = RedisKeys.allocationHistory(storeId).getBytes(StandardCharsets.UTF_8);
+        ReadOffset offset = fromStart ? ReadOffset.from("0") : ReadOffset.latest();
+        try {
+            // MKSTREAM, so downstream systems can subscribe before the first allocation
+            metrics.timeRedis("xgroup_create", () -> redisTemplate.execute((RedisCallback<String>) connection ->
+                connection.streamCommands().xGroupCreate(key, group, offset, true)));
+            return true;
+        } catch (DataAccessException e) {
+            if (isBusyGroup(e)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<AllocationHistoryEntry> readHistoryGroup(String storeId, String group, String consumer, int count) {
+        List<MapRecord<String, Object, Object>> records = metrics.timeRedis("xreadgroup",
+            () -> redisTemplate.opsForStream().read(
+                Consumer.from(group, consumer),
+                StreamReadOptions.empty().count(count),
+                StreamOffset.create(RedisKeys.allocationHistory(storeId), ReadOffset.lastConsumed())));
+
+        if (records == null) {
+            return List.of();
+        }
+        return records.stream().map(RedisAllocationEngine::toHistoryEntry).toList();
+    }
+
+    @Override
+    public long acknowledgeHistory(String storeId, String group, List<String> entryIds) {
+        if (entryIds.isEmpty()) {
+            return 0;
+        }
+        Long acknowledged = metrics.timeRedis("xack", () -> redisTemplate.opsForStream()
+            .acknowledge(RedisKeys.allocationHistory(storeId), group, entryIds.toArray(String[]::new)));
+        return acknowledged != null ? acknowledged : 0;
+    }
+
+    private static AllocationHistoryEntry toHistoryEntry(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> fields = record.getValue();
+        return new AllocationHistoryEntry(
+            record.getId().getValue(),
+            String.valueOf(fields.get("orderId")),
+            String.valueOf(fields.get("pickerId")),
+            Double.parseDouble(String.valueOf(fields.get("orderScore"))),
+            Double.parseDouble(String.valueOf(fields.get("pickerScore"))),
+            Long.parseLong(String.valueOf(fields.get("timestamp"))));
+    }
+
+    private static boolean isBusyGroup(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("BUSYGROUP")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes through this instance drop their cached queue sizes right away rather than waiting for
+     * the invalidation push, so a caller reads its own writes.
+     */
+    private void forgetCached(String queueKey) {
+        if (queueSizeCache != null) {
+            queueSizeCache.invalidate(queueKey);
+        }
+    }
+
+    private void forgetCachedStore(String storeId) {
+        forgetCached(RedisKeys.orderQueue(storeId));
+        forgetCached(RedisKeys.pickerQueue(storeId));
+    }
+
+    /**
+     * Put a store on the reaper's lease index before a leased allocation, so no lease can exist in a store
+     * the reaper will not visit. A registration is reused for one lease duration; see {@link LeaseRegistrations}.
+     */
+    private void registerLeases(String storeId) {
+        registerLeases(List.of(storeId));
+    }
+
+    /**
+     * {@link #registerLeases(String)} for many stores with one register_leases.lua call.
+     */
+    private void registerLeases(List<String> storeIds) {
+        if (!properties.getLease().isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<String> unregistered = leaseRegistrations.unregistered(storeIds, now, leaseMs());
+        if (!unregistered.isEmpty()) {
+            metrics.timeRedis("register_leases_script", () -> redisTemplate.execute(registerLeasesScript,
+                RedisScriptSupport.leaseIndexKeys(), RedisScriptSupport.registerLeaseArgs(leaseMs(), unregistered)
+                    .toArray()));
+            leaseRegistrations.registered(unregistered, now);
+        }
+    }
+
+    private long leaseMs() {
+        return properties.getLease().getTtlMs();
+    }
+
+    private Duration scoreMetaTtl() {
+        return Duration.ofHours(properties.getScoreMetaTtlHours());
+    }
+
+    private PipelinedScriptExecutor.ScriptCall statusCall(String storeId) {
+        return new PipelinedScriptExecutor.ScriptCall(
+            RedisScriptSupport.statusKeys(storeId), List.of());
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.demo.engine;
+
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.model.Allocation;
+import com.example.demo.service.RedisKeys;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keys, arguments and reply parsing for the allocation Lua scripts, shared by the blocking
+ * {@link RedisAllocationEngine} and the reactive services.
+ */
+public final class RedisScriptSupport {
+
+    // Fixed layout of a packed score metadata value, in field order; see packMeta
+    private static final List<String> ORDER_META_FIELDS =
+        List.of("oatDelta", "initialPriority", "skuScore", "finalScore");
+    private static final List<String> PICKER_META_FIELDS =
+        List.of("skuCompletedScore", "orderCompletedScore", "finalScore");
+    private static final String META_SEPARATOR = ",";
+
+    private RedisScriptSupport() {
+    }
+
+    public static String queueKey(QueueType type, String storeId) {
+        return type == QueueType.ORDER ? RedisKeys.orderQueue(storeId) : RedisKeys.pickerQueue(storeId);
+    }
+
+    /**
+     * Per-store score metadata hash of a queue; its fields are member ids.
+     */
+    public static String metaKey(QueueType type, String storeId) {
+        return type == QueueType.ORDER ? RedisKeys.orderScoreMeta(storeId) : RedisKeys.pickerScoreMeta(storeId);
+    }
+
+    /**
+     * Per-store capability hash of a queue; holds only non-zero masks.
+     */
+    public static String capabilitiesKey(QueueType type, String storeId) {
+        return type == QueueType.ORDER
+            ? RedisKeys.orderCapabilities(storeId)
+            : RedisKeys.pickerCapabilities(storeId);
+    }
+
+    /**
+     * KEYS of allocate.lua and batch_allocate.lua.
+     */
+    public static List<String> allocationKeys(String storeId) {
+        return List.of(
+            RedisKeys.orderQueue(storeId),
+            RedisKeys.pickerQueue(storeId),
+            RedisKeys.orderScoreMeta(storeId),
+            RedisKeys.pickerScoreMeta(storeId),
+            RedisKeys.orderCapabilities(storeId),
+            RedisKeys.pickerCapabilities(storeId),
+            RedisKeys.allocationHistory(storeId),
+            RedisKeys.orderInflight(storeId),
+            RedisKeys.orderLeases(storeId));
+    }
+
+    /**
+     * ARGV of allocate.lua.
+     */
+    public static List<String> allocationArgs(long historyMaxLen, int eligibilityWindow, long leaseMs) {
+        return List.of(String.valueOf(historyMaxLen), String.valueOf(eligibilityWindow), String.valueOf(leaseMs));
+    }
+
+    /**
+     * ARGV of batch_allocate.lua.
+     */
+    public static List<String> batchAllocationArgs(int max, long historyMaxLen, int eligibilityWindow, long leaseMs) {
+        return List.of(String.valueOf(max), String.valueOf(historyMaxLen), String.valueOf(eligibilityWindow),
+            String.valueOf(leaseMs));
+    }
+
+    /**
+     * KEYS of match_candidates.lua: the queue, metadata and capability keys of {@link #allocationKeys}.
+     */
+    public static List<String> matchCandidateKeys(String storeId) {
+        return allocationKeys(storeId).subList(0, 6);
+    }
+
+    /**
+     * ARGV of match_candidates.lua.
+     */
+    public static List<String> matchCandidateArgs(int window) {
+        return List.of(String.valueOf(window));
+    }
+
+    /**
+     * ARGV of allocate_pairs.lua; its KEYS are {@link #allocationKeys}.
+     */
+    public static List<String> allocatePairsArgs(long historyMaxLen, long leaseMs, List<MatchPair> pairs) {
+        List<String> args = new ArrayList<>(2 + pairs.size() * 2);
+        args.add(String.valueOf(historyMaxLen));
+        args.add(String.valueOf(leaseMs));
+        for (MatchPair pair : pairs) {
+            args.add(pair.orderId());
+            args.add(pair.pickerId());
+        }
+        return args;
+    }
+
+    /**
+     * KEYS of enqueue_allocate.lua.
+     */
+    public static List<String> enqueueAllocationKeys(QueueEntry entry) {
+        return allocationKeys(entry.storeId());
+    }
+
+    /**
+     * ARGV of enqueue_allocate.lua.
+     */
+    public static List<Object> enqueueAllocationArgs(
+            QueueEntry entry, Duration scoreMetaTtl, long historyMaxLen, int eligibilityWindow, long leaseMs) {
+        return List.of(
+            entry.type() == QueueType.ORDER ? "order" : "picker",
+            entry.memberId(),
+            String.valueOf(entry.score()),
+            String.valueOf(scoreMetaTtl.toSeconds()),
+            String.valueOf(historyMaxLen),
+            packMeta(entry.type(), entry.metaFields()),
+            String.valueOf(entry.capabilities()),
+            String.valueOf(eligibilityWindow),
+            String.valueOf(leaseMs));
+    }
+
+    /**
+     * KEYS of reap_leases.lua.
+     */
+    public static List<String> reapLeaseKeys(String storeId) {
+        return List.of(
+            RedisKeys.orderQueue(storeId),
+            RedisKeys.orderScoreMeta(storeId),
+            RedisKeys.orderCapabilities(storeId),
+            RedisKeys.orderInflight(storeId),
+            RedisKeys.orderLeases(storeId));
+    }
+
+    /**
+     * ARGV of reap_leases.lua.
+     */
+    public static List<String> reapLeaseArgs(int max, Duration scoreMetaTtl) {
+        return List.of(String.valueOf(max), String.valueOf(scoreMetaTtl.toSeconds()));
+    }
+
+    /**
+     * KEYS of register_leases.lua and index_leases.lua: the reaper's global index, on one slot.
+     */
+    public static List<String> leaseIndexKeys() {
+        return List.of(RedisKeys.leaseDue(), RedisKeys.leaseRegistrations());
+    }
+
+    /**
+     * ARGV of register_leases.lua.
+     */
+    public static List<String> registerLeaseArgs(long leaseMs, Collection<String> storeIds) {
+        List<String> args = new ArrayList<>(1 + storeIds.size());
+        args.add(String.valueOf(leaseMs));
+        args.addAll(storeIds);
+        return args;
+    }
+
+    /**
+     * KEYS of ack_lease.lua.
+     */
+    public static List<String> ackLeaseKeys(String storeId) {
+        return List.of(RedisKeys.orderInflight(storeId), RedisKeys.orderLeases(storeId));
+    }
+
+    /**
+     * KEYS of status.lua.
+     */
+    public static List<String> statusKeys(String storeId) {
+        return List.of(
+            RedisKeys.orderQueue(storeId),
+            RedisKeys.pickerQueue(storeId),
+            RedisKeys.orderScoreMeta(storeId),
+            RedisKeys.pickerScoreMeta(storeId));
+    }
+
+    /**
+     * Pack score metadata into one hash value: the values of the queue type's fixed field layout joined
+     * by commas, empty where a field is missing. Field names are not stored, and fields outside the
+     * layout are dropped.
+     */
+    public static String packMeta(QueueType type, Map<String, String> metaFields) {
+        List<String> layout = metaLayout(type);
+        StringBuilder packed = new StringBuilder(layout.size() * 20);
+        for (int i = 0; i < layout.size(); i++) {
+            if (i > 0) {
+                packed.append(META_SEPARATOR);
+            }
+            String value = metaFields.get(layout.get(i));
+            if (value != null) {
+                packed.append(value);
+            }
+        }
+        return packed.toString();
+    }
+
+    /**
+     * Unpack a value written by {@link #packMeta}; an absent or empty value gives an empty map.
+     */
+    public static Map<Object, Object> unpackMeta(QueueType type, Object packed) {
+        if (packed == null || packed.toString().isEmpty()) {
+            return Map.of();
+        }
+        List<String> layout = metaLayout(type);
+        String[] values = packed.toString().split(META_SEPARATOR, -1);
+        Map<Object, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(layout.size(), values.length); i++) {
+            if (!values[i].isEmpty()) {
+                map.put(layout.get(i), values[i]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Parse a {orderId, pickerId} reply; empty if nothing was allocated.
+     */
+    public static Optional<Allocation> toAllocation(String storeId, List<Object> result) {
+        if (result == null || result.isEmpty() || result.get(0) == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Allocation(
+            result.get(0).toString(), result.get(1).toString(), storeId, System.currentTimeMillis()));
+    }
+
+    /**
+     * Parse a flat {orderId1, pickerId1, orderId2, pickerId2, ...} reply.
+     */
+    public static List<Allocation> toAllocations(String storeId, List<Object> result) {
+        if (result == null || result.isEmpty()) {
+            return List.of();
+        }
+
+        long timestamp = System.currentTimeMillis();
+        List<Allocation> allocations = new ArrayList<>(result.size() / 2);
+        for (int i = 0; i + 1 < result.size(); i += 2) {
+            allocations.add(new Allocation(result.get(i).toString(), result.get(i + 1).toString(), storeId, timestamp));
+        }
+        return allocations;
+    }
+
+    /**
+     * Parse a match_candidates.lua reply: the order count, then id, score, packed metadata and
+     * capability mask per member, orders first.
+     */
+    public static MatchCandidates toMatchCandidates(String storeId, List<Object> result) {
+        if (result == null || result.isEmpty()) {
+            return new MatchCandidates(List.of(), List.of());
+        }
+        int orderCount = ((Number) result.get(0)).intValue();
+        List<QueueEntry> orders = new ArrayList<>(orderCount);
+        List<QueueEntry> pickers = new ArrayList<>((result.size() - 1) / 4 - orderCount);
+        for (int i = 1; i + 3 < result.size(); i += 4) {
+            if (orders.size() < orderCount) {
+                orders.add(candidate(QueueType.ORDER, storeId, result, i));
+            } else {
+                pickers.add(candidate(QueueType.PICKER, storeId, result, i));
+            }
+        }
+        return new MatchCandidates(orders, pickers);
+    }
+
+    /**
+     * Parse a status.lua reply.
+     */
+    public static QueueStatusResponse toQueueStatus(String storeId, List<Object> result) {
+        if (result == null || result.size() < 6) {
+            return new QueueStatusResponse(storeId, 0, 0, false, null, null, Map.of(), Map.of());
+        }
+
+        long orderQueueSize = ((Number) result.get(0)).longValue();
+        long pickerQueueSize = ((Number) result.get(1)).longValue();
+
+        return new QueueStatusResponse(
+            storeId,
+            orderQueueSize,
+            pickerQueueSize,
+            orderQueueSize > 0 && pickerQueueSize > 0,
+            memberId(result.get(2)),
+            memberId(result.get(3)),
+            unpackMeta(QueueType.ORDER, result.get(4)),
+            unpackMeta(QueueType.PICKER, result.get(5))
+        );
+    }
+
+    private static QueueEntry candidate(QueueType type, String storeId, List<Object> result, int offset) {
+        Map<String, String> metaFields = new LinkedHashMap<>();
+        unpackMeta(type, result.get(offset + 2))
+            .forEach((field, value) -> metaFields.put(field.toString(), value.toString()));
+        return new QueueEntry(type, storeId, result.get(offset).toString(),
+            Double.parseDouble(result.get(offset + 1).toString()), metaFields,
+            Integer.parseInt(result.get(offset + 3).toString()));
+    }
+
+    private static List<String> metaLayout(QueueType type) {
+        return type == QueueType.ORDER ? ORDER_META_FIELDS : PICKER_META_FIELDS;
+    }
+
+    /**
+     * Top member id from a status reply; the script sends an empty string when the queue is empty.
+     */
+    private static String memberId(Object value) {
+        return value == null || value.toString().isEmpty() ? null : value.toString();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.demo.engine;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Dedicated RESP3 connection with CLIENT TRACKING on, the {@link QueueSizeCache.Source} of the Redis
+ * engine. Redis tracks every key read on it and pushes an {@code invalidate} message on the same
+ * connection when one changes. Tracking is per connection, so after a reconnect it is switched on
+ * again before the next read, and the cache is reset because pushes may have been lost meanwhile.
+ * Needs standalone Redis 6 or later; a cluster client tracks per node and is not supported.
+ */
+final class TrackingConnection implements QueueSizeCache.Source {
+
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(2);
+
+    private final RedisClient client;
+    private volatile StatefulRedisConnection<String, String> connection;
+    // Tracking is on while trackedEpoch equals the number of disconnects seen
+    private final AtomicLong disconnects = new AtomicLong();
+    private long trackedEpoch = -1;
+    private volatile Consumer<String> invalidated = key -> { };
+    private volatile Runnable reset = () -> { };
+
+    TrackingConnection(RedisConnectionFactory connectionFactory) {
+        AbstractRedisClient nativeClient = connectionFactory instanceof LettuceConnectionFactory lettuce
+            ? lettuce.getNativeClient()
+            : null;
+        if (!(nativeClient instanceof RedisClient redisClient)) {
+            throw new IllegalStateException(
+                "allocation.near-cache.enabled requires a standalone Redis connection through Lettuce");
+        }
+        this.client = redisClient;
+        client.addListener(new RedisConnectionStateListener() {
+            @Override
+            public void onRedisConnected(RedisChannelHandler<?, ?> channel, SocketAddress socketAddress) {
+            }
+
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> channel) {
+                if (channel == connection) {
+                    disconnects.incrementAndGet();
+                    reset.run();
+                }
+            }
+
+            @Override
+            public void onRedisExceptionCaught(RedisChannelHandler<?, ?> channel, Throwable cause) {
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(Consumer<String> invalidated, Runnable reset) {
+        this.invalidated = invalidated;
+        this.reset = reset;
+    }
+
+    /**
+     * ZCARD and the head member in one round trip; both reads register the key for tracking.
+     */
+    @Override
+    public QueueSizeCache.QueueSnapshot read(String queueKey) {
+        RedisAsyncCommands<String, String> commands = commands();
+        RedisFuture<Long> size = commands.zcard(queueKey);
+        RedisFuture<List<String>> head = commands.zrange(queueKey, 0, 0);
+        if (!LettuceFutures.awaitAll(READ_TIMEOUT, size, head)) {
+            throw new IllegalStateException("Timed out reading queue size of " + queueKey);
+        }
+        List<String> members = head.toCompletableFuture().join();
+        return new QueueSizeCache.QueueSnapshot(
+            size.toCompletableFuture().join(), members.isEmpty() ? null : members.get(0));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private synchronized RedisAsyncCommands<String, String> commands() {
+        if (connection == null) {
+            connection = client.connect(StringCodec.UTF8);
+            connection.addListener(this::onPush);
+        }
+        long epoch = disconnects.get();
+        if (trackedEpoch != epoch) {
+            connection.sync().clientTracking(TrackingArgs.Builder.enabled());
+            trackedEpoch = epoch;
+        }
+        return connection.async();
+    }
+
+    /**
+     * {@code invalidate} carries the changed keys, or null when the database was flushed.
+     */
+    private void onPush(PushMessage message) {
+        if (!"invalidate".equals(message.getType())) {
+            return;
+        }
+        List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+        if (content.size() > 1 && content.get(1) instanceof List<?> keys) {
+            keys.forEach(key -> invalidated.accept(key.toString()));
+        } else {
+            reset.run();
+        }
+    }
+}
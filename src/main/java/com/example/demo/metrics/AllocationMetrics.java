@@ -0,0 +1,228 @@
+package com.example.demo.metrics;
+
+import com.example.demo.engine.QueueType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Timers and counters for the allocation path. Timers publish percentile histograms so latency
+ * percentiles can be aggregated across instances in Prometheus. Also records which stores have been
+ * seen, for {@link QueueDepthGauges}.
+ */
+@Component
+public class AllocationMetrics {
+
+    private final MeterRegistry registry;
+    private final Timer allocateTimer;
+    private final Timer enqueueOrderTimer;
+    private final Timer enqueuePickerTimer;
+    private final Timer matchSolveTimer;
+    private final Counter allocationHits;
+    private final Counter allocationMisses;
+    private final Counter nearCacheHits;
+    private final Counter nearCacheMisses;
+    private final Counter nearCacheInvalidations;
+    private final Counter leasesAcknowledged;
+    private final Counter leasesExpired;
+    private final Counter sweptStores;
+    private final Counter auditQueued;
+    private final Counter auditDropped;
+    private final Counter auditFailed;
+    private final Counter pushSent;
+    private final Counter pushFailed;
+    private final DistributionSummary batchCallers;
+    private final DistributionSummary batchCommands;
+    private final Map<String, Timer> redisTimers = new ConcurrentHashMap<>();
+    private final Set<String> knownStores = ConcurrentHashMap.newKeySet();
+
+    public AllocationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.allocateTimer = histogramTimer("allocation.allocate", "Time to attempt one allocation").register(registry);
+        this.enqueueOrderTimer = histogramTimer("allocation.enqueue", "Time to score and enqueue one member")
+            .tag("type", "order")
+            .register(registry);
+        this.enqueuePickerTimer = histogramTimer("allocation.enqueue", "Time to score and enqueue one member")
+            .tag("type", "picker")
+            .register(registry);
+        this.matchSolveTimer = histogramTimer("allocation.matching.solve", "Time to solve one matching pass")
+            .register(registry);
+        this.allocationHits = Counter.builder("allocation.attempts")
+            .description("Allocation attempts by outcome")
+            .tag("result", "hit")
+            .register(registry);
+        this.allocationMisses = Counter.builder("allocation.attempts")
+            .description("Allocation attempts by outcome")
+            .tag("result", "miss")
+            .register(registry);
+        this.nearCacheHits = Counter.builder("allocation.nearcache.requests")
+            .description("Queue size and head reads by near-cache outcome; each hit is a Redis call saved")
+            .tag("result", "hit")
+            .register(registry);
+        this.nearCacheMisses = Counter.builder("allocation.nearcache.requests")
+            .description("Queue size and head reads by near-cache outcome; each hit is a Redis call saved")
+            .tag("result", "miss")
+            .register(registry);
+        this.nearCacheInvalidations = Counter.builder("allocation.nearcache.invalidations")
+            .description("Cached queue entries dropped because the queue changed")
+            .register(registry);
+        this.leasesAcknowledged = Counter.builder("allocation.leases")
+            .description("Order leases ended, by how")
+            .tag("result", "acknowledged")
+            .register(registry);
+        this.leasesExpired = Counter.builder("allocation.leases")
+            .description("Order leases ended, by how")
+            .tag("result", "expired")
+            .register(registry);
+        this.sweptStores = Counter.builder("allocation.sweeper.stores")
+            .description("Dirty stores popped and allocated by the sweeper")
+            .register(registry);
+        this.auditQueued = Counter.builder("allocation.audit.events")
+            .description("Sampled audit events by outcome")
+            .tag("result", "queued")
+            .register(registry);
+        this.auditDropped = Counter.builder("allocation.audit.events")
+            .description("Sampled audit events by outcome")
+            .tag("result", "dropped")
+            .register(registry);
+        this.auditFailed = Counter.builder("allocation.audit.events")
+            .description("Sampled audit events by outcome")
+            .tag("result", "failed")
+            .register(registry);
+        this.pushSent = Counter.builder("allocation.push.deliveries")
+            .description("Allocations pushed to subscribed picker devices, by outcome")
+            .tag("result", "sent")
+            .register(registry);
+        this.pushFailed = Counter.builder("allocation.push.deliveries")
+            .description("Allocations pushed to subscribed picker devices, by outcome")
+            .tag("result", "failed")
+            .register(registry);
+        this.batchCallers = DistributionSummary.builder("allocation.redis.batch.callers")
+            .description("Enqueue calls coalesced into one pipeline")
+            .publishPercentileHistogram()
+            .register(registry);
+        this.batchCommands = DistributionSummary.builder("allocation.redis.batch.commands")
+            .description("Commands sent in one coalesced pipeline")
+            .baseUnit("commands")
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    public <T> T timeAllocate(Supplier<T> call) {
+        return allocateTimer.record(call);
+    }
+
+    public void timeEnqueue(QueueType type, Runnable call) {
+        (type == QueueType.ORDER ? enqueueOrderTimer : enqueuePickerTimer).record(call);
+    }
+
+    /**
+     * Time the assignment solve of one optimal matching pass, excluding the reads and the commit.
+     */
+    public <T> T timeMatchSolve(Supplier<T> call) {
+        return matchSolveTimer.record(call);
+    }
+
+    /**
+     * Time one Redis round trip: a command, a pipeline or a script execution.
+     */
+    public <T> T timeRedis(String operation, Supplier<T> call) {
+        return redisTimers.computeIfAbsent(operation, op ->
+            histogramTimer("allocation.redis", "Time of one Redis round trip")
+                .tag("operation", op)
+                .register(registry)
+        ).record(call);
+    }
+
+    public void recordAllocations(int allocated) {
+        if (allocated > 0) {
+            allocationHits.increment(allocated);
+        } else {
+            allocationMisses.increment();
+        }
+    }
+
+    public void recordNearCache(boolean hit) {
+        (hit ? nearCacheHits : nearCacheMisses).increment();
+    }
+
+    public void recordNearCacheInvalidation() {
+        nearCacheInvalidations.increment();
+    }
+
+    public void recordLeaseAcknowledged() {
+        leasesAcknowledged.increment();
+    }
+
+    /**
+     * Record orders requeued by the lease reaper; each is an assignment that was never confirmed.
+     */
+    public void recordLeasesExpired(int requeued) {
+        leasesExpired.increment(requeued);
+    }
+
+    public void recordSweptStores(int stores) {
+        sweptStores.increment(stores);
+    }
+
+    /**
+     * Record one sampled audit event; dropped when the audit ring buffer was full.
+     */
+    public void recordAuditEvent(boolean queued) {
+        (queued ? auditQueued : auditDropped).increment();
+    }
+
+    /**
+     * Record queued audit events the writer could not write to the audit file.
+     */
+    public void recordAuditWriteFailures(int events) {
+        auditFailed.increment(events);
+    }
+
+    public void recordPushDelivery(boolean sent, int allocations) {
+        (sent ? pushSent : pushFailed).increment(allocations);
+    }
+
+    /**
+     * Register the gauge of open push subscriptions on this instance.
+     */
+    public void gaugePushSubscribers(AtomicInteger subscribers) {
+        Gauge.builder("allocation.push.subscribers", subscribers, AtomicInteger::get)
+            .description("Open allocation push subscriptions on this instance")
+            .register(registry);
+    }
+
+    /**
+     * Record one coalesced enqueue pipeline; callers per pipeline is the round-trip saving.
+     */
+    public void recordCommandBatch(int callers, int commands) {
+        batchCallers.record(callers);
+        batchCommands.record(commands);
+    }
+
+    /**
+     * Note a store so its queue depth gauges get registered.
+     */
+    public void trackStore(String storeId) {
+        knownStores.add(storeId);
+    }
+
+    Set<String> knownStores() {
+        return knownStores;
+    }
+
+    private static Timer.Builder histogramTimer(String name, String description) {
+        return Timer.builder(name)
+            .description(description)
+            .publishPercentileHistogram();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.metrics;
+
+import com.example.demo.engine.AllocationEngine;
+import com.example.demo.engine.QueueDepth;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-store order and picker queue depth gauges. Scrapes read cached counts; the counts are refreshed
+ * for all known stores in one engine call (one pipelined round trip for Redis) every
+ * allocation.metrics.depth-refresh-ms, so scrape cost does not grow with the store count.
+ */
+@Component
+public class QueueDepthGauges {
+
+    private static final Logger log = LoggerFactory.getLogger(QueueDepthGauges.class);
+
+    private final MeterRegistry registry;
+    private final AllocationEngine allocationEngine;
+    private final AllocationMetrics allocationMetrics;
+    private final Map<String, StoreDepth> depths = new ConcurrentHashMap<>();
+
+    public QueueDepthGauges(MeterRegistry registry, AllocationEngine allocationEngine, AllocationMetrics allocationMetrics) {
+        this.registry = registry;
+        this.allocationEngine = allocationEngine;
+        this.allocationMetrics = allocationMetrics;
+    }
+
+    @Scheduled(fixedDelayString = "${allocation.metrics.depth-refresh-ms:5000}")
+    public void refresh() {
+        List<String> storeIds = new ArrayList<>(allocationMetrics.knownStores());
+        if (storeIds.isEmpty()) {
+            return;
+        }
+        try {
+            for (QueueDepth depth : allocationEngine.depths(storeIds)) {
+                StoreDepth gauges = depths.computeIfAbsent(depth.storeId(), this::register);
+                gauges.orders.set(depth.orderQueueSize());
+                gauges.pickers.set(depth.pickerQueueSize());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Queue depth refresh failed for {} stores", storeIds.size(), e);
+        }
+    }
+
+    private StoreDepth register(String storeId) {
+        StoreDepth depth = new StoreDepth();
+        Gauge.builder("allocation.queue.depth", depth.orders, AtomicLong::get)
+            .description("Queued members per store, refreshed periodically")
+            .tag("store", storeId)
+            .tag("type", "order")
+            .register(registry);
+        Gauge.builder("allocation.queue.depth", depth.pickers, AtomicLong::get)
+            .description("Queued members per store, refreshed periodically")
+            .tag("store", storeId)
+            .tag("type", "picker")
+            .register(registry);
+        return depth;
+    }
+
+    private static final class StoreDepth {
+        private final AtomicLong orders = new AtomicLong();
+        private final AtomicLong pickers = new AtomicLong();
+    }
+}
@@ -10,6 +10,15 @@ public record Order(
     String storeId,
     Instant oat,           // Optimal Allocation Time
     int priorityOrder,     // Business priority (lower = higher priority)
-    int skuCount           // Number of SKUs in the order
-) {}
+    int skuCount,          // Number of SKUs in the order
+    int requiredCapabilities  // Bitmask a picker must hold all of (0 = any picker)
+) {
+
+    /**
+     * An order any picker may take.
+     */
+    public Order(String orderId, String storeId, Instant oat, int priorityOrder, int skuCount) {
+        this(orderId, storeId, oat, priorityOrder, skuCount, 0);
+    }
+}
 
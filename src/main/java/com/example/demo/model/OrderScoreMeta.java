@@ -2,7 +2,7 @@ package com.example.demo.model;
 
 /**
  * Score metadata for debugging and ops visibility.
- * Stored in Redis HASH with 24h TTL.
+ * Stored packed, one field per order in a per-store Redis HASH, until the order is popped or dequeued.
  */
 public record OrderScoreMeta(
     double oatDelta,
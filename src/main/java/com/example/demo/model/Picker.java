@@ -7,6 +7,15 @@ public record Picker(
     String pickerId,
     String storeId,
     int skuCompleted,      // Total SKUs picked
-    int orderCompleted     // Total orders completed
-) {}
+    int orderCompleted,    // Total orders completed
+    int capabilities       // Bitmask of certifications, e.g. chilled zone, age-restricted items
+) {
+
+    /**
+     * A picker without certifications.
+     */
+    public Picker(String pickerId, String storeId, int skuCompleted, int orderCompleted) {
+        this(pickerId, storeId, skuCompleted, orderCompleted, 0);
+    }
+}
 
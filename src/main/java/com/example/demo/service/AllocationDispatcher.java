@@ -0,0 +1,120 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.model.Allocation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Asynchronous per-store allocation dispatcher.
+ * Enqueue paths only mark a store dirty; at most one worker per store runs at a time and coalesces
+ * every trigger that arrives while it is running into the next batched allocation pass. A failed pass
+ * keeps the store dirty and is retried after an exponential backoff.
+ * Enabled with allocation.dispatcher.enabled=true.
+ */
+@Component
+public class AllocationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationDispatcher.class);
+
+    private final AllocationService allocationService;
+    private final AllocationProperties properties;
+    private final List<AllocationListener> listeners;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, StoreState> stores = new ConcurrentHashMap<>();
+
+    public AllocationDispatcher(
+            AllocationService allocationService,
+            AllocationProperties properties,
+            List<AllocationListener> listeners) {
+        this.allocationService = allocationService;
+        this.properties = properties;
+        this.listeners = listeners;
+    }
+
+    public boolean isEnabled() {
+        return properties.getDispatcher().isEnabled();
+    }
+
+    /**
+     * Mark a store as having new work. Starts a worker for the store unless one is already running,
+     * in which case the running worker picks the trigger up before it exits.
+     */
+    public void markDirty(String storeId) {
+        StoreState state = stores.computeIfAbsent(storeId, id -> new StoreState());
+        state.dirty.set(true);
+        if (state.running.compareAndSet(false, true)) {
+            executor.execute(() -> drain(storeId, state));
+        }
+    }
+
+    private void drain(String storeId, StoreState state) {
+        int batchSize = properties.getMaxBatchSize();
+        try {
+            while (state.dirty.getAndSet(false)) {
+                List<Allocation> allocations;
+                do {
+                    allocations = allocationService.tryAllocateBatch(storeId, batchSize);
+                    AllocationListeners.publish(listeners, storeId, allocations);
+                } while (allocations.size() == batchSize);
+            }
+            state.failures = 0;
+        } catch (RuntimeException ex) {
+            // The trigger this pass consumed is not done; the store stays claimed, so triggers arriving
+            // during the backoff are coalesced into the retry
+            state.dirty.set(true);
+            long backoffMs = backoffMs(++state.failures);
+            log.error("Dispatched allocation failed for store {}, retrying in {} ms", storeId, backoffMs, ex);
+            executor.execute(() -> retry(storeId, state, backoffMs));
+            return;
+        }
+        state.running.set(false);
+
+        // A trigger may have landed between the last dirty check and clearing the running flag
+        if (state.dirty.get() && state.running.compareAndSet(false, true)) {
+            executor.execute(() -> drain(storeId, state));
+        }
+    }
+
+    private void retry(String storeId, StoreState state, long backoffMs) {
+        try {
+            Thread.sleep(backoffMs);
+        } catch (InterruptedException e) {
+            // Shutting down; the store is left dirty and unclaimed
+            state.running.set(false);
+            return;
+        }
+        drain(storeId, state);
+    }
+
+    private long backoffMs(int failures) {
+        AllocationProperties.Dispatcher dispatcher = properties.getDispatcher();
+        long backoff = dispatcher.getRetryInitialBackoffMs() << Math.min(failures - 1, 20);
+        return Math.min(backoff, dispatcher.getRetryMaxBackoffMs());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class StoreState {
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private final AtomicBoolean running = new AtomicBoolean();
+        // Consecutive failed passes; only touched by the worker holding running
+        private int failures;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Allocation;
+
+import java.util.List;
+
+/**
+ * Sink for allocations made off the request thread by the {@link AllocationDispatcher} and the
+ * {@link DirtyStoreSweeper}.
+ * Implementations are Spring beans; every registered listener receives every batch.
+ */
+public interface AllocationListener {
+
+    /**
+     * Called with the allocations made by one batched allocation pass for a store.
+     * Invoked on a dispatcher or sweeper worker thread; implementations must not block for long.
+     */
+    void onAllocations(String storeId, List<Allocation> allocations);
+}
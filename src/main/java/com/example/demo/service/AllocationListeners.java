@@ -0,0 +1,33 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Allocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Hands a batch made off the request thread to every {@link AllocationListener}, shared by the
+ * {@link AllocationDispatcher} and the {@link DirtyStoreSweeper}. A failing listener is logged and
+ * does not keep the batch from the others.
+ */
+final class AllocationListeners {
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationListeners.class);
+
+    private AllocationListeners() {
+    }
+
+    static void publish(List<AllocationListener> listeners, String storeId, List<Allocation> allocations) {
+        if (allocations.isEmpty()) {
+            return;
+        }
+        for (AllocationListener listener : listeners) {
+            try {
+                listener.onAllocations(storeId, allocations);
+            } catch (RuntimeException ex) {
+                log.error("Allocation listener {} failed for store {}", listener.getClass().getSimpleName(), storeId, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pushes allocations to the picker devices subscribed for them, keyed by store and picker, so handhelds
+ * need not poll the status endpoints. {@link AllocationService} publishes every allocation it makes; with a
+ * {@link Relay} (Redis pub/sub for the Redis engine) each batch goes through it and every instance delivers
+ * to its own subscribers, otherwise it is delivered in process.
+ * Publishing and sending run on virtual threads, so neither the request thread nor the relay waits
+ * for a slow device. Relay publishes, and the sends to each subscriber, go through queues drained by one
+ * task at a time, so a picker gets its batches in publish order. A subscriber whose send fails is dropped;
+ * the device reconnects. Enabled with allocation.push.enabled=true.
+ */
+@Service
+public class AllocationPushService {
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationPushService.class);
+
+    /**
+     * One open subscription, e.g. an SSE connection.
+     */
+    public interface Subscriber {
+        /**
+         * Send allocations made for this picker, in allocation order.
+         */
+        void send(List<Allocation> allocations) throws IOException;
+
+        /**
+         * Send a keep-alive, so idle connections are not closed by proxies and dead ones are detected.
+         */
+        void heartbeat() throws IOException;
+    }
+
+    /**
+     * Carries published allocations to the push service of every instance, this one included.
+     */
+    public interface Relay {
+        void publish(List<Allocation> allocations);
+
+        void subscribe(Consumer<List<Allocation>> delivery);
+    }
+
+    private record PickerKey(String storeId, String pickerId) {
+    }
+
+    private final AllocationProperties properties;
+    private final AllocationMetrics allocationMetrics;
+    private final Relay relay;
+    private final Map<PickerKey, Map<Subscriber, SerialQueue>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService executor =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("allocation-push-", 0).factory());
+    private final SerialQueue relayQueue = new SerialQueue();
+
+    public AllocationPushService(
+            AllocationProperties properties,
+            AllocationMetrics allocationMetrics,
+            Optional<Relay> relay) {
+        this.properties = properties;
+        this.allocationMetrics = allocationMetrics;
+        this.relay = properties.getPush().isEnabled() ? relay.orElse(null) : null;
+        allocationMetrics.gaugePushSubscribers(subscriberCount);
+        if (this.relay != null) {
+            this.relay.subscribe(this::deliver);
+        }
+    }
+
+    /**
+     * Register a subscriber for a picker's allocations. A picker may hold several.
+     *
+     * @return false if allocation.push.max-subscribers are already open on this instance
+     */
+    public boolean subscribe(String storeId, String pickerId, Subscriber subscriber) {
+        if (subscriberCount.incrementAndGet() > properties.getPush().getMaxSubscribers()) {
+            subscriberCount.decrementAndGet();
+            return false;
+        }
+        // Inside compute, so a concurrent unsubscribe cannot drop the map this subscriber is added to
+        subscribers.compute(new PickerKey(storeId, pickerId), (key, outboxes) -> {
+            Map<Subscriber, SerialQueue> pickerOutboxes = outboxes != null ? outboxes : new ConcurrentHashMap<>();
+            if (pickerOutboxes.putIfAbsent(subscriber, new SerialQueue()) != null) {
+                subscriberCount.decrementAndGet();
+            }
+            return pickerOutboxes;
+        });
+        return true;
+    }
+
+    /**
+     * Remove a subscriber; a no-op if it is already gone.
+     */
+    public void unsubscribe(String storeId, String pickerId, Subscriber subscriber) {
+        subscribers.computeIfPresent(new PickerKey(storeId, pickerId), (key, outboxes) -> {
+            SerialQueue outbox = outboxes.remove(subscriber);
+            if (outbox != null) {
+                outbox.closed = true;
+                subscriberCount.decrementAndGet();
+            }
+            return outboxes.isEmpty() ? null : outboxes;
+        });
+    }
+
+    /**
+     * Publish allocations to their pickers' subscribers on every instance. Returns at once.
+     */
+    public void publish(List<Allocation> allocations) {
+        if (!properties.getPush().isEnabled() || allocations.isEmpty()) {
+            return;
+        }
+        if (relay == null) {
+            deliver(allocations);
+            return;
+        }
+        relayQueue.submit(() -> {
+            try {
+                relay.publish(allocations);
+            } catch (RuntimeException e) {
+                log.warn("Failed to publish {} allocations for push", allocations.size(), e);
+            }
+        });
+    }
+
+    /**
+     * Hand allocations to the outboxes of the subscribers on this instance, one send per subscriber.
+     */
+    void deliver(List<Allocation> allocations) {
+        Map<PickerKey, List<Allocation>> byPicker = new LinkedHashMap<>();
+        for (Allocation allocation : allocations) {
+            PickerKey key = new PickerKey(allocation.storeId(), allocation.pickerId());
+            if (subscribers.containsKey(key)) {
+                byPicker.computeIfAbsent(key, k -> new ArrayList<>()).add(allocation);
+            }
+        }
+        byPicker.forEach((key, pickerAllocations) -> {
+            subscribers.getOrDefault(key, Map.of()).forEach((subscriber, outbox) ->
+                outbox.submit(() -> send(key, subscriber, pickerAllocations)));
+        });
+    }
+
+    @Scheduled(fixedDelayString = "#{@allocationProperties.push.heartbeatIntervalMs}")
+    public void heartbeat() {
+        subscribers.forEach((key, outboxes) -> {
+            outboxes.forEach((subscriber, outbox) -> outbox.submit(() -> {
+                try {
+                    subscriber.heartbeat();
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Heartbeat failed for picker {} in store {}", key.pickerId(), key.storeId(), e);
+                    unsubscribe(key.storeId(), key.pickerId(), subscriber);
+                }
+            }));
+        });
+    }
+
+    int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void send(PickerKey key, Subscriber subscriber, List<Allocation> allocations) {
+        try {
+            subscriber.send(allocations);
+            allocationMetrics.recordPushDelivery(true, allocations.size());
+        } catch (IOException | RuntimeException e) {
+            allocationMetrics.recordPushDelivery(false, allocations.size());
+            log.debug("Push failed for picker {} in store {}", key.pickerId(), key.storeId(), e);
+            unsubscribe(key.storeId(), key.pickerId(), subscriber);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tasks run in submission order on the push executor, one at a time. A subscriber's outbox is closed when
+     * it is dropped, and whatever is still queued for it is discarded.
+     */
+    private final class SerialQueue {
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        void submit(Runnable task) {
+            pending.add(task);
+            if (draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                Runnable task;
+                while ((task = pending.poll()) != null) {
+                    if (!closed) {
+                        task.run();
+                    }
+                }
+                draining.set(false);
+                // A task queued between the last poll and clearing the flag saw the queue still draining
+            } while (!pending.isEmpty() && draining.compareAndSet(false, true));
+        }
+    }
+}
@@ -1,80 +1,291 @@
 package com.example.demo.service;
 
+import com.example.demo.audit.AllocationAuditLog;
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.dto.AllocationHistoryEntry;
+import com.example.demo.dto.AllocationHistoryPage;
+import com.example.demo.engine.AllocationEngine;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.metrics.AllocationMetrics;
 import com.example.demo.model.Allocation;
+import com.example.demo.model.Order;
+import com.example.demo.model.OrderScoreMeta;
+import com.example.demo.model.Picker;
+import com.example.demo.model.PickerScoreMeta;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
- * Service for allocating orders to pickers atomically using Redis Lua script.
+ * Service for allocating orders to pickers atomically.
+ * With the Redis engine each allocation is a single Lua script call.
+ * Allocations and fused enqueues go to the {@link AllocationAuditLog}; per-event log lines are DEBUG only.
+ * Every allocation is also published to the {@link AllocationPushService} for subscribed picker devices.
  */
 @Service
 public class AllocationService {
 
     private static final Logger log = LoggerFactory.getLogger(AllocationService.class);
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final RedisScript<List> allocationScript;
+    private final AllocationEngine allocationEngine;
     private final QueueService queueService;
+    private final ScoreCalculationService scoreCalculationService;
+    private final AllocationProperties properties;
+    private final AllocationMetrics allocationMetrics;
+    private final MatchingService matchingService;
+    private final AllocationAuditLog auditLog;
+    private final AllocationPushService allocationPushService;
 
     public AllocationService(
-            RedisTemplate<String, Object> redisTemplate,
-            RedisScript<List> allocationScript,
-            QueueService queueService) {
-        this.redisTemplate = redisTemplate;
-        this.allocationScript = allocationScript;
+            AllocationEngine allocationEngine,
+            QueueService queueService,
+            ScoreCalculationService scoreCalculationService,
+            AllocationProperties properties,
+            AllocationMetrics allocationMetrics,
+            MatchingService matchingService,
+            AllocationAuditLog auditLog,
+            AllocationPushService allocationPushService) {
+        this.allocationEngine = allocationEngine;
         this.queueService = queueService;
+        this.scoreCalculationService = scoreCalculationService;
+        this.properties = properties;
+        this.allocationMetrics = allocationMetrics;
+        this.matchingService = matchingService;
+        this.auditLog = auditLog;
+        this.allocationPushService = allocationPushService;
     }
 
     /**
      * Try to allocate one order to one picker atomically.
-     * This is the core allocation method that uses a Lua script for atomicity.
+     * This is the core allocation method; the emptiness check is part of the atomic pop.
      *
      * @param storeId The store to allocate in
      * @return Optional containing the allocation if successful, empty otherwise
      */
     public Optional<Allocation> tryAllocate(String storeId) {
-        String orderQueueKey = RedisKeys.orderQueue(storeId);
-        String pickerQueueKey = RedisKeys.pickerQueue(storeId);
+        return logAllocation(storeId, allocationMetrics.timeAllocate(() -> allocationEngine.allocate(storeId)));
+    }
 
-        // Execute atomic allocation using Lua script
-        List<String> keys = List.of(orderQueueKey, pickerQueueKey);
+    /**
+     * Try to allocate up to {@code max} orders to pickers in a single atomic call.
+     * Pairs are formed in priority order: the best order goes to the best picker, and so on.
+     * With allocation.matching.mode=optimal, pairs come from min-cost matching passes instead.
+     *
+     * @param storeId The store to allocate in
+     * @param max Maximum number of pairs to allocate (capped by allocation.max-batch-size)
+     * @return The allocations made, in priority order; empty if either queue is empty
+     */
+    public List<Allocation> tryAllocateBatch(String storeId, int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be at least 1");
+        }
+        int limit = Math.min(max, properties.getMaxBatchSize());
 
-        @SuppressWarnings("unchecked")
-        List<Object> result = redisTemplate.execute(allocationScript, keys);
+        List<Allocation> allocations = optimalMatching()
+            ? matchingService.allocateMatched(storeId, limit)
+            : allocationEngine.allocateBatch(storeId, limit);
+        allocationMetrics.recordAllocations(allocations.size());
+        auditLog.allocated(allocations);
+        allocationPushService.publish(allocations);
 
-        if (result == null || result.isEmpty() || result.get(0) == null) {
+        if (allocations.isEmpty()) {
             log.debug("No allocation possible for store {} - queues may be empty", storeId);
-            return Optional.empty();
+        } else {
+            log.debug("Allocated {} orders to pickers in store {}", allocations.size(), storeId);
         }
 
-        String orderId = result.get(0).toString();
-        String pickerId = result.get(1).toString();
-        long timestamp = System.currentTimeMillis();
-
-        Allocation allocation = new Allocation(orderId, pickerId, storeId, timestamp);
+        return allocations;
+    }
 
-        log.info("Allocated order {} to picker {} in store {}", orderId, pickerId, storeId);
+    /**
+     * {@link #tryAllocateBatch} for many stores in one call: with the Redis engine, one pipelined
+     * script batch for all of them rather than a round trip per store.
+     *
+     * @param storeIds The stores to allocate in; duplicates are allocated once
+     * @param max Maximum number of pairs per store (capped by allocation.max-batch-size)
+     * @return The allocations by store, in request order; a store with none maps to an empty list
+     */
+    public Map<String, List<Allocation>> tryAllocateStores(List<String> storeIds, int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be at least 1");
+        }
+        List<String> distinct = List.copyOf(new LinkedHashSet<>(storeIds));
+        Map<String, List<Allocation>> allocations = allocateByStore(distinct, Math.min(max, properties.getMaxBatchSize()));
 
-        return Optional.of(allocation);
+        int allocated = 0;
+        for (List<Allocation> storeAllocations : allocations.values()) {
+            allocationMetrics.recordAllocations(storeAllocations.size());
+            auditLog.allocated(storeAllocations);
+            allocationPushService.publish(storeAllocations);
+            allocated += storeAllocations.size();
+        }
+        log.debug("Allocated {} orders to pickers across {} stores", allocated, distinct.size());
+        return allocations;
     }
 
     /**
      * Trigger allocation attempt for a store.
      * Called when a new order is added or a picker becomes available.
+     * The emptiness check is part of the allocation script, so this costs a single round trip.
      */
     public Optional<Allocation> triggerAllocation(String storeId) {
-        if (!queueService.canAllocate(storeId)) {
-            log.debug("Cannot allocate for store {} - queues not ready", storeId);
-            return Optional.empty();
+        return tryAllocate(storeId);
+    }
+
+    /**
+     * Add an order to its queue, store its score metadata and attempt allocation
+     * in a single atomic call.
+     */
+    public Optional<Allocation> enqueueOrderAndAllocate(Order order) {
+        OrderScoreMeta meta = scoreCalculationService.getOrderScoreMeta(order);
+        QueueEntry entry = QueueService.orderEntry(order, meta);
+        Optional<Allocation> allocation = allocationEngine.enqueueAndAllocate(entry);
+        allocationMetrics.trackStore(order.storeId());
+
+        auditLog.enqueued(entry);
+        log.debug("Order {} enqueued to store {} with score {}", order.orderId(), order.storeId(), meta.finalScore());
+        return logAllocation(order.storeId(), allocation);
+    }
+
+    /**
+     * Add a picker to its queue, store its score metadata and attempt allocation
+     * in a single atomic call.
+     */
+    public Optional<Allocation> enqueuePickerAndAllocate(Picker picker) {
+        PickerScoreMeta meta = scoreCalculationService.getPickerScoreMeta(picker);
+        QueueEntry entry = QueueService.pickerEntry(picker, meta);
+        Optional<Allocation> allocation = allocationEngine.enqueueAndAllocate(entry);
+        allocationMetrics.trackStore(picker.storeId());
+
+        auditLog.enqueued(entry);
+        log.debug("Picker {} enqueued to store {} with score {}", picker.pickerId(), picker.storeId(), meta.finalScore());
+        return logAllocation(picker.storeId(), allocation);
+    }
+
+    /**
+     * Bulk-enqueue orders, then run a single batched allocation pass per affected store.
+     */
+    public List<Allocation> enqueueOrdersAndAllocate(List<Order> orders) {
+        return allocateStores(queueService.enqueueOrders(orders));
+    }
+
+    /**
+     * Bulk-enqueue pickers, then run a single batched allocation pass per affected store.
+     */
+    public List<Allocation> enqueuePickersAndAllocate(List<Picker> pickers) {
+        return allocateStores(queueService.enqueuePickers(pickers));
+    }
+
+    /**
+     * Confirm that an allocated order reached its picker, ending its lease (allocation.lease.ttl-ms).
+     *
+     * @return false if the order holds no lease for that picker: already acknowledged, or expired and requeued
+     */
+    public boolean acknowledgeLease(String storeId, String orderId, String pickerId) {
+        boolean acknowledged = allocationEngine.acknowledgeLease(storeId, orderId, pickerId);
+        if (acknowledged) {
+            allocationMetrics.recordLeaseAcknowledged();
+        } else {
+            log.debug("No lease on order {} for picker {} in store {}", orderId, pickerId, storeId);
         }
+        return acknowledged;
+    }
 
-        return tryAllocate(storeId);
+    /**
+     * Get a page of a store's allocation history, newest first.
+     *
+     * @param cursor nextCursor of the previous page, or null for the newest entries
+     * @param limit Page size (capped by allocation.history.max-page-size)
+     */
+    public AllocationHistoryPage getHistory(String storeId, String cursor, int limit) {
+        return allocationEngine.history(storeId, cursor, historyLimit(limit));
+    }
+
+    /**
+     * Create a consumer group on a store's allocation history for a downstream system.
+     *
+     * @return false if the group already exists
+     */
+    public boolean createHistoryGroup(String storeId, String group, boolean fromStart) {
+        boolean created = allocationEngine.createHistoryGroup(storeId, group, fromStart);
+        if (created) {
+            log.info("Created allocation history group {} for store {}", group, storeId);
+        }
+        return created;
+    }
+
+    /**
+     * Read allocations not yet delivered to a consumer group. They stay pending until acknowledged.
+     */
+    public List<AllocationHistoryEntry> readHistory(String storeId, String group, String consumer, int count) {
+        return allocationEngine.readHistoryGroup(storeId, group, consumer, historyLimit(count));
+    }
+
+    /**
+     * Acknowledge history entries processed by a consumer group.
+     */
+    public long acknowledgeHistory(String storeId, String group, List<String> entryIds) {
+        if (entryIds.size() > properties.getHistory().getMaxPageSize()) {
+            throw new IllegalArgumentException(
+                "Cannot acknowledge more than " + properties.getHistory().getMaxPageSize() + " entries at once");
+        }
+        return allocationEngine.acknowledgeHistory(storeId, group, entryIds);
     }
-}
 
+    private int historyLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        return Math.min(limit, properties.getHistory().getMaxPageSize());
+    }
+
+    /**
+     * One batched allocation pass per store, for bulk ingest.
+     */
+    private List<Allocation> allocateStores(Collection<String> storeIds) {
+        List<Allocation> allocations = new ArrayList<>();
+        tryAllocateStores(List.copyOf(storeIds), properties.getMaxBatchSize()).values().forEach(allocations::addAll);
+        return allocations;
+    }
+
+    /**
+     * Greedy batches go to the engine in one call. Optimal matching solves the stores in parallel.
+     */
+    private Map<String, List<Allocation>> allocateByStore(List<String> storeIds, int limit) {
+        if (!optimalMatching()) {
+            return allocationEngine.allocateBatches(storeIds, limit);
+        }
+        Map<String, List<Allocation>> allocations = new LinkedHashMap<>();
+        storeIds.forEach(storeId -> allocations.put(storeId, new ArrayList<>()));
+        for (Allocation allocation : matchingService.allocateMatched(storeIds, limit)) {
+            allocations.get(allocation.storeId()).add(allocation);
+        }
+        return allocations;
+    }
+
+    private boolean optimalMatching() {
+        return properties.getMatching().getMode() == AllocationProperties.MatchingMode.OPTIMAL;
+    }
+
+    private Optional<Allocation> logAllocation(String storeId, Optional<Allocation> allocation) {
+        allocationMetrics.recordAllocations(allocation.isPresent() ? 1 : 0);
+        if (allocation.isEmpty()) {
+            log.debug("No allocation possible for store {} - queues may be empty", storeId);
+        } else {
+            Allocation a = allocation.get();
+            List<Allocation> allocated = List.of(a);
+            auditLog.allocated(allocated);
+            allocationPushService.publish(allocated);
+            log.debug("Allocated order {} to picker {} in store {}", a.orderId(), a.pickerId(), storeId);
+        }
+        return allocation;
+    }
+}
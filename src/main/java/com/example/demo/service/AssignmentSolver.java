@@ -0,0 +1,109 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+
+/**
+ * Min-cost assignment (Hungarian algorithm with row and column potentials) over a dense cost matrix.
+ * Assigns every row when there are no more rows than columns, otherwise every column; O(n^2 m) time
+ * for n = min(rows, cols) and m = max(rows, cols). Stateless and thread-safe.
+ */
+public final class AssignmentSolver {
+
+    private AssignmentSolver() {
+    }
+
+    /**
+     * Solve for the assignment of minimal total cost.
+     *
+     * @param cost cost[row][col]; every row must have the same length and all values must be finite
+     * @return the column assigned to each row, or -1 for rows left unassigned when rows outnumber columns
+     */
+    public static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        if (rows == 0) {
+            return new int[0];
+        }
+        int cols = cost[0].length;
+        if (rows <= cols) {
+            return solveRows(cost, rows, cols, false);
+        }
+
+        // Run with the roles swapped so every column is assigned, then invert
+        int[] rowOfCol = solveRows(cost, cols, rows, true);
+        int[] colOfRow = new int[rows];
+        Arrays.fill(colOfRow, -1);
+        for (int col = 0; col < cols; col++) {
+            colOfRow[rowOfCol[col]] = col;
+        }
+        return colOfRow;
+    }
+
+    /**
+     * Assign each of n rows to a distinct one of m >= n columns. Indices are 1-based inside, with
+     * column 0 as the virtual start of each augmenting path.
+     *
+     * @param transposed read cost[col][row] instead of cost[row][col]
+     */
+    private static int[] solveRows(double[][] cost, int n, int m, boolean transposed) {
+        double[] rowPotential = new double[n + 1];
+        double[] colPotential = new double[m + 1];
+        int[] rowOfCol = new int[m + 1];
+        int[] previousCol = new int[m + 1];
+        double[] minSlack = new double[m + 1];
+        boolean[] visited = new boolean[m + 1];
+
+        for (int row = 1; row <= n; row++) {
+            rowOfCol[0] = row;
+            int col = 0;
+            Arrays.fill(minSlack, Double.POSITIVE_INFINITY);
+            Arrays.fill(visited, false);
+
+            // Grow a tree of tight edges from the new row until it reaches a free column
+            do {
+                visited[col] = true;
+                int treeRow = rowOfCol[col];
+                double delta = Double.POSITIVE_INFINITY;
+                int nextCol = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (visited[j]) {
+                        continue;
+                    }
+                    double c = transposed ? cost[j - 1][treeRow - 1] : cost[treeRow - 1][j - 1];
+                    double slack = c - rowPotential[treeRow] - colPotential[j];
+                    if (slack < minSlack[j]) {
+                        minSlack[j] = slack;
+                        previousCol[j] = col;
+                    }
+                    if (minSlack[j] < delta) {
+                        delta = minSlack[j];
+                        nextCol = j;
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (visited[j]) {
+                        rowPotential[rowOfCol[j]] += delta;
+                        colPotential[j] -= delta;
+                    } else {
+                        minSlack[j] -= delta;
+                    }
+                }
+                col = nextCol;
+            } while (rowOfCol[col] != 0);
+
+            // Flip the augmenting path back to the start
+            do {
+                int previous = previousCol[col];
+                rowOfCol[col] = rowOfCol[previous];
+                col = previous;
+            } while (col != 0);
+        }
+
+        int[] assignment = new int[n];
+        for (int j = 1; j <= m; j++) {
+            if (rowOfCol[j] != 0) {
+                assignment[rowOfCol[j] - 1] = j - 1;
+            }
+        }
+        return assignment;
+    }
+}
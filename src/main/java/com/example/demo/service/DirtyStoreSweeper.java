@@ -0,0 +1,140 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.AllocationEngine;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocates the stores in the engine's dirty set every allocation.sweeper.interval-ms. Enqueues mark
+ * their stores dirty; a pass pops allocation.sweeper.batch-size stores at a time and runs one batched
+ * allocation per store on at most allocation.sweeper.workers threads, so it costs O(dirty stores)
+ * rather than O(all stores), and work whose allocation trigger was lost is picked up on the next pass.
+ * A store that filled a whole batch, or whose allocation failed, is marked dirty again once the pass
+ * ends, so one busy store cannot keep a pass running.
+ * Runs on every instance; each pop hands a store to a single instance.
+ * Enabled with allocation.sweeper.enabled=true.
+ */
+@Component
+public class DirtyStoreSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(DirtyStoreSweeper.class);
+
+    private final AllocationEngine allocationEngine;
+    private final AllocationService allocationService;
+    private final AllocationProperties properties;
+    private final AllocationMetrics allocationMetrics;
+    private final List<AllocationListener> listeners;
+    private final ExecutorService executor;
+
+    public DirtyStoreSweeper(
+            AllocationEngine allocationEngine,
+            AllocationService allocationService,
+            AllocationProperties properties,
+            AllocationMetrics allocationMetrics,
+            List<AllocationListener> listeners) {
+        this.allocationEngine = allocationEngine;
+        this.allocationService = allocationService;
+        this.properties = properties;
+        this.allocationMetrics = allocationMetrics;
+        this.listeners = listeners;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getSweeper().getWorkers()),
+            Thread.ofVirtual().name("dirty-store-sweeper-", 0).factory());
+    }
+
+    @Scheduled(fixedDelayString = "${allocation.sweeper.interval-ms:1000}")
+    public void sweep() {
+        if (!properties.getSweeper().isEnabled()) {
+            return;
+        }
+        Set<String> again = ConcurrentHashMap.newKeySet();
+        int swept = 0;
+        try {
+            List<String> storeIds;
+            while (!(storeIds = allocationEngine.popDirtyStores(properties.getSweeper().getBatchSize())).isEmpty()) {
+                swept += storeIds.size();
+                if (!allocateAll(storeIds, again)) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Dirty store sweep failed", e);
+        } finally {
+            allocationMetrics.recordSweptStores(swept);
+            markAgain(again);
+        }
+        if (swept > 0) {
+            log.debug("Swept {} dirty stores, {} left dirty", swept, again.size());
+        }
+    }
+
+    /**
+     * Allocate a popped batch on the worker pool and wait for all of it.
+     *
+     * @return false if interrupted; the batch is then marked dirty again
+     */
+    private boolean allocateAll(List<String> storeIds, Set<String> again) {
+        List<Callable<Void>> tasks = new ArrayList<>(storeIds.size());
+        for (String storeId : storeIds) {
+            tasks.add(() -> {
+                allocate(storeId, again);
+                return null;
+            });
+        }
+        try {
+            executor.invokeAll(tasks);
+            return true;
+        } catch (InterruptedException e) {
+            again.addAll(storeIds);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void allocate(String storeId, Set<String> again) {
+        int batchSize = properties.getMaxBatchSize();
+        try {
+            List<Allocation> allocations = allocationService.tryAllocateBatch(storeId, batchSize);
+            AllocationListeners.publish(listeners, storeId, allocations);
+            if (allocations.size() == batchSize) {
+                again.add(storeId);
+            }
+        } catch (RuntimeException e) {
+            log.error("Swept allocation failed for store {}", storeId, e);
+            again.add(storeId);
+        }
+    }
+
+    private void markAgain(Set<String> storeIds) {
+        if (storeIds.isEmpty()) {
+            return;
+        }
+        try {
+            allocationEngine.markDirty(storeIds);
+        } catch (RuntimeException e) {
+            log.warn("Failed to mark {} stores dirty again; they wait for their next enqueue", storeIds.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.AllocationEngine;
+import com.example.demo.metrics.AllocationMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Returns orders whose allocation lease expired unacknowledged to their queue, every
+ * allocation.lease.reap-interval-ms. Each pass reaps at most allocation.lease.reap-batch-size orders
+ * per store, so a large backlog drains over several passes without one long script call.
+ * Stores that got orders back are marked dirty so they are allocated again: with the dispatcher, and
+ * in the dirty store set when the {@link DirtyStoreSweeper} is enabled.
+ * Runs on every instance; the reap script is atomic, so concurrent passes never requeue an order twice.
+ */
+@Component
+public class LeaseReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaseReaper.class);
+
+    private final AllocationEngine allocationEngine;
+    private final AllocationDispatcher allocationDispatcher;
+    private final AllocationProperties properties;
+    private final AllocationMetrics allocationMetrics;
+
+    public LeaseReaper(
+            AllocationEngine allocationEngine,
+            AllocationDispatcher allocationDispatcher,
+            AllocationProperties properties,
+            AllocationMetrics allocationMetrics) {
+        this.allocationEngine = allocationEngine;
+        this.allocationDispatcher = allocationDispatcher;
+        this.properties = properties;
+        this.allocationMetrics = allocationMetrics;
+    }
+
+    @Scheduled(fixedDelayString = "${allocation.lease.reap-interval-ms:1000}")
+    public void reap() {
+        if (!properties.getLease().isEnabled()) {
+            return;
+        }
+        try {
+            Map<String, List<String>> reaped =
+                allocationEngine.reapExpiredLeases(properties.getLease().getReapBatchSize());
+            reaped.forEach((storeId, orderIds) -> {
+                allocationMetrics.recordLeasesExpired(orderIds.size());
+                log.warn("Requeued {} orders with expired leases in store {}", orderIds.size(), storeId);
+                if (allocationDispatcher.isEnabled()) {
+                    allocationDispatcher.markDirty(storeId);
+                }
+            });
+            if (properties.getSweeper().isEnabled() && !reaped.isEmpty()) {
+                allocationEngine.markDirty(reaped.keySet());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Lease reaping failed", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AllocationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One-off migration of queue keys from the plain layout (order:queue:storeId) to the
+ * hash-tagged layout (order:queue:{storeId}).
+ * Runs at startup when allocation.migrate-legacy-keys=true. Run it against the existing standalone
+ * primary before moving stores to a cluster, since RENAME cannot cross cluster slots.
+ * Legacy score metadata keys are not migrated; they expire within allocation.score-meta-ttl-hours.
+ */
+@Component
+public class LegacyKeyMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LegacyKeyMigration.class);
+
+    // Legacy keys have no braces; hash-tagged keys are skipped
+    private static final Pattern LEGACY_QUEUE_KEY = Pattern.compile("^(order|picker):queue:([^{}]+)$");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final AllocationProperties properties;
+
+    public LegacyKeyMigration(RedisTemplate<String, Object> redisTemplate, AllocationProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isMigrateLegacyKeys()) {
+            return;
+        }
+
+        int migrated = migrate("order:queue:*") + migrate("picker:queue:*");
+        log.info("Migrated {} legacy queue keys to hash-tagged layout", migrated);
+    }
+
+    private int migrate(String pattern) {
+        List<String> legacyKeys = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(1000).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            cursor.forEachRemaining(key -> {
+                if (LEGACY_QUEUE_KEY.matcher(key).matches()) {
+                    legacyKeys.add(key);
+                }
+            });
+        }
+
+        for (String legacyKey : legacyKeys) {
+            Matcher matcher = LEGACY_QUEUE_KEY.matcher(legacyKey);
+            if (!matcher.matches()) {
+                continue;
+            }
+            String storeId = matcher.group(2);
+            String newKey = "order".equals(matcher.group(1))
+                ? RedisKeys.orderQueue(storeId)
+                : RedisKeys.pickerQueue(storeId);
+
+            if (!Boolean.TRUE.equals(redisTemplate.renameIfAbsent(legacyKey, newKey))) {
+                // Both layouts hold members: merge, keeping the better (lower) score for duplicates
+                redisTemplate.opsForZSet().unionAndStore(newKey, List.of(legacyKey), newKey, Aggregate.MIN);
+                redisTemplate.delete(legacyKey);
+            }
+            log.info("Migrated {} to {}", legacyKey, newKey);
+        }
+        return legacyKeys.size();
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.AllocationEngine;
+import com.example.demo.engine.MatchCandidates;
+import com.example.demo.engine.MatchPair;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Optimal batch matching (allocation.matching.mode=optimal).
+ * Each pass reads the top of a store's order and picker queues, solves a min-cost assignment in the
+ * JVM with costs from {@link ScoreCalculationService#matchCost}, and commits the chosen pairs in one
+ * atomic engine call. The solve runs outside Redis and outside the local engine's store lock, so a
+ * pass never blocks other stores; a pair whose members changed in between is skipped at commit.
+ */
+@Service
+public class MatchingService {
+
+    // Far above any real cost, so the solver only uses an ineligible pair when nothing else is left
+    private static final double INELIGIBLE = 1e9;
+
+    private final AllocationEngine allocationEngine;
+    private final ScoreCalculationService scoreCalculationService;
+    private final AllocationProperties properties;
+    private final AllocationMetrics allocationMetrics;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public MatchingService(
+            AllocationEngine allocationEngine,
+            ScoreCalculationService scoreCalculationService,
+            AllocationProperties properties,
+            AllocationMetrics allocationMetrics) {
+        this.allocationEngine = allocationEngine;
+        this.scoreCalculationService = scoreCalculationService;
+        this.properties = properties;
+        this.allocationMetrics = allocationMetrics;
+    }
+
+    /**
+     * Allocate up to {@code max} pairs in a store by repeated matching passes over at most
+     * allocation.matching.window orders and pickers each. Stops early once a pass commits fewer pairs
+     * than it had orders: the queues ran dry, the remaining orders have no eligible picker in the
+     * window, or a concurrent allocation took a member first.
+     *
+     * @return The allocations made, each pass in order priority
+     */
+    public List<Allocation> allocateMatched(String storeId, int max) {
+        int window = properties.getMatching().getWindow();
+        List<Allocation> allocations = new ArrayList<>();
+        while (allocations.size() < max) {
+            MatchCandidates candidates = allocationEngine.matchCandidates(storeId, window);
+            List<QueueEntry> pickers = candidates.pickers();
+            // Only as many orders as can be allocated are matched, so none is skipped for a better fit
+            int limit = Math.min(max - allocations.size(), pickers.size());
+            List<QueueEntry> orders = candidates.orders().subList(0, Math.min(limit, candidates.orders().size()));
+            if (orders.isEmpty()) {
+                break;
+            }
+            List<MatchPair> pairs = allocationMetrics.timeMatchSolve(() -> match(orders, pickers));
+            List<Allocation> committed = allocationEngine.allocatePairs(storeId, pairs);
+            allocations.addAll(committed);
+            if (committed.size() < orders.size()) {
+                break;
+            }
+        }
+        return allocations;
+    }
+
+    /**
+     * {@link #allocateMatched(String, int)} for many stores at once, one virtual thread per store, so the
+     * solves of different stores run on separate cores while others wait on Redis.
+     *
+     * @return The allocations of all stores, in store order
+     */
+    public List<Allocation> allocateMatched(Collection<String> storeIds, int max) {
+        if (storeIds.size() == 1) {
+            return allocateMatched(storeIds.iterator().next(), max);
+        }
+        List<CompletableFuture<List<Allocation>>> passes = new ArrayList<>(storeIds.size());
+        for (String storeId : storeIds) {
+            passes.add(CompletableFuture.supplyAsync(() -> allocateMatched(storeId, max), executor));
+        }
+        List<Allocation> allocations = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<Allocation>> pass : passes) {
+                allocations.addAll(pass.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return allocations;
+    }
+
+    /**
+     * Solve the assignment of orders to pickers and return the eligible pairs, in order priority.
+     */
+    List<MatchPair> match(List<QueueEntry> orders, List<QueueEntry> pickers) {
+        double[][] cost = new double[orders.size()][pickers.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            QueueEntry order = orders.get(i);
+            double skuCount = skuCount(order);
+            for (int j = 0; j < pickers.size(); j++) {
+                QueueEntry picker = pickers.get(j);
+                cost[i][j] = QueueEntry.eligible(order.capabilities(), picker.capabilities())
+                    ? scoreCalculationService.matchCost(skuCount, picker.score())
+                    : INELIGIBLE;
+            }
+        }
+
+        int[] assignment = AssignmentSolver.solve(cost);
+        List<MatchPair> pairs = new ArrayList<>(orders.size());
+        for (int i = 0; i < assignment.length; i++) {
+            if (assignment[i] >= 0 && cost[i][assignment[i]] < INELIGIBLE) {
+                pairs.add(new MatchPair(orders.get(i).memberId(), pickers.get(assignment[i]).memberId()));
+            }
+        }
+        return pairs;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * SKU count from the order's score metadata; 0 when the metadata has expired, which drops the fit term.
+     */
+    private static double skuCount(QueueEntry order) {
+        String skuScore = order.metaFields().get("skuScore");
+        return skuScore == null ? 0 : Double.parseDouble(skuScore);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.demo.service;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Runs a Lua script many times in a single Redis pipeline using EVALSHA.
+ * RedisTemplate.execute(script, ...) falls back to EVAL per call, which does not work inside a
+ * pipeline, so a NOSCRIPT failure here loads the script and retries the whole batch once.
+ * On Redis Cluster the calls may target different slots and primaries: they are all sent without
+ * waiting on the shared Lettuce cluster connection, which routes each by its keys' slot, so every
+ * primary receives its calls as one pipeline. A call that hits a primary without the script loaded is
+ * retried on its own through the template, which loads it there.
+ */
+@Component
+public class PipelinedScriptExecutor {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private volatile Boolean cluster;
+
+    public PipelinedScriptExecutor(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * One script invocation: its keys and its arguments.
+     */
+    public record ScriptCall(List<String> keys, List<String> args) {}
+
+    /**
+     * Execute the script once per call in one round trip.
+     *
+     * @return One deserialized result per call, in call order
+     */
+    public List<Object> executeAll(RedisScript<?> script, List<ScriptCall> calls) {
+        if (calls.isEmpty()) {
+            return List.of();
+        }
+        if (isCluster()) {
+            return routeBySlot(script, calls);
+        }
+        try {
+            return pipeline(script, calls);
+        } catch (RedisPipelineException | RedisSystemException ex) {
+            if (!isNoScriptError(ex)) {
+                throw ex;
+            }
+            byte[] scriptBytes = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                connection.scriptingCommands().scriptLoad(scriptBytes));
+            return pipeline(script, calls);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> pipeline(RedisScript<?> script, List<ScriptCall> calls) {
+        RedisSerializer<String> serializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        ReturnType returnType = ReturnType.fromJavaType(script.getResultType());
+
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (ScriptCall call : calls) {
+                byte[][] keysAndArgs = new byte[call.keys().size() + call.args().size()][];
+                int i = 0;
+                for (String key : call.keys()) {
+                    keysAndArgs[i++] = serializer.serialize(key);
+                }
+                for (String arg : call.args()) {
+                    keysAndArgs[i++] = serializer.serialize(arg);
+                }
+                connection.scriptingCommands().evalSha(script.getSha1(), returnType, call.keys().size(), keysAndArgs);
+            }
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> routeBySlot(RedisScript<?> script, List<ScriptCall> calls) {
+        RedisSerializer<String> serializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        ScriptOutputType outputType = outputType(ReturnType.fromJavaType(script.getResultType()));
+
+        // Awaited inside the callback, so the connection stays open until every reply is in
+        List<Object> results = redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            RedisClusterAsyncCommands<byte[], byte[]> commands =
+                (RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            List<RedisFuture<Object>> futures = new ArrayList<>(calls.size());
+            for (ScriptCall call : calls) {
+                futures.add(commands.evalsha(script.getSha1(), outputType,
+                    serialize(serializer, call.keys()), serialize(serializer, call.args())));
+            }
+            List<Object> replies = new ArrayList<>(calls.size());
+            for (RedisFuture<Object> future : futures) {
+                replies.add(await(future));
+            }
+            return replies;
+        });
+
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) instanceof NoScript) {
+                ScriptCall call = calls.get(i);
+                results.set(i, redisTemplate.execute(script, call.keys(), call.args().toArray()));
+            } else {
+                results.set(i, deserialize(valueSerializer, results.get(i)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The reply of one routed call, or {@link NoScript} if its primary does not have the script yet.
+     * Bounded by the client's command timeout (spring.data.redis.timeout).
+     */
+    private static Object await(RedisFuture<Object> future) {
+        try {
+            return future.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (isNoScriptError(e)) {
+                return NoScript.INSTANCE;
+            }
+            throw new RedisSystemException("Routed script call failed", e.getCause());
+        }
+    }
+
+    private static byte[][] serialize(RedisSerializer<String> serializer, List<String> values) {
+        byte[][] serialized = new byte[values.size()][];
+        for (int i = 0; i < values.size(); i++) {
+            serialized[i] = serializer.serialize(values.get(i));
+        }
+        return serialized;
+    }
+
+    /**
+     * Decode bulk strings the way a pipelined call's results are decoded, nested replies included.
+     */
+    private static Object deserialize(RedisSerializer<Object> serializer, Object reply) {
+        if (reply instanceof byte[] bytes) {
+            return serializer.deserialize(bytes);
+        }
+        if (reply instanceof List<?> list) {
+            List<Object> decoded = new ArrayList<>(list.size());
+            for (Object element : list) {
+                decoded.add(deserialize(serializer, element));
+            }
+            return decoded;
+        }
+        return reply;
+    }
+
+    private static ScriptOutputType outputType(ReturnType returnType) {
+        return switch (returnType) {
+            case BOOLEAN -> ScriptOutputType.BOOLEAN;
+            case INTEGER -> ScriptOutputType.INTEGER;
+            case MULTI -> ScriptOutputType.MULTI;
+            case STATUS -> ScriptOutputType.STATUS;
+            case VALUE -> ScriptOutputType.VALUE;
+        };
+    }
+
+    private boolean isCluster() {
+        Boolean isCluster = cluster;
+        if (isCluster == null) {
+            isCluster = redisTemplate.execute(
+                (RedisCallback<Boolean>) connection -> connection instanceof RedisClusterConnection);
+            cluster = isCluster;
+        }
+        return Boolean.TRUE.equals(isCluster);
+    }
+
+    private enum NoScript {
+        INSTANCE
+    }
+
+    private static boolean isNoScriptError(Throwable ex) {
+        if (ex instanceof RedisPipelineException pipelineEx) {
+            for (Object result : pipelineEx.getPipelineResult()) {
+                if (result instanceof Throwable t && isNoScriptError(t)) {
+                    return true;
+                }
+            }
+        }
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
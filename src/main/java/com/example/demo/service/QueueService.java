@@ -1,39 +1,52 @@
 package com.example.demo.service;
 
-import com.example.demo.config.AllocationProperties;
+import com.example.demo.audit.AllocationAuditLog;
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.engine.AllocationEngine;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import com.example.demo.metrics.AllocationMetrics;
 import com.example.demo.model.Order;
 import com.example.demo.model.OrderScoreMeta;
 import com.example.demo.model.Picker;
 import com.example.demo.model.PickerScoreMeta;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 /**
- * Service for managing order and picker queues in Redis.
+ * Service for managing order and picker queues.
+ * Storage is delegated to the configured {@link AllocationEngine}. With allocation.sweeper.enabled every
+ * enqueue also marks its stores dirty, in the same write, for the {@link DirtyStoreSweeper}.
+ * Enqueues and dequeues go to the {@link AllocationAuditLog}; per-event log lines are DEBUG only.
  */
 @Service
 public class QueueService {
 
     private static final Logger log = LoggerFactory.getLogger(QueueService.class);
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final AllocationEngine allocationEngine;
     private final ScoreCalculationService scoreCalculationService;
-    private final AllocationProperties properties;
+    private final AllocationMetrics allocationMetrics;
+    private final AllocationAuditLog auditLog;
 
     public QueueService(
-            RedisTemplate<String, Object> redisTemplate,
+            AllocationEngine allocationEngine,
             ScoreCalculationService scoreCalculationService,
-            AllocationProperties properties) {
-        this.redisTemplate = redisTemplate;
+            AllocationMetrics allocationMetrics,
+            AllocationAuditLog auditLog) {
+        this.allocationEngine = allocationEngine;
         this.scoreCalculationService = scoreCalculationService;
-        this.properties = properties;
+        this.allocationMetrics = allocationMetrics;
+        this.auditLog = auditLog;
     }
 
     /**
@@ -41,25 +54,50 @@ public class QueueService {
      * Called when: Order confirmed, Order crosses OAT
      */
     public void enqueueOrder(Order order) {
-        String queueKey = RedisKeys.orderQueue(order.storeId());
-        double score = scoreCalculationService.calculateOrderScore(order);
+        allocationMetrics.timeEnqueue(QueueType.ORDER, () -> {
+            OrderScoreMeta meta = scoreCalculationService.getOrderScoreMeta(order);
 
-        // Add to sorted set
-        redisTemplate.opsForZSet().add(queueKey, order.orderId(), score);
+            // Add to the queue and store score metadata for debugging in one write
+            QueueEntry entry = orderEntry(order, meta);
+            allocationEngine.enqueue(List.of(entry));
 
-        // Store score metadata for debugging
-        storeOrderScoreMeta(order);
+            auditLog.enqueued(entry);
+            log.debug("Order {} enqueued to store {} with score {}", order.orderId(), order.storeId(), meta.finalScore());
+        });
+        allocationMetrics.trackStore(order.storeId());
+    }
+
+    /**
+     * Add many orders to their queues in one write: for Redis, one pipeline with one multi-member
+     * ZADD per store plus the score metadata. Scores share a single clock reading.
+     *
+     * @return The distinct store IDs that received orders, in first-seen order
+     */
+    public Set<String> enqueueOrders(List<Order> orders) {
+        Instant now = Instant.now();
+        Set<String> storeIds = new LinkedHashSet<>();
+        List<QueueEntry> entries = new ArrayList<>(orders.size());
+
+        for (Order order : orders) {
+            entries.add(orderEntry(order, scoreCalculationService.getOrderScoreMeta(order, now)));
+            storeIds.add(order.storeId());
+        }
+
+        allocationEngine.enqueue(entries);
+        storeIds.forEach(allocationMetrics::trackStore);
 
-        log.info("Order {} enqueued to store {} with score {}", order.orderId(), order.storeId(), score);
+        auditLog.enqueued(entries);
+        log.debug("{} orders enqueued across {} stores", orders.size(), storeIds.size());
+        return storeIds;
     }
 
     /**
      * Remove an order from the queue.
      */
     public void dequeueOrder(String storeId, String orderId) {
-        String queueKey = RedisKeys.orderQueue(storeId);
-        redisTemplate.opsForZSet().remove(queueKey, orderId);
-        log.info("Order {} dequeued from store {}", orderId, storeId);
+        allocationEngine.remove(QueueType.ORDER, storeId, orderId);
+        auditLog.dequeued(QueueType.ORDER, storeId, orderId);
+        log.debug("Order {} dequeued from store {}", orderId, storeId);
     }
 
     /**
@@ -67,67 +105,76 @@ public class QueueService {
      * Called when: Picker logs in, Picker finishes an order, Picker becomes available after role change
      */
     public void enqueuePicker(Picker picker) {
-        String queueKey = RedisKeys.pickerQueue(picker.storeId());
-        double score = scoreCalculationService.calculatePickerScore(picker);
+        allocationMetrics.timeEnqueue(QueueType.PICKER, () -> {
+            PickerScoreMeta meta = scoreCalculationService.getPickerScoreMeta(picker);
+
+            // Add to the queue and store score metadata for debugging in one write
+            QueueEntry entry = pickerEntry(picker, meta);
+            allocationEngine.enqueue(List.of(entry));
+
+            auditLog.enqueued(entry);
+            log.debug("Picker {} enqueued to store {} with score {}", picker.pickerId(), picker.storeId(), meta.finalScore());
+        });
+        allocationMetrics.trackStore(picker.storeId());
+    }
+
+    /**
+     * Add many pickers to their queues in one write.
+     *
+     * @return The distinct store IDs that received pickers, in first-seen order
+     */
+    public Set<String> enqueuePickers(List<Picker> pickers) {
+        Set<String> storeIds = new LinkedHashSet<>();
+        List<QueueEntry> entries = new ArrayList<>(pickers.size());
 
-        // Add to sorted set
-        redisTemplate.opsForZSet().add(queueKey, picker.pickerId(), score);
+        for (Picker picker : pickers) {
+            entries.add(pickerEntry(picker, scoreCalculationService.getPickerScoreMeta(picker)));
+            storeIds.add(picker.storeId());
+        }
 
-        // Store score metadata for debugging
-        storePickerScoreMeta(picker);
+        allocationEngine.enqueue(entries);
+        storeIds.forEach(allocationMetrics::trackStore);
 
-        log.info("Picker {} enqueued to store {} with score {}", picker.pickerId(), picker.storeId(), score);
+        auditLog.enqueued(entries);
+        log.debug("{} pickers enqueued across {} stores", pickers.size(), storeIds.size());
+        return storeIds;
     }
 
     /**
      * Remove a picker from the queue.
      */
     public void dequeuePicker(String storeId, String pickerId) {
-        String queueKey = RedisKeys.pickerQueue(storeId);
-        redisTemplate.opsForZSet().remove(queueKey, pickerId);
-        log.info("Picker {} dequeued from store {}", pickerId, storeId);
+        allocationEngine.remove(QueueType.PICKER, storeId, pickerId);
+        auditLog.dequeued(QueueType.PICKER, storeId, pickerId);
+        log.debug("Picker {} dequeued from store {}", pickerId, storeId);
     }
 
     /**
      * Get the top order from the queue without removing.
      */
     public Optional<String> peekTopOrder(String storeId) {
-        String queueKey = RedisKeys.orderQueue(storeId);
-        Set<Object> result = redisTemplate.opsForZSet().range(queueKey, 0, 0);
-        if (result == null || result.isEmpty()) {
-            return Optional.empty();
-        }
-        return Optional.of(result.iterator().next().toString());
+        return allocationEngine.peek(QueueType.ORDER, storeId);
     }
 
     /**
      * Get the top picker from the queue without removing.
      */
     public Optional<String> peekTopPicker(String storeId) {
-        String queueKey = RedisKeys.pickerQueue(storeId);
-        Set<Object> result = redisTemplate.opsForZSet().range(queueKey, 0, 0);
-        if (result == null || result.isEmpty()) {
-            return Optional.empty();
-        }
-        return Optional.of(result.iterator().next().toString());
+        return allocationEngine.peek(QueueType.PICKER, storeId);
     }
 
     /**
      * Get order queue size for a store.
      */
     public long getOrderQueueSize(String storeId) {
-        String queueKey = RedisKeys.orderQueue(storeId);
-        Long size = redisTemplate.opsForZSet().size(queueKey);
-        return size != null ? size : 0;
+        return allocationEngine.size(QueueType.ORDER, storeId);
     }
 
     /**
      * Get picker queue size for a store.
      */
     public long getPickerQueueSize(String storeId) {
-        String queueKey = RedisKeys.pickerQueue(storeId);
-        Long size = redisTemplate.opsForZSet().size(queueKey);
-        return size != null ? size : 0;
+        return allocationEngine.size(QueueType.PICKER, storeId);
     }
 
     /**
@@ -138,54 +185,53 @@ public class QueueService {
     }
 
     /**
-     * Store order score metadata for debugging.
+     * Get queue sizes, top members and their score metadata for a store in one call.
      */
-    private void storeOrderScoreMeta(Order order) {
-        String metaKey = RedisKeys.orderScoreMeta(order.orderId());
-        OrderScoreMeta meta = scoreCalculationService.getOrderScoreMeta(order);
-
-        Map<String, Object> metaMap = Map.of(
-            "oatDelta", meta.oatDelta(),
-            "initialPriority", meta.initialPriority(),
-            "skuScore", meta.skuScore(),
-            "finalScore", meta.finalScore()
-        );
-
-        redisTemplate.opsForHash().putAll(metaKey, metaMap);
-        redisTemplate.expire(metaKey, Duration.ofHours(properties.getScoreMetaTtlHours()));
+    public QueueStatusResponse getQueueStatus(String storeId) {
+        return allocationEngine.status(storeId);
     }
 
     /**
-     * Store picker score metadata for debugging.
+     * Get queue status for many stores in one batch.
      */
-    private void storePickerScoreMeta(Picker picker) {
-        String metaKey = RedisKeys.pickerScoreMeta(picker.pickerId());
-        PickerScoreMeta meta = scoreCalculationService.getPickerScoreMeta(picker);
+    public List<QueueStatusResponse> getQueueStatuses(List<String> storeIds) {
+        return allocationEngine.statuses(storeIds);
+    }
 
-        Map<String, Object> metaMap = Map.of(
-            "skuCompletedScore", meta.skuCompletedScore(),
-            "orderCompletedScore", meta.orderCompletedScore(),
-            "finalScore", meta.finalScore()
-        );
+    /**
+     * Queue entry for an order, carrying its score, score metadata and required capabilities.
+     */
+    static QueueEntry orderEntry(Order order, OrderScoreMeta meta) {
+        return new QueueEntry(QueueType.ORDER, order.storeId(), order.orderId(), meta.finalScore(), Map.of(
+            "oatDelta", String.valueOf(meta.oatDelta()),
+            "initialPriority", String.valueOf(meta.initialPriority()),
+            "skuScore", String.valueOf(meta.skuScore()),
+            "finalScore", String.valueOf(meta.finalScore())
+        ), order.requiredCapabilities());
+    }
 
-        redisTemplate.opsForHash().putAll(metaKey, metaMap);
-        redisTemplate.expire(metaKey, Duration.ofHours(properties.getScoreMetaTtlHours()));
+    /**
+     * Queue entry for a picker, carrying its score, score metadata and capabilities.
+     */
+    static QueueEntry pickerEntry(Picker picker, PickerScoreMeta meta) {
+        return new QueueEntry(QueueType.PICKER, picker.storeId(), picker.pickerId(), meta.finalScore(), Map.of(
+            "skuCompletedScore", String.valueOf(meta.skuCompletedScore()),
+            "orderCompletedScore", String.valueOf(meta.orderCompletedScore()),
+            "finalScore", String.valueOf(meta.finalScore())
+        ), picker.capabilities());
     }
 
     /**
      * Get order score metadata.
      */
-    public Map<Object, Object> getOrderScoreMeta(String orderId) {
-        String metaKey = RedisKeys.orderScoreMeta(orderId);
-        return redisTemplate.opsForHash().entries(metaKey);
+    public Map<Object, Object> getOrderScoreMeta(String storeId, String orderId) {
+        return allocationEngine.scoreMeta(QueueType.ORDER, storeId, orderId);
     }
 
     /**
      * Get picker score metadata.
      */
-    public Map<Object, Object> getPickerScoreMeta(String pickerId) {
-        String metaKey = RedisKeys.pickerScoreMeta(pickerId);
-        return redisTemplate.opsForHash().entries(metaKey);
+    public Map<Object, Object> getPickerScoreMeta(String storeId, String pickerId) {
+        return allocationEngine.scoreMeta(QueueType.PICKER, storeId, pickerId);
     }
 }
-
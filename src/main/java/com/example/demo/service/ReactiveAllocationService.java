@@ -0,0 +1,195 @@
+package com.example.demo.service;
+
+import com.example.demo.audit.AllocationAuditLog;
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import com.example.demo.engine.LeaseRegistrations;
+import com.example.demo.engine.RedisScriptSupport;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import com.example.demo.model.Order;
+import com.example.demo.model.OrderScoreMeta;
+import com.example.demo.model.Picker;
+import com.example.demo.model.PickerScoreMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link AllocationService} on {@link ReactiveRedisTemplate}.
+ * Runs the same allocation scripts, so allocations stay atomic whichever API made them.
+ */
+@Service
+@ConditionalOnProperty(name = "allocation.engine", havingValue = "redis", matchIfMissing = true)
+public class ReactiveAllocationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveAllocationService.class);
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final RedisScript<List> allocationScript;
+    private final RedisScript<List> batchAllocationScript;
+    private final RedisScript<List> enqueueAllocationScript;
+    private final RedisScript<Long> registerLeasesScript;
+    private final ScoreCalculationService scoreCalculationService;
+    private final AllocationProperties properties;
+    private final AllocationMetrics allocationMetrics;
+    private final AllocationAuditLog auditLog;
+    private final AllocationPushService allocationPushService;
+    private final LeaseRegistrations leaseRegistrations = new LeaseRegistrations();
+
+    public ReactiveAllocationService(
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+            RedisScript<List> allocationScript,
+            RedisScript<List> batchAllocationScript,
+            RedisScript<List> enqueueAllocationScript,
+            RedisScript<Long> registerLeasesScript,
+            ScoreCalculationService scoreCalculationService,
+            AllocationProperties properties,
+            AllocationMetrics allocationMetrics,
+            AllocationAuditLog auditLog,
+            AllocationPushService allocationPushService) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.allocationScript = allocationScript;
+        this.batchAllocationScript = batchAllocationScript;
+        this.enqueueAllocationScript = enqueueAllocationScript;
+        this.registerLeasesScript = registerLeasesScript;
+        this.scoreCalculationService = scoreCalculationService;
+        this.properties = properties;
+        this.allocationMetrics = allocationMetrics;
+        this.auditLog = auditLog;
+        this.allocationPushService = allocationPushService;
+    }
+
+    /**
+     * Try to allocate one order to one picker atomically.
+     *
+     * @return The allocation, or empty if either queue is empty
+     */
+    public Mono<Allocation> tryAllocate(String storeId) {
+        List<String> args = RedisScriptSupport.allocationArgs(
+            properties.getHistory().getMaxLen(), properties.getEligibilityWindow(), properties.getLease().getTtlMs());
+        return registerLeases(storeId)
+            .then(execute(allocationScript, RedisScriptSupport.allocationKeys(storeId), args))
+            .flatMap(result -> Mono.justOrEmpty(RedisScriptSupport.toAllocation(storeId, result)))
+            .transform(allocation -> logAllocation(storeId, allocation));
+    }
+
+    /**
+     * Try to allocate up to {@code max} orders to pickers in a single atomic call.
+     *
+     * @param max Maximum number of pairs to allocate (capped by allocation.max-batch-size)
+     * @return The allocations made, in priority order
+     */
+    public Flux<Allocation> tryAllocateBatch(String storeId, int max) {
+        if (max < 1) {
+            return Flux.error(new IllegalArgumentException("max must be at least 1"));
+        }
+        int limit = Math.min(max, properties.getMaxBatchSize());
+
+        List<String> args = RedisScriptSupport.batchAllocationArgs(
+            limit, properties.getHistory().getMaxLen(), properties.getEligibilityWindow(),
+            properties.getLease().getTtlMs());
+        return registerLeases(storeId)
+            .then(execute(batchAllocationScript, RedisScriptSupport.allocationKeys(storeId), args))
+            .map(result -> RedisScriptSupport.toAllocations(storeId, result))
+            .doOnNext(allocations -> {
+                allocationMetrics.recordAllocations(allocations.size());
+                auditLog.allocated(allocations);
+                allocationPushService.publish(allocations);
+                if (allocations.isEmpty()) {
+                    log.debug("No allocation possible for store {} - queues may be empty", storeId);
+                } else {
+                    log.debug("Allocated {} orders to pickers in store {}", allocations.size(), storeId);
+                }
+            })
+            .flatMapIterable(allocations -> allocations);
+    }
+
+    /**
+     * Trigger allocation attempt for a store.
+     */
+    public Mono<Allocation> triggerAllocation(String storeId) {
+        return tryAllocate(storeId);
+    }
+
+    /**
+     * Add an order to its queue, store its score metadata and attempt allocation in a single atomic call.
+     */
+    public Mono<Allocation> enqueueOrderAndAllocate(Order order) {
+        OrderScoreMeta meta = scoreCalculationService.getOrderScoreMeta(order);
+        return enqueueAndAllocate(QueueService.orderEntry(order, meta));
+    }
+
+    /**
+     * Add a picker to its queue, store its score metadata and attempt allocation in a single atomic call.
+     */
+    public Mono<Allocation> enqueuePickerAndAllocate(Picker picker) {
+        PickerScoreMeta meta = scoreCalculationService.getPickerScoreMeta(picker);
+        return enqueueAndAllocate(QueueService.pickerEntry(picker, meta));
+    }
+
+    private Mono<Allocation> enqueueAndAllocate(QueueEntry entry) {
+        List<Object> args = RedisScriptSupport.enqueueAllocationArgs(
+            entry, Duration.ofHours(properties.getScoreMetaTtlHours()), properties.getHistory().getMaxLen(),
+            properties.getEligibilityWindow(), properties.getLease().getTtlMs());
+        return Mono.when(
+                registerLeases(entry.storeId()),
+                ReactiveQueueService.markDirty(reactiveRedisTemplate, properties, entry.storeId()))
+            .then(execute(enqueueAllocationScript, RedisScriptSupport.enqueueAllocationKeys(entry), args))
+            .doOnSuccess(result -> {
+                allocationMetrics.trackStore(entry.storeId());
+                auditLog.enqueued(entry);
+                log.debug("{} {} enqueued to store {} with score {}",
+                    entry.type() == QueueType.ORDER ? "Order" : "Picker", entry.memberId(), entry.storeId(), entry.score());
+            })
+            .flatMap(result -> Mono.justOrEmpty(RedisScriptSupport.toAllocation(entry.storeId(), result)))
+            .transform(allocation -> logAllocation(entry.storeId(), allocation));
+    }
+
+    /**
+     * Put a store on the lease reaper's index before a leased allocation; see RedisAllocationEngine.
+     * Completes at once when leases are off or this instance's registration of the store is still fresh.
+     */
+    private Mono<Void> registerLeases(String storeId) {
+        long leaseMs = properties.getLease().getTtlMs();
+        long now = System.currentTimeMillis();
+        if (!properties.getLease().isEnabled()
+                || leaseRegistrations.unregistered(List.of(storeId), now, leaseMs).isEmpty()) {
+            return Mono.empty();
+        }
+        return reactiveRedisTemplate.execute(registerLeasesScript, RedisScriptSupport.leaseIndexKeys(),
+                RedisScriptSupport.registerLeaseArgs(leaseMs, List.of(storeId)))
+            .then(Mono.fromRunnable(() -> leaseRegistrations.registered(List.of(storeId), now)));
+    }
+
+    /**
+     * Run a script and take its reply; see {@link ReactiveQueueService#reply}.
+     */
+    private Mono<List<Object>> execute(RedisScript<List> script, List<String> keys, List<?> args) {
+        return reactiveRedisTemplate.execute(script, keys, args).as(ReactiveQueueService::reply);
+    }
+
+    private Mono<Allocation> logAllocation(String storeId, Mono<Allocation> allocation) {
+        return allocation
+            .doOnNext(a -> {
+                allocationMetrics.recordAllocations(1);
+                List<Allocation> allocated = List.of(a);
+                auditLog.allocated(allocated);
+                allocationPushService.publish(allocated);
+                log.debug("Allocated order {} to picker {} in store {}", a.orderId(), a.pickerId(), storeId);
+            })
+            .switchIfEmpty(Mono.fromRunnable(() -> {
+                allocationMetrics.recordAllocations(0);
+                log.debug("No allocation possible for store {} - queues may be empty", storeId);
+            }));
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.demo.service;
+
+import com.example.demo.audit.AllocationAuditLog;
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import com.example.demo.engine.RedisScriptSupport;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Order;
+import com.example.demo.model.OrderScoreMeta;
+import com.example.demo.model.Picker;
+import com.example.demo.model.PickerScoreMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of {@link QueueService} on {@link ReactiveRedisTemplate}.
+ * Writes the same keys with the same scripts, so both APIs can serve the same stores side by side.
+ */
+@Service
+@ConditionalOnProperty(name = "allocation.engine", havingValue = "redis", matchIfMissing = true)
+public class ReactiveQueueService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveQueueService.class);
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final RedisScript<List> queueStatusScript;
+    private final ScoreCalculationService scoreCalculationService;
+    private final AllocationProperties properties;
+    private final AllocationMetrics allocationMetrics;
+    private final AllocationAuditLog auditLog;
+
+    public ReactiveQueueService(
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+            RedisScript<List> queueStatusScript,
+            ScoreCalculationService scoreCalculationService,
+            AllocationProperties properties,
+            AllocationMetrics allocationMetrics,
+            AllocationAuditLog auditLog) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.queueStatusScript = queueStatusScript;
+        this.scoreCalculationService = scoreCalculationService;
+        this.properties = properties;
+        this.allocationMetrics = allocationMetrics;
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Add an order to the queue with its score metadata.
+     */
+    public Mono<Void> enqueueOrder(Order order) {
+        OrderScoreMeta meta = scoreCalculationService.getOrderScoreMeta(order);
+        QueueEntry entry = QueueService.orderEntry(order, meta);
+        return enqueue(entry)
+            .doOnSuccess(done -> {
+                auditLog.enqueued(entry);
+                log.debug("Order {} enqueued to store {} with score {}",
+                    order.orderId(), order.storeId(), meta.finalScore());
+            });
+    }
+
+    /**
+     * Add a picker to the queue with its score metadata.
+     */
+    public Mono<Void> enqueuePicker(Picker picker) {
+        PickerScoreMeta meta = scoreCalculationService.getPickerScoreMeta(picker);
+        QueueEntry entry = QueueService.pickerEntry(picker, meta);
+        return enqueue(entry)
+            .doOnSuccess(done -> {
+                auditLog.enqueued(entry);
+                log.debug("Picker {} enqueued to store {} with score {}",
+                    picker.pickerId(), picker.storeId(), meta.finalScore());
+            });
+    }
+
+    /**
+     * Remove an order from the queue.
+     */
+    public Mono<Void> dequeueOrder(String storeId, String orderId) {
+        return remove(QueueType.ORDER, storeId, orderId)
+            .doOnSuccess(done -> {
+                auditLog.dequeued(QueueType.ORDER, storeId, orderId);
+                log.debug("Order {} dequeued from store {}", orderId, storeId);
+            });
+    }
+
+    /**
+     * Remove a picker from the queue.
+     */
+    public Mono<Void> dequeuePicker(String storeId, String pickerId) {
+        return remove(QueueType.PICKER, storeId, pickerId)
+            .doOnSuccess(done -> {
+                auditLog.dequeued(QueueType.PICKER, storeId, pickerId);
+                log.debug("Picker {} dequeued from store {}", pickerId, storeId);
+            });
+    }
+
+    /**
+     * Get queue sizes, top members and their score metadata for a store in one script call.
+     */
+    public Mono<QueueStatusResponse> getQueueStatus(String storeId) {
+        return reactiveRedisTemplate.execute(
+                queueStatusScript,
+                RedisScriptSupport.statusKeys(storeId),
+                List.of())
+            .as(ReactiveQueueService::reply)
+            .map(reply -> RedisScriptSupport.toQueueStatus(storeId, reply));
+    }
+
+    /**
+     * The reply of a List-typed script run through ReactiveRedisTemplate, which emits the whole multi-bulk
+     * reply as one List, empty or nested replies included. Any other number of emissions is an error.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    static Mono<List<Object>> reply(Flux<List> emitted) {
+        return emitted.single().map(reply -> (List<Object>) reply);
+    }
+
+    /**
+     * Get queue status for many stores; the script calls are issued concurrently and results keep
+     * the request order.
+     */
+    public Flux<QueueStatusResponse> getQueueStatuses(List<String> storeIds) {
+        return Flux.fromIterable(storeIds).flatMapSequential(this::getQueueStatus);
+    }
+
+    /**
+     * Get order score metadata.
+     */
+    public Mono<Map<Object, Object>> getOrderScoreMeta(String storeId, String orderId) {
+        return scoreMeta(QueueType.ORDER, storeId, orderId);
+    }
+
+    /**
+     * Get picker score metadata.
+     */
+    public Mono<Map<Object, Object>> getPickerScoreMeta(String storeId, String pickerId) {
+        return scoreMeta(QueueType.PICKER, storeId, pickerId);
+    }
+
+    /**
+     * ZADD, HSET, EXPIRE and the capability write are sent without waiting on each other; Lettuce writes
+     * them back to back on the shared connection, after the dirty mark when the sweeper is on.
+     */
+    private Mono<Void> enqueue(QueueEntry entry) {
+        String metaKey = RedisScriptSupport.metaKey(entry.type(), entry.storeId());
+        Duration ttl = Duration.ofHours(properties.getScoreMetaTtlHours());
+        return Mono.when(
+                markDirty(reactiveRedisTemplate, properties, entry.storeId()),
+                reactiveRedisTemplate.opsForZSet()
+                    .add(RedisScriptSupport.queueKey(entry.type(), entry.storeId()), entry.memberId(), entry.score()),
+                reactiveRedisTemplate.opsForHash()
+                    .put(metaKey, entry.memberId(), RedisScriptSupport.packMeta(entry.type(), entry.metaFields())),
+                reactiveRedisTemplate.expire(metaKey, ttl),
+                writeCapabilities(entry))
+            .doOnSuccess(done -> allocationMetrics.trackStore(entry.storeId()));
+    }
+
+    /**
+     * SADD of the store to the dirty stores set for the {@link DirtyStoreSweeper}, as the blocking enqueue
+     * pipeline does; completes at once when the sweeper is off. Subscribe to it before the queue writes:
+     * a store left marked by a failed write costs the sweeper one empty pass, queued work left unmarked
+     * would wait for the next enqueue.
+     */
+    static Mono<Void> markDirty(
+            ReactiveRedisTemplate<String, String> reactiveRedisTemplate, AllocationProperties properties, String storeId) {
+        if (!properties.getSweeper().isEnabled()) {
+            return Mono.empty();
+        }
+        return reactiveRedisTemplate.opsForSet().add(RedisKeys.dirtyStores(), storeId).then();
+    }
+
+    /**
+     * 0 is stored as absent, so re-enqueueing without capabilities clears an earlier mask.
+     */
+    private Mono<?> writeCapabilities(QueueEntry entry) {
+        String capabilitiesKey = RedisScriptSupport.capabilitiesKey(entry.type(), entry.storeId());
+        String mask = String.valueOf(entry.capabilities());
+        return entry.capabilities() != 0
+            ? reactiveRedisTemplate.opsForHash().put(capabilitiesKey, entry.memberId(), mask)
+            : reactiveRedisTemplate.opsForHash().remove(capabilitiesKey, entry.memberId());
+    }
+
+    /**
+     * Also ends the lease of an order, as {@link com.example.demo.engine.AllocationEngine#remove} does.
+     */
+    private Mono<Void> remove(QueueType type, String storeId, String memberId) {
+        Mono<Void> member = Mono.when(
+            reactiveRedisTemplate.opsForZSet().remove(RedisScriptSupport.queueKey(type, storeId), memberId),
+            reactiveRedisTemplate.opsForHash().remove(RedisScriptSupport.metaKey(type, storeId), memberId),
+            reactiveRedisTemplate.opsForHash().remove(RedisScriptSupport.capabilitiesKey(type, storeId), memberId));
+        if (type != QueueType.ORDER) {
+            return member;
+        }
+        return Mono.when(member,
+            reactiveRedisTemplate.opsForZSet().remove(RedisKeys.orderInflight(storeId), memberId),
+            reactiveRedisTemplate.opsForHash().remove(RedisKeys.orderLeases(storeId), memberId));
+    }
+
+    private Mono<Map<Object, Object>> scoreMeta(QueueType type, String storeId, String memberId) {
+        return reactiveRedisTemplate.<Object, Object>opsForHash()
+            .get(RedisScriptSupport.metaKey(type, storeId), memberId)
+            .map(packed -> RedisScriptSupport.unpackMeta(type, packed))
+            .defaultIfEmpty(Map.of());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Allocation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@link AllocationPushService.Relay} over Redis pub/sub: one PUBLISH per allocation batch to
+ * {@link RedisKeys#allocationPushChannel()}, which every instance subscribes to, so a picker connected to
+ * any instance gets allocations made on any other. Pub/sub is fire-and-forget: an allocation published while
+ * an instance is disconnected is not pushed there, and devices fall back to the status endpoints or history.
+ * The subscription is only opened when push is enabled.
+ *
+ * <p>Message layout: allocations separated by RS (0x1E), fields storeId, orderId, pickerId, timestamp
+ * separated by US (0x1F).
+ */
+@Component
+@ConditionalOnProperty(name = "allocation.engine", havingValue = "redis", matchIfMissing = true)
+public class RedisAllocationRelay implements AllocationPushService.Relay {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisAllocationRelay.class);
+
+    private static final char RECORD_SEPARATOR = '\u001E';
+    private static final char FIELD_SEPARATOR = '\u001F';
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisConnectionFactory connectionFactory;
+    private RedisMessageListenerContainer container;
+
+    public RedisAllocationRelay(RedisTemplate<String, Object> redisTemplate, RedisConnectionFactory connectionFactory) {
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    public void publish(List<Allocation> allocations) {
+        redisTemplate.convertAndSend(RedisKeys.allocationPushChannel(), encode(allocations));
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<List<Allocation>> delivery) {
+        if (container != null) {
+            throw new IllegalStateException("Allocation push relay is already subscribed");
+        }
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // Messages are delivered one at a time, in arrival order; delivery only queues sends, so it is quick
+        container.setTaskExecutor(new SyncTaskExecutor());
+        container.addMessageListener((message, pattern) -> {
+            try {
+                delivery.accept(decode(new String(message.getBody(), StandardCharsets.UTF_8)));
+            } catch (RuntimeException e) {
+                log.warn("Failed to deliver pushed allocations", e);
+            }
+        }, new ChannelTopic(RedisKeys.allocationPushChannel()));
+        container.afterPropertiesSet();
+        container.start();
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() throws Exception {
+        if (container != null) {
+            container.destroy();
+        }
+    }
+
+    static String encode(List<Allocation> allocations) {
+        StringBuilder message = new StringBuilder(allocations.size() * 64);
+        for (Allocation allocation : allocations) {
+            if (!message.isEmpty()) {
+                message.append(RECORD_SEPARATOR);
+            }
+            message.append(allocation.storeId()).append(FIELD_SEPARATOR)
+                .append(allocation.orderId()).append(FIELD_SEPARATOR)
+                .append(allocation.pickerId()).append(FIELD_SEPARATOR)
+                .append(allocation.timestamp());
+        }
+        return message.toString();
+    }
+
+    static List<Allocation> decode(String message) {
+        List<Allocation> allocations = new ArrayList<>();
+        int start = 0;
+        while (start < message.length()) {
+            int end = message.indexOf(RECORD_SEPARATOR, start);
+            if (end < 0) {
+                end = message.length();
+            }
+            String[] fields = message.substring(start, end).split(String.valueOf(FIELD_SEPARATOR), -1);
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("Malformed pushed allocation: " + fields.length + " fields");
+            }
+            allocations.add(new Allocation(fields[1], fields[2], fields[0], Long.parseLong(fields[3])));
+            start = end + 1;
+        }
+        return allocations;
+    }
+}
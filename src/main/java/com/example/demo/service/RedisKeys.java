@@ -2,6 +2,8 @@ package com.example.demo.service;
 
 /**
  * Redis key templates for the allocation system.
+ * Every per-store key carries the store ID as a {hash tag}, so all keys a script touches for one
+ * store hash to the same Redis Cluster slot and stores can be sharded across primaries.
  */
 public final class RedisKeys {
 
@@ -13,35 +15,102 @@ public final class RedisKeys {
      * Orders queue key: ZSET order:queue:{storeId}
      */
     public static String orderQueue(String storeId) {
-        return "order:queue:" + storeId;
+        return "order:queue:" + hashTag(storeId);
     }
 
     /**
      * Pickers queue key: ZSET picker:queue:{storeId}
      */
     public static String pickerQueue(String storeId) {
-        return "picker:queue:" + storeId;
+        return "picker:queue:" + hashTag(storeId);
     }
 
     /**
-     * Order score metadata key: HASH order:scoremeta:{orderId}
+     * Order score metadata key: HASH order:scoremeta:{storeId}, one packed field per queued orderId
      */
-    public static String orderScoreMeta(String orderId) {
-        return "order:scoremeta:" + orderId;
+    public static String orderScoreMeta(String storeId) {
+        return "order:scoremeta:" + hashTag(storeId);
     }
 
     /**
-     * Picker score metadata key: HASH picker:scoremeta:{pickerId}
+     * Picker score metadata key: HASH picker:scoremeta:{storeId}, one packed field per queued pickerId
      */
-    public static String pickerScoreMeta(String pickerId) {
-        return "picker:scoremeta:" + pickerId;
+    public static String pickerScoreMeta(String storeId) {
+        return "picker:scoremeta:" + hashTag(storeId);
     }
 
     /**
-     * Allocation history key: LIST allocation:history:{storeId}
+     * Order capability key: HASH order:caps:{storeId}, required capability mask per queued orderId (non-zero only)
+     */
+    public static String orderCapabilities(String storeId) {
+        return "order:caps:" + hashTag(storeId);
+    }
+
+    /**
+     * Picker capability key: HASH picker:caps:{storeId}, capability mask per queued pickerId (non-zero only)
+     */
+    public static String pickerCapabilities(String storeId) {
+        return "picker:caps:" + hashTag(storeId);
+    }
+
+    /**
+     * Allocation history key: STREAM allocation:history:{storeId}, written by the allocation scripts
      */
     public static String allocationHistory(String storeId) {
-        return "allocation:history:" + storeId;
+        return "allocation:history:" + hashTag(storeId);
     }
-}
 
+    /**
+     * In-flight order key: ZSET order:inflight:{storeId}, allocated orderId scored by lease deadline (epoch ms)
+     */
+    public static String orderInflight(String storeId) {
+        return "order:inflight:" + hashTag(storeId);
+    }
+
+    /**
+     * Order lease key: HASH order:lease:{storeId}, per in-flight orderId the JSON needed to requeue it
+     * (score, pickerId, packed score metadata, capability mask)
+     */
+    public static String orderLeases(String storeId) {
+        return "order:lease:" + hashTag(storeId);
+    }
+
+    /**
+     * Lease due key: ZSET allocation:{leases}:due, storeId scored by the epoch ms the lease reaper must next
+     * visit it; the reaper's work list. Shares its hash tag with {@link #leaseRegistrations()}
+     */
+    public static String leaseDue() {
+        return "allocation:" + hashTag("leases") + ":due";
+    }
+
+    /**
+     * Lease registration key: ZSET allocation:{leases}:registered, storeId scored by the epoch ms an instance
+     * last registered it before taking leases there; keeps the store on the reaper's work list meanwhile
+     */
+    public static String leaseRegistrations() {
+        return "allocation:" + hashTag("leases") + ":registered";
+    }
+
+    /**
+     * Dirty stores key: SET allocation:dirty-stores, ids of stores enqueued to since the sweeper last
+     * popped them. Not per store, so it has no hash tag
+     */
+    public static String dirtyStores() {
+        return "allocation:dirty-stores";
+    }
+
+    /**
+     * Allocation push channel: pub/sub channel allocation:push, carrying every allocation to every instance
+     * for its subscribed pickers. A channel, not a key; in a cluster PUBLISH reaches every node
+     */
+    public static String allocationPushChannel() {
+        return "allocation:push";
+    }
+
+    /**
+     * Cluster hash tag for a store: only the part between the braces is hashed.
+     */
+    static String hashTag(String storeId) {
+        return "{" + storeId + "}";
+    }
+}
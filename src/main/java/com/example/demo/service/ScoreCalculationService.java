@@ -8,6 +8,7 @@ import com.example.demo.model.PickerScoreMeta;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.Optional;
 
 /**
  * Service for calculating priority scores for orders and pickers.
@@ -19,12 +20,19 @@ public class ScoreCalculationService {
     private final AllocationProperties properties;
 
     // Normalization constants (configurable based on domain)
-    private static final double MAX_OAT_DELTA_MINUTES = 120.0;  // 2 hours max delay
-    private static final double MAX_PRIORITY_ORDER = 10.0;       // Priority levels 1-10
-    private static final double MAX_SKU_COUNT = 100.0;           // Max SKUs per order
+    static final double MAX_OAT_DELTA_MINUTES = 120.0;  // 2 hours max delay
+    static final double MAX_PRIORITY_ORDER = 10.0;       // Priority levels 1-10
+    static final double MAX_SKU_COUNT = 100.0;           // Max SKUs per order
     private static final double MAX_SKU_COMPLETED = 10000.0;     // Experienced picker threshold
     private static final double MAX_ORDER_COMPLETED = 1000.0;    // Experienced picker threshold
 
+    // Anchor for ABSOLUTE_OAT encoding, keeps encoded scores small enough for full double precision
+    private static final Instant SCORE_EPOCH = Instant.parse("2024-01-01T00:00:00Z");
+    static final long SCORE_EPOCH_MILLIS = SCORE_EPOCH.toEpochMilli();
+
+    // Bulk order scoring uses the Vector API only when the JVM resolved its incubator module
+    private static final Optional<OrderScorer> VECTOR_SCORER = vectorScorer();
+
     public ScoreCalculationService(AllocationProperties properties) {
         this.properties = properties;
     }
@@ -35,35 +43,40 @@ public class ScoreCalculationService {
      * Lower score = higher priority (orders that have waited longer get lower scores)
      */
     public double calculateOrderScore(Order order) {
-        var weights = properties.getWeights().getOrder();
-
-        // Calculate OAT delta (negative means order has been waiting)
-        long oatDeltaMinutes = java.time.Duration.between(order.oat(), Instant.now()).toMinutes();
-
-        // Normalize: orders waiting longer get lower (better) scores
-        // Invert the delta so waiting longer = lower score
-        double normalizedOatDelta = normalize(-oatDeltaMinutes, -MAX_OAT_DELTA_MINUTES, MAX_OAT_DELTA_MINUTES);
-
-        // Lower priority order number = higher priority = lower score
-        double normalizedPriority = normalize(order.priorityOrder(), 1, MAX_PRIORITY_ORDER);
-
-        // Fewer SKUs = faster to pick = lower score (prioritize quick orders)
-        double normalizedSkuCount = normalize(order.skuCount(), 1, MAX_SKU_COUNT);
-
-        return weights.getOatDelta() * normalizedOatDelta
-             + weights.getPriority() * normalizedPriority
-             + weights.getSkuCount() * normalizedSkuCount;
+        return getOrderScoreMeta(order).finalScore();
     }
 
     /**
-     * Get order score metadata for debugging.
+     * Get order score metadata, including the final score.
+     * Enqueue uses this single result for both the ZSET score and the stored breakdown.
      */
     public OrderScoreMeta getOrderScoreMeta(Order order) {
+        return getOrderScoreMeta(order, Instant.now());
+    }
+
+    /**
+     * Get order score metadata against an explicit clock reading.
+     */
+    public OrderScoreMeta getOrderScoreMeta(Order order, Instant now) {
         var weights = properties.getWeights().getOrder();
 
-        long oatDeltaMinutes = java.time.Duration.between(order.oat(), Instant.now()).toMinutes();
-        double normalizedOatDelta = normalize(-oatDeltaMinutes, -MAX_OAT_DELTA_MINUTES, MAX_OAT_DELTA_MINUTES);
+        // Calculate OAT delta (positive means order has been waiting)
+        long oatDeltaMinutes = java.time.Duration.between(order.oat(), now).toMinutes();
+
+        double normalizedOatDelta;
+        if (properties.getScoreEncoding() == AllocationProperties.ScoreEncoding.ABSOLUTE_OAT) {
+            // Earlier OAT = lower score, and the gap to later arrivals grows as time passes
+            normalizedOatDelta = absoluteOat(order.oat());
+        } else {
+            // Normalize: orders waiting longer get lower (better) scores
+            // Invert the delta so waiting longer = lower score
+            normalizedOatDelta = normalize(-oatDeltaMinutes, -MAX_OAT_DELTA_MINUTES, MAX_OAT_DELTA_MINUTES);
+        }
+
+        // Lower priority order number = higher priority = lower score
         double normalizedPriority = normalize(order.priorityOrder(), 1, MAX_PRIORITY_ORDER);
+
+        // Fewer SKUs = faster to pick = lower score (prioritize quick orders)
         double normalizedSkuCount = normalize(order.skuCount(), 1, MAX_SKU_COUNT);
 
         double finalScore = weights.getOatDelta() * normalizedOatDelta
@@ -78,29 +91,59 @@ public class ScoreCalculationService {
         );
     }
 
+    /**
+     * Calculate order scores in bulk from struct-of-arrays inputs against a single clock reading:
+     * element i of each array describes one order. No per-order objects are created.
+     */
+    public double[] calculateOrderScores(long[] oatEpochMillis, int[] priorityOrders, int[] skuCounts) {
+        return calculateOrderScores(oatEpochMillis, priorityOrders, skuCounts, Instant.now());
+    }
+
+    /**
+     * Calculate order scores in bulk against an explicit clock reading. Each score equals
+     * {@link #getOrderScoreMeta(Order, Instant)} for the same order, with the OAT and the clock reading
+     * truncated to the millisecond.
+     * Runs on the JDK Vector API when the JVM is started with --add-modules jdk.incubator.vector,
+     * and as a scalar loop otherwise; both give bit-identical scores.
+     */
+    public double[] calculateOrderScores(long[] oatEpochMillis, int[] priorityOrders, int[] skuCounts, Instant now) {
+        if (priorityOrders.length != oatEpochMillis.length || skuCounts.length != oatEpochMillis.length) {
+            throw new IllegalArgumentException("oatEpochMillis, priorityOrders and skuCounts must have the same length");
+        }
+        double[] scores = new double[oatEpochMillis.length];
+        OrderScoring scoring = orderScoring(now);
+        if (VECTOR_SCORER.isPresent()) {
+            VECTOR_SCORER.get().score(oatEpochMillis, priorityOrders, skuCounts, scoring, scores);
+        } else {
+            scoreOrders(oatEpochMillis, priorityOrders, skuCounts, scoring, scores);
+        }
+        return scores;
+    }
+
+    /**
+     * Whether bulk order scoring runs on the Vector API in this JVM.
+     */
+    public static boolean isVectorized() {
+        return VECTOR_SCORER.isPresent();
+    }
+
     /**
      * Calculate picker priority score.
      * score = w1 * normalized(SKU_COMPLETED) + w2 * normalized(ORDER_COMPLETED)
      * Lower score = higher priority (more experienced pickers get lower scores)
      */
     public double calculatePickerScore(Picker picker) {
-        var weights = properties.getWeights().getPicker();
-
-        // More experience = lower score (prioritize experienced pickers)
-        // Invert so higher completion = lower score
-        double normalizedSkuCompleted = 1.0 - normalize(picker.skuCompleted(), 0, MAX_SKU_COMPLETED);
-        double normalizedOrderCompleted = 1.0 - normalize(picker.orderCompleted(), 0, MAX_ORDER_COMPLETED);
-
-        return weights.getSkuCompleted() * normalizedSkuCompleted
-             + weights.getOrderCompleted() * normalizedOrderCompleted;
+        return getPickerScoreMeta(picker).finalScore();
     }
 
     /**
-     * Get picker score metadata for debugging.
+     * Get picker score metadata, including the final score.
      */
     public PickerScoreMeta getPickerScoreMeta(Picker picker) {
         var weights = properties.getWeights().getPicker();
 
+        // More experience = lower score (prioritize experienced pickers)
+        // Invert so higher completion = lower score
         double normalizedSkuCompleted = 1.0 - normalize(picker.skuCompleted(), 0, MAX_SKU_COMPLETED);
         double normalizedOrderCompleted = 1.0 - normalize(picker.orderCompleted(), 0, MAX_ORDER_COMPLETED);
 
@@ -114,10 +157,99 @@ public class ScoreCalculationService {
         );
     }
 
+    /**
+     * Cost of assigning an order to a picker in optimal batch matching; lower is better.
+     * The picker score is the picker's inexperience in [0, 1]. The fit term scales it by the order's
+     * normalized SKU count, so large orders go to experienced pickers and small ones to the rest.
+     * The order score is left out: every order in a matching pass gets a picker, so it would add the
+     * same amount to every assignment.
+     */
+    public double matchCost(double skuCount, double pickerScore) {
+        double fitWeight = properties.getMatching().getFitWeight();
+        return pickerScore + fitWeight * normalize(skuCount, 1, MAX_SKU_COUNT) * pickerScore;
+    }
+
+    /**
+     * Weights, encoding and clock reading shared by every order of one bulk scoring call.
+     */
+    record OrderScoring(long nowMillis, boolean absoluteOat, double oatWeight, double priorityWeight, double skuWeight) {
+    }
+
+    OrderScoring orderScoring(Instant now) {
+        var weights = properties.getWeights().getOrder();
+        return new OrderScoring(now.toEpochMilli(),
+            properties.getScoreEncoding() == AllocationProperties.ScoreEncoding.ABSOLUTE_OAT,
+            weights.getOatDelta(), weights.getPriority(), weights.getSkuCount());
+    }
+
+    /**
+     * Bulk scoring kernel; the Vector API one lives in the vector source set.
+     */
+    interface OrderScorer {
+        void score(long[] oatEpochMillis, int[] priorityOrders, int[] skuCounts, OrderScoring scoring,
+            double[] scores);
+    }
+
+    /**
+     * The Vector API kernel, if the JVM resolved jdk.incubator.vector and the kernel is on the classpath.
+     * Looked up by name because it is compiled after, and against, this class.
+     */
+    static Optional<OrderScorer> vectorScorer() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            Class<?> kernel = Class.forName("com.example.demo.service.VectorOrderScoring");
+            return Optional.of((OrderScorer) kernel.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Scalar bulk scoring, also the tail of the vector loop.
+     */
+    static void scoreOrders(long[] oatEpochMillis, int[] priorityOrders, int[] skuCounts, OrderScoring scoring,
+            double[] scores) {
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = orderScore(oatEpochMillis[i], priorityOrders[i], skuCounts[i], scoring);
+        }
+    }
+
+    /**
+     * {@link #getOrderScoreMeta(Order, Instant)}'s final score with the same operations in the same
+     * order, so bulk and per-record scores agree to the bit.
+     */
+    static double orderScore(long oatEpochMillis, int priorityOrder, int skuCount, OrderScoring scoring) {
+        double normalizedOatDelta;
+        if (scoring.absoluteOat()) {
+            normalizedOatDelta = (oatEpochMillis - SCORE_EPOCH_MILLIS) / 60_000.0 / (2 * MAX_OAT_DELTA_MINUTES);
+        } else {
+            // Duration.toMinutes: whole seconds rounded down, then minutes rounded toward zero
+            long oatDeltaMinutes = Math.floorDiv(scoring.nowMillis() - oatEpochMillis, 1000) / 60;
+            normalizedOatDelta = normalize(-oatDeltaMinutes, -MAX_OAT_DELTA_MINUTES, MAX_OAT_DELTA_MINUTES);
+        }
+        return scoring.oatWeight() * normalizedOatDelta
+             + scoring.priorityWeight() * normalize(priorityOrder, 1, MAX_PRIORITY_ORDER)
+             + scoring.skuWeight() * normalize(skuCount, 1, MAX_SKU_COUNT);
+    }
+
+    /**
+     * OAT component anchored on the absolute OAT instead of now - OAT.
+     * normalized(now - OAT) without clamping is (OAT - now + MAX) / (2 * MAX); the now and MAX terms
+     * shift every member of a queue equally, so dropping them keeps the relative order at any point
+     * in time. Queue position therefore reflects elapsed waiting time without rescoring writes.
+     * Unlike RELATIVE, waiting time is not clamped at MAX_OAT_DELTA_MINUTES.
+     */
+    private double absoluteOat(Instant oat) {
+        double oatMinutes = (oat.toEpochMilli() - SCORE_EPOCH.toEpochMilli()) / 60_000.0;
+        return oatMinutes / (2 * MAX_OAT_DELTA_MINUTES);
+    }
+
     /**
      * Normalize a value to range [0, 1].
      */
-    private double normalize(double value, double min, double max) {
+    private static double normalize(double value, double min, double max) {
         if (max == min) return 0.5;
         double normalized = (value - min) / (max - min);
         return Math.max(0.0, Math.min(1.0, normalized));
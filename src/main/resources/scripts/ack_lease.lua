@@ -0,0 +1,18 @@
+-- Lease acknowledgement Lua script
+-- Ends the lease of an allocated order once its assignment has been delivered to the picker.
+-- The picker must match the lease, so a late acknowledgement of an allocation that already
+-- expired cannot end the lease of a later allocation of the same order.
+-- KEYS[1] = in-flight order key (ZSET, lease deadline in epoch ms per orderId)
+-- KEYS[2] = order lease key (HASH, JSON per orderId)
+-- ARGV[1] = orderId
+-- ARGV[2] = pickerId the order was allocated to
+-- Returns: 1 if the lease was ended, 0 if the order holds no lease for that picker
+--          (already acknowledged, or expired and requeued)
+
+local lease = redis.call('HGET', KEYS[2], ARGV[1])
+if not lease or cjson.decode(lease).pickerId ~= ARGV[2] then
+    return 0
+end
+redis.call('ZREM', KEYS[1], ARGV[1])
+redis.call('HDEL', KEYS[2], ARGV[1])
+return 1
@@ -1,30 +1,106 @@
 -- Atomic allocation Lua script
--- Pops the top order and top picker from their respective queues atomically
+-- Pairs the best eligible order and picker within a bounded window of each queue, removes them
+-- atomically, drops their score metadata and capabilities, records the allocation in the
+-- store's history stream and, with leases on, holds the order in flight until it is acknowledged
 -- KEYS[1] = order queue key (ZSET)
 -- KEYS[2] = picker queue key (ZSET)
--- Returns: {orderId, pickerId} or empty array if either queue is empty
+-- KEYS[3] = order score metadata key (HASH, field per orderId)
+-- KEYS[4] = picker score metadata key (HASH, field per pickerId)
+-- KEYS[5] = order capability key (HASH, required mask per orderId, non-zero only)
+-- KEYS[6] = picker capability key (HASH, mask per pickerId, non-zero only)
+-- KEYS[7] = allocation history key (STREAM)
+-- KEYS[8] = in-flight order key (ZSET, lease deadline in epoch ms per orderId)
+-- KEYS[9] = order lease key (HASH, JSON per orderId: what the reaper needs to requeue it)
+-- ARGV[1] = approximate history length cap (MAXLEN ~); 0 disables history
+-- ARGV[2] = eligibility window: members scanned past the head of each queue
+-- ARGV[3] = lease duration in ms; 0 disables leases
+-- Returns: {orderId, pickerId} or empty array if either queue is empty or no pair in the window is eligible
 
 local orderQueueKey = KEYS[1]
 local pickerQueueKey = KEYS[2]
+local orderMetaKey = KEYS[3]
+local pickerMetaKey = KEYS[4]
+local orderCapsKey = KEYS[5]
+local pickerCapsKey = KEYS[6]
+local historyKey = KEYS[7]
+local inflightKey = KEYS[8]
+local leaseKey = KEYS[9]
+local historyMaxLen = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local leaseMs = tonumber(ARGV[3])
 
--- Get top order (lowest score = highest priority)
-local topOrder = redis.call('ZRANGE', orderQueueKey, 0, 0)
-if #topOrder == 0 then
+-- Emptiness check happens here, so callers need no separate ZCARD round trips
+if redis.call('ZCARD', orderQueueKey) == 0 or redis.call('ZCARD', pickerQueueKey) == 0 then
     return {}
 end
 
--- Get top picker (lowest score = highest priority)
-local topPicker = redis.call('ZRANGE', pickerQueueKey, 0, 0)
-if #topPicker == 0 then
-    return {}
+local orderId, orderScore, pickerId, pickerScore
+
+if redis.call('HLEN', orderCapsKey) == 0 then
+    -- No queued order needs a capability: pop the heads (lowest score = highest priority)
+    -- ZPOPMIN returns {member, score}
+    local topOrder = redis.call('ZPOPMIN', orderQueueKey)
+    local topPicker = redis.call('ZPOPMIN', pickerQueueKey)
+    orderId, orderScore = topOrder[1], topOrder[2]
+    pickerId, pickerScore = topPicker[1], topPicker[2]
+else
+    -- ZRANGE WITHSCORES returns {member1, score1, member2, score2, ...}
+    local orders = redis.call('ZRANGE', orderQueueKey, 0, window, 'WITHSCORES')
+    local pickers = redis.call('ZRANGE', pickerQueueKey, 0, window, 'WITHSCORES')
+    local orderIds, pickerIds = {}, {}
+    for i = 1, #orders, 2 do orderIds[#orderIds + 1] = orders[i] end
+    for i = 1, #pickers, 2 do pickerIds[#pickerIds + 1] = pickers[i] end
+    local required = redis.call('HMGET', orderCapsKey, unpack(orderIds))
+    local held = redis.call('HMGET', pickerCapsKey, unpack(pickerIds))
+
+    -- Orders in priority order, each with the best picker holding every bit it requires
+    for i = 1, #orderIds do
+        local need = tonumber(required[i]) or 0
+        for j = 1, #pickerIds do
+            if bit.band(need, bit.bnot(tonumber(held[j]) or 0)) == 0 then
+                orderId, orderScore = orderIds[i], orders[2 * i]
+                pickerId, pickerScore = pickerIds[j], pickers[2 * j]
+                break
+            end
+        end
+        if orderId then
+            break
+        end
+    end
+    if not orderId then
+        return {}
+    end
+    redis.call('ZREM', orderQueueKey, orderId)
+    redis.call('ZREM', pickerQueueKey, pickerId)
 end
 
-local orderId = topOrder[1]
-local pickerId = topPicker[1]
+local timestamp = 0
+if historyMaxLen > 0 or leaseMs > 0 then
+    local now = redis.call('TIME')
+    timestamp = now[1] * 1000 + math.floor(now[2] / 1000)
+end
 
--- Remove both from their queues atomically
-redis.call('ZREM', orderQueueKey, orderId)
-redis.call('ZREM', pickerQueueKey, pickerId)
+-- The lease keeps what the queue entry held, so an unacknowledged order goes back as it was
+if leaseMs > 0 then
+    redis.call('ZADD', inflightKey, timestamp + leaseMs, orderId)
+    redis.call('HSET', leaseKey, orderId, cjson.encode({
+        score = orderScore, pickerId = pickerId,
+        meta = redis.call('HGET', orderMetaKey, orderId) or '',
+        caps = redis.call('HGET', orderCapsKey, orderId) or '0'}))
+end
 
-return {orderId, pickerId}
+-- Metadata and capabilities only live while their member is queued
+redis.call('HDEL', orderMetaKey, orderId)
+redis.call('HDEL', pickerMetaKey, pickerId)
+redis.call('HDEL', orderCapsKey, orderId)
+redis.call('HDEL', pickerCapsKey, pickerId)
+
+-- Written in the same atomic step as the pop; MAXLEN ~ trims whole stream nodes cheaply
+if historyMaxLen > 0 then
+    redis.call('XADD', historyKey, 'MAXLEN', '~', historyMaxLen, '*',
+        'orderId', orderId, 'pickerId', pickerId,
+        'orderScore', orderScore, 'pickerScore', pickerScore,
+        'timestamp', timestamp)
+end
 
+return {orderId, pickerId}
@@ -0,0 +1,88 @@
+-- Atomic commit of the pairs chosen by an optimal matching pass
+-- Pops each pair whose order and picker are both still queued and still eligible, drops their score
+-- metadata and capabilities, records each allocation in the store's history stream and, with leases
+-- on, holds the orders in flight until they are acknowledged. Pairs whose members were taken or
+-- changed since they were read are skipped; their partners stay queued.
+-- KEYS[1] = order queue key (ZSET)
+-- KEYS[2] = picker queue key (ZSET)
+-- KEYS[3] = order score metadata key (HASH, field per orderId)
+-- KEYS[4] = picker score metadata key (HASH, field per pickerId)
+-- KEYS[5] = order capability key (HASH, required mask per orderId, non-zero only)
+-- KEYS[6] = picker capability key (HASH, mask per pickerId, non-zero only)
+-- KEYS[7] = allocation history key (STREAM)
+-- KEYS[8] = in-flight order key (ZSET, lease deadline in epoch ms per orderId)
+-- KEYS[9] = order lease key (HASH, JSON per orderId: what the reaper needs to requeue it)
+-- ARGV[1] = approximate history length cap (MAXLEN ~); 0 disables history
+-- ARGV[2] = lease duration in ms; 0 disables leases
+-- ARGV[3], ARGV[4], ... = orderId1, pickerId1, orderId2, pickerId2, ...
+-- Returns: {orderId1, pickerId1, orderId2, pickerId2, ...} for the pairs allocated
+
+local orderQueueKey = KEYS[1]
+local pickerQueueKey = KEYS[2]
+local orderMetaKey = KEYS[3]
+local pickerMetaKey = KEYS[4]
+local orderCapsKey = KEYS[5]
+local pickerCapsKey = KEYS[6]
+local historyKey = KEYS[7]
+local inflightKey = KEYS[8]
+local leaseKey = KEYS[9]
+local historyMaxLen = tonumber(ARGV[1])
+local leaseMs = tonumber(ARGV[2])
+
+local orderIds, orderScores, pickerIds, pickerScores = {}, {}, {}, {}
+for i = 3, #ARGV - 1, 2 do
+    local orderId, pickerId = ARGV[i], ARGV[i + 1]
+    local orderScore = redis.call('ZSCORE', orderQueueKey, orderId)
+    local pickerScore = redis.call('ZSCORE', pickerQueueKey, pickerId)
+    if orderScore and pickerScore then
+        local need = tonumber(redis.call('HGET', orderCapsKey, orderId)) or 0
+        local held = tonumber(redis.call('HGET', pickerCapsKey, pickerId)) or 0
+        if bit.band(need, bit.bnot(held)) == 0 then
+            redis.call('ZREM', orderQueueKey, orderId)
+            redis.call('ZREM', pickerQueueKey, pickerId)
+            orderIds[#orderIds + 1], orderScores[#orderScores + 1] = orderId, orderScore
+            pickerIds[#pickerIds + 1], pickerScores[#pickerScores + 1] = pickerId, pickerScore
+        end
+    end
+end
+
+if #orderIds == 0 then
+    return {}
+end
+
+local timestamp = 0
+if historyMaxLen > 0 or leaseMs > 0 then
+    local now = redis.call('TIME')
+    timestamp = now[1] * 1000 + math.floor(now[2] / 1000)
+end
+
+local result = {}
+for i = 1, #orderIds do
+    result[#result + 1] = orderIds[i]
+    result[#result + 1] = pickerIds[i]
+    if historyMaxLen > 0 then
+        redis.call('XADD', historyKey, 'MAXLEN', '~', historyMaxLen, '*',
+            'orderId', orderIds[i], 'pickerId', pickerIds[i],
+            'orderScore', orderScores[i], 'pickerScore', pickerScores[i],
+            'timestamp', timestamp)
+    end
+end
+
+-- Same lease record as batch_allocate.lua
+if leaseMs > 0 then
+    local metas = redis.call('HMGET', orderMetaKey, unpack(orderIds))
+    local masks = redis.call('HMGET', orderCapsKey, unpack(orderIds))
+    for i = 1, #orderIds do
+        redis.call('ZADD', inflightKey, timestamp + leaseMs, orderIds[i])
+        redis.call('HSET', leaseKey, orderIds[i], cjson.encode({
+            score = orderScores[i], pickerId = pickerIds[i], meta = metas[i] or '', caps = masks[i] or '0'}))
+    end
+end
+
+-- Pairs are capped by allocation.matching.window, well within unpack limits
+redis.call('HDEL', orderMetaKey, unpack(orderIds))
+redis.call('HDEL', pickerMetaKey, unpack(pickerIds))
+redis.call('HDEL', orderCapsKey, unpack(orderIds))
+redis.call('HDEL', pickerCapsKey, unpack(pickerIds))
+
+return result
@@ -0,0 +1,121 @@
+-- Atomic batch allocation Lua script
+-- Pairs up to N orders and pickers in priority order, each order with the best eligible picker
+-- still unpaired, removes them, drops their score metadata and capabilities, records each
+-- allocation in the store's history stream and, with leases on, holds the orders in flight until
+-- they are acknowledged
+-- KEYS[1] = order queue key (ZSET)
+-- KEYS[2] = picker queue key (ZSET)
+-- KEYS[3] = order score metadata key (HASH, field per orderId)
+-- KEYS[4] = picker score metadata key (HASH, field per pickerId)
+-- KEYS[5] = order capability key (HASH, required mask per orderId, non-zero only)
+-- KEYS[6] = picker capability key (HASH, mask per pickerId, non-zero only)
+-- KEYS[7] = allocation history key (STREAM)
+-- KEYS[8] = in-flight order key (ZSET, lease deadline in epoch ms per orderId)
+-- KEYS[9] = order lease key (HASH, JSON per orderId: what the reaper needs to requeue it)
+-- ARGV[1] = maximum number of pairs to allocate
+-- ARGV[2] = approximate history length cap (MAXLEN ~); 0 disables history
+-- ARGV[3] = eligibility window: members scanned past the first N of each queue
+-- ARGV[4] = lease duration in ms; 0 disables leases
+-- Returns: {orderId1, pickerId1, orderId2, pickerId2, ...} or empty array if nothing could be paired
+
+local orderQueueKey = KEYS[1]
+local pickerQueueKey = KEYS[2]
+local orderMetaKey = KEYS[3]
+local pickerMetaKey = KEYS[4]
+local orderCapsKey = KEYS[5]
+local pickerCapsKey = KEYS[6]
+local historyKey = KEYS[7]
+local inflightKey = KEYS[8]
+local leaseKey = KEYS[9]
+local max = tonumber(ARGV[1])
+local historyMaxLen = tonumber(ARGV[2])
+local window = tonumber(ARGV[3])
+local leaseMs = tonumber(ARGV[4])
+
+-- Only take as many members as can be paired, so nothing is left unmatched
+local count = math.min(max, redis.call('ZCARD', orderQueueKey), redis.call('ZCARD', pickerQueueKey))
+if count <= 0 then
+    return {}
+end
+
+-- Paired members as parallel lists of ids and scores
+local orderIds, orderScores, pickerIds, pickerScores = {}, {}, {}, {}
+
+if redis.call('HLEN', orderCapsKey) == 0 then
+    -- No queued order needs a capability: pop the heads
+    -- ZPOPMIN returns {member1, score1, member2, score2, ...} (lowest score first)
+    local orders = redis.call('ZPOPMIN', orderQueueKey, count)
+    local pickers = redis.call('ZPOPMIN', pickerQueueKey, count)
+    for i = 1, count * 2, 2 do
+        orderIds[#orderIds + 1], orderScores[#orderScores + 1] = orders[i], orders[i + 1]
+        pickerIds[#pickerIds + 1], pickerScores[#pickerScores + 1] = pickers[i], pickers[i + 1]
+    end
+else
+    local scan = max + window
+    local orders = redis.call('ZRANGE', orderQueueKey, 0, scan - 1, 'WITHSCORES')
+    local pickers = redis.call('ZRANGE', pickerQueueKey, 0, scan - 1, 'WITHSCORES')
+    local candidateOrders, candidatePickers = {}, {}
+    for i = 1, #orders, 2 do candidateOrders[#candidateOrders + 1] = orders[i] end
+    for i = 1, #pickers, 2 do candidatePickers[#candidatePickers + 1] = pickers[i] end
+    local required = redis.call('HMGET', orderCapsKey, unpack(candidateOrders))
+    local held = redis.call('HMGET', pickerCapsKey, unpack(candidatePickers))
+
+    -- Greedy in order priority: orders with no eligible picker left stay queued
+    local taken = {}
+    for i = 1, #candidateOrders do
+        if #orderIds == max then
+            break
+        end
+        local need = tonumber(required[i]) or 0
+        for j = 1, #candidatePickers do
+            if not taken[j] and bit.band(need, bit.bnot(tonumber(held[j]) or 0)) == 0 then
+                taken[j] = true
+                orderIds[#orderIds + 1], orderScores[#orderScores + 1] = candidateOrders[i], orders[2 * i]
+                pickerIds[#pickerIds + 1], pickerScores[#pickerScores + 1] = candidatePickers[j], pickers[2 * j]
+                break
+            end
+        end
+    end
+    if #orderIds == 0 then
+        return {}
+    end
+    redis.call('ZREM', orderQueueKey, unpack(orderIds))
+    redis.call('ZREM', pickerQueueKey, unpack(pickerIds))
+end
+
+local timestamp = 0
+if historyMaxLen > 0 or leaseMs > 0 then
+    local now = redis.call('TIME')
+    timestamp = now[1] * 1000 + math.floor(now[2] / 1000)
+end
+
+local result = {}
+for i = 1, #orderIds do
+    result[#result + 1] = orderIds[i]
+    result[#result + 1] = pickerIds[i]
+    if historyMaxLen > 0 then
+        redis.call('XADD', historyKey, 'MAXLEN', '~', historyMaxLen, '*',
+            'orderId', orderIds[i], 'pickerId', pickerIds[i],
+            'orderScore', orderScores[i], 'pickerScore', pickerScores[i],
+            'timestamp', timestamp)
+    end
+end
+
+-- The lease keeps what the queue entry held, so an unacknowledged order goes back as it was
+if leaseMs > 0 then
+    local metas = redis.call('HMGET', orderMetaKey, unpack(orderIds))
+    local masks = redis.call('HMGET', orderCapsKey, unpack(orderIds))
+    for i = 1, #orderIds do
+        redis.call('ZADD', inflightKey, timestamp + leaseMs, orderIds[i])
+        redis.call('HSET', leaseKey, orderIds[i], cjson.encode({
+            score = orderScores[i], pickerId = pickerIds[i], meta = metas[i] or '', caps = masks[i] or '0'}))
+    end
+end
+
+-- One multi-field HDEL per hash; pairs are capped by allocation.max-batch-size, well within unpack limits
+redis.call('HDEL', orderMetaKey, unpack(orderIds))
+redis.call('HDEL', pickerMetaKey, unpack(pickerIds))
+redis.call('HDEL', orderCapsKey, unpack(orderIds))
+redis.call('HDEL', pickerCapsKey, unpack(pickerIds))
+
+return result
@@ -0,0 +1,129 @@
+-- Fused enqueue-and-allocate Lua script
+-- Adds an order or picker to its queue with its score metadata and capabilities, then pairs the
+-- best eligible order and picker within a bounded window of each queue atomically, drops their
+-- score metadata and capabilities, records the allocation in the store's history stream and, with
+-- leases on, holds the order in flight until it is acknowledged
+-- KEYS[1] = order queue key (ZSET)
+-- KEYS[2] = picker queue key (ZSET)
+-- KEYS[3] = order score metadata key (HASH, field per orderId)
+-- KEYS[4] = picker score metadata key (HASH, field per pickerId)
+-- KEYS[5] = order capability key (HASH, required mask per orderId, non-zero only)
+-- KEYS[6] = picker capability key (HASH, mask per pickerId, non-zero only)
+-- KEYS[7] = allocation history key (STREAM)
+-- KEYS[8] = in-flight order key (ZSET, lease deadline in epoch ms per orderId)
+-- KEYS[9] = order lease key (HASH, JSON per orderId: what the reaper needs to requeue it)
+-- ARGV[1] = queue to insert into: 'order' or 'picker'
+-- ARGV[2] = member id (orderId or pickerId)
+-- ARGV[3] = member score
+-- ARGV[4] = score metadata TTL in seconds, applied to the whole hash
+-- ARGV[5] = approximate history length cap (MAXLEN ~); 0 disables history
+-- ARGV[6] = packed score metadata of the member; empty to store none
+-- ARGV[7] = capability mask of the member: required (order) or held (picker); 0 for none
+-- ARGV[8] = eligibility window: members scanned past the head of each queue
+-- ARGV[9] = lease duration in ms; 0 disables leases
+-- Returns: {orderId, pickerId} or empty array if either queue is empty after the insert
+--          or no pair in the window is eligible
+
+local orderQueueKey = KEYS[1]
+local pickerQueueKey = KEYS[2]
+local orderMetaKey = KEYS[3]
+local pickerMetaKey = KEYS[4]
+local orderCapsKey = KEYS[5]
+local pickerCapsKey = KEYS[6]
+local historyKey = KEYS[7]
+local inflightKey = KEYS[8]
+local leaseKey = KEYS[9]
+local historyMaxLen = tonumber(ARGV[5])
+local window = tonumber(ARGV[8])
+local leaseMs = tonumber(ARGV[9])
+
+local targetKey = orderQueueKey
+local targetMetaKey = orderMetaKey
+local targetCapsKey = orderCapsKey
+if ARGV[1] == 'picker' then
+    targetKey = pickerQueueKey
+    targetMetaKey = pickerMetaKey
+    targetCapsKey = pickerCapsKey
+end
+
+redis.call('ZADD', targetKey, ARGV[3], ARGV[2])
+
+if ARGV[6] ~= '' then
+    redis.call('HSET', targetMetaKey, ARGV[2], ARGV[6])
+    redis.call('EXPIRE', targetMetaKey, ARGV[4])
+end
+
+-- Absent means 0, so a re-enqueue without capabilities clears any earlier mask
+if ARGV[7] ~= '0' then
+    redis.call('HSET', targetCapsKey, ARGV[2], ARGV[7])
+else
+    redis.call('HDEL', targetCapsKey, ARGV[2])
+end
+
+if redis.call('ZCARD', orderQueueKey) == 0 or redis.call('ZCARD', pickerQueueKey) == 0 then
+    return {}
+end
+
+local orderId, orderScore, pickerId, pickerScore
+
+if redis.call('HLEN', orderCapsKey) == 0 then
+    local topOrder = redis.call('ZPOPMIN', orderQueueKey)
+    local topPicker = redis.call('ZPOPMIN', pickerQueueKey)
+    orderId, orderScore = topOrder[1], topOrder[2]
+    pickerId, pickerScore = topPicker[1], topPicker[2]
+else
+    local orders = redis.call('ZRANGE', orderQueueKey, 0, window, 'WITHSCORES')
+    local pickers = redis.call('ZRANGE', pickerQueueKey, 0, window, 'WITHSCORES')
+    local orderIds, pickerIds = {}, {}
+    for i = 1, #orders, 2 do orderIds[#orderIds + 1] = orders[i] end
+    for i = 1, #pickers, 2 do pickerIds[#pickerIds + 1] = pickers[i] end
+    local required = redis.call('HMGET', orderCapsKey, unpack(orderIds))
+    local held = redis.call('HMGET', pickerCapsKey, unpack(pickerIds))
+
+    for i = 1, #orderIds do
+        local need = tonumber(required[i]) or 0
+        for j = 1, #pickerIds do
+            if bit.band(need, bit.bnot(tonumber(held[j]) or 0)) == 0 then
+                orderId, orderScore = orderIds[i], orders[2 * i]
+                pickerId, pickerScore = pickerIds[j], pickers[2 * j]
+                break
+            end
+        end
+        if orderId then
+            break
+        end
+    end
+    if not orderId then
+        return {}
+    end
+    redis.call('ZREM', orderQueueKey, orderId)
+    redis.call('ZREM', pickerQueueKey, pickerId)
+end
+
+local timestamp = 0
+if historyMaxLen > 0 or leaseMs > 0 then
+    local now = redis.call('TIME')
+    timestamp = now[1] * 1000 + math.floor(now[2] / 1000)
+end
+
+if leaseMs > 0 then
+    redis.call('ZADD', inflightKey, timestamp + leaseMs, orderId)
+    redis.call('HSET', leaseKey, orderId, cjson.encode({
+        score = orderScore, pickerId = pickerId,
+        meta = redis.call('HGET', orderMetaKey, orderId) or '',
+        caps = redis.call('HGET', orderCapsKey, orderId) or '0'}))
+end
+
+redis.call('HDEL', orderMetaKey, orderId)
+redis.call('HDEL', pickerMetaKey, pickerId)
+redis.call('HDEL', orderCapsKey, orderId)
+redis.call('HDEL', pickerCapsKey, pickerId)
+
+if historyMaxLen > 0 then
+    redis.call('XADD', historyKey, 'MAXLEN', '~', historyMaxLen, '*',
+        'orderId', orderId, 'pickerId', pickerId,
+        'orderScore', orderScore, 'pickerScore', pickerScore,
+        'timestamp', timestamp)
+end
+
+return {orderId, pickerId}
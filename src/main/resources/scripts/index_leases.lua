@@ -0,0 +1,39 @@
+-- Lease index Lua script
+-- Writes back what a reaper pass found: each visited store is due again at its earliest remaining lease
+-- deadline. A store left without leases is dropped once no instance has registered it for quietMs, the
+-- longest an instance reuses a registration plus a margin for clock skew; until then it is due again one
+-- lease duration after the visit, the earliest a lease taken since could expire. Leases taken after the
+-- reap script read the store are therefore always covered, and each pass only touches due stores.
+-- Both keys share a hash tag, so this runs on one Redis Cluster slot.
+-- KEYS[1] = lease due key (ZSET, storeId scored by the epoch ms the reaper must next visit it)
+-- KEYS[2] = lease registration key (ZSET, storeId scored by its last registration in epoch ms)
+-- ARGV[1] = lease duration in ms
+-- ARGV[2] = quietMs
+-- ARGV[3..n] = per visited store: storeId, reap script time in epoch ms, next deadline or -1
+-- Returns: number of stores dropped from the index
+
+local dueKey = KEYS[1]
+local registeredKey = KEYS[2]
+local leaseMs = tonumber(ARGV[1])
+local quietMs = tonumber(ARGV[2])
+
+local dropped = 0
+for i = 3, #ARGV, 3 do
+    local storeId = ARGV[i]
+    local visitedMs = tonumber(ARGV[i + 1])
+    local nextDeadline = tonumber(ARGV[i + 2])
+    if nextDeadline >= 0 then
+        redis.call('ZADD', dueKey, nextDeadline, storeId)
+    else
+        local registered = tonumber(redis.call('ZSCORE', registeredKey, storeId))
+        if not registered or registered < visitedMs - quietMs then
+            redis.call('ZREM', dueKey, storeId)
+            redis.call('ZREM', registeredKey, storeId)
+            dropped = dropped + 1
+        else
+            redis.call('ZADD', dueKey, visitedMs + leaseMs, storeId)
+        end
+    end
+end
+
+return dropped
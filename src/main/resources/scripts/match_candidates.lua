@@ -0,0 +1,37 @@
+-- Read-only snapshot of the head of both queues for an optimal matching pass
+-- KEYS[1] = order queue key (ZSET)
+-- KEYS[2] = picker queue key (ZSET)
+-- KEYS[3] = order score metadata key (HASH, field per orderId)
+-- KEYS[4] = picker score metadata key (HASH, field per pickerId)
+-- KEYS[5] = order capability key (HASH, required mask per orderId, non-zero only)
+-- KEYS[6] = picker capability key (HASH, mask per pickerId, non-zero only)
+-- ARGV[1] = window: members read from the head of each queue
+-- Returns: {orderCount, orderId1, score1, meta1, caps1, ..., pickerId1, score1, meta1, caps1, ...}
+--          with '' for missing metadata and '0' for missing capabilities
+
+local window = tonumber(ARGV[1])
+local result = {0}
+
+local function append(queueKey, metaKey, capsKey)
+    -- ZRANGE WITHSCORES returns {member1, score1, member2, score2, ...} (lowest score first)
+    local members = redis.call('ZRANGE', queueKey, 0, window - 1, 'WITHSCORES')
+    if #members == 0 then
+        return 0
+    end
+    local ids = {}
+    for i = 1, #members, 2 do ids[#ids + 1] = members[i] end
+    local meta = redis.call('HMGET', metaKey, unpack(ids))
+    local caps = redis.call('HMGET', capsKey, unpack(ids))
+    for i = 1, #ids do
+        result[#result + 1] = ids[i]
+        result[#result + 1] = members[2 * i]
+        result[#result + 1] = meta[i] or ''
+        result[#result + 1] = caps[i] or '0'
+    end
+    return #ids
+end
+
+result[1] = append(KEYS[1], KEYS[3], KEYS[5])
+append(KEYS[2], KEYS[4], KEYS[6])
+
+return result
@@ -0,0 +1,66 @@
+-- Lease reaper Lua script
+-- Returns orders whose lease has expired unacknowledged to the order queue with their original
+-- score, score metadata and capabilities, oldest deadline first. Only expired leases are read:
+-- one range lookup on the in-flight ZSET plus O(log n) per reaped order, never a scan of the queue.
+-- An order queued again since it was allocated keeps its newer entry. Also reports the store's next
+-- lease deadline, which the reaper writes back to its index of stores by due time.
+-- KEYS[1] = order queue key (ZSET)
+-- KEYS[2] = order score metadata key (HASH, field per orderId)
+-- KEYS[3] = order capability key (HASH, required mask per orderId, non-zero only)
+-- KEYS[4] = in-flight order key (ZSET, lease deadline in epoch ms per orderId)
+-- KEYS[5] = order lease key (HASH, JSON per orderId)
+-- ARGV[1] = maximum number of leases to reap in this call
+-- ARGV[2] = score metadata TTL in seconds, applied to the whole hash
+-- Returns: {now in epoch ms, earliest remaining lease deadline or -1 if none, {orderId1, orderId2, ...} requeued}
+
+local orderQueueKey = KEYS[1]
+local orderMetaKey = KEYS[2]
+local orderCapsKey = KEYS[3]
+local inflightKey = KEYS[4]
+local leaseKey = KEYS[5]
+local max = tonumber(ARGV[1])
+
+local now = redis.call('TIME')
+local nowMs = now[1] * 1000 + math.floor(now[2] / 1000)
+
+local function nextDeadline()
+    local head = redis.call('ZRANGE', inflightKey, 0, 0, 'WITHSCORES')
+    if #head == 0 then
+        return -1
+    end
+    return tonumber(head[2])
+end
+
+local expired = redis.call('ZRANGEBYSCORE', inflightKey, '-inf', nowMs, 'LIMIT', 0, max)
+if #expired == 0 then
+    return {nowMs, nextDeadline(), {}}
+end
+local leases = redis.call('HMGET', leaseKey, unpack(expired))
+
+local requeued = {}
+for i = 1, #expired do
+    local orderId = expired[i]
+    if leases[i] then
+        local lease = cjson.decode(leases[i])
+        -- NX: a newer enqueue of the same order wins over the leased copy
+        if redis.call('ZADD', orderQueueKey, 'NX', lease.score, orderId) == 1 then
+            if lease.meta ~= '' then
+                redis.call('HSET', orderMetaKey, orderId, lease.meta)
+            end
+            if lease.caps ~= '0' then
+                redis.call('HSET', orderCapsKey, orderId, lease.caps)
+            end
+            requeued[#requeued + 1] = orderId
+        end
+    end
+end
+
+if #requeued > 0 then
+    redis.call('EXPIRE', orderMetaKey, ARGV[2])
+end
+
+-- Reaped leases are bounded by ARGV[1] (allocation.lease.reap-batch-size), well within unpack limits
+redis.call('ZREM', inflightKey, unpack(expired))
+redis.call('HDEL', leaseKey, unpack(expired))
+
+return {nowMs, nextDeadline(), requeued}
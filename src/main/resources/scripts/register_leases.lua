@@ -0,0 +1,29 @@
+-- Lease registration Lua script
+-- Puts stores on the reaper's index before an instance allocates in them with leases on. Each store
+-- is due for a reaper visit no later than a lease taken now would expire, and is stamped with the
+-- registration time, which keeps it indexed while the registering instance may still take leases.
+-- Both keys share a hash tag, so this runs on one Redis Cluster slot.
+-- KEYS[1] = lease due key (ZSET, storeId scored by the epoch ms the reaper must next visit it)
+-- KEYS[2] = lease registration key (ZSET, storeId scored by its last registration in epoch ms)
+-- ARGV[1] = lease duration in ms
+-- ARGV[2..n] = storeIds
+-- Returns: number of stores registered
+
+local dueKey = KEYS[1]
+local registeredKey = KEYS[2]
+local leaseMs = tonumber(ARGV[1])
+
+local now = redis.call('TIME')
+local nowMs = now[1] * 1000 + math.floor(now[2] / 1000)
+
+for i = 2, #ARGV do
+    local storeId = ARGV[i]
+    redis.call('ZADD', registeredKey, nowMs, storeId)
+    -- Only ever brought forward here: an earlier due time belongs to a lease already taken
+    local due = tonumber(redis.call('ZSCORE', dueKey, storeId))
+    if not due or due > nowMs + leaseMs then
+        redis.call('ZADD', dueKey, nowMs + leaseMs, storeId)
+    end
+end
+
+return #ARGV - 1
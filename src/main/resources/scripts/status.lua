@@ -0,0 +1,31 @@
+-- Queue status Lua script
+-- Reads queue sizes, top members and their score metadata in one call
+-- KEYS[1] = order queue key (ZSET)
+-- KEYS[2] = picker queue key (ZSET)
+-- KEYS[3] = order score metadata key (HASH, field per orderId)
+-- KEYS[4] = picker score metadata key (HASH, field per pickerId)
+-- Returns: {orderQueueSize, pickerQueueSize, topOrderId or '', topPickerId or '',
+--           packed order meta or '', packed picker meta or ''}
+-- Empty strings rather than nil keep the reply free of nulls, which reactive drivers cannot emit
+
+local orderQueueKey = KEYS[1]
+local pickerQueueKey = KEYS[2]
+
+local orderQueueSize = redis.call('ZCARD', orderQueueKey)
+local pickerQueueSize = redis.call('ZCARD', pickerQueueKey)
+
+local topOrderId = ''
+local topOrderMeta = ''
+if orderQueueSize > 0 then
+    topOrderId = redis.call('ZRANGE', orderQueueKey, 0, 0)[1]
+    topOrderMeta = redis.call('HGET', KEYS[3], topOrderId) or ''
+end
+
+local topPickerId = ''
+local topPickerMeta = ''
+if pickerQueueSize > 0 then
+    topPickerId = redis.call('ZRANGE', pickerQueueKey, 0, 0)[1]
+    topPickerMeta = redis.call('HGET', KEYS[4], topPickerId) or ''
+end
+
+return {orderQueueSize, pickerQueueSize, topOrderId, topPickerId, topOrderMeta, topPickerMeta}
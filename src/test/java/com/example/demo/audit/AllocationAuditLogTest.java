@@ -0,0 +1,152 @@
+package com.example.demo.audit;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllocationAuditLogTest {
+
+    @TempDir
+    Path directory;
+
+    private AllocationProperties properties;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AllocationProperties();
+        properties.getAudit().setEnabled(true);
+        properties.getAudit().setDirectory(directory.toString());
+        properties.getAudit().setFlushIntervalMs(1);
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void close_writesEveryEventAsOneJsonLine() throws IOException {
+        AllocationAuditLog auditLog = start();
+
+        auditLog.enqueued(new QueueEntry(QueueType.ORDER, "store1", "order1", 0.25, Map.of()));
+        auditLog.enqueued(new QueueEntry(QueueType.PICKER, "store1", "picker\"1", 0.5, Map.of()));
+        auditLog.dequeued(QueueType.ORDER, "store1", "order2");
+        auditLog.allocated(List.of(new Allocation("order1", "picker\"1", "store1", 1234)));
+        auditLog.close();
+
+        List<String> lines = lines();
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0).endsWith(",\"event\":\"order_enqueued\",\"storeId\":\"store1\",\"orderId\":\"order1\",\"score\":0.25}"));
+        assertTrue(lines.get(1).endsWith(",\"event\":\"picker_enqueued\",\"storeId\":\"store1\",\"pickerId\":\"picker\\\"1\",\"score\":0.5}"));
+        assertTrue(lines.get(2).endsWith(",\"event\":\"order_dequeued\",\"storeId\":\"store1\",\"orderId\":\"order2\"}"));
+        assertEquals("{\"timestamp\":1234,\"event\":\"allocated\",\"storeId\":\"store1\",\"orderId\":\"order1\",\"pickerId\":\"picker\\\"1\"}",
+            lines.get(3));
+        assertEquals(4, events("queued"));
+    }
+
+    @Test
+    void storeSampleRate_overridesDefaultRate() throws IOException {
+        properties.getAudit().setSampleRate(0.0);
+        properties.getAudit().setStoreSampleRates(Map.of("store1", 1.0));
+        AllocationAuditLog auditLog = start();
+
+        for (int i = 0; i < 100; i++) {
+            auditLog.dequeued(QueueType.ORDER, "store1", "order" + i);
+            auditLog.dequeued(QueueType.ORDER, "store2", "order" + i);
+        }
+        auditLog.close();
+
+        List<String> lines = lines();
+        assertEquals(100, lines.size());
+        assertTrue(lines.stream().allMatch(line -> line.contains("\"storeId\":\"store1\"")));
+    }
+
+    @Test
+    void sampleRate_keepsOrderEventsTogether() throws IOException {
+        properties.getAudit().setSampleRate(0.5);
+        AllocationAuditLog auditLog = start();
+
+        for (int i = 0; i < 1000; i++) {
+            auditLog.enqueued(new QueueEntry(QueueType.ORDER, "store1", "order" + i, 0.5, Map.of()));
+            auditLog.allocated(List.of(new Allocation("order" + i, "picker" + i, "store1", i)));
+        }
+        auditLog.close();
+
+        List<String> enqueued = new ArrayList<>();
+        List<String> allocated = new ArrayList<>();
+        for (String line : lines()) {
+            String orderId = line.replaceAll(".*\"orderId\":\"([^\"]+)\".*", "$1");
+            (line.contains("\"allocated\"") ? allocated : enqueued).add(orderId);
+        }
+        assertEquals(enqueued, allocated);
+        assertTrue(enqueued.size() > 350 && enqueued.size() < 650, "sampled " + enqueued.size());
+    }
+
+    @Test
+    void disabled_writesNothing() throws IOException {
+        properties.getAudit().setEnabled(false);
+        AllocationAuditLog auditLog = start();
+
+        auditLog.dequeued(QueueType.ORDER, "store1", "order1");
+        auditLog.close();
+
+        assertEquals(List.of(), lines());
+        assertEquals(0, events("queued"));
+    }
+
+    @Test
+    void fileWriter_rollsAndKeepsNewestFiles() throws IOException {
+        AuditRingBuffer ring = new AuditRingBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            ring.offer(AuditRingBuffer.EventType.ORDER_DEQUEUED, i, "store1", "order" + i, null, Double.NaN);
+        }
+
+        try (AuditFileWriter writer = new AuditFileWriter(directory, 1, 2)) {
+            ring.drain(record -> {
+                try {
+                    writer.write(record);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            });
+        }
+
+        assertEquals(List.of("audit-000000000004.ndjson", "audit-000000000005.ndjson"), fileNames());
+        assertEquals(2, lines().size());
+    }
+
+    private AllocationAuditLog start() {
+        return new AllocationAuditLog(properties, new AllocationMetrics(registry));
+    }
+
+    private double events(String result) {
+        return registry.get("allocation.audit.events").tag("result", result).counter().count();
+    }
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private List<String> lines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String name : fileNames()) {
+            lines.addAll(Files.readAllLines(directory.resolve(name)));
+        }
+        return lines;
+    }
+}
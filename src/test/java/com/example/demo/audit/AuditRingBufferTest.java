@@ -0,0 +1,91 @@
+package com.example.demo.audit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditRingBufferTest {
+
+    @Test
+    void capacity_roundsUpToPowerOfTwo() {
+        assertEquals(8, new AuditRingBuffer(5).capacity());
+        assertEquals(8, new AuditRingBuffer(8).capacity());
+        assertEquals(2, new AuditRingBuffer(0).capacity());
+    }
+
+    @Test
+    void offer_failsWhenFullUntilDrained() {
+        AuditRingBuffer ring = new AuditRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(offer(ring, "order" + i));
+        }
+
+        assertFalse(offer(ring, "order4"));
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(4, ring.drain(record -> drained.add(record.orderId)));
+        assertEquals(List.of("order0", "order1", "order2", "order3"), drained);
+        assertTrue(offer(ring, "order5"));
+    }
+
+    @Test
+    void drain_recordCarriesEveryField() {
+        AuditRingBuffer ring = new AuditRingBuffer(4);
+        ring.offer(AuditRingBuffer.EventType.ALLOCATED, 1234, "store1", "order1", "picker1", Double.NaN);
+
+        ring.drain(record -> {
+            assertEquals(AuditRingBuffer.EventType.ALLOCATED, record.type);
+            assertEquals(1234, record.timestamp);
+            assertEquals("store1", record.storeId);
+            assertEquals("order1", record.orderId);
+            assertEquals("picker1", record.pickerId);
+            assertTrue(Double.isNaN(record.score));
+        });
+    }
+
+    @Test
+    void concurrentProducers_everyEventDrainedOnceOrCountedAsDropped() throws InterruptedException {
+        AuditRingBuffer ring = new AuditRingBuffer(1024);
+        int producers = 4;
+        int perProducer = 20_000;
+        AtomicInteger dropped = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String prefix = "p" + p + "-";
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (!offer(ring, prefix + i)) {
+                        dropped.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        Set<String> drained = new HashSet<>();
+        List<String> duplicates = new ArrayList<>();
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            ring.drain(record -> {
+                if (!drained.add(record.orderId)) {
+                    duplicates.add(record.orderId);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        ring.drain(record -> drained.add(record.orderId));
+
+        assertEquals(List.of(), duplicates);
+        assertEquals(producers * perProducer, drained.size() + dropped.get());
+    }
+
+    private static boolean offer(AuditRingBuffer ring, String orderId) {
+        return ring.offer(AuditRingBuffer.EventType.ORDER_ENQUEUED, 0, "store1", orderId, null, 0.5);
+    }
+}
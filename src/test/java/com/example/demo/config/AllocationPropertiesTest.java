@@ -0,0 +1,53 @@
+package com.example.demo.config;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllocationPropertiesTest {
+
+    private final ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
+    private final Validator validator = factory.getValidator();
+
+    @AfterEach
+    void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    void defaults_areValid() {
+        assertEquals(Set.of(), violations(new AllocationProperties()));
+    }
+
+    @Test
+    void windows_mustBeAtLeastOne() {
+        AllocationProperties properties = new AllocationProperties();
+        properties.setEligibilityWindow(0);
+        properties.getMatching().setWindow(0);
+
+        assertEquals(Set.of("eligibilityWindow", "matching.window"), violations(properties));
+    }
+
+    @Test
+    void pushHeartbeatInterval_mustBePositive() {
+        AllocationProperties properties = new AllocationProperties();
+        properties.getPush().setHeartbeatIntervalMs(0);
+
+        assertEquals(Set.of("push.heartbeatIntervalMs"), violations(properties));
+    }
+
+    private Set<String> violations(AllocationProperties properties) {
+        return validator.validate(properties).stream()
+            .map(ConstraintViolation::getPropertyPath)
+            .map(Object::toString)
+            .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.demo.controller;
+
+import com.example.demo.audit.AllocationAuditLog;
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.dto.BatchIngestResponse;
+import com.example.demo.dto.BatchItemResult;
+import com.example.demo.dto.BatchTriggerResponse;
+import com.example.demo.dto.OrderRequest;
+import com.example.demo.dto.PickerRequest;
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.engine.LocalAllocationEngine;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.service.AllocationDispatcher;
+import com.example.demo.service.AllocationPushService;
+import com.example.demo.service.AllocationService;
+import com.example.demo.service.MatchingService;
+import com.example.demo.service.QueueService;
+import com.example.demo.service.ScoreCalculationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllocationControllerTest {
+
+    private AllocationProperties properties;
+    private LocalAllocationEngine engine;
+    private MatchingService matchingService;
+    private AllocationPushService pushService;
+    private AllocationDispatcher dispatcher;
+    private ValidatorFactory validatorFactory;
+    private AllocationController controller;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AllocationProperties();
+        engine = new LocalAllocationEngine(properties);
+        AllocationMetrics metrics = new AllocationMetrics(new SimpleMeterRegistry());
+        ScoreCalculationService scoreCalculationService = new ScoreCalculationService(properties);
+        matchingService = new MatchingService(engine, scoreCalculationService, properties, metrics);
+        AllocationAuditLog auditLog = new AllocationAuditLog(properties, metrics);
+        pushService = new AllocationPushService(properties, metrics, Optional.empty());
+        QueueService queueService = new QueueService(engine, scoreCalculationService, metrics, auditLog);
+        AllocationService allocationService = new AllocationService(engine, queueService, scoreCalculationService,
+            properties, metrics, matchingService, auditLog, pushService);
+        dispatcher = new AllocationDispatcher(allocationService, properties, List.of());
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        controller = new AllocationController(queueService, allocationService, dispatcher, pushService, properties,
+            validatorFactory.getValidator());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+        matchingService.shutdown();
+        pushService.shutdown();
+        validatorFactory.close();
+    }
+
+    @Test
+    void enqueueOrders_rejectsInvalidItemsAndEnqueuesTheRest() {
+        BatchIngestResponse response = controller.enqueueOrders(Arrays.asList(
+            order("order1", "store1"),
+            order("", "store1"),
+            null,
+            new OrderRequest("order2", "store1", null, 0, 3, null),
+            order("order3", "store1"))).getBody();
+
+        assertEquals(5, response.received());
+        assertEquals(2, response.accepted());
+        assertEquals(3, response.rejected());
+        assertEquals(List.of(true, false, false, false, true),
+            response.items().stream().map(BatchItemResult::accepted).toList());
+        assertEquals("Order ID is required", response.items().get(1).message());
+        assertEquals("Item is required", response.items().get(2).message());
+        assertEquals("Priority must be at least 1", response.items().get(3).message());
+        assertEquals(2, engine.size(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void enqueueOrders_matchesAllocationsByStoreAndOrderId() {
+        controller.enqueuePickers(List.of(picker("pickerA", "store1"), picker("pickerB", "store2")));
+
+        BatchIngestResponse response = controller.enqueueOrders(List.of(
+            order("order1", "store1"),
+            order("order1", "store2"))).getBody();
+
+        assertEquals(List.of("pickerA", "pickerB"),
+            response.items().stream().map(BatchItemResult::allocatedTo).toList());
+        assertEquals(2, response.allocations().size());
+    }
+
+    @Test
+    void enqueuePickers_matchesAllocationsByStoreAndPickerId() {
+        controller.enqueueOrders(List.of(order("orderA", "store1"), order("orderB", "store2")));
+
+        BatchIngestResponse response = controller.enqueuePickers(List.of(
+            picker("picker1", "store1"),
+            picker("picker1", "store2"),
+            picker("picker2", "store2"))).getBody();
+
+        assertEquals(Arrays.asList("orderA", "orderB", null),
+            response.items().stream().map(BatchItemResult::allocatedTo).toList());
+        assertEquals("Enqueued", response.items().get(2).message());
+        assertEquals(1, engine.size(QueueType.PICKER, "store2"));
+    }
+
+    @Test
+    void enqueuePickers_rejectsInvalidItemsAndEnqueuesTheRest() {
+        BatchIngestResponse response = controller.enqueuePickers(List.of(
+            picker("picker1", "store1"),
+            new PickerRequest("picker2", " ", 0, 0, null),
+            new PickerRequest("picker3", "store1", -1, 0, -1))).getBody();
+
+        assertEquals(1, response.accepted());
+        assertEquals("Store ID is required", response.items().get(1).message());
+        assertEquals("Capabilities must be a non-negative bitmask; SKU completed cannot be negative",
+            response.items().get(2).message());
+        assertEquals(1, engine.size(QueueType.PICKER, "store1"));
+    }
+
+    @Test
+    void enqueue_acceptsJsonWithoutCapabilityMasks() {
+        JsonMapper mapper = JsonMapper.builder().build();
+        OrderRequest order = mapper.readValue("""
+            {"orderId":"order1","storeId":"store1","priorityOrder":1,"skuCount":3}""", OrderRequest.class);
+        PickerRequest picker = mapper.readValue("""
+            {"pickerId":"picker1","storeId":"store1","skuCompleted":100,"orderCompleted":10}""", PickerRequest.class);
+
+        controller.enqueueOrders(List.of(order));
+        BatchIngestResponse response = controller.enqueuePickers(List.of(picker)).getBody();
+
+        assertEquals("order1", response.items().get(0).allocatedTo());
+    }
+
+    @Test
+    void enqueueOrders_rejectsWholeBatchOverIngestLimit() {
+        properties.setMaxIngestBatchSize(1);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> controller.enqueueOrders(List.of(order("order1", "store1"), order("order2", "store1"))));
+        assertEquals(0, engine.size(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void triggerAllocations_rejectsListOverTriggerLimitWithoutAllocating() {
+        properties.setMaxTriggerStores(1);
+        controller.enqueueOrders(List.of(order("order1", "store1")));
+        controller.enqueuePickers(List.of(picker("picker1", "store2")));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> controller.triggerAllocations(List.of("store1", "store2"), 1));
+        assertEquals(1, engine.size(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void triggerAllocations_isNotBoundByIngestLimit() {
+        properties.setMaxIngestBatchSize(1);
+        controller.enqueueOrders(List.of(order("order1", "store1")));
+        controller.enqueueOrders(List.of(order("order1", "store2")));
+        engine.enqueue(List.of(new QueueEntry(QueueType.PICKER, "store2", "picker1", 0.1, Map.of())));
+
+        BatchTriggerResponse response = controller.triggerAllocations(List.of("store1", "store2"), 1).getBody();
+
+        assertEquals(2, response.stores());
+        assertEquals(1, response.allocated());
+    }
+
+    @Test
+    void getQueueStatuses_hasItsOwnLimit() {
+        properties.setMaxIngestBatchSize(1);
+        properties.setMaxStatusStores(2);
+        controller.enqueueOrders(List.of(order("order1", "store2")));
+
+        List<QueueStatusResponse> statuses = controller.getQueueStatuses(List.of("store1", "store2")).getBody();
+
+        assertEquals(List.of(0L, 1L), statuses.stream().map(QueueStatusResponse::orderQueueSize).toList());
+        assertThrows(IllegalArgumentException.class,
+            () -> controller.getQueueStatuses(List.of("store1", "store2", "store3")));
+    }
+
+    @Test
+    void subscribeAllocations_notFoundWhenPushDisabled() {
+        assertEquals(HttpStatus.NOT_FOUND, controller.subscribeAllocations("store1", "picker1").getStatusCode());
+    }
+
+    private static OrderRequest order(String orderId, String storeId) {
+        return new OrderRequest(orderId, storeId, null, 1, 3, null);
+    }
+
+    private static PickerRequest picker(String pickerId, String storeId) {
+        return new PickerRequest(pickerId, storeId, 100, 10, null);
+    }
+}
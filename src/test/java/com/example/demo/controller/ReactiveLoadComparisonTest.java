@@ -0,0 +1,118 @@
+package com.example.demo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the blocking and the reactive POST /orders with the same concurrent load and logs latency
+ * percentiles and throughput for both. The request thread pool is kept small so the blocking API
+ * queues on it under load, as it would with a production-sized pool at higher concurrency.
+ * Needs a running Redis; enable with ./gradlew test -Ploadtest.
+ */
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "server.tomcat.threads.max=32")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class ReactiveLoadComparisonTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveLoadComparisonTest.class);
+
+    private static final int REQUESTS = 20_000;
+    private static final int CONCURRENCY = 256;
+    private static final int STORES = 16;
+
+    @Value("${local.server.port}")
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+
+    @Test
+    void blockingAndReactiveOrderEnqueue() throws Exception {
+        // Warm both paths so JIT and connection setup do not count against the first run
+        run("/api/v1/allocation/orders", "warmup-blocking", REQUESTS / 10);
+        run("/api/v1/allocation/reactive/orders", "warmup-reactive", REQUESTS / 10);
+
+        Result blocking = run("/api/v1/allocation/orders", "blocking", REQUESTS);
+        Result reactive = run("/api/v1/allocation/reactive/orders", "reactive", REQUESTS);
+
+        log.info("{}", blocking);
+        log.info("{}", reactive);
+        assertEquals(REQUESTS, blocking.succeeded(), "blocking requests failed");
+        assertEquals(REQUESTS, reactive.succeeded(), "reactive requests failed");
+    }
+
+    private Result run(String path, String label, int requests) throws InterruptedException {
+        URI uri = URI.create("http://localhost:" + port + path);
+        long[] latencies = new long[requests];
+        AtomicInteger succeeded = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        long sent = System.nanoTime();
+                        HttpResponse<Void> response = client.send(orderRequest(uri, label, index),
+                            HttpResponse.BodyHandlers.discarding());
+                        latencies[index] = System.nanoTime() - sent;
+                        if (response.statusCode() / 100 == 2) {
+                            succeeded.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        latencies[index] = Long.MAX_VALUE;
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new Result(label, succeeded.get(),
+            percentileMillis(latencies, 0.50), percentileMillis(latencies, 0.99),
+            requests / (elapsed / (double) TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private static HttpRequest orderRequest(URI uri, String label, int index) {
+        String body = """
+            {"orderId":"load-%s-%d","storeId":"load-store-%d","priorityOrder":%d,"skuCount":%d}"""
+            .formatted(label, index, index % STORES, 1 + index % 5, 1 + index % 40);
+        return HttpRequest.newBuilder(uri)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1_000_000.0;
+    }
+
+    private record Result(String label, int succeeded, double p50Millis, double p99Millis, double requestsPerSecond) {
+        @Override
+        public String toString() {
+            return "%-8s ok=%d p50=%.2fms p99=%.2fms throughput=%.0f req/s"
+                .formatted(label, succeeded, p50Millis, p99Millis, requestsPerSecond);
+        }
+    }
+}
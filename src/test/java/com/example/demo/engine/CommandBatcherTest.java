@@ -0,0 +1,143 @@
+package com.example.demo.engine;
+
+import com.example.demo.metrics.AllocationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandBatcherTest {
+
+    private final List<List<QueueEntry>> flushed = new CopyOnWriteArrayList<>();
+    private CommandBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    @Test
+    void concurrentWrites_shareFlushes() throws Exception {
+        // A slow flush stands in for a Redis round trip, so writes pile up behind it
+        batcher = new CommandBatcher(entries -> {
+            flushed.add(entries);
+            sleepMillis(2);
+        }, 200, 64, 1, new AllocationMetrics(new SimpleMeterRegistry()));
+
+        int callers = 64;
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                String orderId = "order" + i;
+                done.add(CompletableFuture.runAsync(() -> {
+                    awaitLatch(start);
+                    batcher.submit(List.of(entry(orderId))).join();
+                }, executor));
+            }
+            start.countDown();
+            CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(callers, flushed.stream().mapToInt(List::size).sum());
+        assertTrue(flushed.size() < callers, "expected coalesced flushes, got " + flushed.size());
+        // Collection stops once 64 commands are gathered: 16 single-entry writes at 4 commands each
+        assertTrue(flushed.stream().allMatch(batch -> batch.size() <= 16));
+    }
+
+    @Test
+    void flushes_overlapUpToMaxInFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch twoInFlight = new CountDownLatch(2);
+        batcher = new CommandBatcher(entries -> {
+            flushed.add(entries);
+            twoInFlight.countDown();
+            awaitLatch(release);
+        }, 200, 64, 2, new AllocationMetrics(new SimpleMeterRegistry()));
+
+        CompletableFuture<Void> first = batcher.submit(List.of(entry("order1")));
+        sleepMillis(20);
+        CompletableFuture<Void> second = batcher.submit(List.of(entry("order2")));
+        assertTrue(twoInFlight.await(5, TimeUnit.SECONDS), "second flush should start while the first is in flight");
+        CompletableFuture<Void> third = batcher.submit(List.of(entry("order3")));
+        sleepMillis(20);
+
+        assertEquals(2, flushed.size());
+        assertFalse(first.isDone());
+        release.countDown();
+        CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(List.of(entry("order1")), List.of(entry("order2")), List.of(entry("order3"))), flushed);
+    }
+
+    @Test
+    void loneWrite_isFlushedAfterWindow() throws Exception {
+        batcher = new CommandBatcher(flushed::add, 200, 64, 8, new AllocationMetrics(new SimpleMeterRegistry()));
+
+        batcher.submit(List.of(entry("order1"))).get(1, TimeUnit.SECONDS);
+
+        assertEquals(List.of(List.of(entry("order1"))), flushed);
+    }
+
+    @Test
+    void failedFlush_failsEveryCallerInTheBatch() {
+        Consumer<List<QueueEntry>> failing = entries -> {
+            sleepMillis(5);
+            throw new IllegalStateException("connection reset");
+        };
+        batcher = new CommandBatcher(failing, 10_000, 64, 8, new AllocationMetrics(new SimpleMeterRegistry()));
+
+        CompletableFuture<Void> first = batcher.submit(List.of(entry("order1")));
+        CompletableFuture<Void> second = batcher.submit(List.of(entry("order2")));
+
+        CompletionException error = assertThrows(CompletionException.class, first::join);
+        assertEquals("connection reset", error.getCause().getMessage());
+        assertThrows(CompletionException.class, second::join);
+    }
+
+    @Test
+    void close_flushesPendingAndRejectsNewWrites() {
+        batcher = new CommandBatcher(flushed::add, 50_000, 64, 8, new AllocationMetrics(new SimpleMeterRegistry()));
+        CompletableFuture<Void> pending = batcher.submit(List.of(entry("order1")));
+
+        batcher.close();
+
+        assertTrue(pending.isDone());
+        assertFalse(pending.isCompletedExceptionally());
+        assertThrows(IllegalStateException.class, () -> batcher.submit(List.of(entry("order2"))));
+    }
+
+    private static QueueEntry entry(String orderId) {
+        return new QueueEntry(QueueType.ORDER, "store1", orderId, 0.5, Map.of("finalScore", "0.5"));
+    }
+
+    private static void sleepMillis(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.demo.engine;
+
+import com.example.demo.config.AllocationProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Single-entry enqueues from many concurrent callers against a real Redis, written directly and through
+ * the {@link CommandBatcher}, and logs the enqueues per second each mode completes.
+ * Needs a running Redis with no concurrent writers; enable with ./gradlew test -Ploadtest.
+ */
+@SpringBootTest(properties = "allocation.engine=redis")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class CommandBatchingThroughputTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandBatchingThroughputTest.class);
+
+    private static final int CALLERS = 64;
+    private static final int STORES = 16;
+    private static final long WARMUP_MILLIS = 2_000;
+    private static final long MEASURE_MILLIS = 5_000;
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Autowired
+    private AllocationProperties properties;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Test
+    void directAgainstBatchedEnqueues() throws InterruptedException {
+        long direct = enqueuesPerSecond(false);
+        long batched = enqueuesPerSecond(true);
+
+        log.info("{} callers, single-entry enqueues: direct {}/s, batched {}/s (window {}us, max-commands {}, "
+                + "max-in-flight {})", CALLERS, direct, batched, properties.getBatching().getWindowMicros(),
+            properties.getBatching().getMaxCommands(), properties.getBatching().getMaxInFlight());
+    }
+
+    private long enqueuesPerSecond(boolean batching) throws InterruptedException {
+        RedisAllocationEngine engine = engine(batching);
+        try {
+            run(engine, WARMUP_MILLIS);
+            deleteQueues();
+            long enqueued = run(engine, MEASURE_MILLIS);
+            assertEquals(enqueued, queuedOrders(), "every completed enqueue should be in Redis");
+            return enqueued * 1_000 / MEASURE_MILLIS;
+        } finally {
+            engine.close();
+            deleteQueues();
+        }
+    }
+
+    /**
+     * A second engine over the context's Redis beans; batching is read once, at construction.
+     */
+    private RedisAllocationEngine engine(boolean batching) {
+        boolean configured = properties.getBatching().isEnabled();
+        properties.getBatching().setEnabled(batching);
+        try {
+            return beanFactory.createBean(RedisAllocationEngine.class);
+        } finally {
+            properties.getBatching().setEnabled(configured);
+        }
+    }
+
+    private long run(AllocationEngine engine, long millis) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder enqueued = new LongAdder();
+        CountDownLatch done = new CountDownLatch(CALLERS);
+        List<Thread> callers = new ArrayList<>();
+        for (int caller = 0; caller < CALLERS; caller++) {
+            String prefix = "caller-" + caller + "-";
+            String storeId = store(caller % STORES);
+            callers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    for (long i = 0; running.get(); i++) {
+                        engine.enqueue(List.of(new QueueEntry(QueueType.ORDER, storeId, prefix + i, i,
+                            Map.of("finalScore", String.valueOf(i)))));
+                        enqueued.increment();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+        Thread.sleep(millis);
+        running.set(false);
+        done.await(10, TimeUnit.SECONDS);
+        return enqueued.sum();
+    }
+
+    private long queuedOrders() {
+        long queued = 0;
+        for (int store = 0; store < STORES; store++) {
+            queued += redisTemplate.opsForZSet().size(RedisScriptSupport.queueKey(QueueType.ORDER, store(store)));
+        }
+        return queued;
+    }
+
+    private void deleteQueues() {
+        List<String> keys = new ArrayList<>();
+        for (int store = 0; store < STORES; store++) {
+            keys.add(RedisScriptSupport.queueKey(QueueType.ORDER, store(store)));
+            keys.add(RedisScriptSupport.metaKey(QueueType.ORDER, store(store)));
+            keys.add(RedisScriptSupport.capabilitiesKey(QueueType.ORDER, store(store)));
+        }
+        redisTemplate.delete(keys);
+    }
+
+    private static String store(int store) {
+        return "batching-test-" + store;
+    }
+}
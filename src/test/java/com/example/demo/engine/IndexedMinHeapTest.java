@@ -0,0 +1,72 @@
+package com.example.demo.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedMinHeapTest {
+
+    @Test
+    void poll_returnsMembersInScoreOrder() {
+        IndexedMinHeap heap = new IndexedMinHeap(2);
+        heap.add("c", 0.3);
+        heap.add("a", 0.1);
+        heap.add("b", 0.2);
+
+        assertEquals("a", heap.poll());
+        assertEquals("b", heap.poll());
+        assertEquals("c", heap.poll());
+        assertNull(heap.poll());
+    }
+
+    @Test
+    void add_existingMemberUpdatesScore() {
+        IndexedMinHeap heap = new IndexedMinHeap();
+        heap.add("a", 0.1);
+        heap.add("b", 0.2);
+
+        assertFalse(heap.add("a", 0.9));
+
+        assertEquals(2, heap.size());
+        assertEquals("b", heap.peek());
+        assertEquals(0.9, heap.score("a"));
+    }
+
+    @Test
+    void equalScores_areOrderedByMemberId() {
+        IndexedMinHeap heap = new IndexedMinHeap();
+        heap.add("order-2", 0.5);
+        heap.add("order-1", 0.5);
+
+        assertEquals("order-1", heap.poll());
+        assertEquals("order-2", heap.poll());
+    }
+
+    @Test
+    void remove_byIdKeepsHeapOrder() {
+        IndexedMinHeap heap = new IndexedMinHeap();
+        Random random = new Random(42);
+        TreeMap<Double, String> expected = new TreeMap<>();
+        for (int i = 0; i < 500; i++) {
+            double score = random.nextDouble();
+            heap.add("m" + i, score);
+            expected.put(score, "m" + i);
+        }
+        for (int i = 0; i < 500; i += 3) {
+            assertTrue(heap.remove("m" + i));
+            expected.values().remove("m" + i);
+        }
+        assertFalse(heap.remove("missing"));
+
+        List<String> polled = new ArrayList<>();
+        while (!heap.isEmpty()) {
+            polled.add(heap.poll());
+        }
+        assertEquals(new ArrayList<>(expected.values()), polled);
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.demo.engine;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.model.Allocation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalAllocationEngineJournalTest {
+
+    private Path directory;
+    private final List<LocalAllocationEngine> engines = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("allocation-journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        engines.forEach(LocalAllocationEngine::close);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void restart_replaysJournalWithoutSnapshot() {
+        LocalAllocationEngine engine = start(false);
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.5),
+            entry(QueueType.ORDER, "store1", "order2", 0.2),
+            entry(QueueType.ORDER, "store1", "order3", 0.9),
+            entry(QueueType.PICKER, "store1", "picker1", 0.3)
+        ));
+        Optional<Allocation> allocation = engine.allocate("store1");
+        engine.remove(QueueType.ORDER, "store1", "order3");
+
+        // No close: the first engine "crashes" and the second recovers from the journal alone
+        LocalAllocationEngine recovered = start(false);
+
+        assertEquals("order2", allocation.orElseThrow().orderId());
+        assertEquals(1, recovered.size(QueueType.ORDER, "store1"));
+        assertEquals(0, recovered.size(QueueType.PICKER, "store1"));
+        assertEquals(Optional.of("order1"), recovered.peek(QueueType.ORDER, "store1"));
+        assertEquals(Map.of("finalScore", "0.5"), recovered.scoreMeta(QueueType.ORDER, "store1", "order1"));
+    }
+
+    @Test
+    void restart_loadsSnapshotThenReplaysTail() {
+        LocalAllocationEngine engine = start(false);
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.5),
+            entry(QueueType.PICKER, "store2", "picker1", 0.1)
+        ));
+        engine.snapshot();
+        engine.enqueue(List.of(entry(QueueType.PICKER, "store1", "picker2", 0.4)));
+        Optional<Allocation> allocation = engine.allocate("store1");
+
+        LocalAllocationEngine recovered = start(false);
+
+        assertTrue(allocation.isPresent());
+        assertEquals(0, recovered.size(QueueType.ORDER, "store1"));
+        assertEquals(0, recovered.size(QueueType.PICKER, "store1"));
+        assertEquals(Optional.of("picker1"), recovered.peek(QueueType.PICKER, "store2"));
+    }
+
+    @Test
+    void snapshot_dropsSupersededSegments() throws IOException {
+        LocalAllocationEngine engine = start(false);
+        engine.enqueue(List.of(entry(QueueType.ORDER, "store1", "order1", 0.5)));
+        engine.snapshot();
+        engine.snapshot();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            List<String> names = files.map(path -> path.getFileName().toString()).sorted().toList();
+            assertEquals(List.of("journal-000000000003.log", "snapshot-000000000003.bin"), names);
+        }
+    }
+
+    @Test
+    void close_writesSnapshotSoRestartReplaysNothing() {
+        LocalAllocationEngine engine = start(true);
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.5),
+            entry(QueueType.ORDER, "store1", "order2", 0.2)
+        ));
+        engine.close();
+
+        LocalAllocationEngine recovered = start(true);
+
+        assertEquals(2, recovered.size(QueueType.ORDER, "store1"));
+        assertEquals(Optional.of("order2"), recovered.peek(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void restart_keepsCapabilityMasksFromJournalAndSnapshot() {
+        LocalAllocationEngine engine = start(false);
+        engine.enqueue(List.of(
+            new QueueEntry(QueueType.ORDER, "store1", "chilled", 0.1, Map.of(), 0b01),
+            new QueueEntry(QueueType.PICKER, "store1", "certified", 0.5, Map.of(), 0b01)
+        ));
+        engine.snapshot();
+        engine.enqueue(List.of(new QueueEntry(QueueType.PICKER, "store1", "uncertified", 0.2, Map.of(), 0)));
+
+        LocalAllocationEngine recovered = start(false);
+
+        Allocation allocation = recovered.allocate("store1").orElseThrow();
+        assertEquals("chilled", allocation.orderId());
+        assertEquals("certified", allocation.pickerId());
+    }
+
+    @Test
+    void enqueue_rejectsValueTooLongForJournalWithoutApplyingIt() {
+        LocalAllocationEngine engine = start(false);
+        String oversized = "x".repeat(AllocationJournal.MAX_STRING_BYTES + 1);
+
+        assertThrows(IllegalArgumentException.class, () -> engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.5),
+            new QueueEntry(QueueType.ORDER, "store1", "order2", 0.2, Map.of("note", oversized)))));
+        assertThrows(IllegalArgumentException.class,
+            () -> engine.enqueueAndAllocate(entry(QueueType.PICKER, "store1", oversized, 0.3)));
+
+        assertEquals(0, engine.size(QueueType.ORDER, "store1"));
+        assertEquals(0, engine.size(QueueType.PICKER, "store1"));
+    }
+
+    @Test
+    void restart_keepsLongValuesFromJournalAndSnapshot() {
+        String longMember = "\u00e9".repeat(30_000);
+        String longValue = "v".repeat(AllocationJournal.MAX_STRING_BYTES);
+        LocalAllocationEngine engine = start(false);
+        engine.enqueue(List.of(new QueueEntry(QueueType.ORDER, "store1", longMember, 0.5, Map.of("note", longValue))));
+        engine.snapshot();
+        engine.enqueue(List.of(new QueueEntry(QueueType.ORDER, "store2", longMember, 0.5, Map.of("note", longValue))));
+
+        LocalAllocationEngine recovered = start(false);
+
+        assertEquals(Optional.of(longMember), recovered.peek(QueueType.ORDER, "store1"));
+        assertEquals(Map.of("note", longValue), recovered.scoreMeta(QueueType.ORDER, "store1", longMember));
+        assertEquals(Map.of("note", longValue), recovered.scoreMeta(QueueType.ORDER, "store2", longMember));
+    }
+
+    @Test
+    void restart_keepsUnacknowledgedLeasesFromJournalAndSnapshot() throws InterruptedException {
+        LocalAllocationEngine engine = start(false, 50);
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.1),
+            entry(QueueType.ORDER, "store1", "order2", 0.2),
+            entry(QueueType.PICKER, "store1", "picker1", 0.1),
+            entry(QueueType.PICKER, "store1", "picker2", 0.2)));
+        engine.allocate("store1");
+        engine.snapshot();
+        engine.allocate("store1");
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store2", "order3", 0.3),
+            entry(QueueType.PICKER, "store2", "picker3", 0.3)));
+        engine.allocate("store2");
+        assertTrue(engine.acknowledgeLease("store2", "order3", "picker3"));
+
+        LocalAllocationEngine recovered = start(false, 50);
+        Thread.sleep(80);
+
+        assertEquals(0, recovered.size(QueueType.ORDER, "store1"));
+        assertTrue(recovered.acknowledgeLease("store1", "order2", "picker2"));
+        assertEquals(Map.of("store1", List.of("order1")), recovered.reapExpiredLeases(10));
+        assertEquals(Map.of("finalScore", "0.1"), recovered.scoreMeta(QueueType.ORDER, "store1", "order1"));
+        assertEquals(0, recovered.size(QueueType.ORDER, "store2"));
+    }
+
+    @Test
+    void restart_doesNotRestoreReapedLeases() throws InterruptedException {
+        LocalAllocationEngine engine = start(false, 1);
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.1),
+            entry(QueueType.PICKER, "store1", "picker1", 0.1)));
+        engine.allocate("store1");
+        Thread.sleep(20);
+        assertEquals(Map.of("store1", List.of("order1")), engine.reapExpiredLeases(10));
+        engine.enqueue(List.of(entry(QueueType.PICKER, "store1", "picker2", 0.2)));
+        engine.allocate("store1");
+        assertTrue(engine.acknowledgeLease("store1", "order1", "picker2"));
+
+        LocalAllocationEngine recovered = start(false, 1);
+        Thread.sleep(20);
+
+        assertEquals(Map.of(), recovered.reapExpiredLeases(10));
+        assertEquals(0, recovered.size(QueueType.ORDER, "store1"));
+    }
+
+    private LocalAllocationEngine start(boolean groupCommit) {
+        return start(groupCommit, 0);
+    }
+
+    private LocalAllocationEngine start(boolean groupCommit, long leaseTtlMs) {
+        AllocationProperties properties = new AllocationProperties();
+        AllocationProperties.Journal journal = properties.getJournal();
+        journal.setEnabled(true);
+        journal.setDirectory(directory.toString());
+        journal.setSegmentSizeMb(1);
+        journal.setGroupCommit(groupCommit);
+        journal.setSnapshotIntervalSeconds(0);
+        properties.getLease().setTtlMs(leaseTtlMs);
+
+        LocalAllocationEngine engine = new LocalAllocationEngine(properties);
+        engine.start();
+        engines.add(engine);
+        return engine;
+    }
+
+    private static QueueEntry entry(QueueType type, String storeId, String memberId, double score) {
+        return new QueueEntry(type, storeId, memberId, score, Map.of("finalScore", String.valueOf(score)));
+    }
+}
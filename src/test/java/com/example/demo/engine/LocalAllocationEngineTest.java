@@ -0,0 +1,409 @@
+package com.example.demo.engine;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.model.Allocation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalAllocationEngineTest {
+
+    private static final int CHILLED = 0b01;
+    private static final int AGE_RESTRICTED = 0b10;
+
+    private LocalAllocationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new LocalAllocationEngine(new AllocationProperties());
+    }
+
+    @Test
+    void allocate_pairsTopOrderWithTopPicker() {
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.5),
+            entry(QueueType.ORDER, "store1", "order2", 0.2),
+            entry(QueueType.PICKER, "store1", "picker1", 0.7),
+            entry(QueueType.PICKER, "store1", "picker2", 0.1)
+        ));
+
+        Optional<Allocation> allocation = engine.allocate("store1");
+
+        assertTrue(allocation.isPresent());
+        assertEquals("order2", allocation.get().orderId());
+        assertEquals("picker2", allocation.get().pickerId());
+        assertEquals(1, engine.size(QueueType.ORDER, "store1"));
+        assertEquals(1, engine.size(QueueType.PICKER, "store1"));
+    }
+
+    @Test
+    void allocate_emptyQueueLeavesOtherQueueUntouched() {
+        engine.enqueue(List.of(entry(QueueType.ORDER, "store1", "order1", 0.5)));
+
+        assertTrue(engine.allocate("store1").isEmpty());
+        assertEquals(1, engine.size(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void allocateBatch_popsOnlyMatchablePairs() {
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.1),
+            entry(QueueType.ORDER, "store1", "order2", 0.2),
+            entry(QueueType.ORDER, "store1", "order3", 0.3),
+            entry(QueueType.PICKER, "store1", "picker1", 0.1),
+            entry(QueueType.PICKER, "store1", "picker2", 0.2)
+        ));
+
+        List<Allocation> allocations = engine.allocateBatch("store1", 10);
+
+        assertEquals(2, allocations.size());
+        assertEquals("order1", allocations.get(0).orderId());
+        assertEquals("picker1", allocations.get(0).pickerId());
+        assertEquals("order2", allocations.get(1).orderId());
+        assertEquals("picker2", allocations.get(1).pickerId());
+        assertEquals(Optional.of("order3"), engine.peek(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void enqueueAndAllocate_allocatesWhenCounterpartWaiting() {
+        engine.enqueue(List.of(entry(QueueType.PICKER, "store1", "picker1", 0.1)));
+
+        Optional<Allocation> allocation = engine.enqueueAndAllocate(entry(QueueType.ORDER, "store1", "order1", 0.4));
+
+        assertEquals("order1", allocation.orElseThrow().orderId());
+        assertEquals(0, engine.size(QueueType.PICKER, "store1"));
+    }
+
+    @Test
+    void status_reportsTopMembersAndMetadata() {
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.4),
+            entry(QueueType.ORDER, "store2", "order2", 0.1)
+        ));
+
+        QueueStatusResponse status = engine.status("store1");
+
+        assertEquals(1, status.orderQueueSize());
+        assertEquals(0, status.pickerQueueSize());
+        assertFalse(status.canAllocate());
+        assertEquals("order1", status.topOrderId());
+        assertEquals("0.4", status.topOrderScoreMeta().get("finalScore"));
+    }
+
+    @Test
+    void remove_dropsMemberAndMetadata() {
+        engine.enqueue(List.of(entry(QueueType.ORDER, "store1", "order1", 0.4)));
+
+        engine.remove(QueueType.ORDER, "store1", "order1");
+
+        assertEquals(0, engine.size(QueueType.ORDER, "store1"));
+        assertTrue(engine.scoreMeta(QueueType.ORDER, "store1", "order1").isEmpty());
+    }
+
+    @Test
+    void allocate_skipsIneligibleHeadPicker() {
+        engine.enqueue(List.of(
+            new QueueEntry(QueueType.ORDER, "store1", "chilled", 0.1, Map.of(), CHILLED),
+            new QueueEntry(QueueType.PICKER, "store1", "picker1", 0.1, Map.of(), 0),
+            new QueueEntry(QueueType.PICKER, "store1", "picker2", 0.2, Map.of(), CHILLED | AGE_RESTRICTED)
+        ));
+
+        Allocation allocation = engine.allocate("store1").orElseThrow();
+
+        assertEquals("chilled", allocation.orderId());
+        assertEquals("picker2", allocation.pickerId());
+        assertEquals(Optional.of("picker1"), engine.peek(QueueType.PICKER, "store1"));
+    }
+
+    @Test
+    void allocate_fallsThroughToNextOrderWhenHeadHasNoEligiblePicker() {
+        engine.enqueue(List.of(
+            new QueueEntry(QueueType.ORDER, "store1", "restricted", 0.1, Map.of(), AGE_RESTRICTED),
+            new QueueEntry(QueueType.ORDER, "store1", "plain", 0.2, Map.of(), 0),
+            new QueueEntry(QueueType.PICKER, "store1", "picker1", 0.1, Map.of(), CHILLED),
+            new QueueEntry(QueueType.PICKER, "store1", "picker2", 0.2, Map.of(), CHILLED)
+        ));
+
+        Allocation allocation = engine.allocate("store1").orElseThrow();
+
+        assertEquals("plain", allocation.orderId());
+        assertEquals(Optional.of("restricted"), engine.peek(QueueType.ORDER, "store1"));
+        assertTrue(engine.allocate("store1").isEmpty());
+        assertEquals(Optional.of("picker2"), engine.peek(QueueType.PICKER, "store1"));
+    }
+
+    @Test
+    void allocateBatch_pairsEachOrderWithBestUnpairedEligiblePicker() {
+        engine.enqueue(List.of(
+            new QueueEntry(QueueType.ORDER, "store1", "order1", 0.1, Map.of(), CHILLED),
+            new QueueEntry(QueueType.ORDER, "store1", "order2", 0.2, Map.of(), 0),
+            new QueueEntry(QueueType.ORDER, "store1", "order3", 0.3, Map.of(), CHILLED),
+            new QueueEntry(QueueType.PICKER, "store1", "picker1", 0.1, Map.of(), 0),
+            new QueueEntry(QueueType.PICKER, "store1", "picker2", 0.2, Map.of(), CHILLED)
+        ));
+
+        List<Allocation> allocations = engine.allocateBatch("store1", 10);
+
+        assertEquals(2, allocations.size());
+        assertEquals("order1", allocations.get(0).orderId());
+        assertEquals("picker2", allocations.get(0).pickerId());
+        assertEquals("order2", allocations.get(1).orderId());
+        assertEquals("picker1", allocations.get(1).pickerId());
+        assertEquals(Optional.of("order3"), engine.peek(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void allocate_onlyScansEligibilityWindow() {
+        AllocationProperties properties = new AllocationProperties();
+        properties.setEligibilityWindow(1);
+        engine = new LocalAllocationEngine(properties);
+        engine.enqueue(List.of(
+            new QueueEntry(QueueType.ORDER, "store1", "chilled", 0.1, Map.of(), CHILLED),
+            new QueueEntry(QueueType.PICKER, "store1", "picker1", 0.1, Map.of(), 0),
+            new QueueEntry(QueueType.PICKER, "store1", "picker2", 0.2, Map.of(), 0),
+            new QueueEntry(QueueType.PICKER, "store1", "picker3", 0.3, Map.of(), CHILLED)
+        ));
+
+        assertTrue(engine.allocate("store1").isEmpty());
+        assertEquals(3, engine.size(QueueType.PICKER, "store1"));
+    }
+
+    @Test
+    void matchCandidates_readsQueueHeadsInPriorityOrderWithoutRemoving() {
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.3),
+            entry(QueueType.ORDER, "store1", "order2", 0.1),
+            new QueueEntry(QueueType.ORDER, "store1", "order3", 0.2, Map.of(), CHILLED),
+            entry(QueueType.PICKER, "store1", "picker1", 0.5)
+        ));
+
+        MatchCandidates candidates = engine.matchCandidates("store1", 2);
+
+        assertEquals(List.of("order2", "order3"), candidates.orders().stream().map(QueueEntry::memberId).toList());
+        assertEquals(CHILLED, candidates.orders().get(1).capabilities());
+        assertEquals("0.1", candidates.orders().get(0).metaFields().get("finalScore"));
+        assertEquals(1, candidates.pickers().size());
+        assertEquals(3, engine.size(QueueType.ORDER, "store1"));
+        assertEquals(Optional.of("order2"), engine.peek(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void allocatePairs_skipsPairsWhoseMembersLeftOrAreIneligible() {
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.1),
+            new QueueEntry(QueueType.ORDER, "store1", "order2", 0.2, Map.of(), CHILLED),
+            entry(QueueType.ORDER, "store1", "order3", 0.3),
+            entry(QueueType.PICKER, "store1", "picker1", 0.1),
+            entry(QueueType.PICKER, "store1", "picker2", 0.2),
+            entry(QueueType.PICKER, "store1", "picker3", 0.3)
+        ));
+        engine.remove(QueueType.PICKER, "store1", "picker3");
+
+        List<Allocation> allocations = engine.allocatePairs("store1", List.of(
+            new MatchPair("order1", "picker2"),
+            new MatchPair("order2", "picker1"),
+            new MatchPair("order3", "picker3")));
+
+        assertEquals(1, allocations.size());
+        assertEquals("order1", allocations.get(0).orderId());
+        assertEquals("picker2", allocations.get(0).pickerId());
+        assertEquals(2, engine.size(QueueType.ORDER, "store1"));
+        assertEquals(Optional.of("picker1"), engine.peek(QueueType.PICKER, "store1"));
+        assertTrue(engine.scoreMeta(QueueType.ORDER, "store1", "order1").isEmpty());
+    }
+
+    @Test
+    void history_isUnsupported() {
+        assertThrows(UnsupportedOperationException.class, () -> engine.history("store1", null, 10));
+        assertThrows(UnsupportedOperationException.class, () -> engine.createHistoryGroup("store1", "group1", false));
+    }
+
+    @Test
+    void reapExpiredLeases_requeuesUnacknowledgedOrderAsItWas() throws InterruptedException {
+        LocalAllocationEngine leasing = leasingEngine(1);
+        leasing.enqueue(List.of(
+            new QueueEntry(QueueType.ORDER, "store1", "order1", 0.3, Map.of("finalScore", "0.3"), CHILLED),
+            new QueueEntry(QueueType.PICKER, "store1", "picker1", 0.1, Map.of(), CHILLED)));
+        assertTrue(leasing.allocate("store1").isPresent());
+        assertEquals(0, leasing.size(QueueType.ORDER, "store1"));
+
+        Thread.sleep(20);
+
+        assertEquals(Map.of("store1", List.of("order1")), leasing.reapExpiredLeases(10));
+        QueueEntry requeued = leasing.matchCandidates("store1", 10).orders().get(0);
+        assertEquals("order1", requeued.memberId());
+        assertEquals(0.3, requeued.score());
+        assertEquals(Map.of("finalScore", "0.3"), requeued.metaFields());
+        assertEquals(CHILLED, requeued.capabilities());
+        assertEquals(Map.of(), leasing.reapExpiredLeases(10));
+    }
+
+    @Test
+    void acknowledgeLease_keepsOrderOutOfQueue() throws InterruptedException {
+        LocalAllocationEngine leasing = leasingEngine(1);
+        leasing.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.1),
+            entry(QueueType.PICKER, "store1", "picker1", 0.1)));
+        leasing.allocate("store1");
+
+        assertFalse(leasing.acknowledgeLease("store1", "order1", "picker2"));
+        assertTrue(leasing.acknowledgeLease("store1", "order1", "picker1"));
+        assertFalse(leasing.acknowledgeLease("store1", "order1", "picker1"));
+        Thread.sleep(20);
+
+        assertEquals(Map.of(), leasing.reapExpiredLeases(10));
+        assertEquals(0, leasing.size(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void reapExpiredLeases_takesAtMostMaxPerStoreAndSkipsUnexpired() throws InterruptedException {
+        LocalAllocationEngine leasing = leasingEngine(1);
+        for (int i = 0; i < 3; i++) {
+            leasing.enqueue(List.of(
+                entry(QueueType.ORDER, "store1", "order" + i, 0.1 * i),
+                entry(QueueType.PICKER, "store1", "picker" + i, 0.1 * i)));
+        }
+        assertEquals(3, leasing.allocateBatch("store1", 3).size());
+        Thread.sleep(20);
+
+        assertEquals(Map.of("store1", List.of("order0", "order1")), leasing.reapExpiredLeases(2));
+        assertEquals(Map.of("store1", List.of("order2")), leasing.reapExpiredLeases(2));
+
+        LocalAllocationEngine longLeases = leasingEngine(60_000);
+        longLeases.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.1),
+            entry(QueueType.PICKER, "store1", "picker1", 0.1)));
+        longLeases.allocate("store1");
+        assertEquals(Map.of(), longLeases.reapExpiredLeases(10));
+    }
+
+    @Test
+    void reapExpiredLeases_visitsStoresAgainOnceTheyLeaseAgain() throws InterruptedException {
+        LocalAllocationEngine leasing = leasingEngine(1);
+        for (String storeId : List.of("store1", "store2")) {
+            leasing.enqueue(List.of(
+                entry(QueueType.ORDER, storeId, "order1", 0.1),
+                entry(QueueType.ORDER, storeId, "order2", 0.2),
+                entry(QueueType.PICKER, storeId, "picker1", 0.1),
+                entry(QueueType.PICKER, storeId, "picker2", 0.2)));
+            leasing.allocate(storeId);
+        }
+        assertTrue(leasing.acknowledgeLease("store1", "order1", "picker1"));
+        Thread.sleep(20);
+
+        assertEquals(Map.of("store2", List.of("order1")), leasing.reapExpiredLeases(10));
+
+        leasing.allocate("store1");
+        Thread.sleep(20);
+
+        assertEquals(Map.of("store1", List.of("order2")), leasing.reapExpiredLeases(10));
+        assertEquals(Map.of(), leasing.reapExpiredLeases(10));
+    }
+
+    @Test
+    void remove_endsLeaseOfCancelledOrder() throws InterruptedException {
+        LocalAllocationEngine leasing = leasingEngine(1);
+        leasing.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.1),
+            entry(QueueType.PICKER, "store1", "picker1", 0.1)));
+        leasing.allocate("store1");
+
+        leasing.remove(QueueType.ORDER, "store1", "order1");
+        Thread.sleep(20);
+
+        assertEquals(Map.of(), leasing.reapExpiredLeases(10));
+        assertFalse(leasing.acknowledgeLease("store1", "order1", "picker1"));
+    }
+
+    @Test
+    void leasesAreOffByDefault() {
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.1),
+            entry(QueueType.PICKER, "store1", "picker1", 0.1)));
+        engine.allocate("store1");
+
+        assertFalse(engine.acknowledgeLease("store1", "order1", "picker1"));
+        assertEquals(Map.of(), engine.reapExpiredLeases(10));
+    }
+
+    @Test
+    void allocateBatches_allocatesEachStoreInRequestOrder() {
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.1),
+            entry(QueueType.ORDER, "store1", "order2", 0.2),
+            entry(QueueType.PICKER, "store1", "picker1", 0.1),
+            entry(QueueType.PICKER, "store1", "picker2", 0.2),
+            entry(QueueType.ORDER, "store2", "order3", 0.1),
+            entry(QueueType.PICKER, "store2", "picker3", 0.1)));
+
+        Map<String, List<Allocation>> allocations = engine.allocateBatches(List.of("store3", "store2", "store1"), 1);
+
+        assertEquals(List.of("store3", "store2", "store1"), List.copyOf(allocations.keySet()));
+        assertEquals(List.of(), allocations.get("store3"));
+        assertEquals("order3", allocations.get("store2").get(0).orderId());
+        assertEquals(List.of("order1"), allocations.get("store1").stream().map(Allocation::orderId).toList());
+        assertEquals(1, engine.size(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void enqueue_marksStoresDirtyWhenSweeperEnabled() {
+        AllocationProperties properties = new AllocationProperties();
+        properties.getSweeper().setEnabled(true);
+        LocalAllocationEngine sweeping = new LocalAllocationEngine(properties);
+        sweeping.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1", 0.1),
+            entry(QueueType.ORDER, "store1", "order2", 0.2),
+            entry(QueueType.PICKER, "store2", "picker1", 0.1)));
+
+        List<String> first = sweeping.popDirtyStores(1);
+        List<String> second = sweeping.popDirtyStores(10);
+
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+        assertEquals(Set.of("store1", "store2"), Set.of(first.get(0), second.get(0)));
+        assertEquals(List.of(), sweeping.popDirtyStores(10));
+    }
+
+    @Test
+    void enqueueAndAllocate_marksStoreDirtyWhenSweeperEnabled() {
+        AllocationProperties properties = new AllocationProperties();
+        properties.getSweeper().setEnabled(true);
+        LocalAllocationEngine sweeping = new LocalAllocationEngine(properties);
+        sweeping.enqueueAndAllocate(entry(QueueType.ORDER, "store1", "order1", 0.1));
+
+        assertEquals(List.of("store1"), sweeping.popDirtyStores(10));
+    }
+
+    @Test
+    void markDirty_listsStoreOnce() {
+        engine.markDirty(List.of("store1", "store2"));
+        engine.markDirty(List.of("store1"));
+
+        assertEquals(Set.of("store1", "store2"), Set.copyOf(engine.popDirtyStores(10)));
+        assertEquals(List.of(), engine.popDirtyStores(10));
+    }
+
+    @Test
+    void enqueue_leavesDirtySetAloneWhenSweeperDisabled() {
+        engine.enqueue(List.of(entry(QueueType.ORDER, "store1", "order1", 0.1)));
+
+        assertEquals(List.of(), engine.popDirtyStores(10));
+    }
+
+    private static LocalAllocationEngine leasingEngine(long ttlMs) {
+        AllocationProperties properties = new AllocationProperties();
+        properties.getLease().setTtlMs(ttlMs);
+        return new LocalAllocationEngine(properties);
+    }
+
+    private static QueueEntry entry(QueueType type, String storeId, String memberId, double score) {
+        return new QueueEntry(type, storeId, memberId, score, Map.of("finalScore", String.valueOf(score)));
+    }
+}
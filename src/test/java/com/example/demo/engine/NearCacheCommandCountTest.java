@@ -0,0 +1,81 @@
+package com.example.demo.engine;
+
+import com.example.demo.service.QueueService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Polls canAllocate the way a dashboard does, with a write every few polls, directly against Redis
+ * and through the near-cache, and logs the ZCARD calls Redis served for each from INFO commandstats.
+ * Needs a running Redis 6+ with no concurrent clients; enable with ./gradlew test -Ploadtest.
+ */
+@SpringBootTest(properties = {"allocation.engine=redis", "allocation.near-cache.enabled=true"})
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class NearCacheCommandCountTest {
+
+    private static final Logger log = LoggerFactory.getLogger(NearCacheCommandCountTest.class);
+
+    private static final String STORE = "nearcache-test";
+    private static final int POLLS = 10_000;
+    private static final int POLLS_PER_WRITE = 50;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private AllocationEngine allocationEngine;
+
+    @Autowired
+    private QueueService queueService;
+
+    @Test
+    void cachedPollingSendsFewerCommands() {
+        long direct = zcardCalls(() -> {
+            // What canAllocate costs without the cache: a ZCARD per queue
+            redisTemplate.opsForZSet().size(RedisScriptSupport.queueKey(QueueType.ORDER, STORE));
+            redisTemplate.opsForZSet().size(RedisScriptSupport.queueKey(QueueType.PICKER, STORE));
+        });
+        long cached = zcardCalls(() -> queueService.canAllocate(STORE));
+        redisTemplate.delete(List.of(
+            RedisScriptSupport.queueKey(QueueType.ORDER, STORE),
+            RedisScriptSupport.metaKey(QueueType.ORDER, STORE)));
+
+        log.info("{} canAllocate polls, a write every {}: direct {} ZCARD calls, near-cache {}",
+            POLLS, POLLS_PER_WRITE, direct, cached);
+        assertTrue(cached < direct, "near-cache should send fewer ZCARD calls");
+    }
+
+    private long zcardCalls(Runnable poll) {
+        long before = zcardCalls();
+        for (int i = 0; i < POLLS; i++) {
+            if (i % POLLS_PER_WRITE == 0) {
+                allocationEngine.enqueue(List.of(new QueueEntry(QueueType.ORDER, STORE, "order-" + i, i, Map.of())));
+            }
+            poll.run();
+        }
+        return zcardCalls() - before;
+    }
+
+    private long zcardCalls() {
+        Properties info = redisTemplate.execute(
+            (RedisCallback<Properties>) connection -> connection.serverCommands().info("commandstats"));
+        String stats = info.getProperty("cmdstat_zcard");
+        if (stats == null) {
+            return 0;
+        }
+        // calls=N,usec=...,usec_per_call=...
+        return Long.parseLong(stats.substring(stats.indexOf("calls=") + 6, stats.indexOf(',')));
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.demo.engine;
+
+import com.example.demo.metrics.AllocationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueSizeCacheTest {
+
+    private static final String KEY = "order:queue:{store1}";
+
+    private FakeSource source;
+    private SimpleMeterRegistry registry;
+    private QueueSizeCache cache;
+
+    @BeforeEach
+    void setUp() {
+        source = new FakeSource();
+        registry = new SimpleMeterRegistry();
+        cache = new QueueSizeCache(source, new AllocationMetrics(registry));
+    }
+
+    @Test
+    void get_servesRepeatedReadsFromMemoryUntilInvalidated() {
+        source.sizes.put(KEY, 3L);
+
+        assertEquals(3, cache.get(KEY).size());
+        assertEquals(3, cache.get(KEY).size());
+        assertEquals(1, source.reads.size());
+
+        source.sizes.put(KEY, 4L);
+        source.invalidated.accept(KEY);
+
+        assertEquals(4, cache.get(KEY).size());
+        assertEquals(2, source.reads.size());
+        assertEquals(1.0, registry.get("allocation.nearcache.requests").tag("result", "hit").counter().count());
+        assertEquals(2.0, registry.get("allocation.nearcache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void get_doesNotCacheReadRacingWithInvalidation() {
+        source.sizes.put(KEY, 3L);
+        // The key changes after Redis answered but before the answer is stored
+        source.duringRead = () -> source.invalidated.accept(KEY);
+
+        assertEquals(3, cache.get(KEY).size());
+        source.duringRead = null;
+        cache.get(KEY);
+
+        assertEquals(2, source.reads.size());
+    }
+
+    @Test
+    void get_doesNotCacheReadRacingWithReset() {
+        source.duringRead = () -> source.reset.run();
+
+        cache.get(KEY);
+        source.duringRead = null;
+        cache.get(KEY);
+
+        assertEquals(2, source.reads.size());
+    }
+
+    @Test
+    void reset_dropsEveryEntry() {
+        cache.get(KEY);
+        cache.get("picker:queue:{store1}");
+
+        source.reset.run();
+
+        assertEquals(0, cache.size());
+        cache.get(KEY);
+        assertEquals(3, source.reads.size());
+    }
+
+    @Test
+    void get_failedReadLeavesNothingCached() {
+        source.duringRead = () -> {
+            throw new IllegalStateException("connection lost");
+        };
+
+        assertThrows(IllegalStateException.class, () -> cache.get(KEY));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void get_cachesHeadMember() {
+        source.sizes.put(KEY, 1L);
+        source.heads.put(KEY, "order1");
+
+        assertEquals("order1", cache.get(KEY).head());
+        assertNull(cache.get("picker:queue:{store1}").head());
+    }
+
+    /**
+     * Stands in for the tracking connection; the test fires its invalidation and reset callbacks.
+     */
+    private static final class FakeSource implements QueueSizeCache.Source {
+
+        private final Map<String, Long> sizes = new HashMap<>();
+        private final Map<String, String> heads = new HashMap<>();
+        private final List<String> reads = new ArrayList<>();
+        private Runnable duringRead;
+        private Consumer<String> invalidated;
+        private Runnable reset;
+
+        @Override
+        public QueueSizeCache.QueueSnapshot read(String queueKey) {
+            reads.add(queueKey);
+            QueueSizeCache.QueueSnapshot snapshot =
+                new QueueSizeCache.QueueSnapshot(sizes.getOrDefault(queueKey, 0L), heads.get(queueKey));
+            if (duringRead != null) {
+                duringRead.run();
+            }
+            return snapshot;
+        }
+
+        @Override
+        public void subscribe(Consumer<String> invalidated, Runnable reset) {
+            this.invalidated = invalidated;
+            this.reset = reset;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
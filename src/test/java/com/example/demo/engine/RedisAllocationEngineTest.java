@@ -0,0 +1,180 @@
+package com.example.demo.engine;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.model.Allocation;
+import com.example.demo.service.RedisKeys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The pipelined script paths of the Redis engine against a real Redis. Needs Redis on localhost;
+ * enable with ./gradlew test -Predis.
+ */
+@SpringBootTest(properties = "allocation.engine=redis")
+@EnabledIfSystemProperty(named = "redis", matches = "true")
+class RedisAllocationEngineTest {
+
+    @Autowired
+    private RedisAllocationEngine engine;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private AllocationProperties properties;
+
+    private final String run = UUID.randomUUID().toString();
+    private final List<String> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        List<String> keys = new ArrayList<>();
+        for (String storeId : stores) {
+            keys.addAll(RedisScriptSupport.allocationKeys(storeId));
+        }
+        redisTemplate.delete(keys);
+        redisTemplate.opsForZSet().remove(RedisKeys.leaseDue(), stores.toArray());
+        redisTemplate.opsForZSet().remove(RedisKeys.leaseRegistrations(), stores.toArray());
+        redisTemplate.opsForSet().remove(RedisKeys.dirtyStores(), stores.toArray());
+    }
+
+    @Test
+    void allocateBatches_allocatesEveryStoreInRequestOrder() {
+        String store1 = store("1");
+        String store2 = store("2");
+        String store3 = store("3");
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, store1, "order2", 0.2),
+            entry(QueueType.ORDER, store1, "order1", 0.1),
+            entry(QueueType.PICKER, store1, "picker1", 0.1),
+            entry(QueueType.PICKER, store1, "picker2", 0.2),
+            entry(QueueType.ORDER, store2, "order1", 0.1),
+            entry(QueueType.ORDER, store3, "order1", 0.1),
+            entry(QueueType.ORDER, store3, "order2", 0.2),
+            entry(QueueType.PICKER, store3, "picker1", 0.1)));
+
+        Map<String, List<Allocation>> allocations = engine.allocateBatches(List.of(store3, store2, store1), 5);
+
+        assertEquals(List.of(store3, store2, store1), List.copyOf(allocations.keySet()));
+        assertEquals(List.of("order1:picker1"), pairs(allocations.get(store3)));
+        assertEquals(List.of(), allocations.get(store2));
+        assertEquals(List.of("order1:picker1", "order2:picker2"), pairs(allocations.get(store1)));
+        assertEquals(0, engine.size(QueueType.ORDER, store1));
+        assertEquals(1, engine.size(QueueType.ORDER, store2));
+        assertEquals(1, engine.size(QueueType.ORDER, store3));
+    }
+
+    @Test
+    void allocateBatches_loadsScriptFlushedFromRedis() {
+        String storeId = store("1");
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, storeId, "order1", 0.1),
+            entry(QueueType.PICKER, storeId, "picker1", 0.1)));
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+
+        Map<String, List<Allocation>> allocations = engine.allocateBatches(List.of(storeId), 1);
+
+        assertEquals(List.of("order1:picker1"), pairs(allocations.get(storeId)));
+    }
+
+    @Test
+    void statuses_readsEveryStoreInRequestOrder() {
+        String store1 = store("1");
+        String store2 = store("2");
+        String empty = store("empty");
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, store1, "order2", 0.2),
+            entry(QueueType.ORDER, store1, "order1", 0.1),
+            entry(QueueType.PICKER, store1, "picker1", 0.3),
+            entry(QueueType.ORDER, store2, "order1", 0.5)));
+
+        List<QueueStatusResponse> statuses = engine.statuses(List.of(store2, empty, store1));
+
+        assertEquals(List.of(store2, empty, store1), statuses.stream().map(QueueStatusResponse::storeId).toList());
+        QueueStatusResponse status1 = statuses.get(2);
+        assertEquals(2, status1.orderQueueSize());
+        assertEquals(1, status1.pickerQueueSize());
+        assertTrue(status1.canAllocate());
+        assertEquals("order1", status1.topOrderId());
+        assertEquals("picker1", status1.topPickerId());
+        assertEquals("0.1", status1.topOrderScoreMeta().get("finalScore"));
+        assertEquals("0.3", status1.topPickerScoreMeta().get("finalScore"));
+        assertFalse(statuses.get(0).canAllocate());
+        assertNull(statuses.get(0).topPickerId());
+        assertEquals(0, statuses.get(1).orderQueueSize());
+        assertNull(statuses.get(1).topOrderId());
+        assertEquals(engine.status(store1), status1);
+    }
+
+    @Test
+    void enqueueAndAllocate_marksStoreDirtyWhenSweeperEnabled() {
+        String storeId = store("1");
+        boolean configured = properties.getSweeper().isEnabled();
+        properties.getSweeper().setEnabled(true);
+        try {
+            engine.enqueueAndAllocate(entry(QueueType.ORDER, storeId, "order1", 0.1));
+        } finally {
+            properties.getSweeper().setEnabled(configured);
+        }
+
+        assertTrue(redisTemplate.opsForSet().isMember(RedisKeys.dirtyStores(), storeId));
+    }
+
+    @Test
+    void reapExpiredLeases_visitsDueStoresAndDropsThemOnceQuiet() throws InterruptedException {
+        long ttlMs = properties.getLease().getTtlMs();
+        properties.getLease().setTtlMs(200);
+        try {
+            String storeId = store("1");
+            engine.enqueue(List.of(
+                entry(QueueType.ORDER, storeId, "order1", 0.1),
+                entry(QueueType.PICKER, storeId, "picker1", 0.1)));
+            assertEquals(List.of("order1:picker1"), pairs(engine.allocateBatch(storeId, 1)));
+            assertNotNull(redisTemplate.opsForZSet().score(RedisKeys.leaseDue(), storeId));
+
+            assertFalse(engine.reapExpiredLeases(10).containsKey(storeId));
+            Thread.sleep(250);
+            assertEquals(List.of("order1"), engine.reapExpiredLeases(10).get(storeId));
+            // No leases left, but registered within two lease durations: still due, one lease duration on
+            assertNotNull(redisTemplate.opsForZSet().score(RedisKeys.leaseDue(), storeId));
+
+            Thread.sleep(450);
+            assertFalse(engine.reapExpiredLeases(10).containsKey(storeId));
+            assertNull(redisTemplate.opsForZSet().score(RedisKeys.leaseDue(), storeId));
+            assertNull(redisTemplate.opsForZSet().score(RedisKeys.leaseRegistrations(), storeId));
+            assertEquals(1, engine.size(QueueType.ORDER, storeId));
+        } finally {
+            properties.getLease().setTtlMs(ttlMs);
+        }
+    }
+
+    private String store(String suffix) {
+        String storeId = "engine-test-" + run + "-" + suffix;
+        stores.add(storeId);
+        return storeId;
+    }
+
+    private static QueueEntry entry(QueueType type, String storeId, String memberId, double score) {
+        return new QueueEntry(type, storeId, memberId, score, Map.of("finalScore", String.valueOf(score)));
+    }
+
+    private static List<String> pairs(List<Allocation> allocations) {
+        return allocations.stream().map(a -> a.orderId() + ":" + a.pickerId()).toList();
+    }
+}
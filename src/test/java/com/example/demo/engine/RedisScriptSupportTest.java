@@ -0,0 +1,79 @@
+package com.example.demo.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisScriptSupportTest {
+
+    @Test
+    void packMeta_roundTripsInLayoutOrder() {
+        Map<String, String> meta = Map.of(
+            "finalScore", "1.5",
+            "skuScore", "0.35",
+            "initialPriority", "3.0",
+            "oatDelta", "-1234.0");
+
+        String packed = RedisScriptSupport.packMeta(QueueType.ORDER, meta);
+
+        assertEquals("-1234.0,3.0,0.35,1.5", packed);
+        Map<Object, Object> unpacked = RedisScriptSupport.unpackMeta(QueueType.ORDER, packed);
+        assertEquals(meta, unpacked);
+        assertEquals(List.of("oatDelta", "initialPriority", "skuScore", "finalScore"), List.copyOf(unpacked.keySet()));
+    }
+
+    @Test
+    void packMeta_leavesMissingFieldsEmpty() {
+        String packed = RedisScriptSupport.packMeta(QueueType.PICKER, Map.of("finalScore", "0.5"));
+
+        assertEquals(",,0.5", packed);
+        assertEquals(Map.of("finalScore", "0.5"), RedisScriptSupport.unpackMeta(QueueType.PICKER, packed));
+    }
+
+    @Test
+    void unpackMeta_absentValueGivesEmptyMap() {
+        assertEquals(Map.of(), RedisScriptSupport.unpackMeta(QueueType.ORDER, null));
+        assertEquals(Map.of(), RedisScriptSupport.unpackMeta(QueueType.ORDER, ""));
+    }
+
+    @Test
+    void toMatchCandidates_splitsOrdersAndPickers() {
+        List<Object> reply = List.of(
+            1L,
+            "order1", "0.25", ",,42.0,0.25", "1",
+            "picker1", "0.5", "", "0",
+            "picker2", "0.75", ",,0.75", "3");
+
+        MatchCandidates candidates = RedisScriptSupport.toMatchCandidates("store1", reply);
+
+        assertEquals(1, candidates.orders().size());
+        QueueEntry order = candidates.orders().get(0);
+        assertEquals("order1", order.memberId());
+        assertEquals(0.25, order.score());
+        assertEquals("42.0", order.metaFields().get("skuScore"));
+        assertEquals(1, order.capabilities());
+        assertEquals(List.of("picker1", "picker2"), candidates.pickers().stream().map(QueueEntry::memberId).toList());
+        assertEquals(Map.of(), candidates.pickers().get(0).metaFields());
+        assertEquals(3, candidates.pickers().get(1).capabilities());
+    }
+
+    @Test
+    void allocatePairsArgs_flattensPairsAfterHistoryCapAndLease() {
+        List<String> args = RedisScriptSupport.allocatePairsArgs(100, 30000,
+            List.of(new MatchPair("order1", "picker2"), new MatchPair("order2", "picker1")));
+
+        assertEquals(List.of("100", "30000", "order1", "picker2", "order2", "picker1"), args);
+    }
+
+    @Test
+    void allocationKeys_endWithLeaseKeysOfTheSameSlot() {
+        List<String> keys = RedisScriptSupport.allocationKeys("store1");
+
+        assertEquals(9, keys.size());
+        assertEquals(List.of("order:inflight:{store1}", "order:lease:{store1}"), keys.subList(7, 9));
+        assertEquals(RedisScriptSupport.ackLeaseKeys("store1"), keys.subList(7, 9));
+    }
+}
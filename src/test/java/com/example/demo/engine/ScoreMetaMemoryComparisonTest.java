@@ -0,0 +1,115 @@
+package com.example.demo.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes the same score metadata for many orders in the per-member layout (one HASH with its own TTL per
+ * order) and in the per-store packed layout, and logs the Redis memory each one takes.
+ * Needs a running Redis with no concurrent writers; enable with ./gradlew test -Ploadtest.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class ScoreMetaMemoryComparisonTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreMetaMemoryComparisonTest.class);
+
+    private static final int ORDERS = 200_000;
+    private static final int STORES = 64;
+    private static final int CHUNK = 1_000;
+    private static final Duration TTL = Duration.ofHours(24);
+
+    private static final Map<String, String> META = Map.of(
+        "oatDelta", "-1234.0",
+        "initialPriority", "3.0",
+        "skuScore", "0.35",
+        "finalScore", "1.7601234567E9");
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Test
+    void perMemberHashesAgainstPackedStoreHashes() {
+        List<String> legacyKeys = new ArrayList<>();
+        long perMember = measure((ops, i) -> {
+            // Layout before packing: order:scoremeta:{storeId}:orderId
+            String key = "order:scoremeta:{memtest-" + (i % STORES) + "}:order-" + i;
+            legacyKeys.add(key);
+            ops.opsForHash().putAll(key, META);
+            ops.expire(key, TTL);
+        });
+        delete(legacyKeys);
+
+        List<String> storeKeys = new ArrayList<>();
+        String packed = RedisScriptSupport.packMeta(QueueType.ORDER, META);
+        long perStore = measure((ops, i) -> {
+            String key = RedisScriptSupport.metaKey(QueueType.ORDER, "memtest-" + (i % STORES));
+            ops.opsForHash().put(key, "order-" + i, packed);
+        });
+        for (int store = 0; store < STORES; store++) {
+            storeKeys.add(RedisScriptSupport.metaKey(QueueType.ORDER, "memtest-" + store));
+        }
+        delete(storeKeys);
+
+        log.info("score metadata for {} orders in {} stores: per-member {} bytes ({}/order), "
+                + "packed per-store {} bytes ({}/order)",
+            ORDERS, STORES, perMember, String.format("%.1f", perMember / (double) ORDERS), perStore,
+            String.format("%.1f", perStore / (double) ORDERS));
+        assertTrue(perStore < perMember, "packed layout should use less memory");
+    }
+
+    /**
+     * used_memory growth while writing metadata for every order, pipelined in chunks.
+     */
+    private long measure(MetaWriter write) {
+        long before = usedMemory();
+        for (int start = 0; start < ORDERS; start += CHUNK) {
+            int from = start;
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (int i = from; i < Math.min(from + CHUNK, ORDERS); i++) {
+                        write.write(ops, i);
+                    }
+                    return null;
+                }
+            });
+        }
+        return usedMemory() - before;
+    }
+
+    private void delete(List<String> keys) {
+        for (int start = 0; start < keys.size(); start += CHUNK) {
+            redisTemplate.delete(keys.subList(start, Math.min(start + CHUNK, keys.size())));
+        }
+    }
+
+    private long usedMemory() {
+        Properties info = redisTemplate.execute(
+            (RedisCallback<Properties>) connection -> connection.serverCommands().info("memory"));
+        return Long.parseLong(info.getProperty("used_memory").trim());
+    }
+
+    @FunctionalInterface
+    private interface MetaWriter {
+        void write(RedisOperations<String, Object> ops, int order);
+    }
+}
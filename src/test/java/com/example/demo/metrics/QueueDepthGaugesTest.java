@@ -0,0 +1,74 @@
+package com.example.demo.metrics;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.LocalAllocationEngine;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueDepthGaugesTest {
+
+    private SimpleMeterRegistry registry;
+    private LocalAllocationEngine engine;
+    private AllocationMetrics metrics;
+    private QueueDepthGauges gauges;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        engine = new LocalAllocationEngine(new AllocationProperties());
+        metrics = new AllocationMetrics(registry);
+        gauges = new QueueDepthGauges(registry, engine, metrics);
+    }
+
+    @Test
+    void refresh_registersGaugesForTrackedStores() {
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1"),
+            entry(QueueType.ORDER, "store1", "order2"),
+            entry(QueueType.PICKER, "store1", "picker1")
+        ));
+        metrics.trackStore("store1");
+
+        gauges.refresh();
+
+        assertEquals(2.0, depth("store1", "order"));
+        assertEquals(1.0, depth("store1", "picker"));
+    }
+
+    @Test
+    void gauges_readCachedCountsUntilNextRefresh() {
+        metrics.trackStore("store1");
+        gauges.refresh();
+
+        engine.enqueue(List.of(entry(QueueType.ORDER, "store1", "order1")));
+        assertEquals(0.0, depth("store1", "order"));
+
+        gauges.refresh();
+        assertEquals(1.0, depth("store1", "order"));
+    }
+
+    @Test
+    void recordAllocations_countsHitsPerPairAndMissesPerAttempt() {
+        metrics.recordAllocations(3);
+        metrics.recordAllocations(0);
+
+        assertEquals(3.0, registry.get("allocation.attempts").tag("result", "hit").counter().count());
+        assertEquals(1.0, registry.get("allocation.attempts").tag("result", "miss").counter().count());
+    }
+
+    private double depth(String storeId, String type) {
+        return registry.get("allocation.queue.depth").tag("store", storeId).tag("type", type).gauge().value();
+    }
+
+    private static QueueEntry entry(QueueType type, String storeId, String memberId) {
+        return new QueueEntry(type, storeId, memberId, 0.5, Map.of());
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.demo.service;
+
+import com.example.demo.audit.AllocationAuditLog;
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.LocalAllocationEngine;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllocationDispatcherTest {
+
+    private AllocationProperties properties;
+    private LocalAllocationEngine engine;
+    private MatchingService matchingService;
+    private AllocationPushService pushService;
+    private AllocationDispatcher dispatcher;
+    private final AtomicInteger passes = new AtomicInteger();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final Set<String> allocatedOrders = ConcurrentHashMap.newKeySet();
+    private volatile CountDownLatch listenerGate = new CountDownLatch(0);
+    private volatile Consumer<Allocation> lateTrigger = allocation -> { };
+    private final CountDownLatch listenerEntered = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        properties = new AllocationProperties();
+        properties.getDispatcher().setEnabled(true);
+        properties.getDispatcher().setRetryInitialBackoffMs(1);
+        engine = new LocalAllocationEngine(properties);
+        AllocationMetrics metrics = new AllocationMetrics(new SimpleMeterRegistry());
+        ScoreCalculationService scoreCalculationService = new ScoreCalculationService(properties);
+        matchingService = new MatchingService(engine, scoreCalculationService, properties, metrics);
+        AllocationAuditLog auditLog = new AllocationAuditLog(properties, metrics);
+        pushService = new AllocationPushService(properties, metrics, Optional.empty());
+        AllocationService allocationService = new AllocationService(engine,
+            new QueueService(engine, scoreCalculationService, metrics, auditLog), scoreCalculationService, properties,
+            metrics, matchingService, auditLog, pushService) {
+            @Override
+            public List<Allocation> tryAllocateBatch(String storeId, int max) {
+                passes.incrementAndGet();
+                if (failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                    throw new IllegalStateException("Redis unavailable");
+                }
+                return super.tryAllocateBatch(storeId, max);
+            }
+        };
+        dispatcher = new AllocationDispatcher(allocationService, properties, List.of((storeId, allocations) -> {
+            listenerEntered.countDown();
+            try {
+                listenerGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Allocation allocation : allocations) {
+                allocatedOrders.add(allocation.storeId() + "/" + allocation.orderId());
+                lateTrigger.accept(allocation);
+            }
+        }));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+        matchingService.shutdown();
+        pushService.shutdown();
+    }
+
+    @Test
+    void markDirty_coalescesTriggersArrivingDuringAPass() throws InterruptedException {
+        listenerGate = new CountDownLatch(1);
+        enqueuePair("store1", 0);
+        dispatcher.markDirty("store1");
+        assertTrue(listenerEntered.await(5, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= 3; i++) {
+            enqueuePair("store1", i);
+            dispatcher.markDirty("store1");
+        }
+        listenerGate.countDown();
+
+        awaitAllocated(4);
+        assertEquals(2, passes.get());
+    }
+
+    @Test
+    void markDirty_triggerRacingWithTheEndOfAPassIsNotLost() throws InterruptedException {
+        int stores = 500;
+        // The first allocation in each store queues one more pair and triggers it from another thread
+        // while the worker finishes its pass. The delays are staggered so that, across stores, triggers
+        // land around the worker's last dirty check and its release of the store; one lost there would
+        // strand its pair
+        lateTrigger = allocation -> {
+            String storeId = allocation.storeId();
+            int store = Integer.parseInt(storeId.substring("store".length()));
+            if (allocation.orderId().equals("order0")) {
+                enqueuePair(storeId, 1);
+                Thread.ofPlatform().start(() -> {
+                    long until = System.nanoTime() + (store % 50) * 200;
+                    while (System.nanoTime() < until) {
+                        Thread.onSpinWait();
+                    }
+                    dispatcher.markDirty(storeId);
+                });
+            }
+        };
+        for (int store = 0; store < stores; store++) {
+            enqueuePair("store" + store, 0);
+            dispatcher.markDirty("store" + store);
+        }
+
+        awaitAllocated(2 * stores);
+    }
+
+    @Test
+    void failedPass_isRetriedWithoutANewTrigger() throws InterruptedException {
+        failuresLeft.set(3);
+        enqueuePair("store1", 0);
+
+        dispatcher.markDirty("store1");
+
+        awaitAllocated(1);
+        assertEquals(4, passes.get());
+    }
+
+    private void enqueuePair(String storeId, int i) {
+        engine.enqueue(List.of(
+            new QueueEntry(QueueType.ORDER, storeId, "order" + i, 0.1, Map.of()),
+            new QueueEntry(QueueType.PICKER, storeId, "picker" + i, 0.1, Map.of())));
+    }
+
+    private void awaitAllocated(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (allocatedOrders.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, allocatedOrders.size());
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllocationPushServiceTest {
+
+    private AllocationProperties properties;
+    private AllocationMetrics metrics;
+    private final List<AllocationPushService> services = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        properties = new AllocationProperties();
+        properties.getPush().setEnabled(true);
+        metrics = new AllocationMetrics(new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (AllocationPushService service : services) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void publish_deliversOnlyToSubscribedPicker() throws InterruptedException {
+        AllocationPushService service = start(Optional.empty());
+        RecordingSubscriber picker1 = new RecordingSubscriber();
+        RecordingSubscriber picker2 = new RecordingSubscriber();
+        service.subscribe("store1", "picker1", picker1);
+        service.subscribe("store2", "picker1", picker2);
+
+        service.publish(List.of(
+            allocation("store1", "order1", "picker1"),
+            allocation("store1", "order2", "picker3"),
+            allocation("store1", "order3", "picker1")));
+
+        assertEquals(List.of("order1", "order3"), picker1.orderIds());
+        assertNull(picker2.received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void publish_reachesSubscribersOnEveryInstanceThroughRelay() throws InterruptedException {
+        LoopbackRelay relay = new LoopbackRelay();
+        AllocationPushService publisher = start(Optional.of(relay));
+        AllocationPushService other = start(Optional.of(relay));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        other.subscribe("store1", "picker1", subscriber);
+
+        publisher.publish(List.of(allocation("store1", "order1", "picker1")));
+
+        assertEquals(List.of("order1"), subscriber.orderIds());
+    }
+
+    @Test
+    void publish_sendsBatchesToASubscriberOneAtATimeInPublishOrder() throws InterruptedException {
+        AllocationPushService service = start(Optional.empty());
+        SlowSubscriber subscriber = new SlowSubscriber();
+        service.subscribe("store1", "picker1", subscriber);
+
+        List<String> published = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            published.add("order" + i);
+            service.publish(List.of(allocation("store1", "order" + i, "picker1")));
+        }
+
+        List<String> received = new ArrayList<>();
+        for (int i = 0; i < published.size(); i++) {
+            List<Allocation> allocations = subscriber.received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(allocations, "nothing pushed");
+            received.add(allocations.get(0).orderId());
+        }
+        assertEquals(published, received);
+        assertEquals(1, subscriber.maxConcurrentSends.get());
+    }
+
+    @Test
+    void failedSend_dropsSubscriber() throws InterruptedException {
+        AllocationPushService service = start(Optional.empty());
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.fail = true;
+        service.subscribe("store1", "picker1", subscriber);
+
+        service.publish(List.of(allocation("store1", "order1", "picker1")));
+
+        assertEquals(List.of("order1"), subscriber.orderIds());
+        awaitSubscribers(service, 0);
+    }
+
+    @Test
+    void failedHeartbeat_dropsSubscriber() throws InterruptedException {
+        AllocationPushService service = start(Optional.empty());
+        RecordingSubscriber healthy = new RecordingSubscriber();
+        RecordingSubscriber dead = new RecordingSubscriber();
+        dead.fail = true;
+        service.subscribe("store1", "picker1", healthy);
+        service.subscribe("store1", "picker2", dead);
+
+        service.heartbeat();
+
+        awaitSubscribers(service, 1);
+        service.publish(List.of(allocation("store1", "order1", "picker1")));
+        assertEquals(List.of("order1"), healthy.orderIds());
+    }
+
+    @Test
+    void subscribe_refusedAtMaxSubscribers() {
+        properties.getPush().setMaxSubscribers(2);
+        AllocationPushService service = start(Optional.empty());
+        RecordingSubscriber first = new RecordingSubscriber();
+
+        assertTrue(service.subscribe("store1", "picker1", first));
+        assertTrue(service.subscribe("store1", "picker1", new RecordingSubscriber()));
+        assertFalse(service.subscribe("store1", "picker2", new RecordingSubscriber()));
+
+        service.unsubscribe("store1", "picker1", first);
+        assertTrue(service.subscribe("store1", "picker2", new RecordingSubscriber()));
+        assertEquals(2, service.subscriberCount());
+    }
+
+    @Test
+    void publish_doesNothingWhenDisabled() throws InterruptedException {
+        properties.getPush().setEnabled(false);
+        LoopbackRelay relay = new LoopbackRelay();
+        AllocationPushService service = start(Optional.of(relay));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        service.subscribe("store1", "picker1", subscriber);
+
+        service.publish(List.of(allocation("store1", "order1", "picker1")));
+
+        assertTrue(relay.deliveries.isEmpty());
+        assertNull(subscriber.received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void relayMessage_roundTrips() {
+        List<Allocation> allocations = List.of(
+            allocation("store1", "order1", "picker1"),
+            allocation("store:2", "order 2", "picker-2"));
+
+        assertEquals(allocations, RedisAllocationRelay.decode(RedisAllocationRelay.encode(allocations)));
+    }
+
+    private AllocationPushService start(Optional<AllocationPushService.Relay> relay) {
+        AllocationPushService service = new AllocationPushService(properties, metrics, relay);
+        services.add(service);
+        return service;
+    }
+
+    private static void awaitSubscribers(AllocationPushService service, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.subscriberCount() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, service.subscriberCount());
+    }
+
+    private static Allocation allocation(String storeId, String orderId, String pickerId) {
+        return new Allocation(orderId, pickerId, storeId, 1000);
+    }
+
+    private static final class RecordingSubscriber implements AllocationPushService.Subscriber {
+        final BlockingQueue<List<Allocation>> received = new LinkedBlockingQueue<>();
+        volatile boolean fail;
+
+        @Override
+        public void send(List<Allocation> allocations) throws IOException {
+            received.add(allocations);
+            if (fail) {
+                throw new IOException("Broken pipe");
+            }
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            if (fail) {
+                throw new IOException("Broken pipe");
+            }
+        }
+
+        List<String> orderIds() throws InterruptedException {
+            List<Allocation> allocations = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(allocations, "nothing pushed");
+            return allocations.stream().map(Allocation::orderId).toList();
+        }
+    }
+
+    private static final class SlowSubscriber implements AllocationPushService.Subscriber {
+        final BlockingQueue<List<Allocation>> received = new LinkedBlockingQueue<>();
+        final AtomicInteger concurrentSends = new AtomicInteger();
+        final AtomicInteger maxConcurrentSends = new AtomicInteger();
+
+        @Override
+        public void send(List<Allocation> allocations) {
+            maxConcurrentSends.accumulateAndGet(concurrentSends.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(allocations);
+            concurrentSends.decrementAndGet();
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+    }
+
+    /**
+     * Stands in for Redis pub/sub: every publish reaches every subscribed service.
+     */
+    private static final class LoopbackRelay implements AllocationPushService.Relay {
+        final List<Consumer<List<Allocation>>> deliveries = new ArrayList<>();
+
+        @Override
+        public void publish(List<Allocation> allocations) {
+            deliveries.forEach(delivery -> delivery.accept(allocations));
+        }
+
+        @Override
+        public void subscribe(Consumer<List<Allocation>> delivery) {
+            deliveries.add(delivery);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AssignmentSolverTest {
+
+    @Test
+    void solve_beatsGreedyWhenHeadPairIsExpensiveForTheRest() {
+        // Greedy takes (0,0) for 1 and leaves (1,1) for 100; the optimum crosses over for 2 + 3
+        double[][] cost = {
+            {1, 2},
+            {3, 100}
+        };
+
+        assertArrayEquals(new int[] {1, 0}, AssignmentSolver.solve(cost));
+    }
+
+    @Test
+    void solve_leavesExtraRowsUnassigned() {
+        double[][] cost = {
+            {5, 9},
+            {1, 7},
+            {4, 2}
+        };
+
+        assertArrayEquals(new int[] {-1, 0, 1}, AssignmentSolver.solve(cost));
+    }
+
+    @Test
+    void solve_emptyMatrix() {
+        assertEquals(0, AssignmentSolver.solve(new double[0][0]).length);
+    }
+
+    @Test
+    void solve_matchesBruteForceOnRandomMatrices() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int round = 0; round < 500; round++) {
+            int rows = random.nextInt(1, 7);
+            int cols = random.nextInt(1, 7);
+            double[][] cost = new double[rows][cols];
+            for (double[] row : cost) {
+                for (int col = 0; col < cols; col++) {
+                    row[col] = random.nextDouble(-5, 10);
+                }
+            }
+
+            int[] assignment = AssignmentSolver.solve(cost);
+
+            Set<Integer> usedCols = new HashSet<>();
+            double total = 0;
+            for (int row = 0; row < rows; row++) {
+                if (assignment[row] >= 0) {
+                    assertTrue(usedCols.add(assignment[row]), "column assigned twice");
+                    total += cost[row][assignment[row]];
+                }
+            }
+            assertEquals(Math.min(rows, cols), usedCols.size());
+            assertEquals(bruteForce(cost, 0, new boolean[cols], Math.min(rows, cols)), total, 1e-9);
+        }
+    }
+
+    /**
+     * Cheapest way to assign {@code remaining} more rows from {@code row} on, skipping rows as needed.
+     */
+    private static double bruteForce(double[][] cost, int row, boolean[] usedCols, int remaining) {
+        if (remaining == 0) {
+            return 0;
+        }
+        if (cost.length - row < remaining) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double best = bruteForce(cost, row + 1, usedCols, remaining);
+        for (int col = 0; col < usedCols.length; col++) {
+            if (!usedCols[col]) {
+                usedCols[col] = true;
+                best = Math.min(best, cost[row][col] + bruteForce(cost, row + 1, usedCols, remaining - 1));
+                usedCols[col] = false;
+            }
+        }
+        return best;
+    }
+}
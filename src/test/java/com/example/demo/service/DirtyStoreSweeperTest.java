@@ -0,0 +1,104 @@
+package com.example.demo.service;
+
+import com.example.demo.audit.AllocationAuditLog;
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.LocalAllocationEngine;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirtyStoreSweeperTest {
+
+    private AllocationProperties properties;
+    private LocalAllocationEngine engine;
+    private MatchingService matchingService;
+    private AllocationPushService pushService;
+    private DirtyStoreSweeper sweeper;
+    private final Map<String, List<Allocation>> published = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        properties = new AllocationProperties();
+        properties.getSweeper().setEnabled(true);
+        properties.getSweeper().setBatchSize(1);
+        properties.getSweeper().setWorkers(2);
+        engine = new LocalAllocationEngine(properties);
+        AllocationMetrics metrics = new AllocationMetrics(new SimpleMeterRegistry());
+        ScoreCalculationService scoreCalculationService = new ScoreCalculationService(properties);
+        matchingService = new MatchingService(engine, scoreCalculationService, properties, metrics);
+        AllocationAuditLog auditLog = new AllocationAuditLog(properties, metrics);
+        pushService = new AllocationPushService(properties, metrics, Optional.empty());
+        AllocationService allocationService = new AllocationService(engine,
+            new QueueService(engine, scoreCalculationService, metrics, auditLog), scoreCalculationService, properties,
+            metrics, matchingService, auditLog, pushService);
+        sweeper = new DirtyStoreSweeper(engine, allocationService, properties, metrics,
+            List.of((storeId, allocations) -> published.put(storeId, allocations)));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        sweeper.shutdown();
+        matchingService.shutdown();
+        pushService.shutdown();
+    }
+
+    @Test
+    void sweep_allocatesEveryDirtyStore() {
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1"),
+            entry(QueueType.PICKER, "store1", "picker1"),
+            entry(QueueType.ORDER, "store2", "order2"),
+            entry(QueueType.PICKER, "store2", "picker2")));
+
+        sweeper.sweep();
+
+        assertEquals(Map.of("store1", "order1", "store2", "order2"), Map.of(
+            "store1", published.get("store1").get(0).orderId(),
+            "store2", published.get("store2").get(0).orderId()));
+        assertEquals(List.of(), engine.popDirtyStores(10));
+    }
+
+    @Test
+    void sweep_marksStoreAgainWhenItFilledWholeBatch() {
+        properties.setMaxBatchSize(1);
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1"),
+            entry(QueueType.ORDER, "store1", "order2"),
+            entry(QueueType.PICKER, "store1", "picker1"),
+            entry(QueueType.PICKER, "store1", "picker2")));
+
+        sweeper.sweep();
+
+        assertEquals(1, engine.size(QueueType.ORDER, "store1"));
+        assertEquals(List.of("store1"), engine.popDirtyStores(10));
+    }
+
+    @Test
+    void sweep_skipsStoresNotMarkedDirty() {
+        engine.enqueue(List.of(
+            entry(QueueType.ORDER, "store1", "order1"),
+            entry(QueueType.PICKER, "store1", "picker1")));
+        engine.popDirtyStores(10);
+
+        sweeper.sweep();
+
+        assertTrue(published.isEmpty());
+        assertEquals(1, engine.size(QueueType.ORDER, "store1"));
+    }
+
+    private static QueueEntry entry(QueueType type, String storeId, String memberId) {
+        return new QueueEntry(type, storeId, memberId, 0.1, Map.of());
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.engine.LocalAllocationEngine;
+import com.example.demo.engine.QueueEntry;
+import com.example.demo.engine.QueueType;
+import com.example.demo.metrics.AllocationMetrics;
+import com.example.demo.model.Allocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchingServiceTest {
+
+    private static final int CHILLED = 0b01;
+
+    private AllocationProperties properties;
+    private LocalAllocationEngine engine;
+    private MatchingService matchingService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AllocationProperties();
+        properties.getMatching().setMode(AllocationProperties.MatchingMode.OPTIMAL);
+        engine = new LocalAllocationEngine(properties);
+        matchingService = new MatchingService(engine, new ScoreCalculationService(properties), properties,
+            new AllocationMetrics(new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        matchingService.shutdown();
+    }
+
+    @Test
+    void allocateMatched_givesLargeOrderToExperiencedPicker() {
+        // Greedy pairs small -> expert and large -> novice
+        engine.enqueue(List.of(
+            order("store1", "small", 0.1, 2, 0),
+            order("store1", "large", 0.2, 100, 0),
+            picker("store1", "expert", 0.1, 0),
+            picker("store1", "novice", 0.9, 0)
+        ));
+
+        List<Allocation> allocations = matchingService.allocateMatched("store1", 10);
+
+        assertEquals(2, allocations.size());
+        assertEquals(Map.of("small", "novice", "large", "expert"), pairs(allocations));
+    }
+
+    @Test
+    void allocateMatched_onlyMatchesAsManyOrdersAsThereArePickers() {
+        engine.enqueue(List.of(
+            order("store1", "large", 0.1, 100, 0),
+            order("store1", "small", 0.2, 2, 0),
+            picker("store1", "novice", 0.9, 0)
+        ));
+
+        List<Allocation> allocations = matchingService.allocateMatched("store1", 10);
+
+        assertEquals(Map.of("large", "novice"), pairs(allocations));
+        assertEquals(Optional.of("small"), engine.peek(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void allocateMatched_pairsOnlyEligiblePickers() {
+        engine.enqueue(List.of(
+            order("store1", "chilled", 0.1, 2, CHILLED),
+            order("store1", "plain", 0.2, 100, 0),
+            picker("store1", "expert", 0.1, 0),
+            picker("store1", "certified", 0.9, CHILLED)
+        ));
+
+        List<Allocation> allocations = matchingService.allocateMatched("store1", 10);
+
+        assertEquals(Map.of("chilled", "certified", "plain", "expert"), pairs(allocations));
+    }
+
+    @Test
+    void allocateMatched_leavesOrdersWithoutEligiblePickerQueued() {
+        engine.enqueue(List.of(
+            order("store1", "chilled", 0.1, 2, CHILLED),
+            order("store1", "plain", 0.2, 2, 0),
+            picker("store1", "picker1", 0.5, 0),
+            picker("store1", "picker2", 0.6, 0)
+        ));
+
+        List<Allocation> allocations = matchingService.allocateMatched("store1", 10);
+
+        assertEquals(Map.of("plain", "picker1"), pairs(allocations));
+        assertEquals(Optional.of("chilled"), engine.peek(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void allocateMatched_runsPassesOfWindowSizeUntilMax() {
+        properties.getMatching().setWindow(2);
+        for (int i = 0; i < 5; i++) {
+            engine.enqueue(List.of(
+                order("store1", "order" + i, 0.1 * i, 10, 0),
+                picker("store1", "picker" + i, 0.1 * i, 0)));
+        }
+
+        assertEquals(3, matchingService.allocateMatched("store1", 3).size());
+        assertEquals(2, matchingService.allocateMatched("store1", 10).size());
+        assertEquals(0, engine.size(QueueType.ORDER, "store1"));
+    }
+
+    @Test
+    void allocateMatched_coversEveryStore() {
+        for (int store = 0; store < 8; store++) {
+            engine.enqueue(List.of(
+                order("store" + store, "order" + store, 0.1, 10, 0),
+                picker("store" + store, "picker" + store, 0.1, 0)));
+        }
+        List<String> storeIds = List.of("store0", "store1", "store2", "store3", "store4", "store5", "store6", "store7");
+
+        List<Allocation> allocations = matchingService.allocateMatched(storeIds, 10);
+
+        assertEquals(storeIds, allocations.stream().map(Allocation::storeId).toList());
+    }
+
+    private static QueueEntry order(String storeId, String orderId, double score, int skuCount, int capabilities) {
+        return new QueueEntry(QueueType.ORDER, storeId, orderId, score,
+            Map.of("skuScore", String.valueOf(skuCount), "finalScore", String.valueOf(score)), capabilities);
+    }
+
+    private static QueueEntry picker(String storeId, String pickerId, double score, int capabilities) {
+        return new QueueEntry(QueueType.PICKER, storeId, pickerId, score,
+            Map.of("finalScore", String.valueOf(score)), capabilities);
+    }
+
+    private static Map<String, String> pairs(List<Allocation> allocations) {
+        return allocations.stream()
+            .collect(Collectors.toMap(Allocation::orderId, Allocation::pickerId));
+    }
+}
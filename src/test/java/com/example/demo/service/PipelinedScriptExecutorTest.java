@@ -0,0 +1,64 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pipelined EVALSHA against a real Redis. Needs Redis on localhost; enable with ./gradlew test -Predis.
+ */
+@SpringBootTest(properties = "allocation.engine=redis")
+@EnabledIfSystemProperty(named = "redis", matches = "true")
+class PipelinedScriptExecutorTest {
+
+    private static final RedisScript<List> ECHO = RedisScript.of("return {KEYS[1], ARGV[1], #ARGV}", List.class);
+
+    @Autowired
+    private PipelinedScriptExecutor executor;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Test
+    void executeAll_returnsOneResultPerCallInCallOrder() {
+        List<PipelinedScriptExecutor.ScriptCall> calls = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            calls.add(new PipelinedScriptExecutor.ScriptCall(List.of("key:" + i), List.of("arg" + i, "extra")));
+        }
+
+        List<Object> results = executor.executeAll(ECHO, calls);
+
+        assertEquals(100, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(List.of("key:" + i, "arg" + i, 2L), results.get(i));
+        }
+    }
+
+    @Test
+    void executeAll_loadsScriptMissingFromRedisAndRetries() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+
+        List<Object> results = executor.executeAll(ECHO, List.of(
+            new PipelinedScriptExecutor.ScriptCall(List.of("key:1"), List.of("arg1")),
+            new PipelinedScriptExecutor.ScriptCall(List.of("key:2"), List.of("arg2"))));
+
+        assertEquals(List.of(List.of("key:1", "arg1", 1L), List.of("key:2", "arg2", 1L)), results);
+    }
+
+    @Test
+    void executeAll_withoutCallsReturnsEmpty() {
+        assertEquals(List.of(), executor.executeAll(ECHO, List.of()));
+    }
+}
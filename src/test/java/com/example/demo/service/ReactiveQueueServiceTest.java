@@ -0,0 +1,123 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AllocationProperties;
+import com.example.demo.dto.QueueStatusResponse;
+import com.example.demo.engine.RedisScriptSupport;
+import com.example.demo.model.Allocation;
+import com.example.demo.model.Order;
+import com.example.demo.model.Picker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Script replies through ReactiveRedisTemplate against a real Redis. Needs Redis on localhost;
+ * enable with ./gradlew test -Predis.
+ */
+@SpringBootTest(properties = "allocation.engine=redis")
+@EnabledIfSystemProperty(named = "redis", matches = "true")
+class ReactiveQueueServiceTest {
+
+    @Autowired
+    private ReactiveQueueService queueService;
+
+    @Autowired
+    private ReactiveAllocationService allocationService;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+
+    @Autowired
+    private AllocationProperties properties;
+
+    @Autowired
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> queueStatusScript;
+
+    private final String storeId = "reactive-test-" + UUID.randomUUID();
+
+    @AfterEach
+    void tearDown() {
+        List<String> keys = new ArrayList<>(RedisScriptSupport.allocationKeys(storeId));
+        reactiveRedisTemplate.delete(keys.toArray(String[]::new)).block();
+        reactiveRedisTemplate.opsForZSet().remove(RedisKeys.leaseDue(), storeId).block();
+        reactiveRedisTemplate.opsForZSet().remove(RedisKeys.leaseRegistrations(), storeId).block();
+        reactiveRedisTemplate.opsForSet().remove(RedisKeys.dirtyStores(), storeId).block();
+    }
+
+    @Test
+    void scriptReply_isEmittedAsOneList() {
+        List<Object> emitted = reactiveRedisTemplate.execute(queueStatusScript, RedisScriptSupport.statusKeys(storeId),
+                List.of())
+            .map(element -> (Object) element)
+            .collectList()
+            .block();
+
+        assertEquals(1, emitted.size());
+        assertEquals(List.of(0L, 0L, "", "", "", ""), emitted.get(0));
+    }
+
+    @Test
+    void getQueueStatus_readsTheScriptReply() {
+        queueService.enqueueOrder(new Order("order1", storeId, Instant.now(), 1, 5)).block();
+
+        QueueStatusResponse status = queueService.getQueueStatus(storeId).block();
+
+        assertEquals(1, status.orderQueueSize());
+        assertEquals(0, status.pickerQueueSize());
+        assertEquals("order1", status.topOrderId());
+        assertNull(status.topPickerId());
+        assertTrue(status.topOrderScoreMeta().containsKey("finalScore"));
+    }
+
+    @Test
+    void enqueuePickerAndAllocate_readsTheAllocationFromTheScriptReply() {
+        queueService.enqueueOrder(new Order("order1", storeId, Instant.now(), 1, 5)).block();
+
+        Allocation allocation = allocationService.enqueuePickerAndAllocate(new Picker("picker1", storeId, 10, 1))
+            .block();
+
+        assertNotNull(allocation);
+        assertEquals("order1", allocation.orderId());
+        assertEquals("picker1", allocation.pickerId());
+    }
+
+    @Test
+    void enqueuePickerAndAllocate_putsStoreOnLeaseIndexBeforeLeasing() {
+        long ttlMs = properties.getLease().getTtlMs();
+        properties.getLease().setTtlMs(60_000);
+        try {
+            queueService.enqueueOrder(new Order("order1", storeId, Instant.now(), 1, 5)).block();
+
+            allocationService.enqueuePickerAndAllocate(new Picker("picker1", storeId, 10, 1)).block();
+
+            assertNotNull(reactiveRedisTemplate.opsForZSet().score(RedisKeys.leaseDue(), storeId).block());
+            assertEquals(List.of("order1"),
+                reactiveRedisTemplate.opsForZSet().range(RedisKeys.orderInflight(storeId), Range.unbounded())
+                    .collectList().block());
+        } finally {
+            properties.getLease().setTtlMs(ttlMs);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    void reply_rejectsMoreThanOneEmission() {
+        Flux<List> emitted = Flux.just(List.of("order1"), List.of("picker1"));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> ReactiveQueueService.reply(emitted).block());
+    }
+}
@@ -9,31 +9,68 @@ class RedisKeysTest {
     @Test
     void orderQueue_generatesCorrectKey() {
         String key = RedisKeys.orderQueue("store123");
-        assertEquals("order:queue:store123", key);
+        assertEquals("order:queue:{store123}", key);
     }
 
     @Test
     void pickerQueue_generatesCorrectKey() {
         String key = RedisKeys.pickerQueue("store123");
-        assertEquals("picker:queue:store123", key);
+        assertEquals("picker:queue:{store123}", key);
     }
 
     @Test
     void orderScoreMeta_generatesCorrectKey() {
-        String key = RedisKeys.orderScoreMeta("order456");
-        assertEquals("order:scoremeta:order456", key);
+        String key = RedisKeys.orderScoreMeta("store123");
+        assertEquals("order:scoremeta:{store123}", key);
     }
 
     @Test
     void pickerScoreMeta_generatesCorrectKey() {
-        String key = RedisKeys.pickerScoreMeta("picker789");
-        assertEquals("picker:scoremeta:picker789", key);
+        String key = RedisKeys.pickerScoreMeta("store123");
+        assertEquals("picker:scoremeta:{store123}", key);
+    }
+
+    @Test
+    void capabilities_generateCorrectKeys() {
+        assertEquals("order:caps:{store123}", RedisKeys.orderCapabilities("store123"));
+        assertEquals("picker:caps:{store123}", RedisKeys.pickerCapabilities("store123"));
     }
 
     @Test
     void allocationHistory_generatesCorrectKey() {
         String key = RedisKeys.allocationHistory("store123");
-        assertEquals("allocation:history:store123", key);
+        assertEquals("allocation:history:{store123}", key);
+    }
+
+    @Test
+    void leases_generateCorrectKeys() {
+        assertEquals("order:inflight:{store123}", RedisKeys.orderInflight("store123"));
+        assertEquals("order:lease:{store123}", RedisKeys.orderLeases("store123"));
+        assertEquals("allocation:{leases}:due", RedisKeys.leaseDue());
+        assertEquals("allocation:{leases}:registered", RedisKeys.leaseRegistrations());
+    }
+
+    @Test
+    void dirtyStores_generatesCorrectKey() {
+        assertEquals("allocation:dirty-stores", RedisKeys.dirtyStores());
+    }
+
+    @Test
+    void allocationPushChannel_generatesCorrectName() {
+        assertEquals("allocation:push", RedisKeys.allocationPushChannel());
     }
-}
 
+    @Test
+    void perStoreKeys_shareHashTag() {
+        String tag = "{store123}";
+        assertTrue(RedisKeys.orderQueue("store123").contains(tag));
+        assertTrue(RedisKeys.pickerQueue("store123").contains(tag));
+        assertTrue(RedisKeys.orderScoreMeta("store123").contains(tag));
+        assertTrue(RedisKeys.pickerScoreMeta("store123").contains(tag));
+        assertTrue(RedisKeys.orderCapabilities("store123").contains(tag));
+        assertTrue(RedisKeys.pickerCapabilities("store123").contains(tag));
+        assertTrue(RedisKeys.allocationHistory("store123").contains(tag));
+        assertTrue(RedisKeys.orderInflight("store123").contains(tag));
+        assertTrue(RedisKeys.orderLeases("store123").contains(tag));
+    }
+}
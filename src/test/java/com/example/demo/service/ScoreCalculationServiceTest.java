@@ -9,8 +9,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
+import java.util.SplittableRandom;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class ScoreCalculationServiceTest {
 
@@ -94,6 +96,18 @@ class ScoreCalculationServiceTest {
         assertTrue(meta.oatDelta() > 0, "OAT delta should be positive for orders past OAT (order has been waiting)");
     }
 
+    @Test
+    void getOrderScoreMeta_finalScoreIsWeightedSumForFixedClock() {
+        Instant now = Instant.parse("2025-06-01T12:00:00Z");
+        Order order = new Order("order1", "store1", now.minusSeconds(1800), 2, 8);
+
+        OrderScoreMeta meta = service.getOrderScoreMeta(order, now);
+
+        assertEquals(30, meta.oatDelta());
+        // 0.4 * (120 - 30) / 240 + 0.35 * (2 - 1) / 9 + 0.25 * (8 - 1) / 99
+        assertEquals(0.20656565656565656, meta.finalScore(), 1e-12);
+    }
+
     @Test
     void getPickerScoreMeta_returnsCorrectMetadata() {
         Picker picker = new Picker("picker1", "store1", 1000, 100);
@@ -114,6 +128,47 @@ class ScoreCalculationServiceTest {
         assertTrue(score >= 0 && score <= 1, "Score should be between 0 and 1");
     }
 
+    @Test
+    void absoluteOatEncoding_scoreDoesNotChangeWithClock() {
+        properties.setScoreEncoding(AllocationProperties.ScoreEncoding.ABSOLUTE_OAT);
+        Instant now = Instant.now();
+        Order order = new Order("order1", "store1", now.minusSeconds(600), 5, 10);
+
+        double scoreAtEnqueue = service.getOrderScoreMeta(order, now).finalScore();
+        double scoreLater = service.getOrderScoreMeta(order, now.plusSeconds(5400)).finalScore();
+
+        assertEquals(scoreAtEnqueue, scoreLater, 1e-12);
+    }
+
+    @Test
+    void absoluteOatEncoding_waitingOrderOvertakesFreshHighPriorityOrder() {
+        properties.setScoreEncoding(AllocationProperties.ScoreEncoding.ABSOLUTE_OAT);
+        Instant now = Instant.now();
+        // Enqueued 150 minutes ago with lower priority; relative encoding would have frozen its score
+        Order waitingOrder = new Order("order1", "store1", now.minusSeconds(150 * 60), 5, 10);
+        Order freshOrder = new Order("order2", "store1", now, 1, 10);
+
+        double waitingScore = service.getOrderScoreMeta(waitingOrder, now.minusSeconds(150 * 60)).finalScore();
+        double freshScore = service.getOrderScoreMeta(freshOrder, now).finalScore();
+
+        assertTrue(waitingScore < freshScore, "Order that has waited longer should age ahead of a fresh order");
+    }
+
+    @Test
+    void absoluteOatEncoding_preservesRelativeOrderingWithinClampRange() {
+        Instant now = Instant.now();
+        Order a = new Order("order1", "store1", now.minusSeconds(1200), 3, 40);
+        Order b = new Order("order2", "store1", now.minusSeconds(300), 2, 20);
+
+        boolean relativeOrder = service.getOrderScoreMeta(a, now).finalScore()
+            < service.getOrderScoreMeta(b, now).finalScore();
+        properties.setScoreEncoding(AllocationProperties.ScoreEncoding.ABSOLUTE_OAT);
+        boolean absoluteOrder = service.getOrderScoreMeta(a, now).finalScore()
+            < service.getOrderScoreMeta(b, now).finalScore();
+
+        assertEquals(relativeOrder, absoluteOrder);
+    }
+
     @Test
     void calculatePickerScore_returnsValueBetweenZeroAndOne() {
         Picker picker = new Picker("picker1", "store1", 500, 50);
@@ -122,5 +177,67 @@ class ScoreCalculationServiceTest {
 
         assertTrue(score >= 0 && score <= 1, "Score should be between 0 and 1");
     }
-}
 
+    @Test
+    void calculateOrderScores_matchesPerRecordScores() {
+        Instant now = Instant.ofEpochMilli(1_760_000_000_123L);
+        BulkOrders bulk = bulkOrders(now, 1003);
+
+        for (AllocationProperties.ScoreEncoding encoding : AllocationProperties.ScoreEncoding.values()) {
+            properties.setScoreEncoding(encoding);
+            double[] scores = service.calculateOrderScores(bulk.oats, bulk.priorities, bulk.skus, now);
+
+            for (int i = 0; i < scores.length; i++) {
+                Order order = new Order("order" + i, "store1", Instant.ofEpochMilli(bulk.oats[i]),
+                    bulk.priorities[i], bulk.skus[i]);
+                assertEquals(service.getOrderScoreMeta(order, now).finalScore(), scores[i],
+                    encoding + " score of order " + i + " with OAT delta " + (now.toEpochMilli() - bulk.oats[i]) + " ms");
+            }
+        }
+    }
+
+    @Test
+    void vectorScoring_isBitIdenticalToScalar() {
+        assumeTrue(ScoreCalculationService.isVectorized(), "needs --add-modules jdk.incubator.vector");
+        Instant now = Instant.ofEpochMilli(1_760_000_000_123L);
+        BulkOrders bulk = bulkOrders(now, 4099);
+        ScoreCalculationService.OrderScorer vectorScorer = ScoreCalculationService.vectorScorer().orElseThrow();
+
+        for (AllocationProperties.ScoreEncoding encoding : AllocationProperties.ScoreEncoding.values()) {
+            properties.setScoreEncoding(encoding);
+            ScoreCalculationService.OrderScoring scoring = service.orderScoring(now);
+            double[] scalar = new double[bulk.oats.length];
+            double[] vector = new double[bulk.oats.length];
+            ScoreCalculationService.scoreOrders(bulk.oats, bulk.priorities, bulk.skus, scoring, scalar);
+            vectorScorer.score(bulk.oats, bulk.priorities, bulk.skus, scoring, vector);
+
+            assertArrayEquals(scalar, vector, encoding.toString());
+        }
+    }
+
+    @Test
+    void calculateOrderScores_rejectsColumnsOfDifferentLengths() {
+        assertThrows(IllegalArgumentException.class,
+            () -> service.calculateOrderScores(new long[2], new int[2], new int[1]));
+    }
+
+    /**
+     * OATs from three hours early to three hours late, plus the minute and clamp boundaries where
+     * rounding toward zero and down differ.
+     */
+    private static BulkOrders bulkOrders(Instant now, int size) {
+        SplittableRandom random = new SplittableRandom(7);
+        long[] edges = {0, 1, -1, 59_999, 60_000, -59_000, -59_001, -60_000, -119_500, 7_200_000, -7_200_999};
+        BulkOrders bulk = new BulkOrders(new long[size], new int[size], new int[size]);
+        for (int i = 0; i < size; i++) {
+            long delta = i < edges.length ? edges[i] : random.nextLong(-10_800_000, 10_800_000);
+            bulk.oats[i] = now.toEpochMilli() - delta;
+            bulk.priorities[i] = random.nextInt(0, 12);
+            bulk.skus[i] = random.nextInt(0, 120);
+        }
+        return bulk;
+    }
+
+    private record BulkOrders(long[] oats, int[] priorities, int[] skus) {
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static com.example.demo.service.ScoreCalculationService.MAX_OAT_DELTA_MINUTES;
+import static com.example.demo.service.ScoreCalculationService.MAX_PRIORITY_ORDER;
+import static com.example.demo.service.ScoreCalculationService.MAX_SKU_COUNT;
+import static com.example.demo.service.ScoreCalculationService.SCORE_EPOCH_MILLIS;
+
+/**
+ * Bulk order scoring on the JDK Vector API (incubator module jdk.incubator.vector). Compiled in the
+ * vector source set, the only one built with the module, and loaded by {@link ScoreCalculationService}
+ * only when the JVM resolved it, so the service runs without it.
+ * Every lane performs the operations of {@link ScoreCalculationService#orderScore} in the same order
+ * and without fused multiply-add, so vector and scalar scores are bit-identical.
+ */
+final class VectorOrderScoring implements ScoreCalculationService.OrderScorer {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    // Same shape as the doubles, so one int vector widens into two double vectors
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void score(long[] oatEpochMillis, int[] priorityOrders, int[] skuCounts,
+            ScoreCalculationService.OrderScoring scoring, double[] scores) {
+        int lanes = DOUBLES.length();
+        int upper = INTS.loopBound(scores.length);
+        int i = 0;
+        for (; i < upper; i += INTS.length()) {
+            IntVector priority = IntVector.fromArray(INTS, priorityOrders, i);
+            IntVector skus = IntVector.fromArray(INTS, skuCounts, i);
+            for (int part = 0; part < INTS.length() / lanes; part++) {
+                int offset = i + part * lanes;
+                DoubleVector oat = oatComponent(LongVector.fromArray(LONGS, oatEpochMillis, offset), scoring);
+                DoubleVector p = normalize((DoubleVector) priority.convertShape(VectorOperators.I2D, DOUBLES, part),
+                    1, MAX_PRIORITY_ORDER);
+                DoubleVector s = normalize((DoubleVector) skus.convertShape(VectorOperators.I2D, DOUBLES, part),
+                    1, MAX_SKU_COUNT);
+                oat.mul(scoring.oatWeight())
+                    .add(p.mul(scoring.priorityWeight()))
+                    .add(s.mul(scoring.skuWeight()))
+                    .intoArray(scores, offset);
+            }
+        }
+        for (; i < scores.length; i++) {
+            scores[i] = ScoreCalculationService.orderScore(oatEpochMillis[i], priorityOrders[i], skuCounts[i], scoring);
+        }
+    }
+
+    private static DoubleVector oatComponent(LongVector oat, ScoreCalculationService.OrderScoring scoring) {
+        if (scoring.absoluteOat()) {
+            DoubleVector sinceEpoch = (DoubleVector) oat.sub(SCORE_EPOCH_MILLIS).convert(VectorOperators.L2D, 0);
+            return sinceEpoch.div(60_000.0).div(2 * MAX_OAT_DELTA_MINUTES);
+        }
+        // floorDiv(delta, 1000) / 60 without integer division: floor(delta / 60000) when waiting,
+        // -floor((-delta + 999) / 60000) when early. Exact in doubles for any realistic delta.
+        DoubleVector delta = (DoubleVector) LongVector.broadcast(LONGS, scoring.nowMillis()).sub(oat)
+            .convert(VectorOperators.L2D, 0);
+        VectorMask<Double> early = delta.lt(0.0);
+        DoubleVector quotient = delta.abs().add(999.0, early).div(60_000.0);
+        // D2L truncates, which is floor for a non-negative quotient
+        DoubleVector minutes = ((DoubleVector) quotient.convert(VectorOperators.D2L, 0).convert(VectorOperators.L2D, 0))
+            .lanewise(VectorOperators.NEG, early);
+        return normalize(minutes.neg(), -MAX_OAT_DELTA_MINUTES, MAX_OAT_DELTA_MINUTES);
+    }
+
+    private static DoubleVector normalize(DoubleVector value, double min, double max) {
+        return value.sub(min).div(max - min).max(0.0).min(1.0);
+    }
+}